@@ -0,0 +1,113 @@
+package hudson.plugins.tfs;
+
+import hudson.plugins.tfs.util.MediaType;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Keeps count of the requests an endpoint is handling and turns away those beyond its limits with
+ * {@code 429 Too Many Requests} and a {@code Retry-After} header, such that a storm of service hook retries
+ * can't tie up all of Jenkins' request threads.
+ */
+final class EndpointLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(EndpointLimiter.class.getName());
+
+    static final int SC_TOO_MANY_REQUESTS = 429;
+    static final int DEFAULT_RETRY_AFTER_SECONDS = Integer.getInteger(EndpointLimiter.class.getName() + ".retryAfterSeconds", 30);
+
+    private final String urlName;
+    private final int retryAfterSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    EndpointLimiter(final String urlName) {
+        this(urlName, DEFAULT_RETRY_AFTER_SECONDS);
+    }
+
+    EndpointLimiter(final String urlName, final int retryAfterSeconds) {
+        this.urlName = urlName;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    /**
+     * Counts a request as being handled, unless the endpoint is handling as many as it may already.
+     * Each successful call must be followed by a call to {@link #exit()}.
+     *
+     * @param maxConcurrentRequests the number of requests the endpoint may handle at once, or 0 for no limit
+     * @return {@code true} if the request may proceed
+     */
+    boolean tryEnter(final int maxConcurrentRequests) {
+        while (true) {
+            final int current = inFlight.get();
+            if (maxConcurrentRequests > 0 && current >= maxConcurrentRequests) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @param queued the number of events the endpoint has waiting to be processed
+     * @param maxQueued how many events may wait, or 0 for no limit
+     * @return {@code true} if another event may be queued
+     */
+    boolean mayQueue(final int queued, final int maxQueued) {
+        if (maxQueued > 0 && queued >= maxQueued) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests that were turned away since Jenkins started
+     */
+    long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Answers a request that was turned away.
+     */
+    void reject(final StaplerResponse rsp, final String reason) throws IOException {
+        LOGGER.fine("Turned away a request to /" + urlName + "/: " + reason);
+        rsp.setStatus(SC_TOO_MANY_REQUESTS);
+        rsp.setHeader("Retry-After", Integer.toString(retryAfterSeconds));
+        rsp.setContentType(MediaType.APPLICATION_JSON_UTF_8);
+        final JSONObject response = new JSONObject();
+        response.put("message", reason);
+        response.put("retryAfterSeconds", retryAfterSeconds);
+        final PrintWriter w = rsp.getWriter();
+        w.print(response.toString());
+        w.println();
+    }
+
+    /**
+     * @return the load of the endpoint, suitable for monitoring its saturation
+     */
+    JSONObject toJSONObject(final int maxConcurrentRequests) {
+        final JSONObject json = new JSONObject();
+        json.put("inFlight", getInFlight());
+        json.put("maxConcurrentRequests", maxConcurrentRequests);
+        json.put("rejected", getRejected());
+        return json;
+    }
+}
@@ -5,6 +5,7 @@ import hudson.Extension;
 import hudson.model.BuildAuthorizationToken;
 import hudson.model.BuildableItem;
 import hudson.model.Item;
+import hudson.model.ItemGroup;
 import hudson.model.Job;
 import hudson.model.UnprotectedRootAction;
 import hudson.plugins.tfs.model.AbstractCommand;
@@ -61,6 +62,7 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
     public static final String BUILD_SOURCE_BRANCH = "Build.SourceBranch";
     public static final String QUEUEJOBTASK_MULTIBRANCH_JOB_BRANCH = "QueueJobTask.MultibranchPipelineBranch";
     static final String URL_PREFIX = "/" + URL_NAME + "/";
+    static final EndpointLimiter LIMITER = new EndpointLimiter(URL_NAME);
 
     static {
         final Map<String, AbstractCommand.Factory> map = new TreeMap<String, AbstractCommand.Factory>(String.CASE_INSENSITIVE_ORDER);
@@ -163,6 +165,10 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
     }
 
     void dispatch(final StaplerRequest req, final StaplerResponse rsp, final TimeDuration delay) throws IOException {
+        if (!LIMITER.tryEnter(TeamPluginGlobalConfig.get().getMaxConcurrentBuildRequests())) {
+            LIMITER.reject(rsp, "Too many build requests are being handled at once.");
+            return;
+        }
         try {
             final JSONObject response = innerDispatch(req, rsp, delay);
 
@@ -186,6 +192,8 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
             final String message = String.format(template, commandName);
             LOGGER.log(Level.SEVERE, message, e);
             EndpointHelper.error(SC_INTERNAL_SERVER_ERROR, e);
+        } finally {
+            LIMITER.exit();
         }
     }
 
@@ -200,19 +208,18 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
      *
      * If we can't determine the branch name, throw.
      */
-    private String getBranch(final String jobName, final StaplerRequest req) {
-        final String json = req.getParameter("json");
-        final JSONObject formData = JSONObject.fromObject(json);
-        final TeamBuildPayload payload = EndpointHelper.MAPPER.convertValue(formData, TeamBuildPayload.class);
+    private String getBranch(final String jobName, final TeamBuildPayload payload) {
+        final Map<String, String> buildVariables = payload.BuildVariables != null
+                ? payload.BuildVariables : Collections.<String, String>emptyMap();
 
-        String sourceBranch = payload.BuildVariables.get(QUEUEJOBTASK_MULTIBRANCH_JOB_BRANCH);
+        String sourceBranch = buildVariables.get(QUEUEJOBTASK_MULTIBRANCH_JOB_BRANCH);
 
         if (sourceBranch == null || sourceBranch.trim().isEmpty()) {
             final int idx = jobName.indexOf('/');
             if (idx > 0) {
                 sourceBranch = jobName.substring(idx + 1);
             } else {
-                sourceBranch = payload.BuildVariables.get(BUILD_SOURCE_BRANCH);
+                sourceBranch = buildVariables.get(BUILD_SOURCE_BRANCH);
             }
         }
 
@@ -228,6 +235,26 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
         }
     }
 
+    /**
+     * Looks the job of a branch up by its name in the multibranch project, only going through all the jobs
+     * of the item when they aren't its direct children, such as with an organization folder.
+     */
+    static Job findBranchJob(final Item item, final String encodedBranch) {
+        if (item instanceof ItemGroup) {
+            final Item child = ((ItemGroup<?>) item).getItem(encodedBranch);
+            if (child instanceof Job) {
+                return (Job) child;
+            }
+        }
+        final Collection<? extends Job> allJobs = item.getAllJobs();
+        for (final Job j : allJobs) {
+            if (j.getName().equals(encodedBranch)) {
+                return j;
+            }
+        }
+        return null;
+    }
+
     private String getJobNameFromNestedFolder(final String jobName) {
         final int idx = jobName.indexOf('/');
         if (idx > 0) {
@@ -237,7 +264,7 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
         return jobName;
     }
 
-    private Job getJob(final String jobName, final StaplerRequest req) {
+    private Job getJob(final String jobName, final TeamBuildPayload payload) {
         final Jenkins jenkins = Jenkins.getActiveInstance();
 
         Job job = jenkins.getItemByFullName(jobName, Job.class);
@@ -253,15 +280,8 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
                     ? mbPipelineJobItem : jenkins.getItemByFullName(getJobNameFromNestedFolder(jobName));
 
             if (item != null) {
-                final Collection<? extends Job> allJobs = item.getAllJobs();
-                final String sourceBranch = getBranch(jobName, req);
-
-                for (final Job j : allJobs) {
-                    if (j.getName().equals(sourceBranch)) {
-                        job = j;
-                        break;
-                    }
-                }
+                final String sourceBranch = getBranch(jobName, payload);
+                job = findBranchJob(item, sourceBranch);
             }
         }
 
@@ -272,6 +292,23 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
         return job;
     }
 
+    /**
+     * Decodes the submitted form once, straight from its JSON into a {@link TeamBuildPayload}, which is then
+     * shared by the job lookup and the command.
+     */
+    static TeamBuildPayload decodePayload(final StaplerRequest req) throws IOException, ServletException {
+        String json = req.getParameter("json");
+        if (json == null) {
+            // such as a multipart submission, which Stapler takes apart
+            json = req.getSubmittedForm().toString();
+        }
+        return decodePayload(json);
+    }
+
+    static TeamBuildPayload decodePayload(final String json) throws IOException {
+        return EndpointHelper.MAPPER.readValue(json, TeamBuildPayload.class);
+    }
+
     private JSONObject innerDispatch(final StaplerRequest req, final StaplerResponse rsp, final TimeDuration delay) throws IOException, ServletException {
         commandName = null;
         jobName = null;
@@ -289,7 +326,8 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
             throw new IllegalArgumentException("Command not implemented");
         }
 
-        final Job job = getJob(jobName, req);
+        final TeamBuildPayload teamBuildPayload = decodePayload(req);
+        final Job job = getJob(jobName, teamBuildPayload);
 
         final ParameterizedJobMixIn.ParameterizedJob jobMixin = (ParameterizedJobMixIn.ParameterizedJob) job;
 
@@ -300,15 +338,30 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
         final AbstractCommand.Factory factory = COMMAND_FACTORIES_BY_NAME.get(commandName);
         final AbstractCommand command = factory.create();
         final JSONObject response;
-        final JSONObject formData = req.getSubmittedForm();
+        // the form is only parsed again for the commands that read it, such as to bind parameter values
+        final JSONObject formData = command.needsRequestPayload(job, teamBuildPayload)
+                ? req.getSubmittedForm() : new JSONObject();
         final ObjectMapper mapper = EndpointHelper.MAPPER;
-        final TeamBuildPayload teamBuildPayload = mapper.convertValue(formData, TeamBuildPayload.class);
 
         final BuildableItem buildable = (BuildableItem) job;
         response = command.perform(job, buildable, req, formData, mapper, teamBuildPayload, actualDelay);
         return response;
     }
 
+    /**
+     * Reports how busy this endpoint is, such that its saturation can be monitored;
+     * requires the Overall/Read permission.
+     */
+    public void doLoad(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        Jenkins.getActiveInstance().checkPermission(Jenkins.READ);
+        final JSONObject load = LIMITER.toJSONObject(TeamPluginGlobalConfig.get().getMaxConcurrentBuildRequests());
+        response.setStatus(SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_UTF_8);
+        final PrintWriter w = response.getWriter();
+        w.print(load.toString());
+        w.println();
+    }
+
     /**
      * External endpoint for testing the connection to Jenkins.
      */
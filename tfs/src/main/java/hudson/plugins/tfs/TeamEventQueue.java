@@ -0,0 +1,358 @@
+package hudson.plugins.tfs;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.plugins.tfs.model.servicehooks.Event;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import net.sf.json.JSONObject;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Processes the events received by the {@link TeamEventsEndpoint} on a few background threads, such that
+ * TFS/Team Services gets its answer before its service hook times out and retries.  Each event is saved under
+ * {@code JENKINS_HOME} until it was processed, so that the events that were still waiting or running when
+ * Jenkins stopped are processed again after a restart.
+ *
+ * Pushes to the same branch of a repository that arrive within a short window of one another are coalesced:
+ * only the newest one is processed and the ones it superseded are recorded as merged into it, such that a burst
+ * of pushes polls and schedules the matching jobs once.  A steady stream of pushes doesn't hold the processing
+ * back for longer than the window: the newest event is processed once the oldest one it superseded has waited
+ * that long.
+ */
+public class TeamEventQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(TeamEventQueue.class.getName());
+
+    static final int DEFAULT_WORKERS = Integer.getInteger(TeamEventQueue.class.getName() + ".workers", 2);
+    static final String DIRECTORY_NAME = "tfs-team-events";
+    static final int MAX_FINISHED = 100;
+    static final long DEFAULT_COALESCING_WINDOW_MILLIS = Long.getLong(TeamEventQueue.class.getName() + ".coalescingWindowMillis", TimeUnit.SECONDS.toMillis(5));
+
+    private static final String FILE_EXTENSION = ".xml";
+
+    private static TeamEventQueue instance;
+
+    /**
+     * Performs the reaction to an event.
+     */
+    interface Processor {
+        JSONObject process(TeamEventRecord record) throws Exception;
+    }
+
+    private final File directory;
+    private final Executor executor;
+    private final Processor processor;
+    private final long coalescingWindowMillis;
+    private final Map<String, TeamEventRecord> pending = new LinkedHashMap<String, TeamEventRecord>();
+    private final Map<String, TeamEventRecord> finished = new LinkedHashMap<String, TeamEventRecord>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, TeamEventRecord> eldest) {
+            return size() > MAX_FINISHED;
+        }
+    };
+    private final Map<String, TeamEventRecord> waitingByCoalescingKey = new HashMap<String, TeamEventRecord>();
+    private final Map<String, Long> waitingSinceByCoalescingKey = new HashMap<String, Long>();
+
+    TeamEventQueue(final File directory, final Executor executor, final Processor processor) {
+        this(directory, executor, processor, 0);
+    }
+
+    TeamEventQueue(final File directory, final Executor executor, final Processor processor, final long coalescingWindowMillis) {
+        this.directory = directory;
+        this.executor = executor;
+        this.processor = processor;
+        this.coalescingWindowMillis = Math.max(0, coalescingWindowMillis);
+    }
+
+    /**
+     * @return the queue of this controller, with the events that weren't processed before the last restart
+     */
+    public static synchronized TeamEventQueue getInstance() {
+        if (instance == null) {
+            final Jenkins jenkins = Jenkins.getInstance();
+            final File directory = jenkins == null ? null : new File(jenkins.getRootDir(), DIRECTORY_NAME);
+            final Executor executor = Executors.newFixedThreadPool(Math.max(1, DEFAULT_WORKERS),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFS team events"));
+            final TeamEventQueue created = new TeamEventQueue(directory, executor, new Processor() {
+                @Override
+                public JSONObject process(final TeamEventRecord record) throws Exception {
+                    final Event event = record.getEvent();
+                    if (event != null) {
+                        return TeamEventsEndpoint.innerDispatch(event, record.getEventName(), TeamEventsEndpoint.HOOK_EVENT_FACTORIES_BY_NAME);
+                    }
+                    return TeamEventsEndpoint.innerDispatch(record.getBody(), record.getEventName(), TeamEventsEndpoint.HOOK_EVENT_FACTORIES_BY_NAME);
+                }
+            }, DEFAULT_COALESCING_WINDOW_MILLIS);
+            created.resumeAll();
+            instance = created;
+        }
+        return instance;
+    }
+
+    /**
+     * Processes the events that were received before the last restart.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void resume() {
+        getInstance();
+    }
+
+    /**
+     * Saves an event and queues its processing, unless an event with the same id was already received.
+     *
+     * @param id the id of the event, such as the one TFS/Team Services assigned to the notification
+     * @param eventName the name of the event, such as {@code gitPush}
+     * @param body the request payload
+     * @return the record of the event, which might be the one of an earlier delivery
+     */
+    public TeamEventRecord submit(final String id, final String eventName, final String body) {
+        return submit(id, eventName, body, null);
+    }
+
+    /**
+     * Saves an event and queues its processing after the coalescing window, unless an event with the same id
+     * was already received.  An event with the same coalescing key that is still waiting is merged into this one,
+     * which is then processed when the window of the oldest event merged into it ends.
+     *
+     * @param id the id of the event, such as the one TFS/Team Services assigned to the notification
+     * @param eventName the name of the event, such as {@code gitPush}
+     * @param body the request payload
+     * @param coalescingKey identifies the events that supersede one another, such as the pushes to a branch,
+     *                      or {@code null} to process the event regardless of the others
+     * @return the record of the event, which might be the one of an earlier delivery
+     */
+    public TeamEventRecord submit(final String id, final String eventName, final String body, final String coalescingKey) {
+        return submit(id, eventName, body, null, coalescingKey);
+    }
+
+    /**
+     * Like {@link #submit(String, String, String, String)}, handing the payload as it was decoded to receive
+     * the event on to its processing, such that it doesn't need to be decoded again.
+     *
+     * @param event the decoded request payload, or {@code null} to decode the body when processing the event
+     */
+    public TeamEventRecord submit(final String id, final String eventName, final String body, final Event event, final String coalescingKey) {
+        final TeamEventRecord record;
+        final boolean coalesce = coalescingKey != null && coalescingWindowMillis > 0;
+        long delayMillis = coalescingWindowMillis;
+        synchronized (this) {
+            final TeamEventRecord existing = get(id);
+            if (existing != null) {
+                return existing;
+            }
+            final long now = now();
+            record = new TeamEventRecord(id, eventName, body, now);
+            record.setEvent(event);
+            if (coalesce) {
+                final TeamEventRecord superseded = waitingByCoalescingKey.put(coalescingKey, record);
+                final Long waitingSince = waitingSinceByCoalescingKey.get(coalescingKey);
+                if (superseded != null && superseded.getState() == TeamEventRecord.State.QUEUED && waitingSince != null) {
+                    superseded.recordMerged(id, now);
+                    pending.remove(superseded.getId());
+                    finished.put(superseded.getId(), superseded);
+                    delete(superseded);
+                    delayMillis = Math.max(0, waitingSince + coalescingWindowMillis - now);
+                }
+                else {
+                    waitingSinceByCoalescingKey.put(coalescingKey, now);
+                }
+            }
+            pending.put(id, record);
+            save(record);
+        }
+        if (coalesce) {
+            schedule(new Runnable() {
+                @Override
+                public void run() {
+                    execute(record);
+                }
+            }, delayMillis);
+        }
+        else {
+            execute(record);
+        }
+        return record;
+    }
+
+    /**
+     * @param id the id of an event
+     * @return the record of the event, or {@code null} if it is unknown or was processed a long time ago
+     */
+    public synchronized TeamEventRecord get(final String id) {
+        final TeamEventRecord result = pending.get(id);
+        return result != null ? result : finished.get(id);
+    }
+
+    /**
+     * @return the number of events that are waiting to be processed or being processed
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private void execute(final TeamEventRecord record) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                TeamEventQueue.this.run(record);
+            }
+        });
+    }
+
+    void run(final TeamEventRecord record) {
+        if (!begin(record)) {
+            return;
+        }
+        boolean succeeded = false;
+        String resultOrError = "Interrupted";
+        try {
+            final JSONObject result = processor.process(record);
+            resultOrError = result == null ? null : result.toString();
+            succeeded = true;
+        }
+        catch (final Exception e) {
+            resultOrError = e.getMessage() != null ? e.getMessage() : e.toString();
+            LOGGER.log(Level.WARNING, "Error while performing reaction to " + record, e);
+        }
+        finally {
+            complete(record, succeeded, resultOrError);
+        }
+    }
+
+    /**
+     * Marks the event as running, unless it was merged into a newer one while it waited.
+     */
+    synchronized boolean begin(final TeamEventRecord record) {
+        if (record.getState() != TeamEventRecord.State.QUEUED) {
+            return false;
+        }
+        final Iterator<Map.Entry<String, TeamEventRecord>> iterator = waitingByCoalescingKey.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, TeamEventRecord> entry = iterator.next();
+            if (entry.getValue() == record) {
+                waitingSinceByCoalescingKey.remove(entry.getKey());
+                iterator.remove();
+                break;
+            }
+        }
+        record.recordRunning();
+        return true;
+    }
+
+    synchronized void complete(final TeamEventRecord record, final boolean succeeded, final String resultOrError) {
+        record.recordFinished(succeeded, resultOrError, now());
+        pending.remove(record.getId());
+        finished.put(record.getId(), record);
+        delete(record);
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    void schedule(final Runnable command, final long delayMillis) {
+        Timer.get().schedule(command, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the events that weren't processed yet and queues them again, oldest first.
+     */
+    void resumeAll() {
+        final List<TeamEventRecord> loaded = load();
+        for (final TeamEventRecord record : loaded) {
+            execute(record);
+        }
+        if (!loaded.isEmpty()) {
+            LOGGER.info("Resuming the processing of " + loaded.size() + " event(s).");
+        }
+    }
+
+    synchronized List<TeamEventRecord> load() {
+        final List<TeamEventRecord> result = new ArrayList<TeamEventRecord>();
+        if (directory == null) {
+            return result;
+        }
+        final File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && file.getName().endsWith(FILE_EXTENSION);
+            }
+        });
+        if (files == null) {
+            return result;
+        }
+        for (final File file : files) {
+            try {
+                final Object loaded = new XmlFile(Jenkins.XSTREAM2, file).read();
+                if (loaded instanceof TeamEventRecord) {
+                    final TeamEventRecord record = (TeamEventRecord) loaded;
+                    if (!pending.containsKey(record.getId())) {
+                        record.recordQueued();
+                        result.add(record);
+                    }
+                }
+            }
+            catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to read the queued event from " + file, e);
+            }
+        }
+        Collections.sort(result, new Comparator<TeamEventRecord>() {
+            @Override
+            public int compare(final TeamEventRecord a, final TeamEventRecord b) {
+                return Long.compare(a.getReceivedMillis(), b.getReceivedMillis());
+            }
+        });
+        for (final TeamEventRecord record : result) {
+            pending.put(record.getId(), record);
+        }
+        return result;
+    }
+
+    private XmlFile getFile(final TeamEventRecord record) {
+        final String safeName = record.getId().replaceAll("[^A-Za-z0-9-]", "_");
+        return new XmlFile(Jenkins.XSTREAM2, new File(directory, safeName + FILE_EXTENSION));
+    }
+
+    private void save(final TeamEventRecord record) {
+        if (directory == null) {
+            return;
+        }
+        final XmlFile file = getFile(record);
+        try {
+            file.write(record);
+        }
+        catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to save " + record + " to " + file, e);
+        }
+    }
+
+    private void delete(final TeamEventRecord record) {
+        if (directory == null) {
+            return;
+        }
+        final XmlFile file = getFile(record);
+        if (file.exists() && !file.getFile().delete()) {
+            LOGGER.warning("Unable to delete " + file);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package hudson.plugins.tfs;
+
+import hudson.plugins.tfs.model.servicehooks.Event;
+import net.sf.json.JSONObject;
+
+/**
+ * An event received by the {@link TeamEventsEndpoint} that is waiting to be, being or was processed
+ * by the {@link TeamEventQueue}.
+ */
+public class TeamEventRecord {
+
+    /**
+     * The stages of processing an event.
+     */
+    public enum State {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+        MERGED
+    }
+
+    private final String id;
+    private final String eventName;
+    private final long receivedMillis;
+    private volatile String body;
+    private volatile State state = State.QUEUED;
+    private volatile String result;
+    private volatile String error;
+    private volatile long finishedMillis;
+    private volatile String mergedInto;
+    // the payload as decoded when the event was received; not saved, so it's decoded again after a restart
+    private transient volatile Event event;
+
+    public TeamEventRecord(final String id, final String eventName, final String body, final long receivedMillis) {
+        this.id = id;
+        this.eventName = eventName;
+        this.body = body;
+        this.receivedMillis = receivedMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * @return the request payload, or {@code null} once the event was processed
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return the request payload as decoded when the event was received, or {@code null} if it was loaded
+     * after a restart or once the event was processed
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    void setEvent(final Event event) {
+        this.event = event;
+    }
+
+    public long getReceivedMillis() {
+        return receivedMillis;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the JSON the event's reaction produced, if it succeeded
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getFinishedMillis() {
+        return finishedMillis;
+    }
+
+    /**
+     * @return the id of the newer event that was processed instead of this one, if it was merged
+     */
+    public String getMergedInto() {
+        return mergedInto;
+    }
+
+    public boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED || state == State.MERGED;
+    }
+
+    void recordQueued() {
+        state = State.QUEUED;
+    }
+
+    void recordRunning() {
+        state = State.RUNNING;
+    }
+
+    void recordFinished(final boolean succeeded, final String resultOrError, final long now) {
+        if (succeeded) {
+            result = resultOrError;
+        }
+        else {
+            error = resultOrError;
+        }
+        state = succeeded ? State.SUCCEEDED : State.FAILED;
+        finishedMillis = now;
+        body = null;
+        event = null;
+    }
+
+    void recordMerged(final String newerId, final long now) {
+        mergedInto = newerId;
+        state = State.MERGED;
+        finishedMillis = now;
+        body = null;
+        event = null;
+    }
+
+    /**
+     * @return a description of the event's progress, suitable for the status URL
+     */
+    public JSONObject toJSONObject() {
+        final JSONObject json = new JSONObject();
+        json.put("eventId", id);
+        json.put("eventName", eventName);
+        json.put("state", state.name());
+        json.put("receivedMillis", receivedMillis);
+        if (isFinished()) {
+            json.put("finishedMillis", finishedMillis);
+        }
+        if (result != null) {
+            json.put("result", JSONObject.fromObject(result));
+        }
+        if (error != null) {
+            json.put("error", error);
+        }
+        if (mergedInto != null) {
+            json.put("mergedInto", mergedInto);
+        }
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("'%s' event %s", eventName, id);
+    }
+}
@@ -12,6 +12,7 @@ import hudson.plugins.tfs.model.GitPullRequestMergedEvent;
 import hudson.plugins.tfs.model.GitPushEvent;
 import hudson.plugins.tfs.model.PingHookEvent;
 import hudson.plugins.tfs.model.servicehooks.Event;
+import hudson.plugins.tfs.model.servicehooks.ResourceDeserializer;
 import hudson.plugins.tfs.rm.ConnectReleaseWebHookEvent;
 import hudson.plugins.tfs.telemetry.TelemetryHelper;
 import hudson.plugins.tfs.util.EndpointHelper;
@@ -26,6 +27,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.interceptor.RequirePOST;
@@ -40,11 +42,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static javax.servlet.http.HttpServletResponse.SC_ACCEPTED;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 /**
@@ -54,7 +59,7 @@ import static javax.servlet.http.HttpServletResponse.SC_OK;
 public class TeamEventsEndpoint implements UnprotectedRootAction {
 
     private static final Logger LOGGER = Logger.getLogger(TeamEventsEndpoint.class.getName());
-    private static final Map<String, AbstractHookEvent.Factory> HOOK_EVENT_FACTORIES_BY_NAME;
+    static final Map<String, AbstractHookEvent.Factory> HOOK_EVENT_FACTORIES_BY_NAME;
 
     static {
         final Map<String, AbstractHookEvent.Factory> eventMap =
@@ -69,6 +74,9 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
 
     public static final String URL_NAME = "team-events";
     static final String URL_PREFIX = "/" + URL_NAME + "/";
+    static final String STATUS_URL_NAME = "status";
+    static final String LOAD_URL_NAME = "load";
+    static final EndpointLimiter LIMITER = new EndpointLimiter(URL_NAME);
 
     @Override
     public String getIconFileName() {
@@ -134,9 +142,13 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
         return null;
     }
 
-    void dispatch(final StaplerRequest request, final StaplerResponse rsp, final String body) {
+    void dispatch(final StaplerRequest request, final StaplerResponse rsp, final String body) throws IOException {
         final String pathInfo = request.getPathInfo();
         final String eventName = pathInfoToEventName(pathInfo);
+        if (!LIMITER.tryEnter(TeamPluginGlobalConfig.get().getMaxConcurrentEventRequests())) {
+            LIMITER.reject(rsp, "Too many events are being received at once.");
+            return;
+        }
         try {
             final JSONObject response = innerDispatch(body, eventName, HOOK_EVENT_FACTORIES_BY_NAME);
 
@@ -157,6 +169,118 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
             LOGGER.log(Level.SEVERE, message, e);
             EndpointHelper.error(SC_INTERNAL_SERVER_ERROR, e);
         }
+        finally {
+            LIMITER.exit();
+        }
+    }
+
+    /**
+     * Saves the event and answers right away with its id and the URL where its progress can be followed,
+     * leaving the reaction to the {@link TeamEventQueue}.
+     */
+    void enqueue(final StaplerRequest request, final StaplerResponse rsp, final String body) throws IOException {
+        final String pathInfo = request.getPathInfo();
+        final String eventName = pathInfoToEventName(pathInfo);
+        final TeamPluginGlobalConfig config = TeamPluginGlobalConfig.get();
+        if (!LIMITER.tryEnter(config.getMaxConcurrentEventRequests())) {
+            LIMITER.reject(rsp, "Too many events are being received at once.");
+            return;
+        }
+        try {
+            final TeamEventQueue queue = TeamEventQueue.getInstance();
+            if (!LIMITER.mayQueue(queue.getPendingCount(), config.getMaxQueuedEvents())) {
+                LIMITER.reject(rsp, "Too many events are waiting to be processed.");
+                return;
+            }
+            final TeamEventRecord record = innerEnqueue(body, eventName, HOOK_EVENT_FACTORIES_BY_NAME, queue);
+            final String statusUrl = getStatusUrl(record.getId());
+            final JSONObject response = record.toJSONObject();
+            response.put("statusUrl", statusUrl);
+
+            rsp.setStatus(SC_ACCEPTED);
+            rsp.setHeader("Location", statusUrl);
+            rsp.setContentType(MediaType.APPLICATION_JSON_UTF_8);
+            final PrintWriter w = rsp.getWriter();
+            w.print(response.toString());
+            w.println();
+        }
+        catch (final IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "IllegalArgumentException", e);
+            EndpointHelper.error(SC_BAD_REQUEST, e);
+        }
+        catch (final Exception e) {
+            final String template = "Error while queueing '%s' event.";
+            final String message = String.format(template, eventName);
+            LOGGER.log(Level.SEVERE, message, e);
+            EndpointHelper.error(SC_INTERNAL_SERVER_ERROR, e);
+        }
+        finally {
+            LIMITER.exit();
+        }
+    }
+
+    static TeamEventRecord innerEnqueue(final String body, final String eventName, final Map<String, AbstractHookEvent.Factory> factoriesByName, final TeamEventQueue queue) throws IOException {
+        if (StringUtils.isBlank(eventName) || !factoriesByName.containsKey(eventName)) {
+            throw new IllegalArgumentException("Invalid event");
+        }
+        final AbstractHookEvent.Factory factory = factoriesByName.get(eventName);
+        final Event serviceHookEvent = deserializeEvent(body, factory.create().getResourceType());
+        // a service hook delivers the same notification id again when it retries
+        final UUID notificationId = serviceHookEvent.getId();
+        final String id = notificationId != null ? notificationId.toString() : UUID.randomUUID().toString();
+        final String coalescingKey = factory instanceof GitPushEvent.Factory
+                ? GitPushEvent.determineCoalescingKey(EndpointHelper.MAPPER, serviceHookEvent)
+                : null;
+        return queue.submit(id, eventName, body, serviceHookEvent, coalescingKey);
+    }
+
+    static String getStatusUrl(final String eventId) {
+        final Jenkins instance = Jenkins.getInstance();
+        final String rootUrl = instance == null ? null : instance.getRootUrl();
+        final String prefix = rootUrl == null ? "/" : rootUrl;
+        return prefix + URL_NAME + "/" + STATUS_URL_NAME + "?id=" + eventId;
+    }
+
+    /**
+     * Describes the progress of an event that was queued.
+     *
+     * Anyone who knows the id of the event may read its status, without the Overall/Read permission:
+     * service hooks usually POST anonymously, the id is only handed out to the sender of the event
+     * (or chosen by it) and the status repeats what the sender would have been told had the event been
+     * processed right away.
+     */
+    public void doStatus(
+            final StaplerRequest request,
+            final StaplerResponse rsp,
+            @QueryParameter final String id) throws IOException {
+        final TeamEventRecord record = StringUtils.isBlank(id) ? null : TeamEventQueue.getInstance().get(id);
+        if (record == null) {
+            rsp.sendError(SC_NOT_FOUND, "Unknown event id");
+            return;
+        }
+        rsp.setStatus(SC_OK);
+        rsp.setContentType(MediaType.APPLICATION_JSON_UTF_8);
+        final PrintWriter w = rsp.getWriter();
+        w.print(record.toJSONObject().toString());
+        w.println();
+    }
+
+    /**
+     * Reports how busy this endpoint is, such that its saturation can be monitored;
+     * requires the Overall/Read permission.
+     */
+    public void doLoad(final StaplerRequest request, final StaplerResponse rsp) throws IOException {
+        Jenkins.getActiveInstance().checkPermission(Jenkins.READ);
+        final TeamPluginGlobalConfig config = TeamPluginGlobalConfig.get();
+        final JSONObject response = LIMITER.toJSONObject(config.getMaxConcurrentEventRequests());
+        response.put("queued", TeamEventQueue.getInstance().getPendingCount());
+        response.put("maxQueuedEvents", config.getMaxQueuedEvents());
+        response.put("pollsWaiting", TeamPollingQueue.getInstance().getWaitingCount());
+        rsp.setStatus(SC_OK);
+        rsp.setContentType(MediaType.APPLICATION_JSON_UTF_8);
+        final PrintWriter w = rsp.getWriter();
+        w.print(response.toString());
+        w.println();
     }
 
     static JSONObject innerDispatch(final String body, final String eventName, final Map<String, AbstractHookEvent.Factory> factoriesByName) throws IOException {
@@ -164,15 +288,43 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
             throw new IllegalArgumentException("Invalid event");
         }
         final AbstractHookEvent.Factory factory = factoriesByName.get(eventName);
-        final Event serviceHookEvent = deserializeEvent(body);
+        final AbstractHookEvent hookEvent = factory.create();
+        final Event serviceHookEvent = deserializeEvent(body, hookEvent.getResourceType());
+        return perform(hookEvent, serviceHookEvent);
+    }
+
+    /**
+     * Reacts to an event whose payload was decoded already, such as when it was received.
+     */
+    static JSONObject innerDispatch(final Event serviceHookEvent, final String eventName, final Map<String, AbstractHookEvent.Factory> factoriesByName) {
+        if (StringUtils.isBlank(eventName) || !factoriesByName.containsKey(eventName)) {
+            throw new IllegalArgumentException("Invalid event");
+        }
+        final AbstractHookEvent.Factory factory = factoriesByName.get(eventName);
+        return perform(factory.create(), serviceHookEvent);
+    }
+
+    private static JSONObject perform(final AbstractHookEvent hookEvent, final Event serviceHookEvent) {
         final String message = serviceHookEvent.getMessage() != null ? serviceHookEvent.getMessage().getText() : "";
         final String detailedMessage = serviceHookEvent.getDetailedMessage() != null ? serviceHookEvent.getDetailedMessage().getText() : "";
-        final AbstractHookEvent hookEvent = factory.create();
         return hookEvent.perform(EndpointHelper.MAPPER, serviceHookEvent, message, detailedMessage);
     }
 
     public static Event deserializeEvent(final String input) throws IOException {
-        final Event serviceHookEvent = EndpointHelper.MAPPER.readValue(input, Event.class);
+        return deserializeEvent(input, Object.class);
+    }
+
+    /**
+     * Decodes the payload in a single pass, reading its {@link Event#getResource() resource} straight into
+     * the supplied class and skipping the properties that class doesn't have.
+     *
+     * @param input the request payload
+     * @param resourceType the class to read the resource into, such as the one the event's handler uses
+     */
+    public static Event deserializeEvent(final String input, final Class<?> resourceType) throws IOException {
+        final Event serviceHookEvent = EndpointHelper.MAPPER.reader(Event.class)
+                .withAttribute(ResourceDeserializer.RESOURCE_TYPE, resourceType)
+                .readValue(input);
         final String eventType = serviceHookEvent.getEventType();
         if (StringUtils.isEmpty(eventType)) {
             throw new IllegalArgumentException("Payload did not contain 'eventType'.");
@@ -189,7 +341,7 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
     public void doPing(
             final StaplerRequest request,
             final StaplerResponse response,
-            @StringBodyParameter @Nonnull final String body) {
+            @StringBodyParameter @Nonnull final String body) throws IOException {
         dispatch(request, response, body);
     }
 
@@ -197,30 +349,30 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
     public void doGitPullRequestMerged(
             final StaplerRequest request,
             final StaplerResponse response,
-            @StringBodyParameter @Nonnull final String body) {
+            @StringBodyParameter @Nonnull final String body) throws IOException {
         // Send telemetry
         TelemetryHelper.sendEvent("team-events-git-pr-merged", new TelemetryHelper.PropertyMapBuilder()
                 .build());
 
-        dispatch(request, response, body);
+        enqueue(request, response, body);
     }
 
     @RequirePOST
     public void doGitPush(
             final StaplerRequest request,
             final StaplerResponse response,
-            @StringBodyParameter @Nonnull final String body) {
+            @StringBodyParameter @Nonnull final String body) throws IOException {
         // Send telemetry
         TelemetryHelper.sendEvent("team-events-git-push", new TelemetryHelper.PropertyMapBuilder()
                 .build());
-        dispatch(request, response, body);
+        enqueue(request, response, body);
     }
 
     @RequirePOST
     public void doConnect(
             final StaplerRequest request,
             final StaplerResponse response,
-            @StringBodyParameter @Nonnull final String body) {
+            @StringBodyParameter @Nonnull final String body) throws IOException {
         // Send telemetry
         TelemetryHelper.sendEvent("team-events-connect", new TelemetryHelper.PropertyMapBuilder()
                 .build());
@@ -231,7 +383,7 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
     public void doRmwebhook(
             final StaplerRequest request,
             final StaplerResponse response,
-            @StringBodyParameter @Nonnull final String body) {
+            @StringBodyParameter @Nonnull final String body) throws IOException {
         // Send telemetry
         TelemetryHelper.sendEvent("team-events-rmwebhook", new TelemetryHelper.PropertyMapBuilder().build());
         dispatch(request, response, body);
@@ -18,15 +18,21 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.plugins.tfs.actions.CheckoutAction;
 import hudson.plugins.tfs.actions.RemoveWorkspaceAction;
+import hudson.plugins.tfs.actions.WorkspaceCleanupQueue;
+import hudson.plugins.tfs.actions.WorkspaceCleanupTask;
 import hudson.plugins.tfs.browsers.TeamFoundationServerRepositoryBrowser;
 import hudson.plugins.tfs.browsers.TeamSystemWebAccessBrowser;
+import hudson.plugins.tfs.commands.GetFilesToWorkFolderCommand;
 import hudson.plugins.tfs.model.ChangeSet;
+import hudson.plugins.tfs.model.ChangedFilesLocation;
+import hudson.plugins.tfs.model.ChangedFilesManifest;
 import hudson.plugins.tfs.model.CredentialsConfigurer;
 import hudson.plugins.tfs.model.CredentialsConfigurerDescriptor;
 import hudson.plugins.tfs.model.ManualCredentialsConfigurer;
 import hudson.plugins.tfs.model.Project;
 import hudson.plugins.tfs.model.Server;
 import hudson.plugins.tfs.model.WorkspaceConfiguration;
+import hudson.plugins.tfs.model.WorkspaceSettings;
 import hudson.plugins.tfs.util.BuildVariableResolver;
 import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever;
 import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever.BuildWorkspaceConfiguration;
@@ -38,9 +44,9 @@ import hudson.scm.RepositoryBrowsers;
 import hudson.scm.SCM;
 import hudson.scm.SCMDescriptor;
 import hudson.scm.SCMRevisionState;
+import hudson.slaves.WorkspaceList;
 import hudson.util.ComboBoxModel;
 import hudson.util.FormValidation;
-import hudson.util.LogTaskListener;
 import hudson.util.Scrambler;
 import hudson.util.Secret;
 import hudson.util.VariableResolver;
@@ -59,7 +65,6 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -78,6 +83,7 @@ public class TeamFoundationServerScm extends SCM {
     public static final String SERVERURL_ENV_STR = "TFS_SERVERURL";
     public static final String USERNAME_ENV_STR = "TFS_USERNAME";
     public static final String WORKSPACE_CHANGESET_ENV_STR = "TFS_CHANGESET";
+    public static final String CHANGED_FILES_ENV_STR = "TFS_CHANGED_FILES";
 
     private static final String VERSION_SPEC = "VERSION_SPEC";
     private static final int RADIX_10 = 10;
@@ -93,6 +99,11 @@ public class TeamFoundationServerScm extends SCM {
     private CredentialsConfigurer credentialsConfigurer;
     private boolean useUpdate;
     private boolean useOverwrite;
+    private boolean useLocalWorkspace;
+    private int downloadConcurrency;
+    private boolean useWorkspaceSnapshots;
+    private Collection<String> preservePatterns;
+    private boolean useCheckInTimestamps;
     private String versionSpec;
 
     private TeamFoundationServerRepositoryBrowser repositoryBrowser;
@@ -196,6 +207,56 @@ public class TeamFoundationServerScm extends SCM {
         this.useOverwrite = useOverwrite;
     }
 
+    public boolean isUseLocalWorkspace() {
+        return useLocalWorkspace;
+    }
+
+    @DataBoundSetter
+    public void setUseLocalWorkspace(final boolean useLocalWorkspace) {
+        this.useLocalWorkspace = useLocalWorkspace;
+    }
+
+    /**
+     * @return the number of top-level folders to download at once, or 0 to use the global setting
+     */
+    public int getDownloadConcurrency() {
+        return downloadConcurrency;
+    }
+
+    @DataBoundSetter
+    public void setDownloadConcurrency(final int downloadConcurrency) {
+        this.downloadConcurrency = Math.max(0, downloadConcurrency);
+    }
+
+    public boolean isUseWorkspaceSnapshots() {
+        return useWorkspaceSnapshots;
+    }
+
+    @DataBoundSetter
+    public void setUseWorkspaceSnapshots(final boolean useWorkspaceSnapshots) {
+        this.useWorkspaceSnapshots = useWorkspaceSnapshots;
+    }
+
+    public boolean isUseCheckInTimestamps() {
+        return useCheckInTimestamps;
+    }
+
+    @DataBoundSetter
+    public void setUseCheckInTimestamps(final boolean useCheckInTimestamps) {
+        this.useCheckInTimestamps = useCheckInTimestamps;
+    }
+
+    WorkspaceSettings getWorkspaceSettings() {
+        return WorkspaceSettings.DEFAULT.withLocalWorkspace(useLocalWorkspace).withCheckInTimestamps(useCheckInTimestamps);
+    }
+
+    int resolveDownloadConcurrency() {
+        if (downloadConcurrency > 0) {
+            return downloadConcurrency;
+        }
+        return Math.max(1, TeamPluginGlobalConfig.get().getDownloadConcurrency());
+    }
+
     public String getUserPassword() {
         return Secret.toString(password);
     }
@@ -233,6 +294,19 @@ public class TeamFoundationServerScm extends SCM {
         this.cloakedPaths = splitCloakedPaths(cloakedPaths);
     }
 
+    /**
+     * @return the Ant-style patterns of the paths to keep when the local folder is emptied, one per line
+     */
+    public String getPreservePatterns() {
+        return serializeCloakedPathCollectionToString(this.preservePatterns);
+    }
+
+    @DataBoundSetter
+    public void setPreservePatterns(final String preservePatterns) {
+        final Collection<String> patterns = splitCloakedPaths(preservePatterns);
+        this.preservePatterns = patterns.isEmpty() ? null : patterns;
+    }
+
     // Bean properties END
 
     static String serializeCloakedPathCollectionToString(final Collection<String> cloakedPaths) {
@@ -312,7 +386,12 @@ public class TeamFoundationServerScm extends SCM {
     public void checkout(final Run<?, ?> build, final Launcher launcher, final FilePath workspaceFilePath, final TaskListener listener, final File changelogFile, final SCMRevisionState baseline) throws IOException, InterruptedException {
         Server server = createServer(launcher, listener, build);
         try {
-            WorkspaceConfiguration workspaceConfiguration = new WorkspaceConfiguration(server.getUrl(), getWorkspaceName(build, workspaceFilePath.toComputer()), getProjectPath(build), getCloakedPaths(build), getLocalPath());
+            WorkspaceConfiguration workspaceConfiguration = new WorkspaceConfiguration(server.getUrl(), getWorkspaceName(build, workspaceFilePath.toComputer()), getProjectPath(build), getCloakedPaths(build), getLocalPath(), getWorkspaceSettings());
+            final String computerName = WorkspaceCleanupQueue.getComputerName(workspaceFilePath.getChannel());
+            if (WorkspaceCleanupQueue.getInstance().claim(server.getUrl(), computerName, workspaceConfiguration.getWorkspaceName())) {
+                listener.getLogger().println("Deleting workspace as it was queued for deletion when the job was wiped out.");
+                new RemoveWorkspaceAction(workspaceConfiguration.getWorkspaceName()).remove(server);
+            }
             final Run<?, ?> previousBuild = build.getPreviousBuild();
             // Check if the configuration has changed
             if (previousBuild != null) {
@@ -322,10 +401,12 @@ public class TeamFoundationServerScm extends SCM {
                     if ((nodeConfiguration != null)
                             && nodeConfiguration.workspaceExists()
                             && (!workspaceConfiguration.equals(nodeConfiguration))) {
-                        listener.getLogger().println("Deleting workspace as the configuration has changed since a build was performed on this computer.");
-                        new RemoveWorkspaceAction(workspaceConfiguration.getWorkspaceName()).remove(server);
-                        nodeConfiguration.setWorkspaceWasRemoved();
-                        nodeConfiguration.save();
+                        if (!updateWorkspace(server, workspaceFilePath, workspaceConfiguration, nodeConfiguration, listener)) {
+                            listener.getLogger().println("Deleting workspace as the configuration has changed since a build was performed on this computer.");
+                            new RemoveWorkspaceAction(workspaceConfiguration.getWorkspaceName()).remove(server);
+                            nodeConfiguration.setWorkspaceWasRemoved();
+                            nodeConfiguration.save();
+                        }
                     }
                 }
             }
@@ -342,7 +423,15 @@ public class TeamFoundationServerScm extends SCM {
             final Project project = server.getProject(projPath);
             final int changeSet = recordWorkspaceChangesetVersion(build, listener, project, projPath, singleVersionSpec);
 
-            CheckoutAction action = new CheckoutAction(workspaceConfiguration.getWorkspaceName(), workspaceConfiguration.getProjectPath(), workspaceConfiguration.getCloakedPaths(), workspaceConfiguration.getWorkfolder(), isUseUpdate(), isUseOverwrite());
+            final CheckoutAction.Options options = new CheckoutAction.Options()
+                    .useUpdate(isUseUpdate())
+                    .useOverwrite(isUseOverwrite())
+                    .workspaceSettings(getWorkspaceSettings())
+                    .downloadConcurrency(resolveDownloadConcurrency())
+                    .useWorkspaceSnapshots(isUseWorkspaceSnapshots())
+                    .preservePatterns(splitCloakedPaths(getPreservePatterns()))
+                    .changedFilesPath(getChangedFilesPath(workspaceFilePath, getChangedFilesName(getChangedFilesKey())).getRemote());
+            CheckoutAction action = new CheckoutAction(workspaceConfiguration.getWorkspaceName(), workspaceConfiguration.getProjectPath(), workspaceConfiguration.getCloakedPaths(), workspaceConfiguration.getWorkfolder(), options);
             List<ChangeSet> list;
             if (StringUtils.isNotEmpty(singleVersionSpec)) {
                 list = action.checkoutBySingleVersionSpec(server, workspaceFilePath, singleVersionSpec);
@@ -356,11 +445,72 @@ public class TeamFoundationServerScm extends SCM {
                 ChangeSetWriter writer = new ChangeSetWriter();
                 writer.write(list, changelogFile);
             }
+            writeChangedFiles(build, workspaceFilePath, action.getChangedFiles(), listener);
         } finally {
             server.close();
         }
     }
 
+    /**
+     * Changes the cloaked paths and options of the existing workspace in place, when nothing else changed,
+     * such that the files already retrieved don't need to be downloaded again.
+     *
+     * @return true if the workspace now matches the configuration
+     */
+    static boolean updateWorkspace(final Server server, final FilePath workspaceFilePath, final WorkspaceConfiguration workspaceConfiguration, final WorkspaceConfiguration nodeConfiguration, final TaskListener listener) {
+        if (!workspaceConfiguration.differsOnlyInCloakedPathsOrOptions(nodeConfiguration)) {
+            return false;
+        }
+        listener.getLogger().println("Updating the cloaked paths and options of the workspace as they have changed since a build was performed on this computer.");
+        final String localPath = workspaceFilePath.child(workspaceConfiguration.getWorkfolder()).getRemote();
+        try {
+            return server.getWorkspaces().updateWorkspace(workspaceConfiguration.getWorkspaceName(), workspaceConfiguration.getProjectPath(), workspaceConfiguration.getCloakedPaths(), localPath, workspaceConfiguration.isCheckInTimestamps());
+        }
+        catch (final RuntimeException e) {
+            listener.getLogger().println("Warning: The workspace could not be updated: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Points the build's steps at the list of the files the get added, updated or deleted, which the get
+     * left next to the workspace, and copies the list to the build's directory.
+     * Each checkout of the build gets its own list, named after {@link #getChangedFilesKey()}.
+     */
+    void writeChangedFiles(final Run<?, ?> build, final FilePath workspaceFilePath, final GetFilesToWorkFolderCommand.Result changedFiles, final TaskListener listener) throws IOException, InterruptedException {
+        if (changedFiles == null || changedFiles.getManifestPath() == null) {
+            return;
+        }
+        final String key = getChangedFilesKey();
+        final FilePath copy = new FilePath(workspaceFilePath.getChannel(), changedFiles.getManifestPath());
+        copy.copyTo(new FilePath(new File(build.getRootDir(), copy.getName())));
+        build.addAction(new ChangedFilesLocation(key, copy.getRemote()));
+        final String template = "Recorded %d changed file(s) in '%s': %d added, %d updated, %d deleted.";
+        listener.getLogger().println(String.format(template, changedFiles.getCount(), copy.getRemote(), changedFiles.getAddedCount(), changedFiles.getUpdatedCount(), changedFiles.getDeletedCount()));
+    }
+
+    /**
+     * @return what tells this checkout's list of changed files apart from those of the build's other checkouts
+     */
+    String getChangedFilesKey() {
+        return Util.getDigestOf(projectPath + "\n" + getLocalPath()).substring(0, 8);
+    }
+
+    static String getChangedFilesName(final String key) {
+        final String name = ChangedFilesManifest.FILE_NAME;
+        final int extension = name.lastIndexOf('.');
+        return name.substring(0, extension) + "-" + key + name.substring(extension);
+    }
+
+    /**
+     * @return the copy of the changed files manifest, in the temporary folder Jenkins keeps beside the workspace,
+     *         the same as {@code WorkspaceList.tempDir(workspaceFilePath)} in later versions of Jenkins
+     */
+    static FilePath getChangedFilesPath(final FilePath workspaceFilePath, final String fileName) {
+        final FilePath tempDir = workspaceFilePath.sibling(workspaceFilePath.getName() + WorkspaceList.COMBINATOR + "tmp");
+        return tempDir.child(fileName);
+    }
+
     static VersionSpec determineVersionSpecFromBuild(final Run<?, ?> build, final int offset, final int maximumChangeSetNumber) {
         final VersionSpec result;
         if (build != null) {
@@ -458,17 +608,15 @@ public class TeamFoundationServerScm extends SCM {
 
         BuildWorkspaceConfiguration configuration = new BuildWorkspaceConfigurationRetriever().getLatestForNode(nodeIter, lastRun);
         if ((configuration != null) && configuration.workspaceExists()) {
-            LogTaskListener listener = new LogTaskListener(logger, Level.INFO);
-            Launcher launcher = nodeIter.createLauncher(listener);
-            Server server = createServer(launcher, listener, lastRun);
-            try {
-                if (new RemoveWorkspaceAction(configuration.getWorkspaceName()).remove(server)) {
-                    configuration.setWorkspaceWasRemoved();
-                    configuration.save();
-                }
-            } finally {
-                server.close();
-            }
+            // deleting the workspace from the server can take a while, so it is left to a background queue
+            final String collectionUri = getServerUrl(lastRun);
+            final StandardUsernamePasswordCredentials credentials = getCredentialsConfigurer().getCredentials(collectionUri);
+            // the workspace belongs to the node's computer, even if the deletion ends up running on the controller
+            final String computerName = WorkspaceCleanupQueue.getComputerName(nodeIter);
+            final WorkspaceCleanupTask task = new WorkspaceCleanupTask(collectionUri, credentials, nodeIter.getNodeName(), computerName, configuration.getWorkspaceName(), project.getFullName(), System.currentTimeMillis());
+            WorkspaceCleanupQueue.getInstance().enqueue(task);
+            configuration.setWorkspaceWasRemoved();
+            configuration.save();
         }
         return true;
     }
@@ -530,8 +678,8 @@ public class TeamFoundationServerScm extends SCM {
 
     /**
      * TODO: 2.60+ - add @Override.
-     * Sets the environment variables TFS_WORKSPACE, TFS_WORKFOLDER, TFS_PROJECTPATH, TFS_SERVERURL, TFS_USERNAME, TFS_CHANGESET and
-     * VERSION_SPEC during the build
+     * Sets the environment variables TFS_WORKSPACE, TFS_WORKFOLDER, TFS_PROJECTPATH, TFS_SERVERURL, TFS_USERNAME, TFS_CHANGESET,
+     * TFS_CHANGED_FILES and VERSION_SPEC during the build, which are also the result of the Pipeline checkout step
      */
     public void buildEnvironment(final Run<?, ?> build, final Map<String, String> env) {
         final TeamBuildDetailsAction buildDetailsAction = build.getAction(TeamBuildDetailsAction.class);
@@ -566,6 +714,12 @@ public class TeamFoundationServerScm extends SCM {
         if (workspaceChangesetVersion != null && workspaceChangesetVersion.length() > 0) {
             env.put(WORKSPACE_CHANGESET_ENV_STR, workspaceChangesetVersion);
         }
+        final String changedFilesKey = getChangedFilesKey();
+        for (final ChangedFilesLocation location : build.getActions(ChangedFilesLocation.class)) {
+            if (changedFilesKey.equals(location.getKey())) {
+                env.put(CHANGED_FILES_ENV_STR, location.getRemotePath());
+            }
+        }
     }
 
     @Override
@@ -2,6 +2,7 @@ package hudson.plugins.tfs;
 
 import hudson.Extension;
 import hudson.model.Job;
+import hudson.plugins.tfs.model.BranchSpecMatcher;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
@@ -11,6 +12,7 @@ import org.kohsuke.stapler.DataBoundSetter;
 public class TeamPRPushTrigger extends TeamPushTrigger {
 
     private String targetBranches;
+    private transient volatile BranchSpecMatcher targetBranchMatcher;
 
     @DataBoundConstructor
     public TeamPRPushTrigger() {
@@ -30,6 +32,19 @@ public class TeamPRPushTrigger extends TeamPushTrigger {
     @DataBoundSetter
     public void setTargetBranches(final String targetBranches) {
         this.targetBranches = targetBranches;
+        this.targetBranchMatcher = null;
+    }
+
+    /**
+     * @return the target branches, compiled on first use; saving the job's configuration creates a new trigger
+     */
+    public BranchSpecMatcher getTargetBranchMatcher() {
+        BranchSpecMatcher result = targetBranchMatcher;
+        if (result == null) {
+            result = BranchSpecMatcher.compile(targetBranches);
+            targetBranchMatcher = result;
+        }
+        return result;
     }
 
     /**
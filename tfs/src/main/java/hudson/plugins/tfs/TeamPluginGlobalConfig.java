@@ -33,7 +33,13 @@ public class TeamPluginGlobalConfig extends GlobalConfiguration {
     private boolean configFolderPerNode;
     private boolean enableTeamPushTriggerForAllJobs;
     private boolean enableTeamStatusForAllJobs;
+    private boolean decidePushBuildsFromBuildData;
     private UserAccountMapper userAccountMapper;
+    private int downloadConcurrency = 1;
+    private int downloadCacheSizeMegabytes;
+    private int maxConcurrentEventRequests;
+    private int maxQueuedEvents;
+    private int maxConcurrentBuildRequests;
 
     public TeamPluginGlobalConfig() {
         this(true);
@@ -99,6 +105,14 @@ public class TeamPluginGlobalConfig extends GlobalConfiguration {
         this.enableTeamStatusForAllJobs = enableTeamStatusForAllJobs;
     }
 
+    public boolean isDecidePushBuildsFromBuildData() {
+        return decidePushBuildsFromBuildData;
+    }
+
+    public void setDecidePushBuildsFromBuildData(final boolean decidePushBuildsFromBuildData) {
+        this.decidePushBuildsFromBuildData = decidePushBuildsFromBuildData;
+    }
+
     public UserAccountMapper getUserAccountMapper() {
         if (userAccountMapper == null) {
             userAccountMapper = new DomainUserAccountMapper();
@@ -110,6 +124,56 @@ public class TeamPluginGlobalConfig extends GlobalConfiguration {
         this.userAccountMapper = userAccountMapper;
     }
 
+    public int getDownloadConcurrency() {
+        // configurations saved before this setting existed load as 0
+        return Math.max(1, downloadConcurrency);
+    }
+
+    public void setDownloadConcurrency(final int downloadConcurrency) {
+        this.downloadConcurrency = Math.max(1, downloadConcurrency);
+    }
+
+    public int getDownloadCacheSizeMegabytes() {
+        return downloadCacheSizeMegabytes;
+    }
+
+    public void setDownloadCacheSizeMegabytes(final int downloadCacheSizeMegabytes) {
+        this.downloadCacheSizeMegabytes = Math.max(0, downloadCacheSizeMegabytes);
+    }
+
+    /**
+     * @return the number of requests the {@link TeamEventsEndpoint} handles at once, or 0 for no limit
+     */
+    public int getMaxConcurrentEventRequests() {
+        return maxConcurrentEventRequests;
+    }
+
+    public void setMaxConcurrentEventRequests(final int maxConcurrentEventRequests) {
+        this.maxConcurrentEventRequests = Math.max(0, maxConcurrentEventRequests);
+    }
+
+    /**
+     * @return the number of events that may wait in the {@link TeamEventQueue}, or 0 for no limit
+     */
+    public int getMaxQueuedEvents() {
+        return maxQueuedEvents;
+    }
+
+    public void setMaxQueuedEvents(final int maxQueuedEvents) {
+        this.maxQueuedEvents = Math.max(0, maxQueuedEvents);
+    }
+
+    /**
+     * @return the number of requests the {@link TeamBuildEndpoint} handles at once, or 0 for no limit
+     */
+    public int getMaxConcurrentBuildRequests() {
+        return maxConcurrentBuildRequests;
+    }
+
+    public void setMaxConcurrentBuildRequests(final int maxConcurrentBuildRequests) {
+        this.maxConcurrentBuildRequests = Math.max(0, maxConcurrentBuildRequests);
+    }
+
     public List<UserAccountMapperDescriptor> getUserAccountMapperDescriptors() {
         return UserAccountMapper.all();
     }
@@ -0,0 +1,135 @@
+package hudson.plugins.tfs;
+
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the polling requested by {@link TeamPushTrigger}s on a few background threads, such that the jobs
+ * matching an event are polled concurrently and the event doesn't wait on them.
+ *
+ * Like the queue of {@link hudson.triggers.SCMTrigger}, a job is only polled by one thread at a time.
+ * Requests for a job are identified by a subject, such as the branch or pull request they are about:
+ * a request that arrives while an earlier one about the same subject is still waiting replaces it,
+ * such that the job is polled once, for the newest commit.
+ */
+final class TeamPollingQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(TeamPollingQueue.class.getName());
+
+    static final int DEFAULT_THREADS = Integer.getInteger(TeamPollingQueue.class.getName() + ".threads", 4);
+
+    private static TeamPollingQueue instance;
+
+    private final Executor executor;
+    private final Map<String, LinkedHashMap<String, Runnable>> waitingByJob = new HashMap<String, LinkedHashMap<String, Runnable>>();
+    private final Set<String> activeJobs = new HashSet<String>();
+
+    TeamPollingQueue(final Executor executor) {
+        this.executor = executor;
+    }
+
+    static synchronized TeamPollingQueue getInstance() {
+        if (instance == null) {
+            final Executor executor = Executors.newFixedThreadPool(Math.max(1, DEFAULT_THREADS),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFS push trigger polling"));
+            instance = new TeamPollingQueue(executor);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a request to poll a job.
+     *
+     * @param jobName the full name of the job
+     * @param subject what the request is about; a waiting request about the same subject is replaced
+     * @param runnable polls the job and schedules a build if needed
+     */
+    void submit(final String jobName, final String subject, final Runnable runnable) {
+        synchronized (this) {
+            LinkedHashMap<String, Runnable> waiting = waitingByJob.get(jobName);
+            if (waiting == null) {
+                waiting = new LinkedHashMap<String, Runnable>();
+                waitingByJob.put(jobName, waiting);
+            }
+            if (waiting.put(subject, runnable) != null) {
+                LOGGER.fine("Replaced a waiting polling request of " + jobName + " about " + subject);
+            }
+            if (!activeJobs.add(jobName)) {
+                return;
+            }
+        }
+        executor.execute(new Drainer(jobName));
+    }
+
+    /**
+     * @return the number of polling requests that haven't started yet
+     */
+    synchronized int getWaitingCount() {
+        int result = 0;
+        for (final Map<String, Runnable> waiting : waitingByJob.values()) {
+            result += waiting.size();
+        }
+        return result;
+    }
+
+    synchronized Runnable next(final String jobName) {
+        final LinkedHashMap<String, Runnable> waiting = waitingByJob.get(jobName);
+        if (waiting == null || waiting.isEmpty()) {
+            waitingByJob.remove(jobName);
+            activeJobs.remove(jobName);
+            return null;
+        }
+        final Iterator<Runnable> iterator = waiting.values().iterator();
+        final Runnable result = iterator.next();
+        iterator.remove();
+        return result;
+    }
+
+    /**
+     * Runs the requests of a job, one after the other, until there are none left.
+     */
+    private class Drainer implements Runnable {
+        private final String jobName;
+
+        Drainer(final String jobName) {
+            this.jobName = jobName;
+        }
+
+        @Override
+        public void run() {
+            // the event that requested the polling was handled as the system, too
+            final SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+            try {
+                Runnable runnable;
+                while ((runnable = next(jobName)) != null) {
+                    try {
+                        runnable.run();
+                    }
+                    catch (final RuntimeException e) {
+                        LOGGER.log(Level.SEVERE, "Failed to poll " + jobName, e);
+                    }
+                    catch (final Error e) {
+                        LOGGER.log(Level.SEVERE, "Failed to poll " + jobName, e);
+                    }
+                }
+            }
+            finally {
+                SecurityContextHolder.setContext(old);
+            }
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package hudson.plugins.tfs;
 
 import hudson.Extension;
+import hudson.Launcher;
 import hudson.Util;
 import hudson.console.AnnotatedLargeText;
 import hudson.model.Action;
 import hudson.model.CauseAction;
 import hudson.model.Item;
 import hudson.model.Job;
+import hudson.model.TaskListener;
 import hudson.model.queue.QueueTaskFuture;
+import hudson.plugins.git.GitSCM;
 import hudson.plugins.tfs.model.GitCodePushedEventArgs;
+import hudson.plugins.tfs.model.PullRequestMergeCommitCreatedEventArgs;
 import hudson.plugins.tfs.util.ActionHelper;
+import hudson.plugins.tfs.util.BuildDataHelper;
 import hudson.plugins.tfs.util.MediaType;
+import hudson.scm.PollingResult;
+import hudson.scm.SCM;
+import hudson.scm.SCMRevisionState;
 import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
 import hudson.util.StreamTaskListener;
+import jenkins.model.Jenkins;
 import jenkins.model.ParameterizedJobMixIn;
 import jenkins.triggers.SCMTriggerItem;
 import org.apache.commons.jelly.XMLOutput;
@@ -55,12 +64,35 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
     }
 
     /**
-    * Execute function.
+    * Schedules a build of the job, first polling it on a background thread unless {@code bypassPolling} is set.
     */
     public void execute(final GitCodePushedEventArgs gitCodePushedEventArgs, final List<Action> actions, final boolean bypassPolling) {
-        // TODO: Consider executing the poll + queue asynchronously
-        final Runner runner = new Runner(gitCodePushedEventArgs, actions, bypassPolling);
-        runner.run();
+        execute(gitCodePushedEventArgs, actions, bypassPolling, null);
+    }
+
+    /**
+    * Schedules a build of the job, first polling it on a background thread unless {@code bypassPolling} is set.
+    *
+    * @param matchedScm the SCM of the job whose repository matched the event, without which the job isn't polled
+    *                   and which is the only one polled if it is a Git SCM among several, or {@code null} to poll
+    *                   the job regardless
+    */
+    public void execute(final GitCodePushedEventArgs gitCodePushedEventArgs, final List<Action> actions, final boolean bypassPolling, final SCM matchedScm) {
+        final Runner runner = new Runner(gitCodePushedEventArgs, actions, bypassPolling, matchedScm);
+        if (bypassPolling) {
+            runner.run();
+        }
+        else {
+            TeamPollingQueue.getInstance().submit(job.getFullName(), runner.getSubject(), runner);
+        }
+    }
+
+    static String getSubject(final GitCodePushedEventArgs gitCodePushedEventArgs) {
+        if (gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs) {
+            final int pullRequestId = ((PullRequestMergeCommitCreatedEventArgs) gitCodePushedEventArgs).pullRequestId;
+            return "pull request " + pullRequestId + " of " + gitCodePushedEventArgs.repoUri;
+        }
+        return "branch " + gitCodePushedEventArgs.targetBranch + " of " + gitCodePushedEventArgs.repoUri;
     }
 
     public File getLogFile() {
@@ -76,6 +108,23 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
         this.jobContext = jobContext;
     }
 
+    /**
+     * @return the job's current instance of the SCM, which may have been re-configured since it matched an event,
+     * or {@code null} if the job no longer uses it
+     */
+    static SCM findScmOfJob(final SCMTriggerItem item, final SCM scm) {
+        final Collection<? extends SCM> scms = item.getSCMs();
+        if (scms == null) {
+            return null;
+        }
+        for (final SCM candidate : scms) {
+            if (candidate == scm || candidate.getKey().equals(scm.getKey())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
     /**
      * Runner class for TeamPushTrigger.
      */
@@ -85,17 +134,57 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
         private final GitCodePushedEventArgs gitCodePushedEventArgs;
         private final List<Action> actions;
         private final boolean bypassPolling;
+        private final SCM matchedScm;
 
         public Runner(final GitCodePushedEventArgs gitCodePushedEventArgs, final List<Action> actions, final boolean bypassPolling) {
+            this(gitCodePushedEventArgs, actions, bypassPolling, null);
+        }
+
+        public Runner(final GitCodePushedEventArgs gitCodePushedEventArgs, final List<Action> actions, final boolean bypassPolling, final SCM matchedScm) {
             this.gitCodePushedEventArgs = gitCodePushedEventArgs;
             this.actions = actions;
             this.bypassPolling = bypassPolling;
+            this.matchedScm = matchedScm;
         }
 
         private SCMTriggerItem job() {
             return SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
         }
 
+        /**
+         * @return the pull request or the repository and branch this runner is about, such that a newer push
+         * to the same branch or pull request replaces this runner while it waits
+         */
+        String getSubject() {
+            return getSubject(gitCodePushedEventArgs);
+        }
+
+        /**
+         * Polls only the SCM that matched the event when it is a Git SCM among several, since the others can't
+         * have changed; the Git SCM compares the remote with the build data of the job's last build, so it doesn't
+         * need the job's baseline.  Other jobs are polled the way they poll themselves, unless the SCM that matched
+         * the event is no longer one of the job's, in which case the push doesn't concern the job.
+         * Errors are left to the caller, such that they are recorded as failures rather than as no changes.
+         */
+        PollingResult poll(final TaskListener listener) throws IOException, InterruptedException {
+            final SCMTriggerItem item = job();
+            if (matchedScm != null) {
+                final SCM scm = findScmOfJob(item, matchedScm);
+                if (scm == null) {
+                    listener.getLogger().println(matchedScm.getKey() + " matched the pushed repository, but is no longer used by the job.");
+                    return PollingResult.NO_CHANGES;
+                }
+                if (scm instanceof GitSCM && item.getSCMs().size() > 1 && !scm.requiresWorkspaceForPolling()) {
+                    listener.getLogger().println("Polling only " + scm.getKey() + ", which matched the pushed repository.");
+                    final Jenkins jenkins = Jenkins.getInstance();
+                    final Launcher launcher = jenkins == null ? null : jenkins.createLauncher(listener);
+                    return scm.compareRemoteRevisionWith(job, launcher, null, listener, SCMRevisionState.NONE);
+                }
+                listener.getLogger().println(scm.getKey() + " matched the pushed repository.");
+            }
+            return item.poll(listener);
+        }
+
         private boolean runPolling() {
             final String failedToRecord = "Failed to record SCM polling for " + job;
             try {
@@ -106,7 +195,7 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
                     final long startTimeMillis = System.currentTimeMillis();
                     final Date date = new Date(startTimeMillis);
                     logger.println("Started on " + DateFormat.getDateTimeInstance().format(date));
-                    final boolean result = job().poll(listener).hasChanges();
+                    final boolean result = poll(listener).hasChanges();
                     final long endTimeMillis = System.currentTimeMillis();
                     logger.println("Done. Took " + Util.getTimeSpanString(endTimeMillis - startTimeMillis));
                     if (result) {
@@ -115,6 +204,15 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
                         logger.println("No changes");
                     }
                     return result;
+                } catch (final IOException e) {
+                    final String failedToPoll = "Failed to poll " + job;
+                    e.printStackTrace(listener.error(failedToPoll));
+                    LOGGER.log(Level.SEVERE, failedToPoll, e);
+                    return false;
+                } catch (final InterruptedException e) {
+                    e.printStackTrace(listener.error("Interrupted while polling " + job));
+                    Thread.currentThread().interrupt();
+                    return false;
                 } catch (final Error e) {
                     e.printStackTrace(listener.error(failedToRecord));
                     LOGGER.log(Level.SEVERE, failedToRecord, e);
@@ -132,11 +230,55 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
             }
         }
 
+        /**
+         * @return whether the pushed commit needs building according to the Git build data of the last build,
+         * or {@code null} if the job should be polled instead
+         */
+        private Boolean decideFromBuildData() {
+            if (!TeamPluginGlobalConfig.get().isDecidePushBuildsFromBuildData()
+                    || gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs) {
+                return null;
+            }
+            if (!(matchedScm instanceof GitSCM) || BuildDataHelper.hasPollingExtensions((GitSCM) matchedScm)) {
+                return null;
+            }
+            return BuildDataHelper.isNewCommit(job.getLastBuild(), gitCodePushedEventArgs);
+        }
+
+        private void recordDecision(final boolean newCommit) {
+            final String message = newCommit
+                    ? "Commit " + gitCodePushedEventArgs.commit + " was not built yet"
+                    : "Commit " + gitCodePushedEventArgs.commit + " was already built";
+            try {
+                final StreamTaskListener listener = new StreamTaskListener(getLogFile(), MediaType.UTF_8);
+                try {
+                    final PrintStream logger = listener.getLogger();
+                    final Date date = new Date(System.currentTimeMillis());
+                    logger.println("Started on " + DateFormat.getDateTimeInstance().format(date));
+                    logger.println("Compared the pushed commit with the Git build data of the last build instead of polling.");
+                    logger.println(message);
+                } finally {
+                    listener.close();
+                }
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to record the push decision for " + job, e);
+            }
+        }
+
         @Override
         public void run() {
             boolean shouldSchedule = bypassPolling;
             String changesDetected = "";
-            if (!bypassPolling) {
+            final Boolean newCommit = bypassPolling ? null : decideFromBuildData();
+            if (newCommit != null) {
+                recordDecision(newCommit);
+                if (newCommit) {
+                    changesDetected = "New commit pushed to " + job.getFullDisplayName() + ". ";
+                    shouldSchedule = true;
+                } else {
+                    LOGGER.info("Commit " + gitCodePushedEventArgs.commit + " was already built by " + job.getFullDisplayName());
+                }
+            } else if (!bypassPolling) {
                 // pipeline jobs might have runPolling() returned as false, while still should be scheduled.
                 // we should schedule them as long as they are associated with a valid commit.
                 if (runPolling() || StringUtils.isNotBlank(gitCodePushedEventArgs.commit)) {
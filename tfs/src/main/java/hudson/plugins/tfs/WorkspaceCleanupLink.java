@@ -0,0 +1,36 @@
+package hudson.plugins.tfs;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.plugins.tfs.actions.WorkspaceCleanupQueue;
+
+/**
+ * Shows the TFVC workspaces waiting to be deleted from their collections, under "Manage Jenkins".
+ */
+@Extension
+public class WorkspaceCleanupLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/tfs/48x48/logo.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "TFVC Workspace Cleanup";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Lists the TFVC workspaces of wiped out or deleted jobs that are still being deleted from their team project collections.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "tfs-workspace-cleanup";
+    }
+
+    public WorkspaceCleanupQueue getQueue() {
+        return WorkspaceCleanupQueue.getInstance();
+    }
+}
@@ -5,13 +5,21 @@ import com.microsoft.tfs.core.clients.versioncontrol.specs.version.DateVersionSp
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
 import hudson.FilePath;
 import hudson.model.TaskListener;
+import hudson.plugins.tfs.commands.CreateWorkspaceSnapshotCommand;
+import hudson.plugins.tfs.commands.GetFilesToWorkFolderCommand;
 import hudson.plugins.tfs.commands.RemoteChangesetVersionCommand;
 import hudson.plugins.tfs.model.ChangeSet;
 import hudson.plugins.tfs.model.Project;
 import hudson.plugins.tfs.model.Server;
 import hudson.plugins.tfs.model.Workspace;
+import hudson.plugins.tfs.model.WorkspaceSettings;
+import hudson.plugins.tfs.model.WorkspaceSnapshot;
+import hudson.plugins.tfs.model.WorkspaceSnapshots;
 import hudson.plugins.tfs.model.Workspaces;
+import hudson.util.LogTaskListener;
+import org.apache.commons.lang.StringUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.ParseException;
@@ -20,23 +28,116 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class CheckoutAction {
 
+    private static final Logger LOGGER = Logger.getLogger(CheckoutAction.class.getName());
+
+    /**
+     * The folders where a local workspace keeps its baseline, at the root of its mapping:
+     * {@code $tf} on Windows and {@code .tf} elsewhere.
+     */
+    static final String[] LOCAL_WORKSPACE_METADATA_FOLDERS = {"$tf", ".tf"};
+
+    /**
+     * How a checkout goes about it, beyond which workspace and folder it uses.
+     */
+    public static class Options {
+        private boolean useUpdate;
+        private boolean useOverwrite;
+        private WorkspaceSettings workspaceSettings = WorkspaceSettings.DEFAULT;
+        private int downloadConcurrency = 1;
+        private boolean useWorkspaceSnapshots;
+        private final List<String> preservePatterns = new ArrayList<String>();
+        private String changedFilesPath;
+
+        public Options useUpdate(final boolean useUpdate) {
+            this.useUpdate = useUpdate;
+            return this;
+        }
+
+        public Options useOverwrite(final boolean useOverwrite) {
+            this.useOverwrite = useOverwrite;
+            return this;
+        }
+
+        /**
+         * @param workspaceSettings the kind of workspace to create and its options
+         */
+        public Options workspaceSettings(final WorkspaceSettings workspaceSettings) {
+            this.workspaceSettings = workspaceSettings;
+            return this;
+        }
+
+        /**
+         * @param downloadConcurrency the most folders retrieved at once
+         */
+        public Options downloadConcurrency(final int downloadConcurrency) {
+            this.downloadConcurrency = downloadConcurrency;
+            return this;
+        }
+
+        public Options useWorkspaceSnapshots(final boolean useWorkspaceSnapshots) {
+            this.useWorkspaceSnapshots = useWorkspaceSnapshots;
+            return this;
+        }
+
+        /**
+         * @param preservePatterns Ant-style patterns of the paths kept when emptying the local folder;
+         *                         blank patterns are ignored
+         */
+        public Options preservePatterns(final Collection<String> preservePatterns) {
+            this.preservePatterns.clear();
+            for (final String preservePattern : preservePatterns) {
+                if (StringUtils.isNotBlank(preservePattern)) {
+                    this.preservePatterns.add(preservePattern.trim());
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @param changedFilesPath where to list the files the get added, updated or deleted, on the computer
+         *                         where the workspace is, or {@code null} not to list them
+         */
+        public Options changedFilesPath(final String changedFilesPath) {
+            this.changedFilesPath = changedFilesPath;
+            return this;
+        }
+    }
+
     private final String workspaceName;
     private final String projectPath;
     private final Collection<String> cloakedPaths;
     private final String localFolder;
     private final boolean useUpdate;
     private final boolean useOverwrite;
+    private final WorkspaceSettings workspaceSettings;
+    private final int downloadConcurrency;
+    private final boolean useWorkspaceSnapshots;
+    private final Collection<String> preservePatterns;
+    private final String changedFilesPath;
+    private boolean overwritePreservedPaths;
+    private GetFilesToWorkFolderCommand.Result changedFiles;
 
     public CheckoutAction(String workspaceName, String projectPath, Collection<String> cloakedPaths, String localFolder, boolean useUpdate, boolean useOverwrite) {
+        this(workspaceName, projectPath, cloakedPaths, localFolder, new Options().useUpdate(useUpdate).useOverwrite(useOverwrite));
+    }
+
+    public CheckoutAction(String workspaceName, String projectPath, Collection<String> cloakedPaths, String localFolder, Options options) {
         this.workspaceName = workspaceName;
         this.projectPath = projectPath;
         this.cloakedPaths = cloakedPaths;
         this.localFolder = localFolder;
-        this.useUpdate = useUpdate;
-        this.useOverwrite = useOverwrite;
+        this.useUpdate = options.useUpdate;
+        this.useOverwrite = options.useOverwrite;
+        this.workspaceSettings = options.workspaceSettings;
+        this.downloadConcurrency = options.downloadConcurrency;
+        this.useWorkspaceSnapshots = options.useWorkspaceSnapshots;
+        this.preservePatterns = new ArrayList<String>(options.preservePatterns);
+        this.changedFilesPath = options.changedFilesPath;
     }
 
     public List<ChangeSet> checkout(Server server, FilePath workspacePath, Calendar lastBuildTimestamp, Calendar currentBuildTimestamp) throws IOException, InterruptedException, ParseException {
@@ -60,7 +161,8 @@ public class CheckoutAction {
 
         final String versionSpecString = RemoteChangesetVersionCommand.toString(currentBuildVersionSpec);
         final String normalizedFolder = determineCheckoutPath(workspacePath, localFolder);
-        project.getFiles(normalizedFolder, versionSpecString, useOverwrite);
+        changedFiles = project.getFiles(normalizedFolder, versionSpecString, isOverwriting(), downloadConcurrency, changedFilesPath);
+        refreshSnapshot(server, workspacePath, normalizedFolder, versionSpecString);
 
         if (lastBuildVersionSpec != null) {
             return project.getDetailedHistoryWithoutCloakedPaths(lastBuildVersionSpec, currentBuildVersionSpec, cloakedPaths);
@@ -72,11 +174,28 @@ public class CheckoutAction {
     public List<ChangeSet> checkoutBySingleVersionSpec(Server server, FilePath workspacePath, String singleVersionSpec) throws IOException, InterruptedException {
         Project project = getProject(server, workspacePath);
         final String normalizedFolder = determineCheckoutPath(workspacePath, localFolder);
-        project.getFiles(normalizedFolder, singleVersionSpec, useOverwrite);
+        changedFiles = project.getFiles(normalizedFolder, singleVersionSpec, isOverwriting(), downloadConcurrency, changedFilesPath);
+        refreshSnapshot(server, workspacePath, normalizedFolder, singleVersionSpec);
 
         return project.getDetailedHistory(singleVersionSpec);
     }
 
+    /**
+     * The preserved paths of a re-created workspace are files the new workspace doesn't know it has, so the get
+     * that follows must be allowed to replace those that are also in version control.
+     */
+    boolean isOverwriting() {
+        return useOverwrite || overwritePreservedPaths;
+    }
+
+    /**
+     * @return where the last checkout listed the files it added, updated or deleted, and how many there were;
+     *         {@code null} if nothing was checked out yet
+     */
+    public GetFilesToWorkFolderCommand.Result getChangedFiles() {
+        return changedFiles;
+    }
+
     static String determineCheckoutPath(final FilePath workspacePath, final String localFolder) {
         final FilePath combinedPath = new FilePath(workspacePath, localFolder);
         final String result = combinedPath.getRemote();
@@ -118,6 +237,11 @@ public class CheckoutAction {
                 logger.println("Warning: The local folder is missing.");
                 workspaceNamesToDelete.add(workspaceName);
             }
+            else if (workspaceSettings.isLocalWorkspace() && !hasLocalWorkspaceMetadata(localFolderPath)) {
+                // a local workspace can't get or scan anything without its baseline
+                logger.println("Warning: The local workspace's baseline folder is missing.");
+                workspaceNamesToDelete.add(workspaceName);
+            }
         }
         else {
             // there is (apparently) no workspace called "workspaceName"...
@@ -137,15 +261,141 @@ public class CheckoutAction {
 
         Workspace workspace;
         if (! workspaces.exists(workspaceName)) {
+            boolean emptied = false;
             if ((!useUpdate || workspaceNamesToDelete.size() > 0) && localFolderPath.exists()) {
-                localFolderPath.deleteContents();
+                deleteContents(localFolderPath, logger);
+                emptied = true;
+                overwritePreservedPaths = !preservePatterns.isEmpty();
             }
             final String serverPath = project.getProjectPath();
-            workspace = workspaces.newWorkspace(workspaceName, serverPath, cloakedPaths, localPath);
+            workspace = workspaces.newWorkspace(workspaceName, serverPath, cloakedPaths, localPath, workspaceSettings);
+            if (!restoreSnapshot(server, project, localFolderPath, emptied)) {
+                // the server may already think some of the snapshot's files are there and the get would skip them
+                workspaces.deleteWorkspace(workspace);
+                workspace = workspaces.newWorkspace(workspaceName, serverPath, cloakedPaths, localPath, workspaceSettings);
+            }
         } else {
             workspace = workspaces.getWorkspace(workspaceName);
         }
         return project;
 	}
 
+    /**
+     * Empties the local folder, except for the paths matching the preserve patterns.
+     */
+    void deleteContents(final FilePath localFolderPath, final PrintStream logger) throws IOException, InterruptedException {
+        if (preservePatterns.isEmpty()) {
+            localFolderPath.deleteContents();
+            return;
+        }
+        logger.println("Deleting the contents of the local folder, except for: " + StringUtils.join(preservePatterns, ", "));
+        localFolderPath.act(new DeleteContentsCallable(preservePatterns));
+    }
+
+    WorkspaceSnapshots getWorkspaceSnapshots(final Server server) {
+        // local workspaces keep a baseline of every file, which a snapshot can't provide
+        if (!useWorkspaceSnapshots || workspaceSettings.isLocalWorkspace()) {
+            return null;
+        }
+        return WorkspaceSnapshots.forMapping(server.getUrl(), projectPath, cloakedPaths);
+    }
+
+    /**
+     * Fills a new workspace from the latest snapshot of its mapping, if any, so that the get that follows
+     * only retrieves what changed since the snapshot.
+     *
+     * The folder must be empty, or have just been emptied except for the preserved paths; a preserved file
+     * the snapshot also has is replaced by the snapshot's version, as the get would have done.
+     *
+     * @return {@code false} if the snapshot could not be restored, in which case the folder was emptied again
+     * and the workspace must be re-created, since the server may have recorded some of the snapshot's files
+     */
+    boolean restoreSnapshot(final Server server, final Project project, final FilePath localFolderPath, final boolean emptied) throws IOException, InterruptedException {
+        final WorkspaceSnapshots snapshots = getWorkspaceSnapshots(server);
+        if (snapshots == null) {
+            return true;
+        }
+        if (!emptied && localFolderPath.exists() && !localFolderPath.list().isEmpty()) {
+            // files we know nothing about would be overwritten
+            return true;
+        }
+        final WorkspaceSnapshot snapshot = snapshots.getLatest();
+        if (snapshot == null) {
+            return true;
+        }
+        final PrintStream logger = server.getListener().getLogger();
+        logger.println(String.format("Restoring the snapshot of '%s' at changeset %d...", projectPath, snapshot.getChangeset()));
+        try {
+            new FilePath(snapshot.getArchive()).unzip(localFolderPath);
+            project.updateLocalVersions(localFolderPath.getRemote(), snapshot);
+            return true;
+        }
+        catch (final IOException e) {
+            discardSnapshot(localFolderPath, logger, e);
+        }
+        catch (final RuntimeException e) {
+            discardSnapshot(localFolderPath, logger, e);
+        }
+        return false;
+    }
+
+    private void discardSnapshot(final FilePath localFolderPath, final PrintStream logger, final Exception e) throws IOException, InterruptedException {
+        // files the server doesn't know the workspace has would be conflicts for the get
+        logger.println("Warning: The snapshot could not be restored, all files will be retrieved: " + e.getMessage());
+        deleteContents(localFolderPath, logger);
+    }
+
+    /**
+     * Replaces the snapshot of the mapping with the workspace's files on a background thread,
+     * once the snapshot is old enough, through a connection of its own since the build's is closed
+     * once the checkout is over.
+     */
+    void refreshSnapshot(final Server server, final FilePath workspacePath, final String localPath, final String versionSpec) {
+        final WorkspaceSnapshots snapshots = getWorkspaceSnapshots(server);
+        if (snapshots == null) {
+            return;
+        }
+        final WorkspaceSnapshots.Creator creator = new WorkspaceSnapshots.Creator() {
+            @Override
+            public void create(final WorkspaceSnapshots target) throws Exception {
+                final Server snapshotServer = createSnapshotServer(server);
+                try {
+                    final CreateWorkspaceSnapshotCommand.Result result = snapshotServer.getProject(projectPath).createSnapshot(localPath, versionSpec);
+                    final FilePath remoteArchive = new FilePath(workspacePath.getChannel(), result.getArchivePath());
+                    final File temporaryArchive = target.createTemporaryArchive();
+                    try {
+                        remoteArchive.copyTo(new FilePath(temporaryArchive));
+                        target.save(temporaryArchive, result.getChangeset(), result.getEntries());
+                    }
+                    finally {
+                        remoteArchive.delete();
+                        temporaryArchive.delete();
+                    }
+                    LOGGER.info(String.format("Saved the snapshot of '%s' at changeset %d.", projectPath, result.getChangeset()));
+                }
+                finally {
+                    snapshotServer.close();
+                }
+            }
+        };
+        if (snapshots.refreshLater(creator)) {
+            final PrintStream logger = server.getListener().getLogger();
+            logger.println(String.format("Creating a snapshot of '%s' for new workspaces in the background.", projectPath));
+        }
+    }
+
+    Server createSnapshotServer(final Server server) throws IOException {
+        final LogTaskListener listener = new LogTaskListener(LOGGER, Level.FINE);
+        return new Server(server.getLauncher(), listener, server.getUrl(), server.getUserName(), server.getUserPassword(), server.getWebProxySettings(), server.getExtraSettings());
+    }
+
+    static boolean hasLocalWorkspaceMetadata(final FilePath localFolderPath) throws IOException, InterruptedException {
+        for (final String metadataFolder : LOCAL_WORKSPACE_METADATA_FOLDERS) {
+            if (localFolderPath.child(metadataFolder).isDirectory()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
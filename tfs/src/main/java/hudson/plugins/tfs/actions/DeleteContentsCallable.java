@@ -0,0 +1,88 @@
+package hudson.plugins.tfs.actions;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Deletes the contents of a folder, except for the paths matching Ant-style patterns
+ * (such as {@code **}{@code /obj/**} or {@code packages/}) and the folders that contain them.
+ */
+class DeleteContentsCallable extends MasterToSlaveFileCallable<Void> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] preservePatterns;
+
+    DeleteContentsCallable(final Collection<String> preservePatterns) {
+        this.preservePatterns = preservePatterns.toArray(new String[preservePatterns.size()]);
+    }
+
+    @Override
+    public Void invoke(final File folder, final VirtualChannel channel) throws IOException, InterruptedException {
+        if (!folder.isDirectory()) {
+            return null;
+        }
+        final DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(folder);
+        scanner.setExcludes(preservePatterns);
+        scanner.setFollowSymlinks(false);
+        scanner.scan();
+
+        for (final String includedFile : scanner.getIncludedFiles()) {
+            Util.deleteFile(new File(folder, includedFile));
+        }
+        for (final String symlink : scanner.getNotFollowedSymlinks()) {
+            // links to folders are neither followed nor listed as files
+            final File link = new File(symlink);
+            final String relativePath = folder.toURI().relativize(link.toURI()).getPath();
+            if (!isPreserved(relativePath)) {
+                Files.deleteIfExists(link.toPath());
+            }
+        }
+        final String[] includedDirectories = scanner.getIncludedDirectories();
+        // children before their parents
+        Arrays.sort(includedDirectories, Collections.reverseOrder(new Comparator<String>() {
+            @Override
+            public int compare(final String left, final String right) {
+                return Integer.compare(left.length(), right.length());
+            }
+        }));
+        for (final String includedDirectory : includedDirectories) {
+            if (includedDirectory.isEmpty()) {
+                continue;
+            }
+            final File directory = new File(folder, includedDirectory);
+            final String[] children = directory.list();
+            if (children != null && children.length == 0) {
+                Util.deleteFile(directory);
+            }
+        }
+        return null;
+    }
+
+    boolean isPreserved(final String relativePath) {
+        String path = relativePath.endsWith("/") ? relativePath.substring(0, relativePath.length() - 1) : relativePath;
+        path = path.replace('/', File.separatorChar);
+        for (final String pattern : preservePatterns) {
+            String normalizedPattern = pattern.replace('\\', '/');
+            if (normalizedPattern.endsWith("/")) {
+                normalizedPattern += "**";
+            }
+            if (SelectorUtils.matchPath(normalizedPattern.replace('/', File.separatorChar), path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
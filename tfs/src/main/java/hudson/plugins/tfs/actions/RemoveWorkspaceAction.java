@@ -15,13 +15,26 @@ import hudson.plugins.tfs.model.Workspaces;
 public class RemoveWorkspaceAction {
 
     private final String workspaceName;
+    private final String computerName;
 
     public RemoveWorkspaceAction(String workspaceName) {
+        this(workspaceName, null);
+    }
+
+    /**
+     * @param workspaceName the name of the workspace
+     * @param computerName the name TFS knows the workspace's computer by, or null for the computer the commands run on
+     */
+    public RemoveWorkspaceAction(String workspaceName, String computerName) {
         this.workspaceName = workspaceName;
+        this.computerName = computerName;
     }
 
     public boolean remove(Server server) throws IOException, InterruptedException {
         Workspaces workspaces = server.getWorkspaces(); 
+        if (computerName != null) {
+            return workspaces.deleteWorkspace(workspaceName, computerName);
+        }
         if (workspaces.exists(workspaceName)) {
             Workspace workspace = workspaces.getWorkspace(workspaceName);
             workspaces.deleteWorkspace(workspace);
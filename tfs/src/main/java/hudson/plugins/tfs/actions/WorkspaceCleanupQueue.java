@@ -0,0 +1,454 @@
+package hudson.plugins.tfs.actions;
+
+import com.microsoft.tfs.jni.helpers.LocalHost;
+import hudson.Launcher;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceInventory;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.LogTaskListener;
+import hudson.util.NamingThreadFactory;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deletes TFVC workspaces from their team project collections on background threads, such that wiping out
+ * or deleting a job doesn't wait on TFS.  The queued deletions are saved under {@code JENKINS_HOME} and resume
+ * after a restart, failed deletions are retried after an increasing delay and only a few deletions run at once
+ * against the same collection.
+ */
+public class WorkspaceCleanupQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceCleanupQueue.class.getName());
+
+    static final int DEFAULT_MAX_CONCURRENCY_PER_COLLECTION = Integer.getInteger(WorkspaceCleanupQueue.class.getName() + ".maxConcurrencyPerCollection", 2);
+    static final int DEFAULT_MAX_ATTEMPTS = Integer.getInteger(WorkspaceCleanupQueue.class.getName() + ".maxAttempts", 10);
+    static final long INITIAL_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+    static final long CLAIM_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(Integer.getInteger(WorkspaceCleanupQueue.class.getName() + ".claimTimeoutSeconds", 120));
+    static final String FILE_NAME = "tfs-workspace-cleanup.xml";
+    static final int MAX_FINISHED = 50;
+
+    private static final long DISPATCH_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int THREAD_COUNT = 4;
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private static WorkspaceCleanupQueue instance;
+
+    /**
+     * Deletes the workspace of a task from its collection.
+     */
+    interface Remover {
+        void remove(WorkspaceCleanupTask task) throws Exception;
+    }
+
+    private final XmlFile file;
+    private final Executor executor;
+    private final Remover remover;
+    private final int maxConcurrencyPerCollection;
+    private final int maxAttempts;
+    private final List<WorkspaceCleanupTask> pending = new ArrayList<WorkspaceCleanupTask>();
+    private final LinkedList<WorkspaceCleanupTask> finished = new LinkedList<WorkspaceCleanupTask>();
+    private final Map<String, Integer> runningPerCollection = new HashMap<String, Integer>();
+
+    WorkspaceCleanupQueue(final File file, final Executor executor, final Remover remover, final int maxConcurrencyPerCollection, final int maxAttempts) {
+        this.file = file == null ? null : new XmlFile(Jenkins.XSTREAM2, file);
+        this.executor = executor;
+        this.remover = remover;
+        this.maxConcurrencyPerCollection = Math.max(1, maxConcurrencyPerCollection);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * @return the queue shared by all jobs on this controller, with the deletions that were queued
+     * before the last restart
+     */
+    public static synchronized WorkspaceCleanupQueue getInstance() {
+        if (instance == null) {
+            final Jenkins jenkins = Jenkins.getInstance();
+            final File file = jenkins == null ? null : new File(jenkins.getRootDir(), FILE_NAME);
+            final ScheduledExecutorService executor = Executors.newScheduledThreadPool(THREAD_COUNT,
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFS workspace cleanup"));
+            final WorkspaceCleanupQueue created = new WorkspaceCleanupQueue(file, executor, new ServerRemover(),
+                    DEFAULT_MAX_CONCURRENCY_PER_COLLECTION, DEFAULT_MAX_ATTEMPTS);
+            created.load();
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    created.dispatch();
+                }
+            }, 0, DISPATCH_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            instance = created;
+        }
+        return instance;
+    }
+
+    /**
+     * Resumes the deletions that were queued before the last restart.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void resume() {
+        getInstance();
+    }
+
+    /**
+     * Queues the deletion of a workspace, unless it is already queued.
+     *
+     * @param task the workspace to delete
+     */
+    public void enqueue(final WorkspaceCleanupTask task) {
+        synchronized (this) {
+            for (final WorkspaceCleanupTask existing : pending) {
+                if (existing.isFor(task.getServerUrl(), task.getComputerName(), task.getWorkspaceName())) {
+                    return;
+                }
+            }
+            pending.add(task);
+            save();
+        }
+        dispatch();
+    }
+
+    /**
+     * Takes back the queued deletion of a workspace that is about to be used again, such that it isn't
+     * deleted from under a build.  A deletion that is already running can't be taken back, since it could
+     * delete the workspace the build is about to create; it is waited for instead, but no longer than
+     * {@link #CLAIM_TIMEOUT_MILLIS}.
+     *
+     * @param serverUrl the URL to the team project collection
+     * @param computerName the name of the computer that owns the workspace
+     * @param workspaceName the name of the workspace
+     * @return {@code true} if a deletion was taken back and the caller should delete the workspace itself
+     * @throws IOException if the deletion is still running once the timeout has elapsed
+     * @throws InterruptedException if interrupted while waiting for a running deletion
+     */
+    public boolean claim(final String serverUrl, final String computerName, final String workspaceName) throws IOException, InterruptedException {
+        return claim(serverUrl, computerName, workspaceName, CLAIM_TIMEOUT_MILLIS);
+    }
+
+    synchronized boolean claim(final String serverUrl, final String computerName, final String workspaceName, final long timeoutMillis) throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            WorkspaceCleanupTask running = null;
+            for (final Iterator<WorkspaceCleanupTask> iterator = pending.iterator(); iterator.hasNext(); ) {
+                final WorkspaceCleanupTask task = iterator.next();
+                if (!task.isFor(serverUrl, computerName, workspaceName)) {
+                    continue;
+                }
+                if (task.isRunning()) {
+                    running = task;
+                }
+                else {
+                    iterator.remove();
+                    save();
+                    return true;
+                }
+            }
+            if (running == null) {
+                return false;
+            }
+            final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                final String template = "The queued deletion of workspace '%s' is still running after %d second(s); try again once it is done.";
+                throw new IOException(String.format(template, workspaceName, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis)));
+            }
+            wait(remainingMillis);
+        }
+    }
+
+    /**
+     * @return the deletions waiting to run, running or waiting to be retried
+     */
+    public synchronized List<WorkspaceCleanupTask> getPending() {
+        return new ArrayList<WorkspaceCleanupTask>(pending);
+    }
+
+    /**
+     * @return the latest deletions that succeeded or were given up on, newest first
+     */
+    public synchronized List<WorkspaceCleanupTask> getFinished() {
+        return new ArrayList<WorkspaceCleanupTask>(finished);
+    }
+
+    /**
+     * Starts the deletions that are due, as long as their collection has room for them.
+     */
+    void dispatch() {
+        final List<WorkspaceCleanupTask> toRun = selectDue(now());
+        for (final WorkspaceCleanupTask task : toRun) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    WorkspaceCleanupQueue.this.run(task);
+                }
+            });
+        }
+    }
+
+    synchronized List<WorkspaceCleanupTask> selectDue(final long now) {
+        final List<WorkspaceCleanupTask> result = new ArrayList<WorkspaceCleanupTask>();
+        for (final WorkspaceCleanupTask task : pending) {
+            if (task.isRunning() || task.getNextAttemptMillis() > now) {
+                continue;
+            }
+            final String key = toKey(task.getServerUrl());
+            final Integer running = runningPerCollection.get(key);
+            final int runningCount = running == null ? 0 : running;
+            if (runningCount >= maxConcurrencyPerCollection) {
+                continue;
+            }
+            runningPerCollection.put(key, runningCount + 1);
+            task.setRunning(true);
+            result.add(task);
+        }
+        return result;
+    }
+
+    void run(final WorkspaceCleanupTask task) {
+        boolean succeeded = false;
+        String error = "Interrupted";
+        try {
+            remover.remove(task);
+            succeeded = true;
+        }
+        catch (final Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+            LOGGER.log(Level.WARNING, "Unable to delete " + task, e);
+        }
+        finally {
+            complete(task, succeeded, error);
+        }
+        dispatch();
+    }
+
+    synchronized void complete(final WorkspaceCleanupTask task, final boolean succeeded, final String error) {
+        final String key = toKey(task.getServerUrl());
+        final Integer running = runningPerCollection.get(key);
+        if (running == null || running <= 1) {
+            runningPerCollection.remove(key);
+        }
+        else {
+            runningPerCollection.put(key, running - 1);
+        }
+        task.setRunning(false);
+
+        final long now = now();
+        if (succeeded) {
+            LOGGER.info("Deleted " + task);
+            finish(task, true, now);
+        }
+        else {
+            task.recordFailure(error, now + getRetryDelayMillis(task.getAttempts() + 1));
+            if (task.getAttempts() >= maxAttempts) {
+                LOGGER.warning("Gave up deleting " + task + " after " + task.getAttempts() + " attempt(s).");
+                finish(task, false, now);
+            }
+        }
+        save();
+        notifyAll();
+    }
+
+    private void finish(final WorkspaceCleanupTask task, final boolean succeeded, final long now) {
+        pending.remove(task);
+        task.recordFinished(succeeded, now);
+        finished.addFirst(task);
+        while (finished.size() > MAX_FINISHED) {
+            finished.removeLast();
+        }
+    }
+
+    /**
+     * @return the delay before the next attempt after the provided number of failed attempts,
+     * doubling from a minute up to an hour
+     */
+    static long getRetryDelayMillis(final int failedAttempts) {
+        final int shift = Math.min(Math.max(0, failedAttempts - 1), MAX_BACKOFF_SHIFT);
+        return Math.min(INITIAL_RETRY_DELAY_MILLIS << shift, MAX_RETRY_DELAY_MILLIS);
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    static String toKey(final String serverUrl) {
+        return serverUrl == null ? "" : serverUrl.toLowerCase(Locale.ENGLISH);
+    }
+
+    synchronized void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try {
+            final Object loaded = file.read();
+            if (loaded instanceof List) {
+                for (final Object item : (List<?>) loaded) {
+                    if (item instanceof WorkspaceCleanupTask) {
+                        pending.add((WorkspaceCleanupTask) item);
+                    }
+                }
+            }
+        }
+        catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the queued workspace deletions from " + file, e);
+        }
+    }
+
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.write(new ArrayList<WorkspaceCleanupTask>(pending));
+        }
+        catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to save the queued workspace deletions to " + file, e);
+        }
+    }
+
+    /**
+     * @return the name TFS knows the node's computer by, or {@code null} if the node is gone or offline
+     */
+    public static String getComputerName(final Node node) throws IOException, InterruptedException {
+        return getComputerName(node == null ? null : node.getChannel());
+    }
+
+    /**
+     * @return the name TFS knows the computer at the other end of the channel by,
+     * or {@code null} if there is no channel
+     */
+    public static String getComputerName(final VirtualChannel channel) throws IOException, InterruptedException {
+        if (channel == null) {
+            return null;
+        }
+        return channel.call(new ComputerNameCallable());
+    }
+
+    private static class ComputerNameCallable extends MasterToSlaveCallable<String, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String call() throws IOException {
+            return LocalHost.getShortName();
+        }
+    }
+
+    /**
+     * Removes a deleted workspace from the {@link WorkspaceInventory} kept on the node, which the deletion
+     * doesn't update when it ran from the controller.
+     *
+     * @return {@code false} if the node is gone or offline, in which case it starts with an empty inventory
+     * once it connects again
+     */
+    static boolean forgetWorkspace(final Node node, final String serverUrl, final String computerName, final String workspaceName) throws IOException, InterruptedException {
+        final VirtualChannel channel = node == null ? null : node.getChannel();
+        if (channel == null) {
+            return false;
+        }
+        channel.call(new ForgetWorkspaceCallable(serverUrl, computerName, workspaceName));
+        return true;
+    }
+
+    static class ForgetWorkspaceCallable extends MasterToSlaveCallable<Void, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final String serverUrl;
+        private final String computerName;
+        private final String workspaceName;
+
+        ForgetWorkspaceCallable(final String serverUrl, final String computerName, final String workspaceName) {
+            this.serverUrl = serverUrl;
+            this.computerName = computerName;
+            this.workspaceName = workspaceName;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            WorkspaceInventory.forComputer(serverUrl, computerName).remove(workspaceName);
+            return null;
+        }
+    }
+
+    /**
+     * Connects to the collection from the node the workspace was used on, or from the controller
+     * if that node is gone or offline, and deletes the workspace of the node's computer.  A workspace
+     * that can't be found counts as a failure, such that it is looked for again later.  The node's
+     * inventory of workspaces is then told about the deletion.
+     */
+    static class ServerRemover implements Remover {
+        @Override
+        public void remove(final WorkspaceCleanupTask task) throws IOException, InterruptedException {
+            final TaskListener listener = new LogTaskListener(LOGGER, Level.INFO);
+            final Node node = getNode(task.getNodeName());
+            String computerName = task.getComputerName();
+            if (computerName == null) {
+                computerName = getComputerName(node);
+                if (computerName == null) {
+                    throw new IOException("Node '" + task.getNodeName() + "' is offline, so the name of its computer is unknown.");
+                }
+            }
+            final Launcher launcher = createLauncher(node, listener);
+            final Server server = new Server(launcher, listener, task.getServerUrl(), task.getUserName(), Secret.toString(task.getPassword()), null, null);
+            try {
+                if (!new RemoveWorkspaceAction(task.getWorkspaceName(), computerName).remove(server)) {
+                    throw new IOException("Workspace '" + task.getWorkspaceName() + "' of computer '" + computerName + "' was not found.");
+                }
+            }
+            finally {
+                server.close();
+            }
+            try {
+                forgetWorkspace(node, task.getServerUrl(), computerName, task.getWorkspaceName());
+            }
+            catch (final IOException e) {
+                // the workspace is gone, so don't retry the deletion; the node's inventory expires on its own
+                LOGGER.log(Level.WARNING, "Unable to tell node '" + task.getNodeName() + "' that workspace '" + task.getWorkspaceName() + "' was deleted.", e);
+            }
+        }
+
+        static Node getNode(final String nodeName) {
+            final Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins == null) {
+                return null;
+            }
+            return StringUtils.isEmpty(nodeName) ? jenkins : jenkins.getNode(nodeName);
+        }
+
+        static Launcher createLauncher(final Node node, final TaskListener listener) {
+            final Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins == null) {
+                return new Launcher.LocalLauncher(listener);
+            }
+            if (node != null) {
+                final Computer computer = node.toComputer();
+                if (computer != null && computer.isOnline()) {
+                    return node.createLauncher(listener);
+                }
+            }
+            return jenkins.createLauncher(listener);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package hudson.plugins.tfs.actions;
+
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import hudson.util.Secret;
+
+import java.util.Date;
+
+/**
+ * A TFVC workspace waiting to be deleted from its team project collection by the {@link WorkspaceCleanupQueue},
+ * with what is needed to connect to the collection after the job that used the workspace is gone.
+ */
+public class WorkspaceCleanupTask {
+
+    private final String serverUrl;
+    private final String userName;
+    private final Secret password;
+    private final String nodeName;
+    private final String computerName;
+    private final String workspaceName;
+    private final String jobName;
+    private final long enqueuedMillis;
+
+    private int attempts;
+    private long nextAttemptMillis;
+    private String lastError;
+    private long finishedMillis;
+    private boolean succeeded;
+    private transient boolean running;
+
+    public WorkspaceCleanupTask(final String serverUrl, final StandardUsernamePasswordCredentials credentials, final String nodeName, final String computerName, final String workspaceName, final String jobName, final long enqueuedMillis) {
+        this(serverUrl,
+                credentials == null ? null : credentials.getUsername(),
+                credentials == null ? null : credentials.getPassword(),
+                nodeName, computerName, workspaceName, jobName, enqueuedMillis);
+    }
+
+    WorkspaceCleanupTask(final String serverUrl, final String userName, final Secret password, final String nodeName, final String computerName, final String workspaceName, final String jobName, final long enqueuedMillis) {
+        this.serverUrl = serverUrl;
+        this.userName = userName;
+        this.password = password;
+        this.nodeName = nodeName;
+        this.computerName = computerName;
+        this.workspaceName = workspaceName;
+        this.jobName = jobName;
+        this.enqueuedMillis = enqueuedMillis;
+        this.nextAttemptMillis = enqueuedMillis;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public Secret getPassword() {
+        return password;
+    }
+
+    /**
+     * @return the name of the node the workspace was used on, empty for the controller
+     */
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    /**
+     * @return the name TFS knows the node's computer by, or {@code null} if the node was offline when the
+     * deletion was queued
+     */
+    public String getComputerName() {
+        return computerName;
+    }
+
+    public String getWorkspaceName() {
+        return workspaceName;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public Date getEnqueued() {
+        return new Date(enqueuedMillis);
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptMillis() {
+        return nextAttemptMillis;
+    }
+
+    public Date getNextAttempt() {
+        return new Date(nextAttemptMillis);
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public Date getFinished() {
+        return finishedMillis == 0 ? null : new Date(finishedMillis);
+    }
+
+    public boolean isSucceeded() {
+        return succeeded;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    void setRunning(final boolean running) {
+        this.running = running;
+    }
+
+    void recordFailure(final String error, final long nextAttemptMillis) {
+        this.attempts++;
+        this.lastError = error;
+        this.nextAttemptMillis = nextAttemptMillis;
+    }
+
+    void recordFinished(final boolean succeeded, final long finishedMillis) {
+        if (succeeded) {
+            this.attempts++;
+        }
+        this.succeeded = succeeded;
+        this.finishedMillis = finishedMillis;
+    }
+
+    /**
+     * @param computerName the computer that owns the workspace; a task or a caller that doesn't know
+     *                     the computer matches any computer
+     * @return {@code true} if this task deletes the named workspace of the computer from the collection
+     */
+    public boolean isFor(final String serverUrl, final String computerName, final String workspaceName) {
+        return this.serverUrl != null && this.serverUrl.equalsIgnoreCase(serverUrl)
+                && (this.computerName == null || computerName == null || this.computerName.equalsIgnoreCase(computerName))
+                && this.workspaceName != null && this.workspaceName.equalsIgnoreCase(workspaceName);
+    }
+
+    @Override
+    public String toString() {
+        return "workspace '" + workspaceName + "' in " + serverUrl;
+    }
+}
@@ -0,0 +1,196 @@
+package hudson.plugins.tfs.commands;
+
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceSnapshot;
+import hudson.remoting.Callable;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.net.URI;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archives the files of a workspace that are exactly the versions the server has for them at a version spec,
+ * into a temporary zip file on the computer where the workspace is.
+ *
+ * The snapshot is created while a build may be using the workspace, so each file is hashed again as it is
+ * archived; a file that changed in the meantime fails the snapshot rather than slipping into it.
+ */
+public class CreateWorkspaceSnapshotCommand extends AbstractCallableCommand<CreateWorkspaceSnapshotCommand.Result, IOException> {
+
+    private static final String CreatingTemplate = "Creating a snapshot of '%s' as of '%s' for new workspaces...";
+    private static final String CreatedTemplate = "Archived %d file(s) up to changeset %d; %d file(s) were left out because they were missing or modified.";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String workFolder;
+    private final String versionSpec;
+
+    public CreateWorkspaceSnapshotCommand(final ServerConfigurationProvider server, final String workFolder, final String versionSpec) {
+        super(server);
+        this.workFolder = workFolder;
+        this.versionSpec = versionSpec;
+    }
+
+    @Override
+    public Callable<Result, IOException> getCallable() {
+        return this;
+    }
+
+    @Override
+    public Result call() throws IOException {
+        final Server server = createServer();
+        final MockableVersionControlClient vcc = server.getVersionControlClient();
+        final TaskListener listener = server.getListener();
+        final PrintStream logger = listener.getLogger();
+
+        final Workspace workspace = vcc.getWorkspace(workFolder);
+        final String serverPath = workspace.getMappedServerPath(workFolder);
+        final VersionSpec snapshotVersionSpec = VersionSpec.parseSingleVersionFromSpec(versionSpec, null);
+        logger.println(String.format(CreatingTemplate, serverPath, RemoteChangesetVersionCommand.toString(snapshotVersionSpec)));
+        final ItemSet items = vcc.getItems(serverPath, snapshotVersionSpec, RecursionType.FULL);
+
+        final File root = new File(workFolder);
+        final File archive = File.createTempFile("tfs-snapshot", ".zip");
+        final ArrayList<WorkspaceSnapshot.Entry> entries = new ArrayList<WorkspaceSnapshot.Entry>();
+        int changeset = 0;
+        int skippedCount = 0;
+        boolean succeeded = false;
+        final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+        try {
+            for (final Item item : items.getItems()) {
+                changeset = Math.max(changeset, item.getChangeSetID());
+                if (item.getItemType() != ItemType.FILE) {
+                    continue;
+                }
+                final String localItem = workspace.getMappedLocalPath(item.getServerItem());
+                if (localItem == null) {
+                    // cloaked
+                    continue;
+                }
+                final File file = new File(localItem);
+                final String relativePath = toRelativePath(root, file);
+                if (relativePath == null) {
+                    continue;
+                }
+                if (!file.isFile() || !Arrays.equals(item.getContentHashValue(), md5(file))) {
+                    skippedCount++;
+                    continue;
+                }
+                zip.putNextEntry(new ZipEntry(relativePath));
+                final MessageDigest digest = createDigest();
+                final InputStream input = new DigestInputStream(new FileInputStream(file), digest);
+                try {
+                    IOUtils.copy(input, zip);
+                }
+                finally {
+                    input.close();
+                }
+                zip.closeEntry();
+                if (!Arrays.equals(item.getContentHashValue(), digest.digest())) {
+                    throw new IOException(file + " changed while it was being archived");
+                }
+                entries.add(new WorkspaceSnapshot.Entry(item.getItemID(), item.getChangeSetID(), item.getServerItem(), relativePath));
+            }
+            succeeded = true;
+        }
+        finally {
+            zip.close();
+            if (!succeeded) {
+                archive.delete();
+            }
+        }
+
+        logger.println(String.format(CreatedTemplate, entries.size(), changeset, skippedCount));
+        return new Result(changeset, archive.getAbsolutePath(), entries);
+    }
+
+    /**
+     * @return the path of the file relative to the root, with forward slashes,
+     * or {@code null} if the file isn't below the root
+     */
+    static String toRelativePath(final File root, final File file) {
+        final URI relative = root.toURI().relativize(file.toURI());
+        if (relative.isAbsolute() || relative.getPath().isEmpty()) {
+            return null;
+        }
+        return relative.getPath();
+    }
+
+    static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static byte[] md5(final File file) throws IOException {
+        final MessageDigest digest = createDigest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final InputStream input = new FileInputStream(file);
+        try {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally {
+            input.close();
+        }
+        return digest.digest();
+    }
+
+    /**
+     * The archive that was created and its contents.
+     */
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int changeset;
+        private final String archivePath;
+        private final ArrayList<WorkspaceSnapshot.Entry> entries;
+
+        public Result(final int changeset, final String archivePath, final ArrayList<WorkspaceSnapshot.Entry> entries) {
+            this.changeset = changeset;
+            this.archivePath = archivePath;
+            this.entries = entries;
+        }
+
+        public int getChangeset() {
+            return changeset;
+        }
+
+        /**
+         * @return the path to the temporary zip file, on the computer that ran the command
+         */
+        public String getArchivePath() {
+            return archivePath;
+        }
+
+        public List<WorkspaceSnapshot.Entry> getEntries() {
+            return entries;
+        }
+    }
+}
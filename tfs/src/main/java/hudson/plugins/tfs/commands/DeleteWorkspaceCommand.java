@@ -12,6 +12,7 @@ import com.microsoft.tfs.jni.helpers.LocalHost;
 import hudson.model.TaskListener;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceInventory;
 import hudson.remoting.Callable;
 
 import java.io.IOException;
@@ -69,6 +70,14 @@ public class DeleteWorkspaceCommand extends AbstractCallableCommand<Void, IOExce
 
             numDeletions++;
         }
+        final WorkspaceInventory inventory = WorkspaceInventory.forComputer(server.getUrl(), computerName);
+        if (computerName.equalsIgnoreCase(LocalHost.getShortName())) {
+            inventory.remove(workspaceName);
+        }
+        else {
+            // the inventory that matters lives on the other computer; this one can't be trusted any more
+            inventory.invalidate();
+        }
 
         final String deletedMessage = String.format(DeletedTemplate, numDeletions, workspaceName);
         logger.println(deletedMessage);
@@ -0,0 +1,312 @@
+package hudson.plugins.tfs.commands;
+
+import hudson.Util;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the files downloaded by TFVC gets on a computer so that other workspaces on the same computer
+ * can be given the same content without downloading it again.
+ *
+ * Entries are addressed by the MD5 hash the server reports for each file version, so identical content
+ * is stored once no matter which item, version or collection it came from.  Content is only stored after
+ * its hash was verified, the least recently used entries are evicted once the cache exceeds its size and
+ * the last-modified time of the files records their use, so that the order survives restarts.
+ *
+ * Files are always copied in and out of the cache, never linked, so a build that edits a file in its
+ * workspace can't alter the cached content.  Retrieved files are added on a background thread once the get
+ * is over; the hash check rejects any file the build changed in the meantime.
+ */
+class DownloadCache {
+
+    static final File DEFAULT_DIRECTORY = new File(System.getProperty(DownloadCache.class.getName() + ".directory",
+            new File(new File(System.getProperty("user.home"), ".tfs-jenkins"), "download-cache").getPath()));
+
+    private static final Logger LOGGER = Logger.getLogger(DownloadCache.class.getName());
+    private static final ConcurrentMap<File, DownloadCache> INSTANCES = new ConcurrentHashMap<File, DownloadCache>();
+    private static final int INITIAL_CAPACITY = 256;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int FAN_OUT_LENGTH = 2;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final Executor storeExecutor;
+    private final Map<String, Long> entries = new LinkedHashMap<String, Long>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    private long maxBytes;
+    private long totalBytes;
+    private boolean loaded;
+
+    DownloadCache(final File directory, final long maxBytes, final Executor storeExecutor) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.storeExecutor = storeExecutor;
+    }
+
+    /**
+     * Returns the cache kept in a directory, applying the latest size limit.
+     *
+     * @param directory where the cached files are kept
+     * @param maxBytes the size beyond which the least recently used entries are evicted
+     * @return the instance shared by all commands running in this JVM
+     */
+    static DownloadCache forDirectory(final File directory, final long maxBytes) {
+        DownloadCache result = INSTANCES.get(directory);
+        if (result == null) {
+            final Executor storeExecutor = Executors.newSingleThreadExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFVC download cache " + directory));
+            final DownloadCache created = new DownloadCache(directory, maxBytes, storeExecutor);
+            result = INSTANCES.putIfAbsent(directory, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        result.setMaxBytes(maxBytes);
+        return result;
+    }
+
+    synchronized void setMaxBytes(final long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    synchronized long getTotalBytes() {
+        load();
+        return totalBytes;
+    }
+
+    synchronized boolean contains(final byte[] hash) {
+        load();
+        return entries.containsKey(toKey(hash));
+    }
+
+    /**
+     * Puts the cached content with the provided hash at the target, replacing any existing file.
+     *
+     * @param hash the MD5 hash of the content
+     * @param target the file to create
+     * @return the size of the content, or {@code -1} if it isn't in the cache
+     * @throws IOException if the content could not be copied
+     */
+    long restore(final byte[] hash, final File target) throws IOException {
+        final String key = toKey(hash);
+        final File source;
+        final long length;
+        synchronized (this) {
+            load();
+            final Long entry = entries.get(key);
+            if (entry == null) {
+                return -1;
+            }
+            source = toFile(key);
+            length = entry;
+            if (!source.isFile() || source.length() != length) {
+                // removed or altered behind our back
+                remove(key);
+                return -1;
+            }
+            source.setLastModified(now());
+        }
+
+        final File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        if (target.exists()) {
+            target.setWritable(true);
+            Files.delete(target.toPath());
+        }
+        // a plain copy: the file gets the current time, like any other file the get writes
+        Files.copy(source.toPath(), target.toPath());
+        return length;
+    }
+
+    /**
+     * Adds copies of retrieved files on a background thread, skipping those whose content no longer
+     * matches the hash the server reported for them.
+     *
+     * @param files the hash of each file's content, by file
+     */
+    void storeLater(final Map<File, byte[]> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int storedCount = 0;
+                for (final Map.Entry<File, byte[]> entry : files.entrySet()) {
+                    final File file = entry.getKey();
+                    try {
+                        if (file.isFile() && store(entry.getValue(), file)) {
+                            storedCount++;
+                        }
+                    }
+                    catch (final IOException e) {
+                        LOGGER.log(Level.FINE, "Unable to add " + file + " to the download cache", e);
+                    }
+                }
+                LOGGER.fine("Added " + storedCount + " of " + files.size() + " file(s) to the download cache in " + directory);
+            }
+        });
+    }
+
+    /**
+     * Adds a copy of a retrieved file, if its content matches the hash the server reported for it.
+     *
+     * @param hash the MD5 hash of the content
+     * @param source the file that was written by the get
+     * @return {@code true} if the content was added to the cache
+     * @throws IOException if the file could not be read or the copy could not be written
+     */
+    boolean store(final byte[] hash, final File source) throws IOException {
+        final String key = toKey(hash);
+        final long length = source.length();
+        synchronized (this) {
+            load();
+            if (entries.containsKey(key) || length > maxBytes) {
+                return false;
+            }
+        }
+
+        final File destination = toFile(key);
+        final File folder = destination.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Unable to create " + folder);
+        }
+        final File temporary = File.createTempFile(key, TEMPORARY_SUFFIX, folder);
+        try {
+            final byte[] actualHash = copyAndHash(source, temporary);
+            if (!Arrays.equals(hash, actualHash)) {
+                return false;
+            }
+            synchronized (this) {
+                if (entries.containsKey(key)) {
+                    return false;
+                }
+                Files.move(temporary.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                entries.put(key, length);
+                totalBytes += length;
+                evict();
+                return true;
+            }
+        }
+        finally {
+            if (temporary.exists()) {
+                temporary.delete();
+            }
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        final List<File> files = new ArrayList<File>();
+        final File[] folders = directory.listFiles();
+        if (folders != null) {
+            for (final File folder : folders) {
+                final File[] children = folder.listFiles();
+                if (children == null) {
+                    continue;
+                }
+                for (final File child : children) {
+                    if (child.getName().endsWith(TEMPORARY_SUFFIX)) {
+                        // left behind by an interrupted store
+                        child.delete();
+                    }
+                    else if (child.isFile()) {
+                        files.add(child);
+                    }
+                }
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File left, final File right) {
+                final long leftModified = left.lastModified();
+                final long rightModified = right.lastModified();
+                return leftModified < rightModified ? -1 : (leftModified == rightModified ? 0 : 1);
+            }
+        });
+        for (final File file : files) {
+            final long length = file.length();
+            entries.put(file.getName(), length);
+            totalBytes += length;
+        }
+        evict();
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            toFile(eldest.getKey()).delete();
+        }
+    }
+
+    private void remove(final String key) {
+        final Long length = entries.remove(key);
+        if (length != null) {
+            totalBytes -= length;
+            toFile(key).delete();
+        }
+    }
+
+    private File toFile(final String key) {
+        return new File(new File(directory, key.substring(0, FAN_OUT_LENGTH)), key);
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    static String toKey(final byte[] hash) {
+        return Util.toHexString(hash).toLowerCase(Locale.ROOT);
+    }
+
+    static byte[] copyAndHash(final File source, final File destination) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        final InputStream input = new DigestInputStream(new FileInputStream(source), digest);
+        try {
+            Files.copy(input, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            input.close();
+        }
+        return digest.digest();
+    }
+}
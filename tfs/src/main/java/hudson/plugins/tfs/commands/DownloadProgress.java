@@ -0,0 +1,86 @@
+package hudson.plugins.tfs.commands;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the files retrieved by a get and periodically reports the throughput to the build log.
+ * The sizes are those of the files on disk once they were written, so deletions count as files
+ * but not as bytes.
+ */
+class DownloadProgress {
+
+    static final long DEFAULT_REPORT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(
+            Integer.getInteger(DownloadProgress.class.getName() + ".reportIntervalSeconds", 10));
+
+    private static final String ProgressTemplate = "Retrieved %d resources so far (%.1f files/s, %.2f MB/s)...";
+    private static final String SummaryTemplate = "Retrieved %.2f MB in %.1f s (%.1f files/s, %.2f MB/s).";
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+    private static final double MILLIS_PER_SECOND = 1000;
+
+    private final PrintStream logger;
+    private final long reportIntervalMillis;
+    private final long startMillis;
+    private long lastReportMillis;
+    private int count;
+    private long bytes;
+
+    DownloadProgress(final PrintStream logger, final long reportIntervalMillis) {
+        this.logger = logger;
+        this.reportIntervalMillis = reportIntervalMillis;
+        this.startMillis = now();
+        this.lastReportMillis = startMillis;
+    }
+
+    /**
+     * Records a retrieved resource and reports the throughput if the report interval has elapsed.
+     *
+     * @param targetLocalItem the local path that was written, or {@code null}
+     */
+    synchronized void record(final String targetLocalItem) {
+        count++;
+        if (targetLocalItem != null) {
+            final File file = new File(targetLocalItem);
+            if (file.isFile()) {
+                bytes += file.length();
+            }
+        }
+        final long now = now();
+        if (now - lastReportMillis >= reportIntervalMillis) {
+            final double seconds = toSeconds(now - startMillis);
+            logger.println(String.format(ProgressTemplate, count, count / seconds, toMegabytes(bytes) / seconds));
+            lastReportMillis = now;
+        }
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Reports the size and throughput of the whole get.
+     */
+    synchronized void reportSummary() {
+        final double seconds = toSeconds(now() - startMillis);
+        final double megabytes = toMegabytes(bytes);
+        logger.println(String.format(SummaryTemplate, megabytes, seconds, count / seconds, megabytes / seconds));
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    static double toSeconds(final long millis) {
+        // avoid dividing by zero when nothing (or very little) was retrieved
+        return Math.max(1, millis) / MILLIS_PER_SECOND;
+    }
+
+    static double toMegabytes(final long bytes) {
+        return bytes / BYTES_PER_MEGABYTE;
+    }
+}
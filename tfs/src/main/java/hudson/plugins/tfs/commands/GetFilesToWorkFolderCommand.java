@@ -1,31 +1,61 @@
 //CHECKSTYLE:OFF
 package hudson.plugins.tfs.commands;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Serializable;
 
+import com.microsoft.tfs.core.clients.versioncontrol.ClientLocalVersionUpdate;
 import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.OperationStatus;
+import com.microsoft.tfs.core.clients.versioncontrol.UpdateLocalVersionQueue;
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceLocation;
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.events.GetEvent;
 import com.microsoft.tfs.core.clients.versioncontrol.events.GetListener;
 import com.microsoft.tfs.core.clients.versioncontrol.events.VersionControlEventEngine;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetOperation;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LatestVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
 import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.ChangedFile;
+import hudson.plugins.tfs.model.ChangedFilesManifest;
+import hudson.plugins.tfs.model.ExtraSettings;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
 import hudson.remoting.Callable;
 
-public class GetFilesToWorkFolderCommand extends AbstractCallableCommand<Void, Exception> implements GetListener {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class GetFilesToWorkFolderCommand extends AbstractCallableCommand<GetFilesToWorkFolderCommand.Result, Exception> implements GetListener {
 
     private static final String GettingTemplate = "Getting version '%s' to '%s'...";
     private static final String GotTemplate = "Finished getting version '%s'. Retrieved %d resources.";
+    private static final String PartitionedTemplate = "Getting %d folder(s) of '%s' using up to %d concurrent downloads...";
+    private static final String CacheRestoredTemplate = "Reused %d file(s) (%.2f MB) from the download cache; %d file(s) were not in it.";
+    private static final String CacheStoredTemplate = "Adding up to %d retrieved file(s) to the download cache in the background; it holds %.2f MB.";
+    private static final String CacheWarningTemplate = "Warning: the download cache could not be used for '%s': %s";
 
     private final String workFolder;
     private final String versionSpec;
     private final boolean useOverwrite;
     private final boolean shouldLogEachGet;
+    private final int downloadConcurrency;
+    private final String manifestPath;
     private PrintStream logger;
-    private int getCount = 0;
+    private DownloadProgress progress;
+    private DownloadCache downloadCache;
+    private final Map<File, byte[]> filesToCache = new LinkedHashMap<File, byte[]>();
+    private final List<ChangedFile> changedFiles = Collections.synchronizedList(new ArrayList<ChangedFile>());
 
     public GetFilesToWorkFolderCommand(final ServerConfigurationProvider server, final String workFolder, final String versionSpec, boolean useOverwrite) {
         this(server, workFolder, versionSpec, useOverwrite, false);
@@ -34,27 +64,47 @@ public class GetFilesToWorkFolderCommand extends AbstractCallableCommand<Void, E
 
     public GetFilesToWorkFolderCommand(final ServerConfigurationProvider server, final String workFolder, final String versionSpec, boolean useOverwrite,
         final boolean shouldLogEachGet) {
+        this(server, workFolder, versionSpec, useOverwrite, shouldLogEachGet, 1);
+    }
+
+    public GetFilesToWorkFolderCommand(final ServerConfigurationProvider server, final String workFolder, final String versionSpec, boolean useOverwrite,
+        final boolean shouldLogEachGet, final int downloadConcurrency) {
+        this(server, workFolder, versionSpec, useOverwrite, shouldLogEachGet, downloadConcurrency, null);
+    }
+
+    /**
+     * @param manifestPath where to list the files the get added, updated or deleted, on the computer that runs
+     *                     the get, or {@code null} to only count them
+     */
+    public GetFilesToWorkFolderCommand(final ServerConfigurationProvider server, final String workFolder, final String versionSpec, boolean useOverwrite,
+        final boolean shouldLogEachGet, final int downloadConcurrency, final String manifestPath) {
         super(server);
         this.workFolder = workFolder;
         this.versionSpec = versionSpec;
         this.useOverwrite = useOverwrite;
         this.shouldLogEachGet = shouldLogEachGet;
+        this.downloadConcurrency = downloadConcurrency;
+        this.manifestPath = manifestPath;
     }
 
     @Override
-    public Callable<Void, Exception> getCallable() {
+    public Callable<Result, Exception> getCallable() {
         return this;
     }
 
     void setLogger(final PrintStream logger) {
         this.logger = logger;
+        this.progress = new DownloadProgress(logger, DownloadProgress.DEFAULT_REPORT_INTERVAL_MILLIS);
     }
 
-    public Void call() throws Exception {
+    /**
+     * @return where the files the get added, updated or deleted were listed, and how many there were
+     */
+    public Result call() throws Exception {
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
         final TaskListener listener = server.getListener();
-        logger = listener.getLogger();
+        setLogger(listener.getLogger());
 
         final VersionSpec getVersionSpec;
         if (versionSpec != null) {
@@ -68,21 +118,299 @@ public class GetFilesToWorkFolderCommand extends AbstractCallableCommand<Void, E
 
         final Workspace workspace = vcc.getWorkspace(workFolder);
         final VersionControlEventEngine eventEngine = vcc.getEventEngine();
+        final GetOptions getOptions = useOverwrite ? GetOptions.OVERWRITE : GetOptions.NONE;
+        downloadCache = createDownloadCache(server.getExtraSettings());
+        if (downloadCache != null && shouldRestoreFromCache(workspace, new File(workFolder), downloadCache)) {
+            restoreFromCache(workspace, eventEngine, getVersionSpec, getOptions);
+        }
         eventEngine.addGetListener(this);
-        workspace.get(getVersionSpec, useOverwrite ? GetOptions.OVERWRITE : GetOptions.NONE);
-        eventEngine.removeGetListener(this);
+        try {
+            // the gets of a local workspace would all update the same local version table
+            if (downloadConcurrency > 1 && workspace.getLocation() == WorkspaceLocation.SERVER) {
+                final String serverPath = workspace.getMappedServerPath(workFolder);
+                final ItemSet items = vcc.getItems(serverPath, getVersionSpec, RecursionType.ONE_LEVEL);
+                final List<String> childFolders = PartitionedGet.findChildFolders(items, serverPath);
+                final String partitionedMessage = String.format(PartitionedTemplate, childFolders.size(), serverPath, downloadConcurrency);
+                logger.println(partitionedMessage);
+                final PartitionedGet.Connector connector = new PartitionedGet.Connector() {
+                    @Override
+                    public Server connect() throws IOException {
+                        return createServer();
+                    }
+                };
+                final PartitionedGet partitionedGet = new PartitionedGet(workspace, workFolder, connector, this, getVersionSpec, getOptions, downloadConcurrency);
+                partitionedGet.get(serverPath, childFolders);
+            }
+            else {
+                workspace.get(getVersionSpec, getOptions);
+            }
+        }
+        finally {
+            eventEngine.removeGetListener(this);
+        }
 
-        final String gotMessage = String.format(GotTemplate, versionSpecString, getCount);
+        final String gotMessage = String.format(GotTemplate, versionSpecString, progress.getCount());
         logger.println(gotMessage);
+        progress.reportSummary();
+        if (downloadCache != null) {
+            final Map<File, byte[]> files;
+            synchronized (filesToCache) {
+                files = new LinkedHashMap<File, byte[]>(filesToCache);
+            }
+            final double cachedMegabytes = DownloadProgress.toMegabytes(downloadCache.getTotalBytes());
+            logger.println(String.format(CacheStoredTemplate, files.size(), cachedMegabytes));
+            downloadCache.storeLater(files);
+        }
+
+        synchronized (changedFiles) {
+            return writeManifest(manifestPath, changedFiles);
+        }
+    }
+
+    /**
+     * Lists the changed files where the get ran, such that only their counts travel back to the controller.
+     */
+    static Result writeManifest(final String manifestPath, final List<ChangedFile> changedFiles) throws IOException {
+        if (manifestPath != null) {
+            final File manifest = new File(manifestPath);
+            final File parent = manifest.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            ChangedFilesManifest.write(manifest, changedFiles);
+        }
+        int added = 0;
+        int updated = 0;
+        int deleted = 0;
+        for (final ChangedFile changedFile : changedFiles) {
+            switch (changedFile.getChange()) {
+                case ADDED:
+                    added++;
+                    break;
+                case UPDATED:
+                    updated++;
+                    break;
+                case DELETED:
+                    deleted++;
+                    break;
+            }
+        }
+        return new Result(manifestPath, added, updated, deleted);
+    }
 
-        return null;
+    static DownloadCache createDownloadCache(final ExtraSettings extraSettings) {
+        if (extraSettings == null || extraSettings.getDownloadCacheSizeMegabytes() <= 0) {
+            return null;
+        }
+        final long maxBytes = extraSettings.getDownloadCacheSizeMegabytes() * 1024L * 1024L;
+        return DownloadCache.forDirectory(DownloadCache.DEFAULT_DIRECTORY, maxBytes);
+    }
+
+    /**
+     * The cache only pays for the preview it needs when a whole mapping is about to be downloaded, so it is
+     * only used to fill a work folder that is still empty.  Files copied from the cache get the current time,
+     * hence workspaces that give files their check-in time are left to the get, as are local workspaces,
+     * whose local version table the get maintains on its own.
+     */
+    static boolean shouldRestoreFromCache(final Workspace workspace, final File workFolder, final DownloadCache downloadCache) {
+        if (workspace.getLocation() != WorkspaceLocation.SERVER) {
+            return false;
+        }
+        final WorkspaceOptions options = workspace.getOptions();
+        if (options != null && options.contains(WorkspaceOptions.SET_FILE_TO_CHECKIN)) {
+            return false;
+        }
+        final String[] children = workFolder.list();
+        if (children != null && children.length > 0) {
+            return false;
+        }
+        return downloadCache.getTotalBytes() > 0;
+    }
+
+    /**
+     * Previews the get, places the files whose content is in the download cache and tells the server the
+     * workspace now has them, such that the get that follows only downloads the rest.
+     */
+    void restoreFromCache(final Workspace workspace, final VersionControlEventEngine eventEngine, final VersionSpec getVersionSpec, final GetOptions getOptions) {
+        final List<GetOperation> operations = new ArrayList<GetOperation>();
+        final GetListener collector = new GetListener() {
+            public void onGet(final GetEvent getEvent) {
+                final GetOperation operation = getEvent.getOperation();
+                if (operation != null) {
+                    synchronized (operations) {
+                        operations.add(operation);
+                    }
+                }
+            }
+        };
+        eventEngine.addGetListener(collector);
+        try {
+            workspace.get(getVersionSpec, getOptions.combine(GetOptions.PREVIEW));
+        }
+        finally {
+            eventEngine.removeGetListener(collector);
+        }
+
+        final List<GetOperation> restored = new ArrayList<GetOperation>();
+        int missCount = 0;
+        long restoredBytes = 0;
+        for (final GetOperation operation : operations) {
+            final byte[] hash = operation.getHashValue();
+            final String targetLocalItem = operation.getTargetLocalItem();
+            if (operation.getItemType() != ItemType.FILE || targetLocalItem == null || hash == null || hash.length == 0) {
+                continue;
+            }
+            final File target = new File(targetLocalItem);
+            if (target.isDirectory() || (!useOverwrite && target.isFile() && target.canWrite())) {
+                // leave conflicts with writable files to the get
+                continue;
+            }
+            try {
+                final long length = downloadCache.restore(hash, target);
+                if (length < 0) {
+                    missCount++;
+                    continue;
+                }
+                target.setReadOnly();
+                restored.add(operation);
+                final ChangedFile.Change change = operation.getSourceLocalItem() == null ? ChangedFile.Change.ADDED : ChangedFile.Change.UPDATED;
+                recordChange(change, operation.getVersionServer(), targetLocalItem);
+                restoredBytes += length;
+            }
+            catch (final IOException e) {
+                logger.println(String.format(CacheWarningTemplate, targetLocalItem, e.getMessage()));
+                missCount++;
+            }
+        }
+
+        if (!restored.isEmpty()) {
+            updateLocalVersions(workspace, restored);
+        }
+        logger.println(String.format(CacheRestoredTemplate, restored.size(), DownloadProgress.toMegabytes(restoredBytes), missCount));
+    }
+
+    static void updateLocalVersions(final Workspace workspace, final List<GetOperation> operations) {
+        final UpdateLocalVersionQueue queue = new UpdateLocalVersionQueue(workspace);
+        try {
+            for (final GetOperation operation : operations) {
+                final ClientLocalVersionUpdate update = new ClientLocalVersionUpdate(
+                        operation.getTargetServerItem(),
+                        operation.getItemID(),
+                        operation.getTargetLocalItem(),
+                        operation.getVersionServer(),
+                        operation.getPropertyValues());
+                queue.queueUpdate(update);
+            }
+        }
+        finally {
+            queue.close();
+        }
     }
 
     public void onGet(final GetEvent getEvent) {
-        getCount++;
+        final String targetLocalItem = getEvent.getTargetLocalItem();
         if (shouldLogEachGet) {
-            logger.println(getEvent.getTargetLocalItem());
+            logger.println(targetLocalItem);
+        }
+        progress.record(targetLocalItem);
+        recordChange(getEvent);
+        if (downloadCache != null) {
+            rememberForCache(getEvent.getOperation(), targetLocalItem);
+        }
+    }
+
+    void recordChange(final GetEvent getEvent) {
+        final GetOperation operation = getEvent.getOperation();
+        final OperationStatus status = getEvent.getStatus();
+        if (operation == null || operation.getItemType() != ItemType.FILE) {
+            return;
+        }
+        if (status == OperationStatus.GETTING) {
+            recordChange(ChangedFile.Change.ADDED, operation.getVersionServer(), getEvent.getTargetLocalItem());
+        }
+        else if (status == OperationStatus.REPLACING) {
+            recordChange(ChangedFile.Change.UPDATED, operation.getVersionServer(), getEvent.getTargetLocalItem());
+        }
+        else if (status == OperationStatus.DELETING) {
+            recordChange(ChangedFile.Change.DELETED, operation.getVersionLocal(), operation.getSourceLocalItem());
+        }
+    }
+
+    private void recordChange(final ChangedFile.Change change, final int changeset, final String localItem) {
+        if (localItem == null) {
+            return;
+        }
+        changedFiles.add(new ChangedFile(change, changeset, toManifestPath(workFolder, localItem)));
+    }
+
+    /**
+     * @return the path relative to the work folder, with forward slashes, or the local item if it is outside of it
+     */
+    static String toManifestPath(final String workFolder, final String localItem) {
+        if (workFolder == null) {
+            return localItem;
         }
+        final String relativePath = CreateWorkspaceSnapshotCommand.toRelativePath(new File(workFolder), new File(localItem));
+        return relativePath != null ? relativePath : localItem;
     }
 
+    List<ChangedFile> getChangedFiles() {
+        return changedFiles;
+    }
+
+    /**
+     * Notes a retrieved file for the download cache, which copies it once the get is over.
+     */
+    void rememberForCache(final GetOperation operation, final String targetLocalItem) {
+        if (operation == null || targetLocalItem == null || operation.getItemType() != ItemType.FILE) {
+            return;
+        }
+        final byte[] hash = operation.getHashValue();
+        if (hash == null || hash.length == 0 || downloadCache.contains(hash)) {
+            return;
+        }
+        synchronized (filesToCache) {
+            filesToCache.put(new File(targetLocalItem), hash);
+        }
+    }
+
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String manifestPath;
+        private final int addedCount;
+        private final int updatedCount;
+        private final int deletedCount;
+
+        public Result(final String manifestPath, final int addedCount, final int updatedCount, final int deletedCount) {
+            this.manifestPath = manifestPath;
+            this.addedCount = addedCount;
+            this.updatedCount = updatedCount;
+            this.deletedCount = deletedCount;
+        }
+
+        /**
+         * @return the path to the {@link ChangedFilesManifest}, on the computer that ran the command,
+         *         or {@code null} if none was asked for
+         */
+        public String getManifestPath() {
+            return manifestPath;
+        }
+
+        public int getAddedCount() {
+            return addedCount;
+        }
+
+        public int getUpdatedCount() {
+            return updatedCount;
+        }
+
+        public int getDeletedCount() {
+            return deletedCount;
+        }
+
+        public int getCount() {
+            return addedCount + updatedCount + deletedCount;
+        }
+    }
 }
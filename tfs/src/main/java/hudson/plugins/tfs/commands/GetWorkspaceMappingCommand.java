@@ -3,9 +3,11 @@ package hudson.plugins.tfs.commands;
 
 import com.microsoft.tfs.core.TFSTeamProjectCollection;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.jni.helpers.LocalHost;
 import hudson.model.TaskListener;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceInventory;
 import hudson.remoting.Callable;
 
 import java.io.PrintStream;
@@ -32,14 +34,25 @@ public class GetWorkspaceMappingCommand extends AbstractCallableCommand<String,
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
         final TFSTeamProjectCollection connection = vcc.getConnection();
-        updateCache(connection);
         final TaskListener listener = server.getListener();
         final PrintStream logger = listener.getLogger();
 
         final String checkingMessage = String.format(CheckingMappingTemplate, localPath);
         logger.print(checkingMessage);
 
-        final Workspace workspace = vcc.tryGetWorkspace(localPath);
+        final WorkspaceInventory inventory = WorkspaceInventory.forComputer(server.getUrl(), LocalHost.getShortName());
+        Workspace workspace = null;
+        if (inventory.isFresh()) {
+            // trust the local cache only if it agrees with the inventory
+            workspace = vcc.tryGetWorkspace(localPath);
+            if (workspace != null && !inventory.contains(workspace.getName())) {
+                workspace = null;
+            }
+        }
+        if (workspace == null) {
+            updateCache(connection);
+            workspace = vcc.tryGetWorkspace(localPath);
+        }
         final boolean existsMapping = workspace != null;
         final String result = existsMapping ? workspace.getName() : null;
 
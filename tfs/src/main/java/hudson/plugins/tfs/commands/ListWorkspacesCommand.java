@@ -8,6 +8,7 @@ import hudson.model.TaskListener;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
 import hudson.plugins.tfs.model.Workspace;
+import hudson.plugins.tfs.model.WorkspaceInventory;
 import hudson.plugins.tfs.util.TextTableParser;
 import hudson.remoting.Callable;
 import org.apache.commons.lang.StringUtils;
@@ -21,23 +22,51 @@ import java.util.List;
 public class ListWorkspacesCommand extends AbstractCallableCommand<List<Workspace>, Exception> {
 
     private static final String ListingWorkspacesTemplate = "Downloading list of workspaces from %s...";
+    private static final String UsingInventoryTemplate = "Using the list of workspaces from %s cached on this computer.";
 
     private final String computer;
     private final boolean shouldLogWorkspaces;
+    private final String workspaceName;
+    private final boolean useInventory;
 
     public interface WorkspaceFactory {
         Workspace createWorkspace(String name, String computer, String owner, String comment);
     }
     
     public ListWorkspacesCommand(final ServerConfigurationProvider server) {
+        this(server, null);
+    }
+
+    /**
+     * Lists the workspaces of the computer where the command runs, using that computer's
+     * {@link WorkspaceInventory} if it can confirm that the workspace the caller is looking for exists.
+     * A list without that workspace always comes from the server.
+     *
+     * @param server the server configuration
+     * @param workspaceName the name of the workspace the caller is looking for, or {@code null}
+     */
+    public ListWorkspacesCommand(final ServerConfigurationProvider server, final String workspaceName) {
         // TODO: shouldLogWorkspaces could be controlled by a property
-        this(server, null, false);
+        this(server, null, false, workspaceName, true);
+    }
+
+    /**
+     * Lists the workspaces the server has for the named computer, without consulting any {@link WorkspaceInventory}.
+     *
+     * @param server the server configuration
+     * @param computer the name TFS knows the computer by, or {@code null} for the computer where the command runs
+     * @param shouldLogWorkspaces whether to print the workspaces to the server's listener
+     */
+    public ListWorkspacesCommand(final ServerConfigurationProvider server, final String computer, final boolean shouldLogWorkspaces) {
+        this(server, computer, shouldLogWorkspaces, null, false);
     }
 
-    ListWorkspacesCommand(final ServerConfigurationProvider server, final String computer, final boolean shouldLogWorkspaces) {
+    ListWorkspacesCommand(final ServerConfigurationProvider server, final String computer, final boolean shouldLogWorkspaces, final String workspaceName, final boolean useInventory) {
         super(server);
         this.computer = computer;
         this.shouldLogWorkspaces = shouldLogWorkspaces;
+        this.workspaceName = workspaceName;
+        this.useInventory = useInventory;
     }
 
     @Override
@@ -52,6 +81,19 @@ public class ListWorkspacesCommand extends AbstractCallableCommand<List<Workspac
         final PrintStream logger = listener.getLogger();
         final String computerName = (computer != null) ? computer : LocalHost.getShortName();
 
+        final WorkspaceInventory inventory = WorkspaceInventory.forComputer(server.getUrl(), computerName);
+        if (useInventory) {
+            final List<Workspace> cachedWorkspaces = inventory.list(workspaceName);
+            if (cachedWorkspaces != null) {
+                final String usingInventoryMessage = String.format(UsingInventoryTemplate, server.getUrl());
+                logger.println(usingInventoryMessage);
+                if (shouldLogWorkspaces) {
+                    log(cachedWorkspaces, logger);
+                }
+                return cachedWorkspaces;
+            }
+        }
+
         final String listWorkspacesMessage = String.format(ListingWorkspacesTemplate, server.getUrl());
         logger.println(listWorkspacesMessage);
 
@@ -77,6 +119,7 @@ public class ListWorkspacesCommand extends AbstractCallableCommand<List<Workspac
                     comment);
             result.add(workspace);
         }
+        inventory.reconcile(result);
 
         if (shouldLogWorkspaces) {
             log(result, logger);
@@ -9,9 +9,13 @@ import com.microsoft.tfs.core.clients.versioncontrol.path.LocalPath;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolder;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolderType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import hudson.Util;
 import hudson.model.TaskListener;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceInventory;
+import hudson.plugins.tfs.model.WorkspaceSettings;
 import hudson.remoting.Callable;
 
 import java.io.IOException;
@@ -26,6 +30,7 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
     private static final WorkingFolder[] EMPTY_WORKING_FOLDER_ARRAY = new WorkingFolder[0];
     private static final String CloakingTemplate = "Cloaking '%s' in workspace '%s'...";
     private static final String CreatingTemplate = "Creating workspace '%s' owned by '%s'...";
+    private static final String CreatingLocalTemplate = "Creating local workspace '%s' owned by '%s'...";
     private static final String CreatedTemplate = "Created workspace '%s'.";
     private static final String MappingTemplate = "Mapping '%s' to local folder '%s' in workspace '%s'...";
 
@@ -33,13 +38,19 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
     private final String serverPath;
     private final Collection<String> cloakedPaths;
     private final String localPath;
+    private final WorkspaceSettings settings;
 
     public NewWorkspaceCommand(final ServerConfigurationProvider server, final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final String localPath) {
+        this(server, workspaceName, serverPath, cloakedPaths, localPath, WorkspaceSettings.DEFAULT);
+    }
+
+    public NewWorkspaceCommand(final ServerConfigurationProvider server, final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final String localPath, final WorkspaceSettings settings) {
         super(server);
         this.workspaceName = workspaceName;
         this.serverPath = serverPath;
         this.cloakedPaths = cloakedPaths;
         this.localPath = localPath;
+        this.settings = settings;
     }
 
     public Callable<Void, Exception> getCallable() {
@@ -54,7 +65,9 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
         final PrintStream logger = listener.getLogger();
         final String userName = server.getUserName();
 
-        final String creatingMessage = String.format(CreatingTemplate, workspaceName, userName);
+        final boolean useLocalWorkspace = settings.isLocalWorkspace();
+        final WorkspaceLocation location = useLocalWorkspace ? WorkspaceLocation.LOCAL : WorkspaceLocation.SERVER;
+        final String creatingMessage = String.format(useLocalWorkspace ? CreatingLocalTemplate : CreatingTemplate, workspaceName, userName);
         logger.println(creatingMessage);
         
         WorkingFolder[] foldersToMap = null;
@@ -78,16 +91,25 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
 
         updateCache(connection);
         // TODO: we might need to delete a previous workspace that had another name
-        vcc.createWorkspace(
+        final Workspace workspace = vcc.createWorkspace(
                 foldersToMap,
                 workspaceName,
                 VersionControlConstants.AUTHENTICATED_USER,
                 VersionControlConstants.AUTHENTICATED_USER,
                 null /* TODO: set comment to something nice/useful */,
-                WorkspaceLocation.SERVER /* TODO: pull request #33 adds LOCAL support */,
-                WorkspaceOptions.NONE
+                location,
+                settings.isCheckInTimestamps() ? WorkspaceOptions.SET_FILE_TO_CHECKIN : WorkspaceOptions.NONE
         );
 
+        if (workspace != null) {
+            final WorkspaceInventory inventory = WorkspaceInventory.forComputer(server.getUrl(), workspace.getComputer());
+            inventory.put(new hudson.plugins.tfs.model.Workspace(
+                    workspace.getName(),
+                    workspace.getComputer(),
+                    workspace.getOwnerName(),
+                    Util.fixNull(workspace.getComment())));
+        }
+
         final String createdMessage = String.format(CreatedTemplate, workspaceName);
         logger.println(createdMessage);
 
@@ -0,0 +1,162 @@
+package hudson.plugins.tfs.commands;
+
+import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.events.GetListener;
+import com.microsoft.tfs.core.clients.versioncontrol.events.VersionControlEventEngine;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetRequest;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a get into one get per top-level folder of the mapping, which run concurrently.
+ *
+ * The files directly under the mapped folder are retrieved first, then the folders, and finally the
+ * whole mapping is requested once more, which picks up whatever the partitions can't see on their own
+ * (such as deleted folders or items renamed from one folder to another); that last get is cheap since
+ * everything else is already up to date.
+ *
+ * The SDK's {@link Workspace} and the connection behind it aren't meant to be used from several threads
+ * at once, so each partition thread opens a connection of its own and gets its folders through the
+ * workspace as seen by that connection.  Only server workspaces can be partitioned: the gets of a local
+ * workspace all update the same local version table and baseline folder.
+ */
+class PartitionedGet {
+
+    /**
+     * Opens new connections to the collection, for the partition threads.
+     */
+    interface Connector {
+        Server connect() throws IOException;
+    }
+
+    private final Workspace workspace;
+    private final String workFolder;
+    private final Connector connector;
+    private final GetListener listener;
+    private final VersionSpec versionSpec;
+    private final GetOptions options;
+    private final int concurrency;
+
+    /**
+     * @param workspace the workspace, through the caller's connection
+     * @param workFolder the local folder the workspace maps, to find the workspace through other connections
+     * @param connector opens the connections of the partition threads
+     * @param listener notified of the gets on every connection
+     * @param versionSpec the version to get
+     * @param options the options of every get
+     * @param concurrency the most partitions retrieved at once
+     */
+    PartitionedGet(final Workspace workspace, final String workFolder, final Connector connector, final GetListener listener, final VersionSpec versionSpec, final GetOptions options, final int concurrency) {
+        this.workspace = workspace;
+        this.workFolder = workFolder;
+        this.connector = connector;
+        this.listener = listener;
+        this.versionSpec = versionSpec;
+        this.options = options;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Finds the folders directly below a server path.
+     *
+     * @param items the result of a one-level query of the server path
+     * @param serverPath the server path that was queried
+     * @return the server paths of the child folders
+     */
+    static List<String> findChildFolders(final ItemSet items, final String serverPath) {
+        final List<String> result = new ArrayList<String>();
+        for (final Item item : items.getItems()) {
+            final String serverItem = item.getServerItem();
+            if (item.getItemType() == ItemType.FOLDER && !serverItem.equalsIgnoreCase(serverPath)) {
+                result.add(serverItem);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Brings the mapping under the server path up to date.
+     *
+     * @param serverPath the server path mapped to the folder being retrieved
+     * @param childFolders the folders directly below the server path
+     * @throws InterruptedException if interrupted while waiting for the partitions
+     * @throws ExecutionException if one of the partitions failed
+     */
+    void get(final String serverPath, final List<String> childFolders) throws InterruptedException, ExecutionException {
+        get(workspace, serverPath, RecursionType.ONE_LEVEL);
+
+        if (!childFolders.isEmpty()) {
+            final int threadCount = Math.min(concurrency, childFolders.size());
+            final Queue<String> remaining = new ConcurrentLinkedQueue<String>(childFolders);
+            final ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFVC get"));
+            try {
+                final List<Future<Void>> futures = new ArrayList<Future<Void>>(threadCount);
+                for (int i = 0; i < threadCount; i++) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            getPartitions(remaining);
+                            return null;
+                        }
+                    }));
+                }
+                for (final Future<Void> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        workspace.get(versionSpec, options);
+    }
+
+    /**
+     * Gets folders from the queue until it is empty, through a connection of the current thread's own.
+     */
+    void getPartitions(final Queue<String> remaining) throws IOException {
+        final Server server = connector.connect();
+        try {
+            final MockableVersionControlClient vcc = server.getVersionControlClient();
+            final VersionControlEventEngine eventEngine = vcc.getEventEngine();
+            eventEngine.addGetListener(listener);
+            try {
+                final Workspace partitionWorkspace = vcc.getWorkspace(workFolder);
+                String childFolder;
+                while ((childFolder = remaining.poll()) != null) {
+                    get(partitionWorkspace, childFolder, RecursionType.FULL);
+                }
+            } finally {
+                eventEngine.removeGetListener(listener);
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    void get(final Workspace target, final String serverPath, final RecursionType recursion) {
+        final GetRequest request = new GetRequest(new ItemSpec(serverPath, recursion), versionSpec);
+        target.get(new GetRequest[]{request}, options);
+    }
+}
@@ -0,0 +1,76 @@
+package hudson.plugins.tfs.commands;
+
+import com.microsoft.tfs.core.clients.versioncontrol.ClientLocalVersionUpdate;
+import com.microsoft.tfs.core.clients.versioncontrol.UpdateLocalVersionQueue;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PropertyValue;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceSnapshot;
+import hudson.remoting.Callable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells the server which item versions a workspace already has, after its files were restored from a snapshot,
+ * such that the next get only retrieves what changed since.
+ */
+public class UpdateLocalVersionsCommand extends AbstractCallableCommand<Void, IOException> {
+
+    private static final String UpdatingTemplate = "Recording %d file(s) restored from the snapshot at changeset %d as the local versions of '%s'...";
+
+    private final String workFolder;
+    private final int changeset;
+    private final ArrayList<WorkspaceSnapshot.Entry> entries;
+
+    public UpdateLocalVersionsCommand(final ServerConfigurationProvider server, final String workFolder, final int changeset, final List<WorkspaceSnapshot.Entry> entries) {
+        super(server);
+        this.workFolder = workFolder;
+        this.changeset = changeset;
+        this.entries = new ArrayList<WorkspaceSnapshot.Entry>(entries);
+    }
+
+    @Override
+    public Callable<Void, IOException> getCallable() {
+        return this;
+    }
+
+    @Override
+    public Void call() throws IOException {
+        final Server server = createServer();
+        final MockableVersionControlClient vcc = server.getVersionControlClient();
+        final TaskListener listener = server.getListener();
+        final PrintStream logger = listener.getLogger();
+
+        logger.println(String.format(UpdatingTemplate, entries.size(), changeset, workFolder));
+        final Workspace workspace = vcc.getWorkspace(workFolder);
+        final File root = new File(workFolder);
+        final UpdateLocalVersionQueue queue = new UpdateLocalVersionQueue(workspace);
+        try {
+            for (final WorkspaceSnapshot.Entry entry : entries) {
+                final File localItem = new File(root, entry.getRelativePath());
+                if (!localItem.isFile()) {
+                    continue;
+                }
+                // files retrieved into a server workspace are read-only
+                localItem.setReadOnly();
+                final ClientLocalVersionUpdate update = new ClientLocalVersionUpdate(
+                        entry.getServerItem(),
+                        entry.getItemId(),
+                        localItem.getPath(),
+                        entry.getVersion(),
+                        (PropertyValue[]) null);
+                queue.queueUpdate(update);
+            }
+        }
+        finally {
+            queue.close();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,153 @@
+package hudson.plugins.tfs.commands;
+
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlConstants;
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.path.LocalPath;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolder;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolderType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import hudson.remoting.Callable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Brings the working folders of an existing workspace in line with a mapping and its cloaked paths,
+ * by removing and adding only the working folders that differ, such that the files already retrieved
+ * under the unchanged working folders stay where they are, and then sets whether it gives retrieved files
+ * the time of their check-in.
+ */
+public class UpdateWorkspaceMappingCommand extends AbstractCallableCommand<Boolean, IOException> {
+
+    private static final String UpdatingTemplate = "Updating the working folders of workspace '%s'...";
+    private static final String MissingTemplate = "Workspace '%s' no longer exists.";
+    private static final String RemovingTemplate = "Removing %s of '%s' from workspace '%s'...";
+    private static final String AddingTemplate = "Adding %s of '%s' to workspace '%s'...";
+    private static final String UpdatedTemplate = "Removed %d and added %d working folder(s).";
+    private static final String OptionsTemplate = "%s check-in timestamps for files retrieved into workspace '%s'...";
+
+    private final String workspaceName;
+    private final String serverPath;
+    private final Collection<String> cloakedPaths;
+    private final String localPath;
+    private final boolean useCheckInTimestamps;
+
+    public UpdateWorkspaceMappingCommand(final ServerConfigurationProvider server, final String workspaceName, final String serverPath, final Collection<String> cloakedPaths, final String localPath) {
+        this(server, workspaceName, serverPath, cloakedPaths, localPath, false);
+    }
+
+    public UpdateWorkspaceMappingCommand(final ServerConfigurationProvider server, final String workspaceName, final String serverPath, final Collection<String> cloakedPaths, final String localPath, final boolean useCheckInTimestamps) {
+        super(server);
+        this.workspaceName = workspaceName;
+        this.serverPath = serverPath;
+        this.cloakedPaths = cloakedPaths;
+        this.localPath = localPath;
+        this.useCheckInTimestamps = useCheckInTimestamps;
+    }
+
+    @Override
+    public Callable<Boolean, IOException> getCallable() {
+        return this;
+    }
+
+    /**
+     * @return {@code true} if the workspace was updated, {@code false} if it doesn't exist
+     */
+    @Override
+    public Boolean call() throws IOException {
+        final Server server = createServer();
+        final MockableVersionControlClient vcc = server.getVersionControlClient();
+        final TaskListener listener = server.getListener();
+        final PrintStream logger = listener.getLogger();
+
+        logger.println(String.format(UpdatingTemplate, workspaceName));
+        final Workspace workspace = vcc.queryWorkspace(workspaceName, VersionControlConstants.AUTHENTICATED_USER);
+        if (workspace == null) {
+            logger.println(String.format(MissingTemplate, workspaceName));
+            return false;
+        }
+
+        final List<WorkingFolder> existing = Arrays.asList(workspace.getFolders());
+        final List<WorkingFolder> desired = createWorkingFolders(serverPath, cloakedPaths, localPath);
+        final List<WorkingFolder> toRemove = subtract(existing, desired);
+        final List<WorkingFolder> toAdd = subtract(desired, existing);
+        for (final WorkingFolder workingFolder : toRemove) {
+            logger.println(String.format(RemovingTemplate, describe(workingFolder), workingFolder.getServerItem(), workspaceName));
+            workspace.deleteWorkingFolder(workingFolder);
+        }
+        for (final WorkingFolder workingFolder : toAdd) {
+            logger.println(String.format(AddingTemplate, describe(workingFolder), workingFolder.getServerItem(), workspaceName));
+            workspace.createWorkingFolder(workingFolder);
+        }
+        logger.println(String.format(UpdatedTemplate, toRemove.size(), toAdd.size()));
+
+        final WorkspaceOptions options = workspace.getOptions() == null ? WorkspaceOptions.NONE : workspace.getOptions();
+        if (options.contains(WorkspaceOptions.SET_FILE_TO_CHECKIN) != useCheckInTimestamps) {
+            logger.println(String.format(OptionsTemplate, useCheckInTimestamps ? "Using" : "No longer using", workspaceName));
+            final WorkspaceOptions newOptions = useCheckInTimestamps
+                    ? options.combine(WorkspaceOptions.SET_FILE_TO_CHECKIN)
+                    : options.remove(WorkspaceOptions.SET_FILE_TO_CHECKIN);
+            // null leaves the name, owner, comment, computer, working folders and permissions as they are
+            workspace.update(null, null, null, null, null, null, false, newOptions);
+        }
+        return true;
+    }
+
+    /**
+     * @return the working folders {@link NewWorkspaceCommand} creates for the mapping
+     */
+    static List<WorkingFolder> createWorkingFolders(final String serverPath, final Collection<String> cloakedPaths, final String localPath) {
+        final List<WorkingFolder> result = new ArrayList<WorkingFolder>();
+        result.add(new WorkingFolder(serverPath, LocalPath.canonicalize(localPath), WorkingFolderType.MAP, RecursionType.FULL));
+        if (cloakedPaths != null) {
+            for (final String cloakedPath : cloakedPaths) {
+                result.add(new WorkingFolder(cloakedPath, null, WorkingFolderType.CLOAK));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the working folders in {@code left} that have no equivalent in {@code right}
+     */
+    static List<WorkingFolder> subtract(final List<WorkingFolder> left, final List<WorkingFolder> right) {
+        final List<WorkingFolder> result = new ArrayList<WorkingFolder>();
+        for (final WorkingFolder candidate : left) {
+            boolean found = false;
+            for (final WorkingFolder other : right) {
+                if (isEquivalent(candidate, other)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    static boolean isEquivalent(final WorkingFolder left, final WorkingFolder right) {
+        if (left.getType() != right.getType() || !left.getServerItem().equalsIgnoreCase(right.getServerItem())) {
+            return false;
+        }
+        if (left.getType() == WorkingFolderType.CLOAK) {
+            return true;
+        }
+        final String leftLocalItem = left.getLocalItem();
+        final String rightLocalItem = right.getLocalItem();
+        return leftLocalItem == null ? rightLocalItem == null : leftLocalItem.equalsIgnoreCase(rightLocalItem);
+    }
+
+    private static String describe(final WorkingFolder workingFolder) {
+        return workingFolder.getType() == WorkingFolderType.CLOAK ? "the cloak" : "the mapping";
+    }
+}
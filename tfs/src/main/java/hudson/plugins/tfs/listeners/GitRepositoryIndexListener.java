@@ -0,0 +1,43 @@
+package hudson.plugins.tfs.listeners;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import hudson.plugins.tfs.model.GitRepositoryIndex;
+
+/**
+ * This class keeps the {@link GitRepositoryIndex} up to date as items are created, configured, moved and deleted.
+ */
+@Extension
+public class GitRepositoryIndexListener extends ItemListener {
+
+    @Override
+    public void onCreated(final Item item) {
+        GitRepositoryIndex.getInstance().update(item);
+    }
+
+    @Override
+    public void onCopied(final Item src, final Item item) {
+        GitRepositoryIndex.getInstance().update(item);
+    }
+
+    @Override
+    public void onUpdated(final Item item) {
+        GitRepositoryIndex.getInstance().update(item);
+    }
+
+    @Override
+    public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+        GitRepositoryIndex.getInstance().rename(oldFullName, item);
+    }
+
+    @Override
+    public void onDeleted(final Item item) {
+        GitRepositoryIndex.getInstance().remove(item.getFullName());
+    }
+
+    @Override
+    public void onLoaded() {
+        GitRepositoryIndex.getInstance().invalidate();
+    }
+}
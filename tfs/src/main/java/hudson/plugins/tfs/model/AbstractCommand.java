@@ -19,6 +19,19 @@ public abstract class AbstractCommand {
         String getSampleRequestPayload();
     }
 
+    /**
+     * Tells whether {@link #perform} reads its {@code requestPayload}, which is left empty otherwise, to spare
+     * parsing the request a second time.
+     *
+     * @param job the {@link Job} to operate on
+     * @param teamBuildPayload a {@link TeamBuildPayload} representing the command's input
+     *
+     * @return {@code true} unless the command only needs the {@code teamBuildPayload}
+     */
+    public boolean needsRequestPayload(final Job<?, ?> job, final TeamBuildPayload teamBuildPayload) {
+        return true;
+    }
+
     /**
      * Actually do the work of the command, using the supplied {@code requestPayload} and
      * {@code teamBuildPayload}, then returning the output as a {@link JSONObject}.
@@ -11,7 +11,6 @@ import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.StringParameterValue;
-import hudson.plugins.git.BranchSpec;
 import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.GitStatus;
 import hudson.plugins.git.UserRemoteConfig;
@@ -58,7 +57,6 @@ import org.apache.commons.lang.StringUtils;
 public abstract class AbstractHookEvent {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractHookEvent.class.getName());
-    private static final String TRIGGER_ANY_BRANCH = "**";
 
     /**
     * Interface of hook event factory.
@@ -90,6 +88,14 @@ public abstract class AbstractHookEvent {
      */
     public abstract JSONObject perform(final ObjectMapper mapper, final Event serviceHookEvent, final String message, final String detailedMessage);
 
+    /**
+     * @return the class that the {@link Event#resource} is read into while the request payload is decoded,
+     * or {@link Object} to read it into maps and lists
+     */
+    public Class<?> getResourceType() {
+        return Object.class;
+    }
+
     static JSONObject fromResponseContributors(final List<GitStatus.ResponseContributor> contributors) {
         final JSONObject result = new JSONObject();
         final JSONArray messages = new JSONArray();
@@ -110,6 +116,14 @@ public abstract class AbstractHookEvent {
     }
 
     GitStatus.ResponseContributor triggerJob(final GitCodePushedEventArgs gitCodePushedEventArgs, final List<Action> actions, final boolean bypassPolling, final Item project, final SCMTriggerItem scmTriggerItem, final Boolean repoMatches, final Boolean branchMatches) {
+        return triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, repoMatches, branchMatches, null);
+    }
+
+    /**
+     * @param matchedScm the SCM of the job whose repository matched the event, such that only it is polled,
+     *                   or {@code null} if it isn't known
+     */
+    GitStatus.ResponseContributor triggerJob(final GitCodePushedEventArgs gitCodePushedEventArgs, final List<Action> actions, final boolean bypassPolling, final Item project, final SCMTriggerItem scmTriggerItem, final Boolean repoMatches, final Boolean branchMatches, final SCM matchedScm) {
         if (!(project instanceof AbstractProject && ((AbstractProject) project).isDisabled())) {
             if (project instanceof Job) {
                 final Job job = (Job) project;
@@ -130,7 +144,7 @@ public abstract class AbstractHookEvent {
                     if (scmTrigger == null || !scmTrigger.isIgnorePostCommitHooks()) {
                         // trigger is null OR job does NOT have explicitly opted out of hooks
                         final TeamPushTrigger trigger = new TeamPushTrigger(job);
-                        trigger.execute(gitCodePushedEventArgs, actionsWithSafeParams, bypassPolling);
+                        trigger.execute(gitCodePushedEventArgs, actionsWithSafeParams, bypassPolling, matchedScm);
                         if (bypassPolling) {
                             return new TeamEventsEndpoint.ScheduledResponseContributor(project);
                         } else {
@@ -172,7 +186,7 @@ public abstract class AbstractHookEvent {
                         }
                     }
                     if (pushTrigger != null) {
-                        pushTrigger.execute(gitCodePushedEventArgs, actionsWithSafeParams, bypassPolling);
+                        pushTrigger.execute(gitCodePushedEventArgs, actionsWithSafeParams, bypassPolling, matchedScm);
                         if (bypassPolling) {
                             return new TeamEventsEndpoint.ScheduledResponseContributor(project);
                         } else {
@@ -213,19 +227,7 @@ public abstract class AbstractHookEvent {
         if (gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs) {
             TeamPRPushTrigger pushTrigger = TeamEventsEndpoint.findTrigger(job, TeamPRPushTrigger.class);
             if (pushTrigger != null) {
-                final String targetBranches = pushTrigger.getTargetBranches();
-                if (targetBranches != null) {
-                    String[] branches = targetBranches.split(" ");
-                    if (branches != null) {
-                        for (String branchFullName : branches) {
-                            // branchFullName could be in the format of */pr_status
-                            String[] items = branchFullName.split("/");
-                            if (StringUtils.equalsIgnoreCase(items[items.length - 1], gitCodePushedEventArgs.targetBranch)) {
-                                return true;
-                            }
-                        }
-                    }
-                }
+                return pushTrigger.getTargetBranchMatcher().matches(gitCodePushedEventArgs.targetBranch);
             }
         } else { // Pipeline jobs triggered by code push need to check whether its target branch matches the one in its Git parameter
             if (job instanceof WorkflowJob) {
@@ -233,14 +235,7 @@ public abstract class AbstractHookEvent {
                 if (jobDef instanceof CpsScmFlowDefinition) {
                     final SCM jobSCM = ((CpsScmFlowDefinition) jobDef).getScm();
                     if (jobSCM instanceof GitSCM) {
-                        final GitSCM gitJobSCM = (GitSCM) jobSCM;
-                        for (final BranchSpec branchFullName : gitJobSCM.getBranches()) {
-                            // branchFullName could be in the format of */pr_status
-                            String[] items = branchFullName.getName().split("/");
-                            if (StringUtils.equalsIgnoreCase(items[items.length - 1], gitCodePushedEventArgs.targetBranch)) {
-                                return true;
-                            }
-                        }
+                        return BranchSpecMatcher.of((GitSCM) jobSCM).matches(gitCodePushedEventArgs.targetBranch);
                     }
                 }
             }
@@ -266,14 +261,19 @@ public abstract class AbstractHookEvent {
         SecurityContext old = ACL.impersonate(ACL.SYSTEM);
         try {
 
-            boolean scmFound = false;
             final Jenkins jenkins = Jenkins.getInstance();
             if (jenkins == null) {
                 LOGGER.severe("Jenkins.getInstance() is null");
                 return result;
             }
+            final GitRepositoryIndex index = GitRepositoryIndex.getInstance();
             int totalBranchMatches = 0;
-            for (final Item project : Jenkins.getActiveInstance().getAllItems()) {
+            // pull requests are matched against the target branches of their trigger instead
+            final String branch = gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs ? null : gitCodePushedEventArgs.targetBranch;
+            final List<Item> candidates = index.getCandidates(uri, branch);
+            // only known once getCandidates has built the index
+            boolean scmFound = index.hasGitJobs();
+            for (final Item project : candidates) {
                 final SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(project);
 
                 if (scmTriggerItem == null || scmTriggerItem.getSCMs() == null) {
@@ -307,32 +307,24 @@ public abstract class AbstractHookEvent {
 
                         // Jobs triggered by PR merge need to check whether its target branch matches the one specified in the parameter of PR trigger UI
                         if (repositoryMatches && gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs) {
-                            GitStatus.ResponseContributor triggerResult = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, false);
+                            GitStatus.ResponseContributor triggerResult = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, false, git);
                             if (triggerResult != null) {
                                 result.add(triggerResult);
                             }
                             break;
                         }
 
-                        boolean branchMatches = false;
                         // Jobs triggered by code push need to check whether its target branch matches the one in its Git parameter
-                        for (final BranchSpec branch : git.getBranches()) {
-                            final String branchString = branch.toString();
-                            // Might be in the form of */master
-                            final String[] items = branchString.split("/");
-                            final String branchName = items[items.length - 1];
-                            if (branchName.equalsIgnoreCase(TRIGGER_ANY_BRANCH) || branchName.equalsIgnoreCase(gitCodePushedEventArgs.targetBranch)) {
-                                branchMatches = true;
-                                totalBranchMatches++;
-                                break;
-                            }
+                        final boolean branchMatches = BranchSpecMatcher.of(git).matches(gitCodePushedEventArgs.targetBranch);
+                        if (branchMatches) {
+                            totalBranchMatches++;
                         }
 
                         if (!repositoryMatches || !branchMatches || git.getExtensions().get(IgnoreNotifyCommit.class) != null) {
                             continue;
                         }
 
-                        GitStatus.ResponseContributor triggerResult = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, true);
+                        GitStatus.ResponseContributor triggerResult = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, true, git);
                         if (triggerResult != null) {
                             result.add(triggerResult);
                             break;
@@ -0,0 +1,162 @@
+package hudson.plugins.tfs.model;
+
+import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.GitSCM;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether the branch named by an event is one that a job builds, from branch specifiers compiled once.
+ *
+ * Like the matching it replaces, only the last segment of a specifier such as {@code origin/master} is considered and
+ * names are compared without regard to case.  {@code **} matches any branch and the {@code *} and {@code ?}
+ * wildcards match any run of characters or any one character, respectively.
+ */
+public final class BranchSpecMatcher {
+
+    private static final String ANY_BRANCH = "**";
+    private static final BranchSpecMatcher NONE = new BranchSpecMatcher(false, Collections.<String>emptySet(), Collections.<Pattern>emptyList());
+
+    // the SCMs of a job are replaced when its configuration is saved, which lets go of their matchers
+    private static final Map<GitSCM, BranchSpecMatcher> MATCHERS_BY_SCM = new WeakHashMap<GitSCM, BranchSpecMatcher>();
+
+    private final boolean any;
+    private final Set<String> names;
+    private final List<Pattern> patterns;
+
+    private BranchSpecMatcher(final boolean any, final Set<String> names, final List<Pattern> patterns) {
+        this.any = any;
+        this.names = names;
+        this.patterns = patterns;
+    }
+
+    /**
+     * @param specifiers branch specifiers such as {@code origin/master}, {@code **} or {@code release-*}
+     * @return a matcher for the branches any of the specifiers describes
+     */
+    public static BranchSpecMatcher compile(final Collection<String> specifiers) {
+        boolean any = false;
+        final Set<String> names = new HashSet<String>();
+        final List<Pattern> patterns = new ArrayList<Pattern>();
+        for (final String specifier : specifiers) {
+            if (StringUtils.isBlank(specifier)) {
+                continue;
+            }
+            final String[] segments = specifier.trim().split("/");
+            final String lastSegment = segments[segments.length - 1];
+            if (ANY_BRANCH.equals(lastSegment)) {
+                any = true;
+            }
+            else if (lastSegment.indexOf('*') != -1 || lastSegment.indexOf('?') != -1) {
+                patterns.add(Pattern.compile(toRegex(lastSegment), Pattern.CASE_INSENSITIVE));
+            }
+            else {
+                names.add(lastSegment.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        if (!any && names.isEmpty() && patterns.isEmpty()) {
+            return NONE;
+        }
+        return new BranchSpecMatcher(any, names, patterns);
+    }
+
+    /**
+     * @param targetBranches space-separated branch specifiers, as entered in {@code TeamPRPushTrigger}
+     */
+    public static BranchSpecMatcher compile(final String targetBranches) {
+        if (targetBranches == null) {
+            return NONE;
+        }
+        final List<String> specifiers = new ArrayList<String>();
+        Collections.addAll(specifiers, targetBranches.split(" "));
+        return compile(specifiers);
+    }
+
+    /**
+     * @return the matcher of the branches of the SCM, compiled on first use
+     */
+    public static BranchSpecMatcher of(final GitSCM git) {
+        synchronized (MATCHERS_BY_SCM) {
+            BranchSpecMatcher result = MATCHERS_BY_SCM.get(git);
+            if (result == null) {
+                final List<String> specifiers = new ArrayList<String>();
+                for (final BranchSpec branch : git.getBranches()) {
+                    specifiers.add(branch.getName());
+                }
+                result = compile(specifiers);
+                MATCHERS_BY_SCM.put(git, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return a matcher for the branches either matcher matches
+     */
+    public BranchSpecMatcher or(final BranchSpecMatcher other) {
+        if (other == null || other == NONE || this == other) {
+            return this;
+        }
+        if (this == NONE) {
+            return other;
+        }
+        final Set<String> allNames = new HashSet<String>(names);
+        allNames.addAll(other.names);
+        final List<Pattern> allPatterns = new ArrayList<Pattern>(patterns);
+        allPatterns.addAll(other.patterns);
+        return new BranchSpecMatcher(any || other.any, allNames, allPatterns);
+    }
+
+    /**
+     * @param branch the last segment of the name of a branch, such as {@code master}
+     * @return {@code true} if one of the specifiers describes the branch
+     */
+    public boolean matches(final String branch) {
+        if (any) {
+            return true;
+        }
+        if (branch == null) {
+            return false;
+        }
+        if (names.contains(branch.toLowerCase(Locale.ENGLISH))) {
+            return true;
+        }
+        for (final Pattern pattern : patterns) {
+            if (pattern.matcher(branch).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String toRegex(final String wildcard) {
+        final StringBuilder result = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (final char c : wildcard.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    result.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                result.append(c == '*' ? ".*" : ".");
+            }
+            else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            result.append(Pattern.quote(literal.toString()));
+        }
+        return result.toString();
+    }
+}
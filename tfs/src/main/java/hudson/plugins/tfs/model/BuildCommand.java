@@ -107,6 +107,13 @@ public class BuildCommand extends AbstractCommand {
         return result;
     }
 
+    @Override
+    public boolean needsRequestPayload(final Job<?, ?> job, final TeamBuildPayload teamBuildPayload) {
+        // only the parameter values are bound from the form
+        return teamBuildPayload.BuildParameters != null
+                && job.getProperty(ParametersDefinitionProperty.class) != null;
+    }
+
     @Override
     public JSONObject perform(final Job<?, ?> job, final BuildableItem buildableItem, final StaplerRequest req,
                               final JSONObject requestPayload, final ObjectMapper mapper,
@@ -124,16 +131,15 @@ public class BuildCommand extends AbstractCommand {
         else if (teamBuildPayload.ServiceHookEvent != null) {
             final Event event = teamBuildPayload.ServiceHookEvent;
             final String eventType = event.getEventType();
-            final Object resource = event.getResource();
             if ("git.push".equals(eventType)) {
-                final GitPush gitPush = mapper.convertValue(resource, GitPush.class);
+                final GitPush gitPush = event.getResource(mapper, GitPush.class);
                 final GitCodePushedEventArgs args = GitPushEvent.decodeGitPush(gitPush, event);
                 final Action action = new CommitParameterAction(args);
                 actions.add(action);
                 TeamGlobalStatusAction.addIfApplicable(actions);
             }
             else if ("git.pullrequest.merged".equals(eventType)) {
-                final GitPullRequestEx gitPullRequest = mapper.convertValue(resource, GitPullRequestEx.class);
+                final GitPullRequestEx gitPullRequest = event.getResource(mapper, GitPullRequestEx.class);
                 final PullRequestMergeCommitCreatedEventArgs args = GitPullRequestMergedEvent.decodeGitPullRequest(gitPullRequest, event);
                 // record the values for the special optional parameters
                 commitId = args.commit;
@@ -0,0 +1,54 @@
+package hudson.plugins.tfs.model;
+
+import java.io.Serializable;
+
+/**
+ * A file that a get added, updated or deleted in a workspace.
+ */
+public class ChangedFile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * What the get did to the file.
+     */
+    public enum Change {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Change change;
+    private final int changeset;
+    private final String path;
+
+    public ChangedFile(final Change change, final int changeset, final String path) {
+        this.change = change;
+        this.changeset = changeset;
+        this.path = path;
+    }
+
+    public Change getChange() {
+        return change;
+    }
+
+    /**
+     * @return the changeset of the version the get retrieved, or of the version it deleted
+     */
+    public int getChangeset() {
+        return changeset;
+    }
+
+    /**
+     * @return the path of the file relative to the workspace's local folder, with forward slashes,
+     * or its absolute path if it is outside of it
+     */
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return change + " " + path + " (" + changeset + ")";
+    }
+}
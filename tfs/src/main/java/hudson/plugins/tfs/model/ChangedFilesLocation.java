@@ -0,0 +1,34 @@
+package hudson.plugins.tfs.model;
+
+import hudson.model.InvisibleAction;
+
+import java.io.Serializable;
+
+/**
+ * An action recording where a checkout of the build left the copy of its {@link ChangedFilesManifest},
+ * such that each checkout of a build can point its steps at its own list.
+ */
+public class ChangedFilesLocation extends InvisibleAction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+    private final String remotePath;
+
+    /**
+     * @param key identifies the checkout, among the others of the same build
+     * @param remotePath the path of the copy, on the computer the checkout ran on
+     */
+    public ChangedFilesLocation(final String key, final String remotePath) {
+        this.key = key;
+        this.remotePath = remotePath;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+}
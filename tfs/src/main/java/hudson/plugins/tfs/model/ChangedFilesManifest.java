@@ -0,0 +1,84 @@
+package hudson.plugins.tfs.model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the list of the files a build's get added, updated and deleted, one file per line with
+ * tab-separated fields: the change, the changeset and the path relative to the workspace's local folder,
+ * such that build scripts can restrict incremental compilation and test selection to what changed.
+ */
+public final class ChangedFilesManifest {
+
+    /**
+     * The name the manifests are based on; each checkout of a build adds its own key before the extension.
+     */
+    public static final String FILE_NAME = "tfs-changed-files.txt";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 3;
+
+    private ChangedFilesManifest() {
+    }
+
+    public static void write(final File file, final List<ChangedFile> changedFiles) throws IOException {
+        final OutputStream output = new FileOutputStream(file);
+        try {
+            write(output, changedFiles);
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    public static void write(final OutputStream output, final List<ChangedFile> changedFiles) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+        for (final ChangedFile changedFile : changedFiles) {
+            writer.write(changedFile.getChange().name());
+            writer.write(SEPARATOR);
+            writer.write(Integer.toString(changedFile.getChangeset()));
+            writer.write(SEPARATOR);
+            writer.write(changedFile.getPath());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public static List<ChangedFile> read(final File file) throws IOException {
+        final List<ChangedFile> result = new ArrayList<ChangedFile>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(SEPARATOR, FIELD_COUNT);
+                if (fields.length != FIELD_COUNT) {
+                    throw new IOException("Malformed line in " + file + ": " + line);
+                }
+                final ChangedFile.Change change;
+                try {
+                    change = ChangedFile.Change.valueOf(fields[0]);
+                }
+                catch (final IllegalArgumentException e) {
+                    throw new IOException("Malformed line in " + file + ": " + line, e);
+                }
+                result.add(new ChangedFile(change, Integer.parseInt(fields[1]), fields[2]));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return result;
+    }
+}
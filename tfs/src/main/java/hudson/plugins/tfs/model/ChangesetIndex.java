@@ -0,0 +1,612 @@
+package hudson.plugins.tfs.model;
+
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Change;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A local, append-only index of the changesets that affected a path in a team project collection,
+ * stored under {@code JENKINS_HOME} so that history ranges already retrieved by a build or a poll
+ * don't need to be requested from TFS again.  It is disabled unless the
+ * {@code hudson.plugins.tfs.model.ChangesetIndex.maxBytes} system property sets its size cap.
+ *
+ * The index covers a single, contiguous range of changeset numbers: every changeset in that range that
+ * affected the path is in the index.  Requests outside that range cause only the missing changesets
+ * to be retrieved from TFS, no more than the request asked for, after which the range is extended.
+ * When the file grows past its size cap, it is compacted by dropping the oldest changesets.
+ *
+ * Changesets are stored with their items only if the request that retrieved them asked for file details;
+ * they are retrieved again, with their items, the first time a request needs those.  Since a changeset's
+ * comment can be edited after the fact, changesets retrieved longer ago than
+ * {@code hudson.plugins.tfs.model.ChangesetIndex.maxAgeMinutes} (a day by default) are also retrieved again
+ * when they are next requested.  A newer record of a changeset supersedes the older ones.
+ *
+ * File layout (big-endian): a header with a magic number, the format version and the covered range,
+ * followed by length-prefixed records of changeset number, time of retrieval, date, flags, owner, comment
+ * and items.
+ */
+public class ChangesetIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangesetIndex.class.getName());
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final long DEFAULT_MAX_BYTES = Long.getLong(ChangesetIndex.class.getName() + ".maxBytes", 0L);
+    static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong(ChangesetIndex.class.getName() + ".maxAgeMinutes", 24 * 60));
+    static final String FOLDER_NAME = "tfs-changeset-index";
+
+    private static final int MAGIC = 0x54465349; // "TFSI"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 16;
+    private static final int COVERED_FROM_OFFSET = 8;
+    private static final int INT_LENGTH = 4;
+    private static final int COMPACTION_NUMERATOR = 3;
+    private static final int COMPACTION_DENOMINATOR = 4;
+    private static final byte FLAG_HAS_ITEMS = 1;
+
+    private static final ConcurrentMap<File, ChangesetIndex> INSTANCES = new ConcurrentHashMap<File, ChangesetIndex>();
+
+    private final File file;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+
+    private NavigableMap<Integer, Long> offsets;
+    private int coveredFrom;
+    private int coveredTo;
+
+    /**
+     * Retrieves changesets from TFS for the path being indexed.
+     */
+    interface HistorySource {
+        /**
+         * @param fromChangeset the oldest changeset number to include
+         * @param toChangeset the newest changeset number to include, or {@code null} for the latest
+         * @param maxCount the maximum number of changesets to return
+         * @param includeFileDetails whether to include the changes of each changeset
+         * @return the newest changesets, up to {@code maxCount} of them, that affected the path between
+         * the two changeset numbers (inclusive)
+         */
+        Changeset[] queryHistory(int fromChangeset, Integer toChangeset, int maxCount, boolean includeFileDetails);
+    }
+
+    ChangesetIndex(final File file, final long maxBytes) {
+        this(file, maxBytes, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    ChangesetIndex(final File file, final long maxBytes, final long maxAgeMillis) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Returns the index for the path in the collection, if indexing is possible.
+     *
+     * @param collectionUrl the URL to the team project collection
+     * @param path the path in TFVC
+     * @return the instance shared by all projects with the same path and collection
+     * or {@code null} if not running on the controller or indexing was disabled
+     */
+    public static ChangesetIndex forPath(final String collectionUrl, final String path) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null || DEFAULT_MAX_BYTES <= 0) {
+            return null;
+        }
+        final File folder = new File(jenkins.getRootDir(), FOLDER_NAME);
+        final String key = collectionUrl.toLowerCase(Locale.ENGLISH) + "\n" + path.toLowerCase(Locale.ENGLISH);
+        final File file = new File(folder, DigestUtils.shaHex(key) + ".idx");
+        ChangesetIndex result = INSTANCES.get(file);
+        if (result == null) {
+            final ChangesetIndex created = new ChangesetIndex(file, DEFAULT_MAX_BYTES);
+            result = INSTANCES.putIfAbsent(file, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the changesets between the two changeset numbers (inclusive), newest first,
+     * retrieving from TFS only those outside the range already in the index.
+     *
+     * @param fromChangeset the oldest changeset number to include
+     * @param toChangeset the newest changeset number to include, or {@code null} for the latest
+     * @param maxCount the maximum number of changesets to return
+     * @param includeFileDetails whether the items of each changeset are needed
+     * @param source where to get the changesets missing from the index
+     * @return the changesets, newest first
+     * @throws IOException if the index could not be read or written
+     */
+    public synchronized List<Entry> query(final int fromChangeset, final Integer toChangeset, final int maxCount, final boolean includeFileDetails, final HistorySource source) throws IOException {
+        if ((toChangeset != null && fromChangeset > toChangeset) || maxCount <= 0) {
+            return Collections.emptyList();
+        }
+        final long now = System.currentTimeMillis();
+        try (RandomAccessFile raf = open()) {
+            final FileChannel channel = raf.getChannel();
+            if (coveredTo != 0 && toChangeset != null && toChangeset < coveredFrom - 1) {
+                // older than, and not adjacent to, what the index covers: not worth indexing
+                return toEntries(source.queryHistory(fromChangeset, toChangeset, maxCount, includeFileDetails), includeFileDetails, now);
+            }
+            ensureCovered(channel, fromChangeset, toChangeset, maxCount, includeFileDetails, source, now);
+            final int upper = toChangeset != null ? toChangeset : Integer.MAX_VALUE;
+            final List<Entry> result = new ArrayList<Entry>();
+            final NavigableMap<Integer, Long> range = offsets.subMap(fromChangeset, true, upper, true).descendingMap();
+            for (final Long offset : range.values()) {
+                result.add(readEntry(channel, offset));
+                if (result.size() >= maxCount) {
+                    break;
+                }
+            }
+            refresh(channel, result, includeFileDetails, source, now);
+            if (channel.size() > maxBytes) {
+                compact(channel);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Forgets everything in the index.
+     *
+     * @throws IOException if the file could not be deleted
+     */
+    public synchronized void clear() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        offsets = null;
+    }
+
+    synchronized int getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    synchronized int getCoveredTo() {
+        return coveredTo;
+    }
+
+    RandomAccessFile open() throws IOException {
+        if (offsets == null) {
+            final File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        if (offsets == null) {
+            try {
+                load(raf.getChannel());
+            } catch (final IOException e) {
+                raf.close();
+                throw e;
+            }
+        }
+        return raf;
+    }
+
+    void load(final FileChannel channel) throws IOException {
+        offsets = new TreeMap<Integer, Long>();
+        coveredFrom = 0;
+        coveredTo = 0;
+        final long size = channel.size();
+        if (size >= HEADER_LENGTH) {
+            final ByteBuffer header = readFully(channel, 0, HEADER_LENGTH);
+            if (header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION) {
+                coveredFrom = header.getInt();
+                coveredTo = header.getInt();
+                long position = HEADER_LENGTH;
+                while (position + INT_LENGTH + INT_LENGTH <= size) {
+                    final ByteBuffer prefix = readFully(channel, position, INT_LENGTH + INT_LENGTH);
+                    final int length = prefix.getInt();
+                    if (length < INT_LENGTH || position + INT_LENGTH + length > size) {
+                        break;
+                    }
+                    // later records supersede earlier ones for the same changeset
+                    offsets.put(prefix.getInt(), position);
+                    position += INT_LENGTH + length;
+                }
+                if (position != size) {
+                    LOGGER.log(Level.WARNING, "Truncating incomplete record(s) at the end of " + file);
+                    channel.truncate(position);
+                }
+                // records left over from a range the index stopped covering
+                if (coveredTo == 0) {
+                    offsets.clear();
+                } else {
+                    offsets.headMap(coveredFrom, false).clear();
+                    offsets.tailMap(coveredTo, false).clear();
+                }
+                return;
+            }
+            LOGGER.log(Level.WARNING, "Discarding unrecognized changeset index " + file);
+        }
+        channel.truncate(0);
+        writeHeader(channel);
+    }
+
+    /**
+     * Retrieves the changesets of the requested range that are missing from the index, such that the newest
+     * {@code maxCount} changesets of that range can then be read from the index.
+     */
+    void ensureCovered(final FileChannel channel, final int fromChangeset, final Integer toChangeset, final int maxCount, final boolean includeFileDetails, final HistorySource source, final long now) throws IOException {
+        boolean changed = false;
+        if (coveredTo == 0 || fromChangeset > coveredTo + 1) {
+            // nothing in the index is of use: start over with the requested range
+            final Changeset[] fetched = source.queryHistory(fromChangeset, toChangeset, maxCount, includeFileDetails);
+            offsets.clear();
+            append(channel, fetched, includeFileDetails, now);
+            final int newestFetched = newestId(fetched);
+            coveredTo = toChangeset != null ? toChangeset : newestFetched;
+            coveredFrom = coveredTo == 0 ? 0 : isTruncated(fetched, maxCount) ? oldestId(fetched) : fromChangeset;
+            changed = true;
+        } else {
+            final int upper = toChangeset != null ? toChangeset : Integer.MAX_VALUE;
+            if (upper > coveredTo) {
+                // without an upper bound, the newest changeset retrieved tells how far the index now goes,
+                // which saves asking TFS for the number of the latest changeset
+                final Changeset[] fetched = source.queryHistory(coveredTo + 1, toChangeset, maxCount, includeFileDetails);
+                if (isTruncated(fetched, maxCount)) {
+                    // there may be a gap between what was retrieved and what the index covered
+                    offsets.clear();
+                    coveredFrom = oldestId(fetched);
+                }
+                append(channel, fetched, includeFileDetails, now);
+                coveredTo = toChangeset != null ? toChangeset : Math.max(coveredTo, newestId(fetched));
+                changed = true;
+            }
+            if (fromChangeset < coveredFrom) {
+                final int found = offsets.subMap(fromChangeset, true, upper, true).size();
+                if (found < maxCount) {
+                    final int remaining = maxCount == Integer.MAX_VALUE ? maxCount : maxCount - found;
+                    final Changeset[] fetched = source.queryHistory(fromChangeset, coveredFrom - 1, remaining, includeFileDetails);
+                    append(channel, fetched, includeFileDetails, now);
+                    coveredFrom = isTruncated(fetched, remaining) ? oldestId(fetched) : fromChangeset;
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            // the records must be on disk before the header claims to cover them
+            channel.force(false);
+            writeHeader(channel);
+        }
+    }
+
+    /**
+     * Retrieves again the changesets in the result that lack the items the request needs or whose comment
+     * may have been edited since they were retrieved, replacing them in the index and in the result.
+     */
+    void refresh(final FileChannel channel, final List<Entry> result, final boolean includeFileDetails, final HistorySource source, final long now) throws IOException {
+        int oldest = Integer.MAX_VALUE;
+        int newest = Integer.MIN_VALUE;
+        for (final Entry entry : result) {
+            final boolean missingItems = includeFileDetails && !entry.hasItems();
+            if (missingItems || now - entry.getFetchedAt() > maxAgeMillis) {
+                oldest = Math.min(oldest, entry.getChangesetId());
+                newest = Math.max(newest, entry.getChangesetId());
+            }
+        }
+        if (oldest > newest) {
+            return;
+        }
+        // the result holds every indexed changeset between the oldest and the newest to refresh
+        final Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+        for (int i = 0; i < result.size(); i++) {
+            final int changesetId = result.get(i).getChangesetId();
+            if (changesetId >= oldest && changesetId <= newest) {
+                positions.put(changesetId, i);
+            }
+        }
+        final Changeset[] fetched = source.queryHistory(oldest, newest, positions.size(), includeFileDetails);
+        if (fetched == null) {
+            return;
+        }
+        for (final Changeset serverChangeset : fetched) {
+            final Integer position = positions.get(serverChangeset.getChangesetID());
+            if (position == null) {
+                continue;
+            }
+            final Entry previous = result.get(position);
+            Entry refreshed = Entry.fromChangeset(serverChangeset, includeFileDetails, now);
+            if (!includeFileDetails && previous.hasItems()) {
+                // a request without file details doesn't retrieve them, but needn't lose them either
+                refreshed = refreshed.withItems(previous.getItems());
+            }
+            appendEntry(channel, channel.size(), refreshed);
+            result.set(position, refreshed);
+        }
+    }
+
+    void append(final FileChannel channel, final Changeset[] serverChangesets, final boolean includeFileDetails, final long now) throws IOException {
+        if (serverChangesets == null) {
+            return;
+        }
+        long position = channel.size();
+        for (final Changeset serverChangeset : serverChangesets) {
+            if (offsets.containsKey(serverChangeset.getChangesetID())) {
+                continue;
+            }
+            position += appendEntry(channel, position, Entry.fromChangeset(serverChangeset, includeFileDetails, now));
+        }
+    }
+
+    long appendEntry(final FileChannel channel, final long position, final Entry entry) throws IOException {
+        final ByteBuffer record = toRecord(entry);
+        final int recordLength = record.remaining();
+        writeFully(channel, position, record);
+        offsets.put(entry.getChangesetId(), position);
+        return recordLength;
+    }
+
+    static boolean isTruncated(final Changeset[] serverChangesets, final int maxCount) {
+        return serverChangesets != null && serverChangesets.length > 0 && serverChangesets.length >= maxCount;
+    }
+
+    static int oldestId(final Changeset[] serverChangesets) {
+        int result = Integer.MAX_VALUE;
+        for (final Changeset serverChangeset : serverChangesets) {
+            result = Math.min(result, serverChangeset.getChangesetID());
+        }
+        return result;
+    }
+
+    static int newestId(final Changeset[] serverChangesets) {
+        int result = 0;
+        if (serverChangesets != null) {
+            for (final Changeset serverChangeset : serverChangesets) {
+                result = Math.max(result, serverChangeset.getChangesetID());
+            }
+        }
+        return result;
+    }
+
+    static List<Entry> toEntries(final Changeset[] serverChangesets, final boolean includeFileDetails, final long now) {
+        if (serverChangesets == null) {
+            return Collections.emptyList();
+        }
+        final List<Entry> result = new ArrayList<Entry>(serverChangesets.length);
+        for (final Changeset serverChangeset : serverChangesets) {
+            result.add(Entry.fromChangeset(serverChangeset, includeFileDetails, now));
+        }
+        return result;
+    }
+
+    /**
+     * Rewrites the index with only the newest changesets, such that the result is well below the size cap.
+     */
+    void compact(final FileChannel channel) throws IOException {
+        final long budget = maxBytes / COMPACTION_DENOMINATOR * COMPACTION_NUMERATOR - HEADER_LENGTH;
+        final List<ByteBuffer> kept = new ArrayList<ByteBuffer>();
+        long keptBytes = 0;
+        int oldestKept = 0;
+        for (final Map.Entry<Integer, Long> pair : offsets.descendingMap().entrySet()) {
+            final ByteBuffer prefix = readFully(channel, pair.getValue(), INT_LENGTH);
+            final int recordLength = INT_LENGTH + prefix.getInt();
+            if (keptBytes + recordLength > budget) {
+                break;
+            }
+            kept.add(readFully(channel, pair.getValue(), recordLength));
+            keptBytes += recordLength;
+            oldestKept = pair.getKey();
+        }
+        final File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile tempRaf = new RandomAccessFile(temp, "rw")) {
+            final FileChannel tempChannel = tempRaf.getChannel();
+            tempChannel.truncate(0);
+            final int newCoveredFrom = kept.isEmpty() ? 0 : oldestKept;
+            final int newCoveredTo = kept.isEmpty() ? 0 : coveredTo;
+            writeFully(tempChannel, 0, createHeader(newCoveredFrom, newCoveredTo));
+            long position = HEADER_LENGTH;
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                final ByteBuffer record = kept.get(i);
+                final int recordLength = record.remaining();
+                writeFully(tempChannel, position, record);
+                position += recordLength;
+            }
+            tempChannel.force(true);
+        }
+        LOGGER.log(Level.FINE, String.format("Compacted %s from %d to %d changesets", file, offsets.size(), kept.size()));
+        // copy rather than rename, since the original is still open
+        channel.truncate(0);
+        try (RandomAccessFile tempRaf = new RandomAccessFile(temp, "r")) {
+            final FileChannel tempChannel = tempRaf.getChannel();
+            tempChannel.transferTo(0, tempChannel.size(), channel);
+        }
+        channel.force(true);
+        Files.deleteIfExists(temp.toPath());
+        channel.position(0);
+        load(channel);
+    }
+
+    void writeHeader(final FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_LENGTH) {
+            writeFully(channel, 0, createHeader(coveredFrom, coveredTo));
+        } else {
+            final ByteBuffer range = ByteBuffer.allocate(INT_LENGTH + INT_LENGTH);
+            range.putInt(coveredFrom).putInt(coveredTo).flip();
+            writeFully(channel, COVERED_FROM_OFFSET, range);
+        }
+    }
+
+    static ByteBuffer createHeader(final int coveredFrom, final int coveredTo) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(coveredFrom).putInt(coveredTo).flip();
+        return header;
+    }
+
+    static ByteBuffer toRecord(final Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(0); // placeholder for the length
+        output.writeInt(entry.getChangesetId());
+        output.writeLong(entry.getFetchedAt());
+        output.writeLong(entry.date.getTime());
+        output.writeByte(entry.hasItems() ? FLAG_HAS_ITEMS : 0);
+        writeString(output, entry.getOwner());
+        writeString(output, entry.getComment());
+        final List<ChangeSet.Item> items = entry.getItems();
+        output.writeInt(items.size());
+        for (final ChangeSet.Item item : items) {
+            writeString(output, item.getPath());
+            writeString(output, item.getAction());
+        }
+        output.flush();
+        final ByteBuffer result = ByteBuffer.wrap(bytes.toByteArray());
+        result.putInt(0, result.remaining() - INT_LENGTH);
+        return result;
+    }
+
+    static Entry readEntry(final FileChannel channel, final long offset) throws IOException {
+        final ByteBuffer prefix = readFully(channel, offset, INT_LENGTH);
+        final ByteBuffer record = readFully(channel, offset + INT_LENGTH, prefix.getInt());
+        final int changesetId = record.getInt();
+        final long fetchedAt = record.getLong();
+        final Date date = new Date(record.getLong());
+        final boolean hasItems = (record.get() & FLAG_HAS_ITEMS) != 0;
+        final String owner = readString(record);
+        final String comment = readString(record);
+        final int itemCount = record.getInt();
+        final List<ChangeSet.Item> items = new ArrayList<ChangeSet.Item>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            final String path = readString(record);
+            final String action = readString(record);
+            items.add(new ChangeSet.Item(path, action));
+        }
+        return new Entry(changesetId, date, owner, comment, hasItems ? items : null, fetchedAt);
+    }
+
+    static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static ByteBuffer readFully(final FileChannel channel, final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of changeset index");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static void writeFully(final FileChannel channel, final long position, final ByteBuffer buffer) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+    }
+
+    /**
+     * A changeset, as stored in the index.
+     */
+    public static final class Entry {
+        private final int changesetId;
+        private final Date date;
+        private final String owner;
+        private final String comment;
+        private final List<ChangeSet.Item> items;
+        private final long fetchedAt;
+
+        /**
+         * @param items the items of the changeset, or {@code null} if they weren't retrieved
+         */
+        Entry(final int changesetId, final Date date, final String owner, final String comment, final List<ChangeSet.Item> items, final long fetchedAt) {
+            this.changesetId = changesetId;
+            this.date = date;
+            this.owner = owner;
+            this.comment = comment;
+            this.items = items;
+            this.fetchedAt = fetchedAt;
+        }
+
+        static Entry fromChangeset(final Changeset serverChangeset, final boolean includeFileDetails, final long fetchedAt) {
+            List<ChangeSet.Item> items = null;
+            final Change[] changes = serverChangeset.getChanges();
+            if (includeFileDetails && changes != null) {
+                items = new ArrayList<ChangeSet.Item>(changes.length);
+                for (final Change change : changes) {
+                    items.add(Project.convertServerChange(change));
+                }
+            }
+            final Date date = serverChangeset.getDate().getTime();
+            return new Entry(serverChangeset.getChangesetID(), date, serverChangeset.getOwner(), serverChangeset.getComment(), items, fetchedAt);
+        }
+
+        Entry withItems(final List<ChangeSet.Item> items) {
+            return new Entry(changesetId, date, owner, comment, items, fetchedAt);
+        }
+
+        public int getChangesetId() {
+            return changesetId;
+        }
+
+        public Date getDate() {
+            return new Date(date.getTime());
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getComment() {
+            return comment;
+        }
+
+        /**
+         * @return the items of the changeset, or an empty list if they weren't retrieved
+         */
+        public List<ChangeSet.Item> getItems() {
+            return items != null ? items : Collections.<ChangeSet.Item>emptyList();
+        }
+
+        boolean hasItems() {
+            return items != null;
+        }
+
+        long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+}
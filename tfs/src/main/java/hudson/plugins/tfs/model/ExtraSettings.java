@@ -17,6 +17,7 @@ public class ExtraSettings implements Serializable {
 
     private boolean configFolderPerNode;
     private String nodeComputerName;
+    private int downloadCacheSizeMegabytes;
 
     public static final ExtraSettings DEFAULT = new ExtraSettings();
 
@@ -31,6 +32,7 @@ public class ExtraSettings implements Serializable {
     public ExtraSettings(final TeamPluginGlobalConfig teamPluginGlobalConfig) {
         if (teamPluginGlobalConfig != null) {
             this.configFolderPerNode = teamPluginGlobalConfig.isConfigFolderPerNode();
+            this.downloadCacheSizeMegabytes = teamPluginGlobalConfig.getDownloadCacheSizeMegabytes();
             final Jenkins instance = Jenkins.getInstance();
             this.nodeComputerName = "";
             if (instance != null) {
@@ -60,4 +62,15 @@ public class ExtraSettings implements Serializable {
     public void setNodeComputerName(final String nodeComputerName) {
         this.nodeComputerName = nodeComputerName;
     }
+
+    /**
+     * @return the size of the download cache on each computer, in megabytes, where 0 turns the cache off
+     */
+    public int getDownloadCacheSizeMegabytes() {
+        return downloadCacheSizeMegabytes;
+    }
+
+    public void setDownloadCacheSizeMegabytes(final int downloadCacheSizeMegabytes) {
+        this.downloadCacheSizeMegabytes = downloadCacheSizeMegabytes;
+    }
 }
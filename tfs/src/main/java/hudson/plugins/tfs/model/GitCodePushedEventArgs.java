@@ -17,6 +17,8 @@ public class GitCodePushedEventArgs implements Serializable {
     public String commit;
     public String pushedBy;
     public String targetBranch;
+    /** The full name of the pushed ref, such as refs/heads/feature/login; null if unknown. */
+    public String targetRef;
 
     public URIish getRepoURIish() {
         final String repoUriString = repoUri.toString();
@@ -83,10 +83,14 @@ public class GitPullRequestMergedEvent extends GitPushEvent {
         return items[items.length - 1];
     }
 
+    @Override
+    public Class<?> getResourceType() {
+        return GitPullRequestEx.class;
+    }
+
     @Override
     public JSONObject perform(final ObjectMapper mapper, final Event serviceHookEvent, final String message, final String detailedMessage) {
-        final Object resource = serviceHookEvent.getResource();
-        final GitPullRequestEx gitPullRequest = mapper.convertValue(resource, GitPullRequestEx.class);
+        final GitPullRequestEx gitPullRequest = serviceHookEvent.getResource(mapper, GitPullRequestEx.class);
 
         final PullRequestMergeCommitCreatedEventArgs args = decodeGitPullRequest(gitPullRequest, serviceHookEvent);
         final PullRequestParameterAction parameterAction = new PullRequestParameterAction(args);
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.teamfoundation.core.webapi.model.TeamProjectReference;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitCommitRef;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitPush;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRefUpdate;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
 import com.microsoft.visualstudio.services.webapi.model.IdentityRef;
 import hudson.model.Action;
@@ -19,6 +20,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -42,10 +44,14 @@ public class GitPushEvent extends AbstractHookEvent {
         }
     }
 
+    @Override
+    public Class<?> getResourceType() {
+        return GitPush.class;
+    }
+
     @Override
     public JSONObject perform(final ObjectMapper mapper, final Event serviceHookEvent, final String message, final String detailedMessage) {
-        final Object resource = serviceHookEvent.getResource();
-        final GitPush gitPush = mapper.convertValue(resource, GitPush.class);
+        final GitPush gitPush = serviceHookEvent.getResource(mapper, GitPush.class);
 
         final GitCodePushedEventArgs args = decodeGitPush(gitPush, serviceHookEvent);
         final CommitParameterAction parameterAction = new CommitParameterAction(args);
@@ -122,6 +128,33 @@ public class GitPushEvent extends AbstractHookEvent {
         return items[items.length - 1];
     }
 
+    /**
+     * Identifies the pushes that supersede one another, such that only the newest of a burst needs processing.
+     *
+     * @param mapper an {@link ObjectMapper} instance to use to convert the {@link Event#resource}
+     * @param serviceHookEvent the push event
+     * @return the collection, repository and ref of the push, or {@code null} if the push should not be coalesced
+     * with others, such as when it updated several refs or didn't contain any commits
+     */
+    public static String determineCoalescingKey(final ObjectMapper mapper, final Event serviceHookEvent) {
+        try {
+            final GitPush gitPush = serviceHookEvent.getResource(mapper, GitPush.class);
+            final List<GitRefUpdate> refUpdates = gitPush.getRefUpdates();
+            if (refUpdates == null || refUpdates.size() != 1 || determineCommit(gitPush) == null) {
+                return null;
+            }
+            final GitRepository repository = gitPush.getRepository();
+            final URI collectionUri = determineCollectionUri(repository, serviceHookEvent);
+            final String repositoryKey = repository.getId() != null ? repository.getId().toString() : repository.getRemoteUrl();
+            return collectionUri.toString().toLowerCase(Locale.ENGLISH)
+                    + "|" + repositoryKey.toLowerCase(Locale.ENGLISH)
+                    + "|" + refUpdates.get(0).getName();
+        }
+        catch (final RuntimeException e) {
+            return null;
+        }
+    }
+
     static GitCodePushedEventArgs decodeGitPush(final GitPush gitPush, final Event serviceHookEvent) {
         final GitRepository repository = gitPush.getRepository();
         final URI collectionUri = determineCollectionUri(repository, serviceHookEvent);
@@ -141,6 +174,7 @@ public class GitPushEvent extends AbstractHookEvent {
         args.commit = commit;
         args.pushedBy = pushedBy;
         args.targetBranch = targetBranch;
+        args.targetRef = gitPush.getRefUpdates().get(0).getName();
         return args;
     }
 }
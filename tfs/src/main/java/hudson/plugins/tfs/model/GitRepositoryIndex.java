@@ -0,0 +1,266 @@
+package hudson.plugins.tfs.model;
+
+import hudson.model.Item;
+import hudson.plugins.git.GitSCM;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * An index from Git repositories to the jobs whose SCMs fetch from them, such that an event about a
+ * repository only needs to consider the jobs that might build it instead of every item in Jenkins.
+ *
+ * Repositories are keyed by host and repository name (the last segment of the path), which
+ * {@link hudson.plugins.tfs.util.UriHelper#areSameGitRepo(URIish, URIish)} requires to be equal;
+ * callers still compare the full URLs of the candidates.  The branches each job builds from a repository are
+ * kept as a {@link BranchSpecMatcher}, such that a push only considers the jobs that build the pushed branch.  Jobs that can be triggered without declaring
+ * an SCM up front, such as Pipeline jobs whose SCMs are only known from their last builds, are candidates
+ * for every repository.  The index is built on
+ * first use and then kept up to date by {@link hudson.plugins.tfs.listeners.GitRepositoryIndexListener}.
+ */
+public class GitRepositoryIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(GitRepositoryIndex.class.getName());
+    private static final GitRepositoryIndex INSTANCE = new GitRepositoryIndex();
+
+    private final Map<String, Set<String>> jobsByRepository = new HashMap<String, Set<String>>();
+    private final Map<String, Map<String, BranchSpecMatcher>> repositoriesByJob = new HashMap<String, Map<String, BranchSpecMatcher>>();
+    private final Set<String> jobsWithDynamicScms = new TreeSet<String>();
+    private boolean built;
+
+    GitRepositoryIndex() {
+    }
+
+    /**
+     * @return the index of the jobs on this controller
+     */
+    public static GitRepositoryIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the jobs that might fetch from the provided repository.
+     * The caller must be able to see all items, such as when impersonating {@link ACL#SYSTEM}.
+     *
+     * @param repository the URL of the repository
+     * @return the items, in the order of their full names
+     */
+    public List<Item> getCandidates(final URIish repository) {
+        return getCandidates(repository, null);
+    }
+
+    /**
+     * Returns the jobs that might build the provided branch of the provided repository.
+     * The caller must be able to see all items, such as when impersonating {@link ACL#SYSTEM}.
+     *
+     * @param repository the URL of the repository
+     * @param branch the last segment of the name of the branch, or {@code null} to consider any branch
+     * @return the items, in the order of their full names
+     */
+    public List<Item> getCandidates(final URIish repository, final String branch) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return Collections.emptyList();
+        }
+        ensureBuilt(jenkins);
+        final List<Item> result = new ArrayList<Item>();
+        for (final String fullName : getCandidateNames(repository, branch)) {
+            final Item item = jenkins.getItemByFullName(fullName);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    synchronized Set<String> getCandidateNames(final URIish repository, final String branch) {
+        final Set<String> result = new TreeSet<String>(jobsWithDynamicScms);
+        final String key = toKey(repository);
+        final Set<String> jobs = jobsByRepository.get(key);
+        if (jobs != null) {
+            for (final String fullName : jobs) {
+                if (branch == null || repositoriesByJob.get(fullName).get(key).matches(branch)) {
+                    result.add(fullName);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if at least one job fetches from a Git repository
+     */
+    public synchronized boolean hasGitJobs() {
+        return !jobsByRepository.isEmpty();
+    }
+
+    /**
+     * Records the repositories the item fetches from now, replacing what was recorded before.
+     */
+    public void update(final Item item) {
+        put(item.getFullName(), item);
+    }
+
+    /**
+     * Forgets the repositories of the item that had the provided full name.
+     */
+    public synchronized void remove(final String fullName) {
+        jobsWithDynamicScms.remove(fullName);
+        final Map<String, BranchSpecMatcher> repositories = repositoriesByJob.remove(fullName);
+        if (repositories == null) {
+            return;
+        }
+        for (final String key : repositories.keySet()) {
+            final Set<String> jobs = jobsByRepository.get(key);
+            if (jobs != null) {
+                jobs.remove(fullName);
+                if (jobs.isEmpty()) {
+                    jobsByRepository.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the repositories of the item to its new full name.
+     */
+    public void rename(final String oldFullName, final Item item) {
+        remove(oldFullName);
+        update(item);
+    }
+
+    /**
+     * Discards the index, such that it is built again on next use, as after Jenkins reloads its configuration.
+     */
+    public synchronized void invalidate() {
+        jobsByRepository.clear();
+        repositoriesByJob.clear();
+        jobsWithDynamicScms.clear();
+        built = false;
+    }
+
+    private synchronized void ensureBuilt(final Jenkins jenkins) {
+        if (built) {
+            return;
+        }
+        built = true;
+        final SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+        try {
+            int count = 0;
+            for (final Item item : jenkins.getAllItems()) {
+                put(item.getFullName(), item);
+                count++;
+            }
+            LOGGER.fine("Indexed the Git repositories of " + count + " item(s).");
+        }
+        finally {
+            SecurityContextHolder.setContext(old);
+        }
+    }
+
+    private void put(final String fullName, final Item item) {
+        final SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(item);
+        final Collection<? extends SCM> scms = scmTriggerItem == null ? null : scmTriggerItem.getSCMs();
+        if (scms == null) {
+            remove(fullName);
+            return;
+        }
+        put(fullName, scms.isEmpty() || item instanceof WorkflowJob, computeRepositories(scms));
+    }
+
+    synchronized void put(final String fullName, final boolean dynamicScms, final Map<String, BranchSpecMatcher> repositories) {
+        remove(fullName);
+        if (dynamicScms) {
+            jobsWithDynamicScms.add(fullName);
+        }
+        if (repositories.isEmpty()) {
+            return;
+        }
+        repositoriesByJob.put(fullName, repositories);
+        for (final String key : repositories.keySet()) {
+            Set<String> jobs = jobsByRepository.get(key);
+            if (jobs == null) {
+                jobs = new TreeSet<String>();
+                jobsByRepository.put(key, jobs);
+            }
+            jobs.add(fullName);
+        }
+    }
+
+    /**
+     * @return the keys of the repositories the SCMs fetch from, with the branches they build from each
+     */
+    static Map<String, BranchSpecMatcher> computeRepositories(final Collection<? extends SCM> scms) {
+        final Map<String, BranchSpecMatcher> result = new TreeMap<String, BranchSpecMatcher>();
+        for (final SCM scm : scms) {
+            if (!(scm instanceof GitSCM)) {
+                continue;
+            }
+            final GitSCM git = (GitSCM) scm;
+            final BranchSpecMatcher branches = BranchSpecMatcher.of(git);
+            for (final RemoteConfig repository : git.getRepositories()) {
+                for (final URIish remoteURL : repository.getURIs()) {
+                    final String key = toKey(remoteURL);
+                    final BranchSpecMatcher existing = result.get(key);
+                    result.put(key, existing == null ? branches : existing.or(branches));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the lower-case host and last path segment of the repository URL
+     */
+    static String toKey(final URIish repository) {
+        if (repository == null) {
+            return "";
+        }
+        String host = repository.getHost();
+        String path = repository.getPath();
+        try {
+            final URI uri = URI.create(repository.toString());
+            if (!uri.isOpaque()) {
+                host = uri.getHost();
+                path = uri.getPath();
+            }
+        }
+        catch (final IllegalArgumentException ignored) {
+            // scp-like SSH addresses aren't always URIs; use the parts jgit found
+        }
+        final StringBuilder result = new StringBuilder();
+        if (host != null) {
+            result.append(host.toLowerCase(Locale.ENGLISH));
+        }
+        result.append('/');
+        if (path != null) {
+            final String[] segments = path.split("/");
+            for (int i = segments.length - 1; i >= 0; i--) {
+                if (!segments[i].isEmpty()) {
+                    result.append(segments[i].toLowerCase(Locale.ENGLISH));
+                    break;
+                }
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package hudson.plugins.tfs.model;
+
+import com.microsoft.tfs.core.clients.webservices.TeamFoundationIdentity;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded, time-limited cache of TFS identities, keyed by account name.
+ *
+ * Accounts that could not be found in TFS are remembered too (negative caching),
+ * so that changesets from deleted or external accounts don't cause a SOAP call each time.
+ */
+public class IdentityCache {
+
+    static final int DEFAULT_MAX_ENTRIES = Integer.getInteger(IdentityCache.class.getName() + ".maxEntries", 1000);
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(
+            Integer.getInteger(IdentityCache.class.getName() + ".ttlMinutes", 60));
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final IdentityCache INSTANCE = new IdentityCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    IdentityCache(final int maxEntries, final long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the instance shared by all lookups on this controller
+     */
+    public static IdentityCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Retrieves the cached entry for the account name.
+     *
+     * @param accountName Windows NT account name: domain\alias.
+     * @return the entry, or {@code null} if the account isn't cached or its entry has expired
+     */
+    public synchronized Entry get(final String accountName) {
+        final String key = toKey(accountName);
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(now())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Records the result of an identity lookup.
+     *
+     * @param accountName Windows NT account name: domain\alias.
+     * @param identity the identity returned by TFS, or {@code null} if none was found
+     * @return the new entry
+     */
+    public Entry put(final String accountName, final TeamFoundationIdentity identity) {
+        final Entry entry;
+        if (identity != null) {
+            final String emailAddress = (String) identity.getProperty("Mail");
+            entry = new Entry(true, identity.getDisplayName(), emailAddress, now() + ttlMillis);
+        } else {
+            entry = new Entry(false, null, null, now() + ttlMillis);
+        }
+        synchronized (this) {
+            entries.put(toKey(accountName), entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Forgets all the identities.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of accounts currently cached, including expired ones not yet purged
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    static String toKey(final String accountName) {
+        // Windows account names are case-insensitive
+        return accountName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The subset of a {@link TeamFoundationIdentity} that is needed to populate a Jenkins user.
+     */
+    public static final class Entry {
+        private final boolean found;
+        private final String displayName;
+        private final String emailAddress;
+        private final long expiresAt;
+
+        Entry(final boolean found, final String displayName, final String emailAddress, final long expiresAt) {
+            this.found = found;
+            this.displayName = displayName;
+            this.emailAddress = emailAddress;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return {@code false} if TFS reported that no such account exists
+         */
+        public boolean isFound() {
+            return found;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getEmailAddress() {
+            return emailAddress;
+        }
+
+        boolean isExpired(final long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -37,9 +37,14 @@ public class LegacyIdentityManagementService implements IIdentityManagementServi
         throw new NotImplementedException();
     }
 
-    public TeamFoundationIdentity[][] readIdentities(IdentitySearchFactor paramIdentitySearchFactor, String[] paramArrayOfString,
-            MembershipQuery paramMembershipQuery, ReadIdentityOptions paramReadIdentityOptions) {
-        throw new NotImplementedException();
+    public TeamFoundationIdentity[][] readIdentities(IdentitySearchFactor searchFactor, String[] accountNames,
+            MembershipQuery membershipQuery, ReadIdentityOptions readIdentityOptions) {
+        final TeamFoundationIdentity[][] result = new TeamFoundationIdentity[accountNames.length][];
+        for (int i = 0; i < accountNames.length; i++) {
+            final TeamFoundationIdentity identity = readIdentity(searchFactor, accountNames[i], membershipQuery, readIdentityOptions);
+            result[i] = identity != null ? new TeamFoundationIdentity[] { identity } : new TeamFoundationIdentity[0];
+        }
+        return result;
     }
 
     public TeamFoundationIdentity readIdentity(IdentitySearchFactor searchFactor,
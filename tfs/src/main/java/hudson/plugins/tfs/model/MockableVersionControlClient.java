@@ -167,6 +167,23 @@ public class MockableVersionControlClient implements Closable {
         return vcc.getLocalWorkspace(workspaceName, workspaceOwner);
     }
 
+    /**
+     * Gets the items at or below a path, as they were at a version.
+     *
+     * @param path
+     *        the server or local path of the item to query (must not be
+     *        <code>null</code> or empty)
+     * @param version
+     *        the version of the items to query (must not be <code>null</code>)
+     * @param recursion
+     *        how deep below the path to query (must not be <code>null</code>)
+     * @return the set of matching items, never <code>null</code>
+     */
+    public ItemSet getItems(final String path, final VersionSpec version, final RecursionType recursion) {
+        makeSureNotClosed();
+        return vcc.getItems(path, version, recursion);
+    }
+
     /**
      * Gets the latest changeset ID from the server.
      *
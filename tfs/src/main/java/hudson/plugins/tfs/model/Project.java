@@ -3,17 +3,25 @@ package hudson.plugins.tfs.model;
 
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LatestVersionSpec;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import hudson.model.User;
-import hudson.plugins.tfs.TeamPluginGlobalConfig;
+import hudson.plugins.tfs.commands.CreateWorkspaceSnapshotCommand;
 import hudson.plugins.tfs.commands.GetFilesToWorkFolderCommand;
 import hudson.plugins.tfs.commands.RemoteChangesetVersionCommand;
+import hudson.plugins.tfs.commands.UpdateLocalVersionsCommand;
 import hudson.plugins.tfs.model.ChangeSet.Item;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -27,10 +35,27 @@ import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVers
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.DateVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LabelVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
-import com.microsoft.tfs.core.clients.webservices.IIdentityManagementService;
 
 public class Project {
 
+    /**
+     * The number of changesets under which converting them in parallel costs more than it saves;
+     * see ProjectBenchmark in the tests.  Converting a changeset only copies a few strings per change,
+     * which is cheap next to waking up the pool's threads, so only histories of thousands of changesets
+     * (such as the first poll of a large project, or a full history of file details) are worth splitting.
+     */
+    static final int PARALLEL_CONVERSION_THRESHOLD = Integer.getInteger(Project.class.getName() + ".parallelConversionThreshold", 2048);
+    /**
+     * The most threads used to convert changesets, shared by all the builds converting history at once.
+     */
+    static final int CONVERSION_PARALLELISM = Math.max(1, Integer.getInteger(Project.class.getName() + ".conversionParallelism",
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
+    /**
+     * The fewest changesets converted by one fork-join leaf task.
+     */
+    static final int MIN_CONVERSION_LEAF_SIZE = 64;
+    private static final Logger LOGGER = Logger.getLogger(Project.class.getName());
+
     private final String projectPath;
     private final Server server;
     private UserLookup userLookup;
@@ -57,10 +82,11 @@ public class Project {
         final String version = Integer.toString(serverChangeset.getChangesetID(), 10);
         final Date date = serverChangeset.getDate().getTime();
         final String author = serverChangeset.getOwner();
-        final User authorUser = userLookup.find(author);
+        // the Jenkins user is only resolved when the ChangeSet is displayed
+        final String authorUserId = userLookup.toUserId(author);
         final String comment = serverChangeset.getComment();
 
-        final ChangeSet result = new ChangeSet(version, date, authorUser, comment);
+        final ChangeSet result = new ChangeSet(version, date, authorUserId, comment);
         final Change[] serverChanges = serverChangeset.getChanges();
         for (final Change serverChange : serverChanges) {
             final Item item = convertServerChange(serverChange);
@@ -80,8 +106,131 @@ public class Project {
      */
     public List<ChangeSet> getVCCHistory(VersionSpec fromVersion, VersionSpec toVersion, boolean includeFileDetails, int maxCount) {
         final UserLookup userLookup = getOrCreateUserLookup();
+        final ChangesetIndex index = getChangesetIndex();
+        if (index != null && isIndexable(fromVersion, toVersion)) {
+            try {
+                return getIndexedHistory(index, (ChangesetVersionSpec) fromVersion, toVersion, includeFileDetails, maxCount, userLookup);
+            }
+            catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to use the changeset index for " + projectPath + ", querying TFS instead.", e);
+            }
+        }
+        final Changeset[] serverChangesets = queryServerHistory(fromVersion, toVersion, includeFileDetails, maxCount);
+        final List<ChangeSet> result;
+        if (serverChangesets != null) {
+            result = convertServerChangesets(serverChangesets, userLookup, PARALLEL_CONVERSION_THRESHOLD);
+            final List<String> owners = new ArrayList<String>(serverChangesets.length);
+            for (final Changeset serverChangeset : serverChangesets) {
+                owners.add(serverChangeset.getOwner());
+            }
+            enrichUsers(owners);
+        }
+        else {
+            result = new ArrayList<ChangeSet>();
+        }
+        return result;
+    }
+
+    /**
+     * Converts the changesets, in the same order, splitting the work across a fork-join pool
+     * when there are more than {@code parallelThreshold} of them.
+     *
+     * @param serverChangesets the changesets returned by the SDK
+     * @param userLookup used to determine the ID of each changeset's author
+     * @param parallelThreshold the number of changesets under which the conversion is done on the current thread
+     * @return a list of change sets
+     */
+    static List<ChangeSet> convertServerChangesets(final Changeset[] serverChangesets, final UserLookup userLookup, final int parallelThreshold) {
+        final int leafSize = computeLeafSize(serverChangesets.length, CONVERSION_PARALLELISM);
+        return convertServerChangesets(serverChangesets, userLookup, parallelThreshold, leafSize);
+    }
+
+    static List<ChangeSet> convertServerChangesets(final Changeset[] serverChangesets, final UserLookup userLookup, final int parallelThreshold, final int leafSize) {
+        final ChangeSet[] converted = new ChangeSet[serverChangesets.length];
+        final ConvertChangesetsTask task = new ConvertChangesetsTask(serverChangesets, converted, 0, serverChangesets.length, userLookup, leafSize);
+        if (serverChangesets.length <= parallelThreshold) {
+            task.convertRange();
+        }
+        else {
+            ConversionPoolHolder.POOL.invoke(task);
+        }
+        return new ArrayList<ChangeSet>(Arrays.asList(converted));
+    }
+
+    /**
+     * Splits the changesets into about four ranges per thread, the same granularity as
+     * {@link Arrays}' parallel sort uses: enough for threads that finish early to steal work from the others,
+     * without spending more on tasks than on converting.
+     */
+    static int computeLeafSize(final int changesetCount, final int parallelism) {
+        return Math.max(MIN_CONVERSION_LEAF_SIZE, changesetCount / (parallelism << 2));
+    }
+
+    /**
+     * Only creates the pool the first time a history is big enough to be converted in parallel.
+     * Its threads are daemons and, like those of any fork-join pool, exit after being idle for a while.
+     */
+    static final class ConversionPoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool(CONVERSION_PARALLELISM, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+                final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                };
+                thread.setName("TFS changeset conversion " + threadNumber.incrementAndGet());
+                return thread;
+            }
+        }, null, false);
+    }
+
+    /**
+     * Converts a contiguous range of changesets, writing each result at the same index it was read from,
+     * which preserves the (newest-first) order of the history.
+     */
+    static final class ConvertChangesetsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Changeset[] source;
+        private final ChangeSet[] destination;
+        private final int start;
+        private final int end;
+        private final UserLookup userLookup;
+        private final int leafSize;
+
+        ConvertChangesetsTask(final Changeset[] source, final ChangeSet[] destination, final int start, final int end, final UserLookup userLookup, final int leafSize) {
+            this.source = source;
+            this.destination = destination;
+            this.start = start;
+            this.end = end;
+            this.userLookup = userLookup;
+            this.leafSize = leafSize;
+        }
+
+        void convertRange() {
+            for (int i = start; i < end; i++) {
+                destination[i] = convertServerChangeset(source[i], userLookup);
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= leafSize) {
+                convertRange();
+            }
+            else {
+                final int middle = (start + end) >>> 1;
+                invokeAll(
+                    new ConvertChangesetsTask(source, destination, start, middle, userLookup, leafSize),
+                    new ConvertChangesetsTask(source, destination, middle, end, userLookup, leafSize)
+                );
+            }
+        }
+    }
+
+    Changeset[] queryServerHistory(VersionSpec fromVersion, VersionSpec toVersion, boolean includeFileDetails, int maxCount) {
         final MockableVersionControlClient vcc = server.getVersionControlClient();
-        final Changeset[] serverChangesets = vcc.queryHistory(
+        return vcc.queryHistory(
                 projectPath,
                 fromVersion != null ? fromVersion : toVersion,
                 0 /* deletionId */,
@@ -95,25 +244,66 @@ public class Project {
                 false /* includeDownloadInfo */,
                 false /* sortAscending */
         );
-        final List<ChangeSet> result = new ArrayList<ChangeSet>();
-        if (serverChangesets != null) {
-            for (final Changeset serverChangeset : serverChangesets) {
-                final ChangeSet changeSet = convertServerChangeset(serverChangeset, userLookup);
-                result.add(changeSet);
+    }
+
+    /**
+     * Only ranges expressed in changeset numbers can be looked up in the index.
+     */
+    static boolean isIndexable(final VersionSpec fromVersion, final VersionSpec toVersion) {
+        return fromVersion instanceof ChangesetVersionSpec
+                && (toVersion instanceof ChangesetVersionSpec || toVersion instanceof LatestVersionSpec);
+    }
+
+    protected ChangesetIndex getChangesetIndex() {
+        return ChangesetIndex.forPath(server.getUrl(), projectPath);
+    }
+
+    List<ChangeSet> getIndexedHistory(final ChangesetIndex index, final ChangesetVersionSpec fromVersion, final VersionSpec toVersion, final boolean includeFileDetails, final int maxCount, final UserLookup userLookup) throws IOException {
+        final Integer toChangeset = toVersion instanceof ChangesetVersionSpec ? ((ChangesetVersionSpec) toVersion).getChangeset() : null;
+        final ChangesetIndex.HistorySource source = new ChangesetIndex.HistorySource() {
+            @Override
+            public Changeset[] queryHistory(final int fromChangeset, final Integer toChangeset, final int maxCount, final boolean includeFileDetails) {
+                final VersionSpec to = toChangeset != null ? new ChangesetVersionSpec(toChangeset) : LatestVersionSpec.INSTANCE;
+                return queryServerHistory(new ChangesetVersionSpec(fromChangeset), to, includeFileDetails, maxCount);
+            }
+        };
+        final List<ChangesetIndex.Entry> entries = index.query(fromVersion.getChangeset(), toChangeset, maxCount, includeFileDetails, source);
+        final List<ChangeSet> result = new ArrayList<ChangeSet>(entries.size());
+        final List<String> owners = new ArrayList<String>(entries.size());
+        for (final ChangesetIndex.Entry entry : entries) {
+            result.add(convertIndexEntry(entry, userLookup, includeFileDetails));
+            owners.add(entry.getOwner());
+        }
+        enrichUsers(owners);
+        return result;
+    }
+
+    static ChangeSet convertIndexEntry(final ChangesetIndex.Entry entry, final UserLookup userLookup, final boolean includeFileDetails) {
+        final String version = Integer.toString(entry.getChangesetId(), 10);
+        final String authorUserId = userLookup.toUserId(entry.getOwner());
+        final ChangeSet result = new ChangeSet(version, entry.getDate(), authorUserId, entry.getComment());
+        if (includeFileDetails) {
+            for (final Item item : entry.getItems()) {
+                result.add(item);
             }
         }
         return result;
     }
 
+    /**
+     * Schedules the population of the Jenkins users' names and e-mail addresses from TFS,
+     * off the current (checkout or polling) thread.
+     */
+    void enrichUsers(final Collection<String> accountNames) {
+        UserEnrichmentWorker.getInstance().enqueue(server, accountNames);
+    }
+
     @SuppressFBWarnings(value = "DC_DOUBLECHECK", justification = "Only synchronize if not null")
     public UserLookup getOrCreateUserLookup() {
         if (userLookup == null) {
             synchronized (this) {
                 if (userLookup == null) {
-                    final IIdentityManagementService ims = server.createIdentityManagementService();
-                    final TeamPluginGlobalConfig teamPluginGlobalConfig = TeamPluginGlobalConfig.get();
-                    final UserAccountMapper mapper = teamPluginGlobalConfig.getUserAccountMapper();
-                    userLookup = new TfsUserLookup(ims, mapper);
+                    userLookup = SharedUserLookup.forServer(server);
                 }
             }
         }
@@ -260,7 +450,33 @@ public class Project {
      * @param useOverwrite if should overwrite changes
      */
     public void getFiles(String localPath, String versionSpec, boolean useOverwrite) {
-        GetFilesToWorkFolderCommand command = new GetFilesToWorkFolderCommand(server, localPath, versionSpec, useOverwrite);
+        getFiles(localPath, versionSpec, useOverwrite, 1, null);
+    }
+
+    /**
+     * Gets the files mapped at localPath, downloading up to downloadConcurrency top-level folders at once,
+     * and lists those that were added, updated or deleted at manifestPath, unless it is null.
+     * @return where the changed files were listed, on the computer where localPath is, and how many there were
+     */
+    public GetFilesToWorkFolderCommand.Result getFiles(String localPath, String versionSpec, boolean useOverwrite, int downloadConcurrency, String manifestPath) {
+        GetFilesToWorkFolderCommand command = new GetFilesToWorkFolderCommand(server, localPath, versionSpec, useOverwrite, false, downloadConcurrency, manifestPath);
+        return server.execute(command.getCallable());
+    }
+
+    /**
+     * Archives the files mapped at localPath that match the server's versions as of versionSpec.
+     * @return the temporary archive, on the computer where localPath is, and its contents
+     */
+    public CreateWorkspaceSnapshotCommand.Result createSnapshot(String localPath, String versionSpec) {
+        CreateWorkspaceSnapshotCommand command = new CreateWorkspaceSnapshotCommand(server, localPath, versionSpec);
+        return server.execute(command.getCallable());
+    }
+
+    /**
+     * Records the files restored from a snapshot into localPath as the local versions of its workspace.
+     */
+    public void updateLocalVersions(String localPath, WorkspaceSnapshot snapshot) {
+        UpdateLocalVersionsCommand command = new UpdateLocalVersionsCommand(server, localPath, snapshot.getChangeset(), snapshot.getEntries());
         server.execute(command.getCallable());
     }
 
@@ -309,6 +525,16 @@ public class Project {
         return builder.isEquals();
     }
 
+    /**
+     * Lets go of the {@link SharedUserLookup} obtained by {@link #getOrCreateUserLookup()}, if any.
+     */
+    synchronized void releaseUserLookup() {
+        if (userLookup instanceof SharedUserLookup) {
+            ((SharedUserLookup) userLookup).close();
+        }
+        userLookup = null;
+    }
+
     protected UserLookup getUserLookup() {
         return userLookup;
     }
@@ -265,6 +265,9 @@ public class Server implements ServerConfigurationProvider, Closable {
     }
 
     public synchronized void close() {
+        for (final Project project : projects.values()) {
+            project.releaseUserLookup();
+        }
         if (this.mockableVcc != null) {
             this.mockableVcc.close();
         }
@@ -0,0 +1,223 @@
+package hudson.plugins.tfs.model;
+
+import com.microsoft.tfs.core.clients.webservices.IIdentityManagementService;
+import hudson.model.User;
+import hudson.plugins.tfs.TeamPluginGlobalConfig;
+import org.apache.commons.lang.ObjectUtils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link UserLookup} shared by all the {@link Server} instances connected to the same team project collection
+ * as the same user, through the same proxy.
+ *
+ * Concurrent checkouts, polls and user enrichments of the same collection share this class' connection and
+ * the {@link IIdentityManagementService} implementation the collection supports, so that the identity service
+ * is only set up (and the legacy fallback only probed) once for all of them.  Each {@link #forServer(Server)}
+ * must be followed by a call to {@link #close()}; once the last holder let go, the instance is forgotten and
+ * its connection closed.
+ *
+ * The connection is only closed once no lookup is using it any more, so {@link #reset()} and a change of
+ * password are safe while other threads are in the middle of a lookup.
+ */
+public class SharedUserLookup implements UserLookup {
+
+    private static final Logger LOGGER = Logger.getLogger(SharedUserLookup.class.getName());
+    private static final Map<String, SharedUserLookup> INSTANCES = new HashMap<String, SharedUserLookup>();
+
+    private final String url;
+    private final String userName;
+    private final String userPassword;
+    private final WebProxySettings webProxySettings;
+    private final ExtraSettings extraSettings;
+
+    private Connection current;
+    /** The number of callers of {@link #forServer(Server)} that didn't {@link #close()} yet; guarded by INSTANCES. */
+    private int holders;
+
+    SharedUserLookup(final String url, final String userName, final String userPassword, final WebProxySettings webProxySettings, final ExtraSettings extraSettings) {
+        this.url = url;
+        this.userName = userName;
+        this.userPassword = userPassword;
+        this.webProxySettings = webProxySettings;
+        this.extraSettings = extraSettings;
+    }
+
+    static String toKey(final String url, final String userName, final WebProxySettings webProxySettings) {
+        final StringBuilder sb = new StringBuilder(url).append('\n').append(userName);
+        if (webProxySettings != null) {
+            sb.append('\n').append(webProxySettings.getProxyUser())
+                .append('@').append(webProxySettings.getHostName())
+                .append(':').append(webProxySettings.getPort());
+        }
+        return sb.toString();
+    }
+
+    String getKey() {
+        return toKey(url, userName, webProxySettings);
+    }
+
+    static int getInstanceCount() {
+        synchronized (INSTANCES) {
+            return INSTANCES.size();
+        }
+    }
+
+    /**
+     * Returns the instance for the collection the server is connected to, creating it if necessary.
+     * The caller must {@link #close()} the instance once it no longer needs it.
+     *
+     * @param server a connection to the collection, from which the URL, credentials and proxy settings are copied
+     * @return the instance shared by all connections to the same collection with the same credentials
+     */
+    public static SharedUserLookup forServer(final Server server) {
+        final String url = server.getUrl();
+        final String key = toKey(url, server.getUserName(), server.getWebProxySettings());
+        synchronized (INSTANCES) {
+            SharedUserLookup result = INSTANCES.get(key);
+            if (result != null && !result.hasSameCredentials(server)) {
+                // a password was changed; the old connection is closed once its current lookups are done
+                // and the old instance is no longer registered, so its holders won't evict the new one
+                INSTANCES.remove(key);
+                result.reset();
+                result = null;
+            }
+            if (result == null) {
+                result = new SharedUserLookup(url, server.getUserName(), server.getUserPassword(), server.getWebProxySettings(), server.getExtraSettings());
+                INSTANCES.put(key, result);
+            }
+            result.holders++;
+            return result;
+        }
+    }
+
+    boolean hasSameCredentials(final Server other) {
+        return ObjectUtils.equals(userName, other.getUserName())
+            && ObjectUtils.equals(userPassword, other.getUserPassword())
+            && ObjectUtils.equals(getProxyPassword(webProxySettings), getProxyPassword(other.getWebProxySettings()));
+    }
+
+    static String getProxyPassword(final WebProxySettings webProxySettings) {
+        if (webProxySettings == null || webProxySettings.getProxySecret() == null) {
+            return null;
+        }
+        return webProxySettings.getProxySecret().getPlainText();
+    }
+
+    /**
+     * Lets go of an instance obtained from {@link #forServer(Server)}.  The last holder to let go
+     * forgets the instance and closes its connection.
+     */
+    public void close() {
+        synchronized (INSTANCES) {
+            holders--;
+            if (holders > 0) {
+                return;
+            }
+            final String key = getKey();
+            if (INSTANCES.get(key) == this) {
+                INSTANCES.remove(key);
+            }
+        }
+        reset();
+    }
+
+    /**
+     * The account mapper can be changed in the global configuration at any time, so it's not cached.
+     */
+    static UserAccountMapper getUserAccountMapper() {
+        return TeamPluginGlobalConfig.get().getUserAccountMapper();
+    }
+
+    Server createServer() throws IOException {
+        return new Server(null, null, url, userName, userPassword, webProxySettings, extraSettings);
+    }
+
+    /**
+     * Returns the connection, setting it up if necessary.  Each call must be followed by a call to
+     * {@link #release(Connection)}.
+     */
+    synchronized Connection acquire() throws IOException {
+        if (current == null) {
+            final Server server = createServer();
+            final IIdentityManagementService ims = server.createIdentityManagementService();
+            LOGGER.log(Level.FINE, String.format("Using %s for '%s'.", ims.getClass().getSimpleName(), url));
+            current = new Connection(server, ims);
+        }
+        current.users++;
+        return current;
+    }
+
+    synchronized void release(final Connection connection) {
+        connection.users--;
+        if (connection.retired && connection.users == 0) {
+            connection.server.close();
+        }
+    }
+
+    /**
+     * Forgets the connection and the identity service, such that they will be set up again on next use,
+     * and closes the connection as soon as no lookup is using it.
+     * Should be called when the connection appears to be unhealthy.
+     */
+    public synchronized void reset() {
+        if (current != null) {
+            current.retired = true;
+            if (current.users == 0) {
+                current.server.close();
+            }
+            current = null;
+        }
+    }
+
+    @Override
+    public User find(final String accountName) {
+        final Connection connection = acquireOrFail();
+        try {
+            return new TfsUserLookup(connection.ims, getUserAccountMapper()).find(accountName);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public String toUserId(final String accountName) {
+        // only needs the mapper, so avoid connecting
+        return new TfsUserLookup(null, getUserAccountMapper()).toUserId(accountName);
+    }
+
+    @Override
+    public void prefetch(final Collection<String> accountNames) {
+        final Connection connection = acquireOrFail();
+        try {
+            new TfsUserLookup(connection.ims, getUserAccountMapper()).prefetch(accountNames);
+        } finally {
+            release(connection);
+        }
+    }
+
+    private Connection acquireOrFail() {
+        try {
+            return acquire();
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static final class Connection {
+        final Server server;
+        final IIdentityManagementService ims;
+        int users;
+        boolean retired;
+
+        Connection(final Server server, final IIdentityManagementService ims) {
+            this.server = server;
+            this.ims = ims;
+        }
+    }
+}
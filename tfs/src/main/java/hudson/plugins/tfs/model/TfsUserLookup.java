@@ -1,6 +1,12 @@
 package hudson.plugins.tfs.model;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,10 +28,16 @@ public class TfsUserLookup implements UserLookup {
 
     private final IIdentityManagementService ims;
     private final UserAccountMapper userAccountMapper;
+    private final IdentityCache identityCache;
 
     public TfsUserLookup(final IIdentityManagementService ims, final UserAccountMapper userAccountMapper) {
+        this(ims, userAccountMapper, IdentityCache.getInstance());
+    }
+
+    TfsUserLookup(final IIdentityManagementService ims, final UserAccountMapper userAccountMapper, final IdentityCache identityCache) {
         this.ims = ims;
         this.userAccountMapper = userAccountMapper;
+        this.identityCache = identityCache;
     }
 
     /**
@@ -36,21 +48,24 @@ public class TfsUserLookup implements UserLookup {
         final String mappedAccountName = userAccountMapper.mapUserAccount(accountName);
         logger.log(Level.FINE, String.format("Looking up Jenkins user for account '%s'.", mappedAccountName));
         final User jenkinsUser = User.get(mappedAccountName);
-        Mailer.UserProperty mailerProperty = jenkinsUser.getProperty(Mailer.UserProperty.class);
-        if (mailerProperty == null || mailerProperty.getAddress() == null || mailerProperty.getAddress().length() == 0) {
+        if (!hasEmailAddress(jenkinsUser)) {
             logger.log(Level.FINE, String.format("No Mailer.UserProperty defined for '%s', looking in TFS", mappedAccountName));
-            final TeamFoundationIdentity tfsUser = ims.readIdentity(
-                IdentitySearchFactor.ACCOUNT_NAME,
-                accountName,
-                MembershipQuery.NONE,
-                ReadIdentityOptions.NONE
-            );
-            if (tfsUser != null) {
-                final String displayName = tfsUser.getDisplayName();
+            IdentityCache.Entry identity = identityCache.get(accountName);
+            if (identity == null) {
+                final TeamFoundationIdentity tfsUser = ims.readIdentity(
+                    IdentitySearchFactor.ACCOUNT_NAME,
+                    accountName,
+                    MembershipQuery.NONE,
+                    ReadIdentityOptions.NONE
+                );
+                identity = identityCache.put(accountName, tfsUser);
+            }
+            if (identity.isFound()) {
+                final String displayName = identity.getDisplayName();
                 jenkinsUser.setFullName(displayName);
-                final String emailAddress = (String) tfsUser.getProperty("Mail");
+                final String emailAddress = identity.getEmailAddress();
                 if (emailAddress != null) {
-                    mailerProperty = new Mailer.UserProperty(emailAddress);
+                    final Mailer.UserProperty mailerProperty = new Mailer.UserProperty(emailAddress);
                     try {
                         jenkinsUser.addProperty(mailerProperty);
                     } catch (IOException e) {
@@ -66,4 +81,61 @@ public class TfsUserLookup implements UserLookup {
         return jenkinsUser;
     }
 
+    /**
+     * Determines the ID of the Jenkins user for the account name, without creating said user.
+     * @param accountName Windows NT account name: domain\alias.
+     */
+    public String toUserId(final String accountName) {
+        final String mappedAccountName = userAccountMapper.mapUserAccount(accountName);
+        // the same substitutions User.get() performs
+        return mappedAccountName.replace('\\', '_').replace('/', '_').replace('<', '_').replace('>', '_');
+    }
+
+    /**
+     * Resolves, with a single call to TFS, the identities of all the accounts that
+     * will need to be looked up and aren't already in the cache.
+     * @param accountNames Windows NT account names: domain\alias.
+     */
+    public void prefetch(final Collection<String> accountNames) {
+        final Set<String> distinctAccountNames = new LinkedHashSet<String>();
+        for (final String accountName : accountNames) {
+            if (accountName != null && identityCache.get(accountName) == null) {
+                distinctAccountNames.add(accountName);
+            }
+        }
+        final List<String> pending = new ArrayList<String>(distinctAccountNames.size());
+        for (final String accountName : distinctAccountNames) {
+            final String mappedAccountName = userAccountMapper.mapUserAccount(accountName);
+            // don't create Jenkins users just to find out whether they already have an e-mail address
+            final User existing = User.get(mappedAccountName, false, Collections.emptyMap());
+            if (!hasEmailAddress(existing)) {
+                pending.add(accountName);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        logger.log(Level.FINE, String.format("Looking up %d account(s) in TFS", pending.size()));
+        final String[] searchValues = pending.toArray(new String[pending.size()]);
+        final TeamFoundationIdentity[][] results = ims.readIdentities(
+            IdentitySearchFactor.ACCOUNT_NAME,
+            searchValues,
+            MembershipQuery.NONE,
+            ReadIdentityOptions.NONE
+        );
+        for (int i = 0; i < searchValues.length; i++) {
+            final TeamFoundationIdentity[] matches = results != null && i < results.length ? results[i] : null;
+            final TeamFoundationIdentity tfsUser = matches != null && matches.length > 0 ? matches[0] : null;
+            identityCache.put(searchValues[i], tfsUser);
+        }
+    }
+
+    static boolean hasEmailAddress(final User jenkinsUser) {
+        if (jenkinsUser == null) {
+            return false;
+        }
+        final Mailer.UserProperty mailerProperty = jenkinsUser.getProperty(Mailer.UserProperty.class);
+        return mailerProperty != null && mailerProperty.getAddress() != null && mailerProperty.getAddress().length() > 0;
+    }
+
 }
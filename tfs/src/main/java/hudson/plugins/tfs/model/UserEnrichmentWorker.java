@@ -0,0 +1,125 @@
+package hudson.plugins.tfs.model;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Populates Jenkins users (full name, e-mail address) from their TFS identities on a background thread,
+ * so that converting history during checkout or polling neither waits on TFS nor writes user records.
+ * The lookups go through the collection's {@link SharedUserLookup}.
+ */
+public class UserEnrichmentWorker {
+
+    private static final Logger LOGGER = Logger.getLogger(UserEnrichmentWorker.class.getName());
+    private static final int MAX_REMEMBERED_ACCOUNTS = IdentityCache.DEFAULT_MAX_ENTRIES;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final UserEnrichmentWorker INSTANCE = new UserEnrichmentWorker(
+            Executors.newSingleThreadExecutor(new NamingThreadFactory(new DaemonThreadFactory(), "TFS user enrichment")),
+            IdentityCache.DEFAULT_TTL_MILLIS);
+
+    private final Executor executor;
+    private final long refreshMillis;
+    private final Set<String> pending = new LinkedHashSet<String>();
+    private final Map<String, Long> enrichedAt = new LinkedHashMap<String, Long>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+            return size() > MAX_REMEMBERED_ACCOUNTS;
+        }
+    };
+
+    UserEnrichmentWorker(final Executor executor, final long refreshMillis) {
+        this.executor = executor;
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * @return the worker shared by all projects on this controller
+     */
+    public static UserEnrichmentWorker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules the lookup of the provided accounts, skipping those already queued
+     * or recently looked up.
+     *
+     * @param server the server whose collection the accounts belong to
+     * @param accountNames Windows NT account names: domain\alias.
+     */
+    public void enqueue(final Server server, final Collection<String> accountNames) {
+        final String url = server.getUrl();
+        final List<String> toEnrich = selectAccounts(url, accountNames);
+        if (toEnrich.isEmpty()) {
+            return;
+        }
+        final SharedUserLookup userLookup = SharedUserLookup.forServer(server);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    enrich(userLookup, toEnrich);
+                } catch (final Exception e) {
+                    LOGGER.log(Level.WARNING, String.format("Unable to look up %d user(s) in '%s'.", toEnrich.size(), url), e);
+                    // the next lookup will re-connect and re-evaluate the identity service
+                    userLookup.reset();
+                } finally {
+                    userLookup.close();
+                    release(url, toEnrich);
+                }
+            }
+        });
+    }
+
+    synchronized List<String> selectAccounts(final String url, final Collection<String> accountNames) {
+        final long now = System.currentTimeMillis();
+        final List<String> result = new ArrayList<String>();
+        for (final String accountName : accountNames) {
+            if (accountName == null) {
+                continue;
+            }
+            final String key = toKey(url, accountName);
+            final Long lastEnriched = enrichedAt.get(key);
+            if (lastEnriched != null && now - lastEnriched < refreshMillis) {
+                continue;
+            }
+            if (pending.add(key)) {
+                result.add(accountName);
+            }
+        }
+        return result;
+    }
+
+    synchronized void release(final String url, final Collection<String> accountNames) {
+        final Long now = System.currentTimeMillis();
+        for (final String accountName : accountNames) {
+            final String key = toKey(url, accountName);
+            pending.remove(key);
+            enrichedAt.put(key, now);
+        }
+    }
+
+    static void enrich(final UserLookup userLookup, final List<String> accountNames) {
+        userLookup.prefetch(accountNames);
+        for (final String accountName : accountNames) {
+            userLookup.find(accountName);
+        }
+    }
+
+    static String toKey(final String url, final String accountName) {
+        return url + "|" + IdentityCache.toKey(accountName);
+    }
+}
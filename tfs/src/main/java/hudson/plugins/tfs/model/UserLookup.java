@@ -2,6 +2,8 @@ package hudson.plugins.tfs.model;
 
 import hudson.model.User;
 
+import java.util.Collection;
+
 /**
  * An interface to define the UserLookup contract.
  */
@@ -12,4 +14,22 @@ public interface UserLookup {
      * @return the Jenkins {@link User} object associated with the account name
      */
     User find(String accountName);
+
+    /**
+     * Determines the ID of the Jenkins user that {@link #find(String)} would return,
+     * without creating nor loading said user.
+     *
+     * @param accountName Windows NT account name: domain\alias.
+     *
+     * @return the ID of the Jenkins {@link User} associated with the account name
+     */
+    String toUserId(String accountName);
+
+    /**
+     * Gives the implementation a chance to resolve many accounts at once, before
+     * {@link #find(String)} is called for each of them.
+     *
+     * @param accountNames Windows NT account names: domain\alias.
+     */
+    void prefetch(Collection<String> accountNames);
 }
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.Collection;
 
 import hudson.model.InvisibleAction;
+import org.apache.commons.lang.StringUtils;
 
 /**
  * An action for storing TFS configuration data in a build 
@@ -21,14 +22,23 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
     private final String serverUrl;
     private boolean workspaceExists;
     private Collection<String> cloakedPaths;
+    private boolean localWorkspace;
+    private boolean checkInTimestamps;
 
     public WorkspaceConfiguration(String serverUrl, String workspaceName, String projectPath, Collection<String> cloakedPaths, String workfolder) {
+        this(serverUrl, workspaceName, projectPath, cloakedPaths, workfolder, WorkspaceSettings.DEFAULT);
+    }
+
+    public WorkspaceConfiguration(String serverUrl, String workspaceName, String projectPath, Collection<String> cloakedPaths, String workfolder, WorkspaceSettings settings) {
         this.workspaceName = workspaceName;
         this.workfolder = workfolder;
         this.projectPath = projectPath;
         this.serverUrl = serverUrl;
         this.workspaceExists = true;
         this.cloakedPaths = cloakedPaths;
+        // kept as separate fields, such that the configurations recorded with earlier builds still load
+        this.localWorkspace = settings.isLocalWorkspace();
+        this.checkInTimestamps = settings.isCheckInTimestamps();
     }
 
     public WorkspaceConfiguration(WorkspaceConfiguration configuration) {
@@ -38,6 +48,8 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
         this.serverUrl = configuration.serverUrl;
         this.workspaceExists = configuration.workspaceExists;
         this.cloakedPaths = configuration.cloakedPaths;
+        this.localWorkspace = configuration.localWorkspace;
+        this.checkInTimestamps = configuration.checkInTimestamps;
     }
 
     public String getWorkspaceName() {
@@ -68,6 +80,37 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
         return cloakedPaths;
     }
 
+    public boolean isLocalWorkspace() {
+        return localWorkspace;
+    }
+
+    public boolean isCheckInTimestamps() {
+        return checkInTimestamps;
+    }
+
+    public WorkspaceSettings getSettings() {
+        return WorkspaceSettings.DEFAULT.withLocalWorkspace(localWorkspace).withCheckInTimestamps(checkInTimestamps);
+    }
+
+    /**
+     * Determines if a workspace created with another configuration can be brought in line with this one by
+     * changing its cloaked paths and options, instead of being deleted and re-created.
+     * @param other the configuration the workspace was created with
+     * @return true if only the cloaked paths or the check-in timestamps option differ
+     */
+    public boolean differsOnlyInCloakedPathsOrOptions(WorkspaceConfiguration other) {
+        if (other == null || !workspaceExists || !other.workspaceExists || localWorkspace != other.localWorkspace) {
+            return false;
+        }
+        if (!StringUtils.equals(serverUrl, other.serverUrl)
+                || !StringUtils.equals(workspaceName, other.workspaceName)
+                || !StringUtils.equals(projectPath, other.projectPath)
+                || !StringUtils.equals(workfolder, other.workfolder)) {
+            return false;
+        }
+        return !equals(other);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -78,6 +121,8 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
         result = prime * result + (workspaceExists ? 1231 : 1237);
         result = prime * result + ((workspaceName == null) ? 0 : workspaceName.hashCode());
         result = prime * result + ((cloakedPaths == null) ? 0 : cloakedPaths.hashCode());
+        result = prime * result + (localWorkspace ? 1231 : 1237);
+        result = prime * result + (checkInTimestamps ? 1231 : 1237);
         return result;
     }
 
@@ -121,12 +166,16 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
             return false;
         else if (!cloakedPaths.containsAll(other.cloakedPaths))
             return false;
+        if (localWorkspace != other.localWorkspace)
+            return false;
+        if (checkInTimestamps != other.checkInTimestamps)
+            return false;
         return true;
     }
 
     @Override
     public String toString() {
-        return String.format("WorkspaceConfiguration [projectPath=%s, serverUrl=%s, workfolder=%s, workspaceExists=%s, workspaceName=%s]", 
-                projectPath, serverUrl, workfolder, workspaceExists, workspaceName);
+        return String.format("WorkspaceConfiguration [projectPath=%s, serverUrl=%s, workfolder=%s, workspaceExists=%s, workspaceName=%s, localWorkspace=%s, checkInTimestamps=%s]", 
+                projectPath, serverUrl, workfolder, workspaceExists, workspaceName, localWorkspace, checkInTimestamps);
     }    
 }
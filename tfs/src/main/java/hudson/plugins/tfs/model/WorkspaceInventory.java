@@ -0,0 +1,134 @@
+package hudson.plugins.tfs.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The workspaces a computer has in a team project collection, as last seen by the commands running on
+ * that computer, so that a checkout doesn't need to list every workspace on the server.
+ *
+ * Instances live in the JVM of the agent (or controller) where the commands run, so they start out empty
+ * whenever the agent (re)connects.  An inventory is filled from the complete list of workspaces on the server
+ * and is only used to confirm that a workspace exists: a workspace missing from the inventory is always
+ * looked up on the server.  Workspaces created or deleted by the plugin on the computer itself are recorded as
+ * they happen, queued deletions that ran from the controller are forwarded to the computer's inventory, and the
+ * inventory goes back to the server once it is older than the refresh interval.
+ */
+public class WorkspaceInventory {
+
+    static final long DEFAULT_REFRESH_MILLIS = TimeUnit.MINUTES.toMillis(
+            Integer.getInteger(WorkspaceInventory.class.getName() + ".refreshMinutes", 30));
+
+    private static final ConcurrentMap<String, WorkspaceInventory> INSTANCES = new ConcurrentHashMap<String, WorkspaceInventory>();
+
+    private final long refreshMillis;
+    private final Map<String, Workspace> workspaces = new LinkedHashMap<String, Workspace>();
+    private long refreshedAt;
+
+    WorkspaceInventory(final long refreshMillis) {
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * Returns the inventory of a computer's workspaces in a collection.
+     *
+     * @param collectionUrl the URL to the team project collection
+     * @param computerName the name of the computer that owns the workspaces
+     * @return the instance shared by all commands running in this JVM
+     */
+    public static WorkspaceInventory forComputer(final String collectionUrl, final String computerName) {
+        final String key = toKey(collectionUrl) + "|" + toKey(computerName);
+        WorkspaceInventory result = INSTANCES.get(key);
+        if (result == null) {
+            final WorkspaceInventory created = new WorkspaceInventory(DEFAULT_REFRESH_MILLIS);
+            result = INSTANCES.putIfAbsent(key, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if the inventory was reconciled with the server within the refresh interval
+     */
+    public synchronized boolean isFresh() {
+        return refreshedAt != 0 && now() - refreshedAt < refreshMillis;
+    }
+
+    /**
+     * Returns the workspaces in the inventory, if it can confirm that the provided workspace exists.
+     *
+     * @param workspaceName the name of the workspace the caller is looking for
+     * @return the workspaces, if the inventory is fresh and contains the workspace;
+     * {@code null} if the server should be asked instead
+     */
+    public synchronized List<Workspace> list(final String workspaceName) {
+        if (!isFresh() || workspaceName == null || !workspaces.containsKey(toKey(workspaceName))) {
+            return null;
+        }
+        return new ArrayList<Workspace>(workspaces.values());
+    }
+
+    /**
+     * Replaces the inventory with the complete list of workspaces from the server.
+     *
+     * @param serverWorkspaces all the workspaces the computer has in the collection
+     */
+    public synchronized void reconcile(final Collection<Workspace> serverWorkspaces) {
+        workspaces.clear();
+        for (final Workspace workspace : serverWorkspaces) {
+            workspaces.put(toKey(workspace.getName()), workspace);
+        }
+        refreshedAt = now();
+    }
+
+    /**
+     * Records a workspace that was just created.
+     *
+     * @param workspace the new workspace
+     */
+    public synchronized void put(final Workspace workspace) {
+        workspaces.put(toKey(workspace.getName()), workspace);
+    }
+
+    /**
+     * Records the deletion of a workspace.
+     *
+     * @param workspaceName the name of the deleted workspace
+     */
+    public synchronized void remove(final String workspaceName) {
+        workspaces.remove(toKey(workspaceName));
+    }
+
+    /**
+     * @param workspaceName the name of a workspace
+     * @return {@code true} if the workspace is in the inventory
+     */
+    public synchronized boolean contains(final String workspaceName) {
+        return workspaces.containsKey(toKey(workspaceName));
+    }
+
+    /**
+     * Forgets everything, such that the next listing goes to the server.
+     */
+    public synchronized void invalidate() {
+        workspaces.clear();
+        refreshedAt = 0;
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    static String toKey(final String name) {
+        return name != null ? name.toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,69 @@
+package hudson.plugins.tfs.model;
+
+import java.io.Serializable;
+
+/**
+ * The options a workspace is created with, beyond its name and mapping.
+ * Instances are immutable; start from {@link #DEFAULT} and change what differs.
+ */
+public final class WorkspaceSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A server workspace that gives retrieved files the current time.
+     */
+    public static final WorkspaceSettings DEFAULT = new WorkspaceSettings(false, false);
+
+    private final boolean localWorkspace;
+    private final boolean checkInTimestamps;
+
+    private WorkspaceSettings(final boolean localWorkspace, final boolean checkInTimestamps) {
+        this.localWorkspace = localWorkspace;
+        this.checkInTimestamps = checkInTimestamps;
+    }
+
+    /**
+     * @return whether the workspace is a local workspace instead of a server workspace
+     */
+    public boolean isLocalWorkspace() {
+        return localWorkspace;
+    }
+
+    /**
+     * @return whether retrieved files get the time of their check-in instead of the current time
+     */
+    public boolean isCheckInTimestamps() {
+        return checkInTimestamps;
+    }
+
+    public WorkspaceSettings withLocalWorkspace(final boolean localWorkspace) {
+        return new WorkspaceSettings(localWorkspace, checkInTimestamps);
+    }
+
+    public WorkspaceSettings withCheckInTimestamps(final boolean checkInTimestamps) {
+        return new WorkspaceSettings(localWorkspace, checkInTimestamps);
+    }
+
+    @Override
+    public int hashCode() {
+        return (localWorkspace ? 2 : 0) + (checkInTimestamps ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof WorkspaceSettings)) {
+            return false;
+        }
+        final WorkspaceSettings other = (WorkspaceSettings) obj;
+        return localWorkspace == other.localWorkspace && checkInTimestamps == other.checkInTimestamps;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WorkspaceSettings [localWorkspace=%s, checkInTimestamps=%s]", localWorkspace, checkInTimestamps);
+    }
+}
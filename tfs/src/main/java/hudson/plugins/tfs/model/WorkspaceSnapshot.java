@@ -0,0 +1,85 @@
+package hudson.plugins.tfs.model;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An archive of the files a workspace had at a changeset, with the item versions needed to tell the
+ * server that a new workspace restored from it already has those files.
+ */
+public class WorkspaceSnapshot {
+
+    private final int changeset;
+    private final long createdMillis;
+    private final File archive;
+    private final List<Entry> entries;
+
+    WorkspaceSnapshot(final int changeset, final long createdMillis, final File archive, final List<Entry> entries) {
+        this.changeset = changeset;
+        this.createdMillis = createdMillis;
+        this.archive = archive;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the latest changeset among the items in the snapshot
+     */
+    public int getChangeset() {
+        return changeset;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * @return the zip file with the contents of the workspace, relative to its local folder
+     */
+    public File getArchive() {
+        return archive;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * A file in the snapshot and the version of the item it holds.
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int itemId;
+        private final int version;
+        private final String serverItem;
+        private final String relativePath;
+
+        public Entry(final int itemId, final int version, final String serverItem, final String relativePath) {
+            this.itemId = itemId;
+            this.version = version;
+            this.serverItem = serverItem;
+            this.relativePath = relativePath;
+        }
+
+        public int getItemId() {
+            return itemId;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getServerItem() {
+            return serverItem;
+        }
+
+        /**
+         * @return the path of the file relative to the workspace's local folder, with forward slashes
+         */
+        public String getRelativePath() {
+            return relativePath;
+        }
+    }
+}
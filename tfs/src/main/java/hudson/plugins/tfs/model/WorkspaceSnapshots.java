@@ -0,0 +1,349 @@
+package hudson.plugins.tfs.model;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The snapshots of the workspaces that map a path of a team project collection, with the same cloaked paths,
+ * stored under {@code JENKINS_HOME} (or in a shared folder set by a system property) so that
+ * a new workspace can be filled from the latest snapshot and then only get what changed since.
+ *
+ * A snapshot is made of three files: the zip archive and the manifest are named after the changeset,
+ * so that a new snapshot never replaces the files of one that is being restored, and the properties file,
+ * which designates the latest snapshot, is written last.
+ *
+ * Snapshots are created on a background thread, one at a time for the whole controller, so that builds
+ * don't wait for them.  A failed attempt postpones the next one by a delay that doubles with each failure,
+ * up to the maximum age of a snapshot; the failures are only counted until Jenkins restarts.
+ */
+public class WorkspaceSnapshots {
+
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceSnapshots.class.getName());
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(
+            Integer.getInteger(WorkspaceSnapshots.class.getName() + ".maxAgeHours", 24));
+    static final String FOLDER_NAME = "tfs-workspace-snapshots";
+    static final long INITIAL_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final String PROPERTIES_FILE_NAME = "snapshot.properties";
+    private static final String CHANGESET_PROPERTY = "changeset";
+    private static final String CREATED_PROPERTY = "created";
+    private static final String SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 4;
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private static final ConcurrentMap<File, WorkspaceSnapshots> INSTANCES = new ConcurrentHashMap<File, WorkspaceSnapshots>();
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "TFS workspace snapshots"));
+
+    /**
+     * Creates a snapshot from a workspace and {@link #save(File, int, List) saves} it.
+     */
+    public interface Creator {
+        void create(WorkspaceSnapshots snapshots) throws Exception;
+    }
+
+    private final File folder;
+    private final long maxAgeMillis;
+    private final Executor executor;
+    private boolean updating;
+    private int failedAttempts;
+    private long nextAttemptMillis;
+
+    WorkspaceSnapshots(final File folder, final long maxAgeMillis) {
+        this(folder, maxAgeMillis, EXECUTOR);
+    }
+
+    WorkspaceSnapshots(final File folder, final long maxAgeMillis, final Executor executor) {
+        this.folder = folder;
+        this.maxAgeMillis = maxAgeMillis;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the snapshots of workspaces with the provided mapping.
+     *
+     * @param collectionUrl the URL to the team project collection
+     * @param projectPath the mapped path in TFVC
+     * @param cloakedPaths the paths cloaked in the workspaces
+     * @return the instance shared by all jobs with the same mapping,
+     * or {@code null} if not running on the controller
+     */
+    public static WorkspaceSnapshots forMapping(final String collectionUrl, final String projectPath, final Collection<String> cloakedPaths) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        final String configuredRoot = System.getProperty(WorkspaceSnapshots.class.getName() + ".directory");
+        final File root = configuredRoot != null ? new File(configuredRoot) : new File(jenkins.getRootDir(), FOLDER_NAME);
+        final StringBuilder key = new StringBuilder();
+        key.append(collectionUrl.toLowerCase(Locale.ENGLISH)).append('\n').append(projectPath.toLowerCase(Locale.ENGLISH));
+        if (cloakedPaths != null) {
+            final TreeSet<String> sortedCloakedPaths = new TreeSet<String>();
+            for (final String cloakedPath : cloakedPaths) {
+                sortedCloakedPaths.add(cloakedPath.toLowerCase(Locale.ENGLISH));
+            }
+            for (final String cloakedPath : sortedCloakedPaths) {
+                key.append('\n').append(cloakedPath);
+            }
+        }
+        final File folder = new File(root, DigestUtils.shaHex(key.toString()));
+        WorkspaceSnapshots result = INSTANCES.get(folder);
+        if (result == null) {
+            final WorkspaceSnapshots created = new WorkspaceSnapshots(folder, DEFAULT_MAX_AGE_MILLIS);
+            result = INSTANCES.putIfAbsent(folder, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the latest snapshot, or {@code null} if there is none or it can't be read
+     */
+    public synchronized WorkspaceSnapshot getLatest() {
+        final File propertiesFile = new File(folder, PROPERTIES_FILE_NAME);
+        if (!propertiesFile.isFile()) {
+            return null;
+        }
+        try {
+            final Properties properties = readProperties(propertiesFile);
+            final int changeset = Integer.parseInt(properties.getProperty(CHANGESET_PROPERTY));
+            final long created = Long.parseLong(properties.getProperty(CREATED_PROPERTY));
+            final File archive = toArchive(changeset);
+            if (!archive.isFile()) {
+                return null;
+            }
+            final List<WorkspaceSnapshot.Entry> entries = readManifest(toManifest(changeset));
+            return new WorkspaceSnapshot(changeset, created, archive, entries);
+        }
+        catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the snapshot in " + folder, e);
+            return null;
+        }
+        catch (final RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the snapshot in " + folder, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return {@code true} if there is no snapshot or the latest one is older than the maximum age,
+     * and the delay after the last failed attempt has passed
+     */
+    public synchronized boolean isDue() {
+        if (now() < nextAttemptMillis) {
+            return false;
+        }
+        final File propertiesFile = new File(folder, PROPERTIES_FILE_NAME);
+        if (!propertiesFile.isFile()) {
+            return true;
+        }
+        return now() - propertiesFile.lastModified() >= maxAgeMillis;
+    }
+
+    /**
+     * Reserves the right to create the next snapshot, such that concurrent builds don't all make one.
+     *
+     * @return {@code true} if the caller should create the snapshot and then call {@link #endUpdate()}
+     */
+    public synchronized boolean tryBeginUpdate() {
+        if (updating) {
+            return false;
+        }
+        updating = true;
+        return true;
+    }
+
+    public synchronized void endUpdate() {
+        updating = false;
+    }
+
+    /**
+     * Creates the next snapshot on a background thread, if one is due and isn't already being created.
+     *
+     * @param creator creates and saves the snapshot
+     * @return {@code true} if the snapshot will be created
+     */
+    public boolean refreshLater(final Creator creator) {
+        if (!isDue() || !tryBeginUpdate()) {
+            return false;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    creator.create(WorkspaceSnapshots.this);
+                    recordSuccess();
+                }
+                catch (final Exception e) {
+                    LOGGER.log(Level.WARNING, "Unable to create a snapshot in " + folder, e);
+                    recordFailure();
+                }
+                finally {
+                    endUpdate();
+                }
+            }
+        });
+        return true;
+    }
+
+    synchronized void recordSuccess() {
+        failedAttempts = 0;
+        nextAttemptMillis = 0;
+    }
+
+    synchronized void recordFailure() {
+        failedAttempts++;
+        nextAttemptMillis = now() + getRetryDelayMillis(failedAttempts, maxAgeMillis);
+    }
+
+    /**
+     * @return the delay before the next attempt after the provided number of failed attempts,
+     * doubling from 15 minutes up to the maximum age of a snapshot
+     */
+    static long getRetryDelayMillis(final int failedAttempts, final long maxAgeMillis) {
+        final int shift = Math.min(Math.max(0, failedAttempts - 1), MAX_BACKOFF_SHIFT);
+        return Math.min(INITIAL_RETRY_DELAY_MILLIS << shift, Math.max(INITIAL_RETRY_DELAY_MILLIS, maxAgeMillis));
+    }
+
+    /**
+     * @return a new, empty file next to the snapshots, to receive an archive before it is saved
+     * @throws IOException if the file could not be created
+     */
+    public File createTemporaryArchive() throws IOException {
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Unable to create " + folder);
+        }
+        return File.createTempFile("snapshot", ".tmp", folder);
+    }
+
+    /**
+     * Makes the provided archive the latest snapshot and deletes the previous one.
+     *
+     * @param temporaryArchive the file returned by {@link #createTemporaryArchive()}, now filled
+     * @param changeset the latest changeset among the items in the archive
+     * @param entries the files in the archive
+     * @throws IOException if the snapshot could not be written
+     */
+    public synchronized void save(final File temporaryArchive, final int changeset, final List<WorkspaceSnapshot.Entry> entries) throws IOException {
+        final WorkspaceSnapshot previous = getLatest();
+
+        writeManifest(toManifest(changeset), entries);
+        Files.move(temporaryArchive.toPath(), toArchive(changeset).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        final Properties properties = new Properties();
+        properties.setProperty(CHANGESET_PROPERTY, Integer.toString(changeset));
+        properties.setProperty(CREATED_PROPERTY, Long.toString(now()));
+        final File propertiesFile = new File(folder, PROPERTIES_FILE_NAME);
+        final File temporaryProperties = new File(folder, PROPERTIES_FILE_NAME + ".tmp");
+        final OutputStream output = new FileOutputStream(temporaryProperties);
+        try {
+            properties.store(output, null);
+        }
+        finally {
+            output.close();
+        }
+        Files.move(temporaryProperties.toPath(), propertiesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        if (previous != null && previous.getChangeset() != changeset) {
+            // restores in progress on POSIX systems keep reading the deleted archive
+            toArchive(previous.getChangeset()).delete();
+            toManifest(previous.getChangeset()).delete();
+        }
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private File toArchive(final int changeset) {
+        return new File(folder, "snapshot-" + changeset + ".zip");
+    }
+
+    private File toManifest(final int changeset) {
+        return new File(folder, "manifest-" + changeset + ".txt");
+    }
+
+    static Properties readProperties(final File file) throws IOException {
+        final Properties result = new Properties();
+        final InputStream input = new FileInputStream(file);
+        try {
+            result.load(input);
+        }
+        finally {
+            input.close();
+        }
+        return result;
+    }
+
+    static List<WorkspaceSnapshot.Entry> readManifest(final File file) throws IOException {
+        final List<WorkspaceSnapshot.Entry> result = new ArrayList<WorkspaceSnapshot.Entry>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(SEPARATOR, FIELD_COUNT);
+                if (fields.length != FIELD_COUNT) {
+                    throw new IOException("Malformed line in " + file + ": " + line);
+                }
+                result.add(new WorkspaceSnapshot.Entry(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), fields[2], fields[3]));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    static void writeManifest(final File file, final List<WorkspaceSnapshot.Entry> entries) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8));
+        try {
+            for (final WorkspaceSnapshot.Entry entry : entries) {
+                writer.write(Integer.toString(entry.getItemId()));
+                writer.write(SEPARATOR);
+                writer.write(Integer.toString(entry.getVersion()));
+                writer.write(SEPARATOR);
+                writer.write(entry.getServerItem());
+                writer.write(SEPARATOR);
+                writer.write(entry.getRelativePath());
+                writer.write('\n');
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import hudson.plugins.tfs.commands.DeleteWorkspaceCommand;
 import hudson.plugins.tfs.commands.GetWorkspaceMappingCommand;
 import hudson.plugins.tfs.commands.ListWorkspacesCommand;
 import hudson.plugins.tfs.commands.NewWorkspaceCommand;
+import hudson.plugins.tfs.commands.UpdateWorkspaceMappingCommand;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -27,25 +28,29 @@ public class Workspaces implements ListWorkspacesCommand.WorkspaceFactory {
     }
 
     /**
-     * Get the list of workspaces from the server
+     * Get the list of workspaces from the server, or from the agent's inventory if it knows about the workspace
+     * @param workspaceName the name of the workspace being looked up
      * @return the list of workspaces at the server
      */
-    private List<Workspace> getListFromServer() {
-        // the 2nd arg must NOT be provided, to force computerName resolution on the agent & not the master
-        ListWorkspacesCommand command = new ListWorkspacesCommand(server);
+    private List<Workspace> getListFromServer(String workspaceName) {
+        // the computer must NOT be provided, to force computerName resolution on the agent & not the master
+        ListWorkspacesCommand command = new ListWorkspacesCommand(server, workspaceName);
         final List<Workspace> result = server.execute(command.getCallable());
         return result;
     }
     
     /**
      * Populate the map field with workspaces from the server once.
+     * @param workspaceName the name of the workspace being looked up
      */
-    private void populateMapFromServer() {
+    private void populateMapFromServer(String workspaceName) {
         if (!mapIsPopulatedFromServer) {
-            for (Workspace workspace : getListFromServer()) {
+            for (Workspace workspace : getListFromServer(workspaceName)) {
                 workspaces.put(workspace.getName(), workspace);
             }
-            mapIsPopulatedFromServer = true;
+            // the agent's inventory only answers when it has the workspace, so only a list without it
+            // is known to be the complete list from the server
+            mapIsPopulatedFromServer = !workspaces.containsKey(workspaceName);
         }
     }
     
@@ -56,7 +61,7 @@ public class Workspaces implements ListWorkspacesCommand.WorkspaceFactory {
      */
     public Workspace getWorkspace(String workspaceName) {
         if (!workspaces.containsKey(workspaceName)) {
-            populateMapFromServer();
+            populateMapFromServer(workspaceName);
         }
         return workspaces.get(workspaceName);
     }
@@ -68,7 +73,7 @@ public class Workspaces implements ListWorkspacesCommand.WorkspaceFactory {
      */
     public boolean exists(String workspaceName) {
         if (!workspaces.containsKey(workspaceName)) {
-            populateMapFromServer();
+            populateMapFromServer(workspaceName);
         }
         return workspaces.containsKey(workspaceName);
     }
@@ -105,13 +110,41 @@ public class Workspaces implements ListWorkspacesCommand.WorkspaceFactory {
      * @return a workspace
      */
     public Workspace newWorkspace(final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final String localPath) {
-        NewWorkspaceCommand command = new NewWorkspaceCommand(server, workspaceName, serverPath, cloakedPaths, localPath);
+        return newWorkspace(workspaceName, serverPath, cloakedPaths, localPath, WorkspaceSettings.DEFAULT);
+    }
+
+    /**
+     * Create workspace on server, map it and return a workspace object with the specified name
+     * @param workspaceName the name of the new workspace
+     * @param serverPath the path in TFVC to map
+     * @param cloakedPaths the paths in TFVC to exclude from mapping
+     * @param localPath the path in the local filesystem to map
+     * @param settings the kind of workspace and its options
+     * @return a workspace
+     */
+    public Workspace newWorkspace(final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final String localPath, final WorkspaceSettings settings) {
+        NewWorkspaceCommand command = new NewWorkspaceCommand(server, workspaceName, serverPath, cloakedPaths, localPath, settings);
         server.execute(command.getCallable());
         Workspace workspace = new Workspace(workspaceName);
         workspaces.put(workspaceName, workspace);
         return workspace;
     }
 
+    /**
+     * Changes the working folders of an existing workspace to map serverPath to localPath and cloak cloakedPaths,
+     * adding and removing only the working folders that differ, and sets its options
+     * @param workspaceName the name of the workspace
+     * @param serverPath the path in TFVC to map
+     * @param cloakedPaths the paths in TFVC to exclude from mapping
+     * @param localPath the path in the local filesystem to map
+     * @param useCheckInTimestamps whether retrieved files get the time of their check-in instead of the current time
+     * @return true if the workspace was updated, false if it doesn't exist
+     */
+    public boolean updateWorkspace(final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final String localPath, final boolean useCheckInTimestamps) {
+        UpdateWorkspaceMappingCommand command = new UpdateWorkspaceMappingCommand(server, workspaceName, serverPath, cloakedPaths, localPath, useCheckInTimestamps);
+        return server.execute(command.getCallable());
+    }
+
     /**
      * Deletes the workspace from the server
      * @param workspace the workspace to delete
@@ -122,6 +155,30 @@ public class Workspaces implements ListWorkspacesCommand.WorkspaceFactory {
         server.execute(command.getCallable());
     }
 
+    /**
+     * Deletes the workspace of the named computer from the server, which doesn't need to be
+     * the computer the commands run on
+     * @param workspaceName the name of the workspace
+     * @param computerName the name TFS knows the workspace's computer by
+     * @return true if the workspace existed and was deleted; false if the server has no such workspace
+     */
+    public boolean deleteWorkspace(final String workspaceName, final String computerName) {
+        final ListWorkspacesCommand listCommand = new ListWorkspacesCommand(server, computerName, false);
+        boolean found = false;
+        for (final Workspace workspace : server.execute(listCommand.getCallable())) {
+            if (workspace.getName().equalsIgnoreCase(workspaceName)) {
+                found = true;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+        final DeleteWorkspaceCommand command = new DeleteWorkspaceCommand(server, workspaceName, computerName);
+        workspaces.remove(workspaceName);
+        server.execute(command.getCallable());
+        return true;
+    }
+
     public Workspace createWorkspace(String name, String computer, String owner, String comment) {
         return new Workspace(name, computer, owner, comment);
     }
@@ -1,5 +1,8 @@
 package hudson.plugins.tfs.model.servicehooks;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import java.util.Map;
 import java.util.UUID;
 
@@ -13,6 +16,7 @@ public class Event {
     private EventScope scope;
     private FormattedEventMessage message;
     private FormattedEventMessage detailedMessage;
+    @JsonDeserialize(using = ResourceDeserializer.class)
     private Object resource;
     private String resourceVersion;
     private Map<String, ResourceContainer> resourceContainers;
@@ -77,6 +81,19 @@ public class Event {
         this.resource = resource;
     }
 
+    /**
+     * @param mapper an {@link ObjectMapper} instance to use to convert the resource, if it wasn't read as
+     *               the requested type already
+     * @param resourceType the class to represent the resource with
+     * @return the resource, converted only if it was read as something else
+     */
+    public <T> T getResource(final ObjectMapper mapper, final Class<T> resourceType) {
+        if (resourceType.isInstance(resource)) {
+            return resourceType.cast(resource);
+        }
+        return mapper.convertValue(resource, resourceType);
+    }
+
     public String getResourceVersion() {
         return resourceVersion;
     }
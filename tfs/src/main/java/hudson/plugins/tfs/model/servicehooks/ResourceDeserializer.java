@@ -0,0 +1,28 @@
+package hudson.plugins.tfs.model.servicehooks;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads the {@link Event#getResource() resource} of an event straight into the class named by the
+ * {@link #RESOURCE_TYPE} attribute of the reader, such that the handler of the event doesn't need to convert
+ * it from a tree of maps afterwards.  Without the attribute, the resource is read into maps and lists, as before.
+ */
+public class ResourceDeserializer extends JsonDeserializer<Object> {
+
+    /**
+     * The name of the {@link com.fasterxml.jackson.databind.ObjectReader} attribute holding the
+     * {@link Class} to read the resource into.
+     */
+    public static final String RESOURCE_TYPE = ResourceDeserializer.class.getName() + ".resourceType";
+
+    @Override
+    public Object deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        final Object attribute = ctxt.getAttribute(RESOURCE_TYPE);
+        final Class<?> resourceType = attribute instanceof Class ? (Class<?>) attribute : Object.class;
+        return ctxt.findRootValueDeserializer(ctxt.constructType(resourceType)).deserialize(p, ctxt);
+    }
+}
@@ -0,0 +1,126 @@
+package hudson.plugins.tfs.util;
+
+import hudson.model.Run;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.impl.MessageExclusion;
+import hudson.plugins.git.extensions.impl.PathRestriction;
+import hudson.plugins.git.extensions.impl.UserExclusion;
+import hudson.plugins.git.util.BuildData;
+import hudson.plugins.tfs.model.GitCodePushedEventArgs;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.URIish;
+
+import java.net.URISyntaxException;
+import java.util.Set;
+
+/**
+ * Answers questions about pushes from the {@link BuildData} the Git plugin records with each build.
+ */
+public final class BuildDataHelper {
+
+    private static final String HEADS_PREFIX = "refs/heads/";
+    private static final String REMOTES_PREFIX = "refs/remotes/";
+
+    private BuildDataHelper() {
+    }
+
+    /**
+     * Decides whether the commit of a push still needs to be built, without contacting the repository.
+     *
+     * @param lastBuild the last build of the job, or {@code null} if it was never built
+     * @param args the push
+     * @return {@code false} if the pushed commit was built already, {@code true} if it wasn't but the branch
+     * was built before, or {@code null} if the build data doesn't tell, such as when the job never built that
+     * repository or branch, or the push doesn't say which ref it updated
+     */
+    public static Boolean isNewCommit(final Run<?, ?> lastBuild, final GitCodePushedEventArgs args) {
+        if (lastBuild == null || StringUtils.isBlank(args.commit) || StringUtils.isBlank(args.targetRef)) {
+            return null;
+        }
+        final ObjectId pushed;
+        try {
+            pushed = ObjectId.fromString(args.commit);
+        }
+        catch (final IllegalArgumentException e) {
+            return null;
+        }
+        final URIish repository = args.getRepoURIish();
+        for (final BuildData buildData : lastBuild.getActions(BuildData.class)) {
+            if (!isFor(buildData, repository)) {
+                continue;
+            }
+            if (buildData.hasBeenBuilt(pushed)) {
+                return false;
+            }
+            for (final String branchName : buildData.getBuildsByBranchName().keySet()) {
+                if (isBranch(branchName, args.targetRef)) {
+                    return true;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Polling may skip a commit the build data has no record of, such as one that only touches excluded paths,
+     * so such SCMs must still be polled.
+     *
+     * @param scm the SCM whose repository was pushed to
+     * @return {@code true} if the SCM has an extension that changes what polling finds
+     */
+    public static boolean hasPollingExtensions(final GitSCM scm) {
+        for (final GitSCMExtension extension : scm.getExtensions()) {
+            if (extension.requiresWorkspaceForPolling()
+                    || extension instanceof PathRestriction
+                    || extension instanceof UserExclusion
+                    || extension instanceof MessageExclusion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isFor(final BuildData buildData, final URIish repository) {
+        final Set<String> remoteUrls = buildData.getRemoteUrls();
+        if (remoteUrls == null) {
+            return false;
+        }
+        for (final String remoteUrl : remoteUrls) {
+            try {
+                if (UriHelper.areSameGitRepo(repository, new URIish(remoteUrl))) {
+                    return true;
+                }
+            }
+            catch (final URISyntaxException ignored) {
+                // not a URL we can compare
+            }
+            catch (final IllegalArgumentException ignored) {
+                // not a URL we can compare
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the whole names, such that {@code origin/feature/master} isn't taken for {@code master}.
+     *
+     * @param branchName a branch as recorded by the Git plugin, such as {@code origin/master},
+     *                   {@code refs/remotes/origin/master} or {@code refs/heads/master}
+     * @param targetRef the full name of the pushed ref, such as {@code refs/heads/master}
+     */
+    static boolean isBranch(final String branchName, final String targetRef) {
+        if (branchName.equals(targetRef)) {
+            return true;
+        }
+        if (!targetRef.startsWith(HEADS_PREFIX)) {
+            return false;
+        }
+        final String targetBranch = targetRef.substring(HEADS_PREFIX.length());
+        final String remoteBranch = branchName.startsWith(REMOTES_PREFIX) ? branchName.substring(REMOTES_PREFIX.length()) : branchName;
+        // the name of the remote is a single segment
+        final int separator = remoteBranch.indexOf('/');
+        return separator > 0 && remoteBranch.substring(separator + 1).equals(targetBranch);
+    }
+}
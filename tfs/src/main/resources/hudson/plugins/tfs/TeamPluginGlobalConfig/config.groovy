@@ -27,6 +27,36 @@ f.section(title: descriptor.displayName) {
         )
     }
     f.advanced() {
+        f.entry(title: _("Decide push builds from the last built commit"),
+                field: "decidePushBuildsFromBuildData",
+                description: "Compare the pushed commit with the commits the job already built instead of polling the repository.") {
+            f.checkbox (default: false)
+        }
+        f.entry(title: _("Maximum concurrent team-events requests"),
+                field: "maxConcurrentEventRequests",
+                description: "The number of requests to the /team-events/ endpoint handled at once; 0 means no limit.") {
+            f.number(default: 0, min: 0, clazz: "number")
+        }
+        f.entry(title: _("Maximum queued team events"),
+                field: "maxQueuedEvents",
+                description: "The number of push and pull request events that may wait to be processed; 0 means no limit.") {
+            f.number(default: 0, min: 0, clazz: "number")
+        }
+        f.entry(title: _("Maximum concurrent team-build requests"),
+                field: "maxConcurrentBuildRequests",
+                description: "The number of requests to the /team-build/ endpoint handled at once; 0 means no limit.") {
+            f.number(default: 0, min: 0, clazz: "number")
+        }
+        f.entry(title: _("TFVC download concurrency"),
+                field: "downloadConcurrency",
+                description: "The number of top-level folders of a TFVC mapping to download at once, unless a job overrides it.") {
+            f.number(default: 1, min: 1, clazz: "positive-number")
+        }
+        f.entry(title: _("TFVC download cache size (MB)"),
+                field: "downloadCacheSizeMegabytes",
+                description: "The space each computer may use to share downloaded TFVC files between workspaces; 0 turns the cache off.") {
+            f.number(default: 0, min: 0, clazz: "number")
+        }
         f.entry(title: _("Store TFVC configuration in computer-specific folders"),
                 field: "configFolderPerNode",
                 description: "Warning: don't turn this on unless you know what you are doing!") {
@@ -0,0 +1,81 @@
+package hudson.plugins.tfs;
+
+import static org.mockito.Mockito.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import net.sf.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * A class to test {@link EndpointLimiter}.
+ */
+public class EndpointLimiterTest {
+
+    @Test
+    public void tryEnter_limitsConcurrentRequests() {
+        final EndpointLimiter cut = new EndpointLimiter("team-events");
+
+        Assert.assertTrue(cut.tryEnter(2));
+        Assert.assertTrue(cut.tryEnter(2));
+        Assert.assertFalse(cut.tryEnter(2));
+        Assert.assertEquals(2, cut.getInFlight());
+        Assert.assertEquals(1, cut.getRejected());
+
+        cut.exit();
+        Assert.assertTrue(cut.tryEnter(2));
+        Assert.assertEquals(2, cut.getInFlight());
+    }
+
+    @Test
+    public void tryEnter_noLimit() {
+        final EndpointLimiter cut = new EndpointLimiter("team-build");
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(cut.tryEnter(0));
+        }
+        Assert.assertEquals(100, cut.getInFlight());
+        Assert.assertEquals(0, cut.getRejected());
+    }
+
+    @Test
+    public void mayQueue() {
+        final EndpointLimiter cut = new EndpointLimiter("team-events");
+
+        Assert.assertTrue(cut.mayQueue(9, 10));
+        Assert.assertFalse(cut.mayQueue(10, 10));
+        Assert.assertTrue(cut.mayQueue(10000, 0));
+        Assert.assertEquals(1, cut.getRejected());
+    }
+
+    @Test
+    public void reject_answersWithRetryAfter() throws Exception {
+        final EndpointLimiter cut = new EndpointLimiter("team-events", 15);
+        final StaplerResponse rsp = mock(StaplerResponse.class);
+        final StringWriter body = new StringWriter();
+        when(rsp.getWriter()).thenReturn(new PrintWriter(body));
+
+        cut.reject(rsp, "Too many events are waiting to be processed.");
+
+        verify(rsp).setStatus(EndpointLimiter.SC_TOO_MANY_REQUESTS);
+        verify(rsp).setHeader("Retry-After", "15");
+        final JSONObject actual = JSONObject.fromObject(body.toString());
+        Assert.assertEquals(15, actual.getInt("retryAfterSeconds"));
+    }
+
+    @Test
+    public void toJSONObject() {
+        final EndpointLimiter cut = new EndpointLimiter("team-build");
+        cut.tryEnter(1);
+        cut.tryEnter(1);
+
+        final JSONObject actual = cut.toJSONObject(1);
+
+        Assert.assertEquals(1, actual.getInt("inFlight"));
+        Assert.assertEquals(1, actual.getInt("maxConcurrentRequests"));
+        Assert.assertEquals(1, actual.getLong("rejected"));
+    }
+}
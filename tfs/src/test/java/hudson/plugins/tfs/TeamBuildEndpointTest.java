@@ -1,8 +1,21 @@
 package hudson.plugins.tfs;
 
+import static org.mockito.Mockito.*;
+
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitPush;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.plugins.tfs.model.BuildCommand;
+import hudson.plugins.tfs.model.BuildWithParametersCommand;
+import hudson.plugins.tfs.model.TeamBuildPayload;
+import hudson.plugins.tfs.util.EndpointHelper;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 /**
  * A class to test {@link TeamBuildEndpoint}.
  */
@@ -50,4 +63,51 @@ public class TeamBuildEndpointTest {
         Assert.assertEquals("ping", cut.getCommandName());
     }
 
+    @Test public void decodePayload_teamBuild() throws Exception {
+        final String input = new BuildCommand.Factory().getSampleRequestPayload();
+
+        final TeamBuildPayload actual = TeamBuildEndpoint.decodePayload(input);
+
+        Assert.assertEquals("TfGit", actual.BuildVariables.get("Build.Repository.Provider"));
+        Assert.assertNull(actual.BuildParameters);
+        Assert.assertNull(actual.ServiceHookEvent);
+    }
+
+    @Test public void decodePayload_parametersAndTeamEvent() throws Exception {
+        final String input = new BuildWithParametersCommand.Factory().getSampleRequestPayload();
+
+        final TeamBuildPayload actual = TeamBuildEndpoint.decodePayload(input);
+
+        Assert.assertEquals(2, actual.BuildParameters.size());
+        Assert.assertEquals("verbosity", actual.BuildParameters.get(1).name);
+        Assert.assertEquals("git.push", actual.ServiceHookEvent.getEventType());
+        final GitPush gitPush = actual.ServiceHookEvent.getResource(EndpointHelper.MAPPER, GitPush.class);
+        Assert.assertEquals("Jamal Hartnett", gitPush.getPushedBy().getDisplayName());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test public void findBranchJob_directChild() throws Exception {
+        final Item multibranch = mock(Item.class, withSettings().extraInterfaces(ItemGroup.class));
+        final Job branchJob = mock(Job.class);
+        when(((ItemGroup<Item>) multibranch).getItem("feature%2Flogin")).thenReturn(branchJob);
+
+        final Job actual = TeamBuildEndpoint.findBranchJob(multibranch, "feature%2Flogin");
+
+        Assert.assertSame(branchJob, actual);
+        verify(multibranch, never()).getAllJobs();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test public void findBranchJob_nestedJobs() throws Exception {
+        final Item folder = mock(Item.class, withSettings().extraInterfaces(ItemGroup.class));
+        final Job other = mock(Job.class);
+        when(other.getName()).thenReturn("master");
+        final Job branchJob = mock(Job.class);
+        when(branchJob.getName()).thenReturn("feature%2Flogin");
+        when((Collection) folder.getAllJobs()).thenReturn(Arrays.asList(other, branchJob));
+
+        Assert.assertSame(branchJob, TeamBuildEndpoint.findBranchJob(folder, "feature%2Flogin"));
+        Assert.assertNull(TeamBuildEndpoint.findBranchJob(folder, "missing"));
+    }
+
 }
@@ -0,0 +1,218 @@
+package hudson.plugins.tfs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import hudson.plugins.tfs.model.servicehooks.Event;
+import net.sf.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A class to test {@link TeamEventQueue}.
+ */
+public class TeamEventQueueTest {
+
+    private static final String BODY = "{\"eventType\":\"git.push\",\"resource\":{}}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Keeps the submitted events until the test runs them.
+     */
+    private static class CollectingExecutor implements Executor {
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            runnables.add(command);
+        }
+
+        void runAll() {
+            final List<Runnable> toRun = new ArrayList<Runnable>(runnables);
+            runnables.clear();
+            for (final Runnable runnable : toRun) {
+                runnable.run();
+            }
+        }
+    }
+
+    /**
+     * Records the processed events and fails those named "broken".
+     */
+    private static class RecordingProcessor implements TeamEventQueue.Processor {
+        final List<String> processed = new ArrayList<String>();
+
+        @Override
+        public JSONObject process(final TeamEventRecord record) throws Exception {
+            final String eventName = record.getEventName();
+            if ("broken".equals(eventName)) {
+                throw new IllegalArgumentException("Payload did not contain 'resource'.");
+            }
+            processed.add(eventName);
+            final JSONObject result = new JSONObject();
+            result.put("messages", "Scheduled polling of job");
+            return result;
+        }
+    }
+
+    @Test
+    public void submit_processesInTheBackground() throws Exception {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingProcessor processor = new RecordingProcessor();
+        final TeamEventQueue cut = new TeamEventQueue(temporaryFolder.getRoot(), executor, processor);
+
+        final TeamEventRecord record = cut.submit("42", "gitPush", BODY);
+
+        Assert.assertEquals(TeamEventRecord.State.QUEUED, record.getState());
+        Assert.assertEquals(1, cut.getPendingCount());
+        Assert.assertTrue(processor.processed.isEmpty());
+        executor.runAll();
+        Assert.assertEquals(TeamEventRecord.State.SUCCEEDED, record.getState());
+        Assert.assertEquals(0, cut.getPendingCount());
+        Assert.assertNull(record.getBody());
+        Assert.assertSame(record, cut.get("42"));
+        final JSONObject status = record.toJSONObject();
+        Assert.assertEquals("42", status.getString("eventId"));
+        Assert.assertEquals("Scheduled polling of job", status.getJSONObject("result").getString("messages"));
+        Assert.assertEquals(0, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void submit_ignoresRedeliveries() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingProcessor processor = new RecordingProcessor();
+        final TeamEventQueue cut = new TeamEventQueue(null, executor, processor);
+
+        final TeamEventRecord first = cut.submit("42", "gitPush", BODY);
+        executor.runAll();
+        final TeamEventRecord second = cut.submit("42", "gitPush", BODY);
+
+        Assert.assertSame(first, second);
+        Assert.assertTrue(executor.runnables.isEmpty());
+        Assert.assertEquals(1, processor.processed.size());
+    }
+
+    @Test
+    public void run_recordsFailure() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TeamEventQueue cut = new TeamEventQueue(null, executor, new RecordingProcessor());
+
+        final TeamEventRecord record = cut.submit("42", "broken", BODY);
+        executor.runAll();
+
+        Assert.assertEquals(TeamEventRecord.State.FAILED, record.getState());
+        Assert.assertEquals("Payload did not contain 'resource'.", record.getError());
+        Assert.assertEquals(0, cut.getPendingCount());
+    }
+
+    @Test
+    public void submit_coalescesEventsWithSameKey() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingProcessor processor = new RecordingProcessor();
+        final List<Runnable> delayed = new ArrayList<Runnable>();
+        final TeamEventQueue cut = new TeamEventQueue(null, executor, processor, 5000) {
+            @Override
+            void schedule(final Runnable command, final long delayMillis) {
+                Assert.assertEquals(5000, delayMillis);
+                delayed.add(command);
+            }
+
+            @Override
+            long now() {
+                return 1000;
+            }
+        };
+
+        final TeamEventRecord first = cut.submit("1", "gitPush", BODY, "collection|repo|refs/heads/master");
+        final TeamEventRecord second = cut.submit("2", "gitPush", BODY, "collection|repo|refs/heads/master");
+        for (final Runnable runnable : delayed) {
+            runnable.run();
+        }
+        executor.runAll();
+        final TeamEventRecord third = cut.submit("3", "gitPush", BODY, "collection|repo|refs/heads/master");
+
+        Assert.assertEquals(TeamEventRecord.State.MERGED, first.getState());
+        Assert.assertEquals("2", first.getMergedInto());
+        Assert.assertEquals(TeamEventRecord.State.SUCCEEDED, second.getState());
+        Assert.assertEquals(1, processor.processed.size());
+        Assert.assertEquals("A processed event can't be merged", TeamEventRecord.State.QUEUED, third.getState());
+        Assert.assertEquals(1, cut.getPendingCount());
+    }
+
+    @Test
+    public void submit_coalescesNoLongerThanTheWindow() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingProcessor processor = new RecordingProcessor();
+        final List<Long> delays = new ArrayList<Long>();
+        final long[] now = {1000};
+        final TeamEventQueue cut = new TeamEventQueue(null, executor, processor, 5000) {
+            @Override
+            void schedule(final Runnable command, final long delayMillis) {
+                delays.add(delayMillis);
+            }
+
+            @Override
+            long now() {
+                return now[0];
+            }
+        };
+
+        cut.submit("1", "gitPush", BODY, "collection|repo|refs/heads/master");
+        now[0] = 4000;
+        cut.submit("2", "gitPush", BODY, "collection|repo|refs/heads/master");
+        now[0] = 7000;
+        final TeamEventRecord third = cut.submit("3", "gitPush", BODY, "collection|repo|refs/heads/master");
+
+        Assert.assertEquals(Arrays.asList(5000L, 2000L, 0L), delays);
+        Assert.assertEquals(TeamEventRecord.State.QUEUED, third.getState());
+        Assert.assertEquals(1, cut.getPendingCount());
+    }
+
+    @Test
+    public void submit_handsDecodedPayloadToProcessing() throws Exception {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final List<Event> events = new ArrayList<Event>();
+        final TeamEventQueue cut = new TeamEventQueue(null, executor, new TeamEventQueue.Processor() {
+            @Override
+            public JSONObject process(final TeamEventRecord record) throws Exception {
+                events.add(record.getEvent());
+                return null;
+            }
+        });
+        final Event event = new Event();
+
+        final TeamEventRecord record = cut.submit("42", "gitPush", BODY, event, null);
+        executor.runAll();
+
+        Assert.assertSame(event, events.get(0));
+        Assert.assertNull("The payload is let go once processed", record.getEvent());
+    }
+
+    @Test
+    public void resumeAll_replaysUnprocessedEvents() throws Exception {
+        final File directory = new File(temporaryFolder.getRoot(), TeamEventQueue.DIRECTORY_NAME);
+        final TeamEventQueue first = new TeamEventQueue(directory, new CollectingExecutor(), new RecordingProcessor());
+        first.submit("1", "gitPush", BODY);
+        first.submit("2", "gitPullRequestMerged", BODY);
+
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingProcessor processor = new RecordingProcessor();
+        final TeamEventQueue second = new TeamEventQueue(directory, executor, processor);
+        second.resumeAll();
+        Assert.assertEquals(2, second.getPendingCount());
+        Assert.assertEquals(BODY, second.get("1").getBody());
+        executor.runAll();
+        Assert.assertEquals(2, processor.processed.size());
+
+        final TeamEventQueue third = new TeamEventQueue(directory, executor, processor);
+        third.resumeAll();
+        Assert.assertEquals(0, third.getPendingCount());
+    }
+}
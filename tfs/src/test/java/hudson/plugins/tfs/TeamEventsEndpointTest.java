@@ -4,15 +4,20 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.teamfoundation.common.model.ProjectState;
 import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitPush;
 import hudson.plugins.tfs.model.AbstractHookEvent;
+import hudson.plugins.tfs.model.GitPushEvent;
 import hudson.plugins.tfs.model.servicehooks.Event;
 import hudson.plugins.tfs.model.servicehooks.ResourceContainer;
+import hudson.plugins.tfs.util.EndpointHelper;
 import hudson.plugins.tfs.util.ResourceHelper;
 import net.sf.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * A class to test {@link TeamEventsEndpoint}.
@@ -32,6 +37,25 @@ public class TeamEventsEndpointTest {
         Assert.assertEquals("https://fabrikam-fiber-inc.visualstudio.com/", collection.getBaseUrl());
     }
 
+    @Test
+    public void deserializeEvent_resourceReadAsType() throws Exception {
+        final Event actual = TeamEventsEndpoint.deserializeEvent(GIT_PUSH_SAMPLE_JSON, GitPush.class);
+
+        final Object resource = actual.getResource();
+        Assert.assertTrue(resource instanceof GitPush);
+        Assert.assertSame(resource, actual.getResource(EndpointHelper.MAPPER, GitPush.class));
+        Assert.assertEquals(ProjectState.WELL_FORMED, ((GitPush) resource).getRepository().getProject().getState());
+    }
+
+    @Test
+    public void deserializeEvent_resourceReadAsMap() throws Exception {
+        final Event actual = TeamEventsEndpoint.deserializeEvent(GIT_PUSH_SAMPLE_JSON);
+
+        Assert.assertTrue(actual.getResource() instanceof Map);
+        final GitPush gitPush = actual.getResource(EndpointHelper.MAPPER, GitPush.class);
+        Assert.assertEquals(ProjectState.WELL_FORMED, gitPush.getRepository().getProject().getState());
+    }
+
     @Test
     public void innerDispatch_fakedGitPushEventHandling() throws Exception {
         final Map<String, AbstractHookEvent.Factory> factories = new HashMap<String, AbstractHookEvent.Factory>();
@@ -41,6 +65,65 @@ public class TeamEventsEndpointTest {
         TeamEventsEndpoint.innerDispatch(GIT_PUSH_SAMPLE_JSON, eventName, factories);
     }
 
+    @Test
+    public void innerEnqueue_usesNotificationId() throws Exception {
+        final Map<String, AbstractHookEvent.Factory> factories = new HashMap<String, AbstractHookEvent.Factory>();
+        final String eventName = "fakedGitPush";
+        factories.put(eventName, FakedGitPush.FACTORY);
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+        final TeamEventQueue queue = new TeamEventQueue(null, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                runnables.add(command);
+            }
+        }, null);
+
+        final TeamEventRecord actual = TeamEventsEndpoint.innerEnqueue(GIT_PUSH_SAMPLE_JSON, eventName, factories, queue);
+
+        Assert.assertEquals("03c164c2-8912-4d5e-8009-3707d5f83734", actual.getId());
+        Assert.assertEquals(TeamEventRecord.State.QUEUED, actual.getState());
+        Assert.assertEquals(1, runnables.size());
+    }
+
+    @Test
+    public void innerEnqueue_coalescesPushesToSameBranch() throws Exception {
+        final Map<String, AbstractHookEvent.Factory> factories = new HashMap<String, AbstractHookEvent.Factory>();
+        factories.put("gitPush", new GitPushEvent.Factory());
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+        final TeamEventQueue queue = new TeamEventQueue(null, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                runnables.add(command);
+            }
+        }, null, 5000) {
+            @Override
+            void schedule(final Runnable command, final long delayMillis) {
+                runnables.add(command);
+            }
+        };
+        final String secondPush = GIT_PUSH_SAMPLE_JSON.replace("03c164c2-8912-4d5e-8009-3707d5f83734", "13c164c2-8912-4d5e-8009-3707d5f83734");
+        final String otherBranch = secondPush.replace("refs/heads/master", "refs/heads/feature").replace("13c164c2", "23c164c2");
+
+        final TeamEventRecord first = TeamEventsEndpoint.innerEnqueue(GIT_PUSH_SAMPLE_JSON, "gitPush", factories, queue);
+        final TeamEventRecord second = TeamEventsEndpoint.innerEnqueue(secondPush, "gitPush", factories, queue);
+        final TeamEventRecord third = TeamEventsEndpoint.innerEnqueue(otherBranch, "gitPush", factories, queue);
+
+        Assert.assertEquals(TeamEventRecord.State.MERGED, first.getState());
+        Assert.assertEquals(second.getId(), first.getMergedInto());
+        Assert.assertEquals(TeamEventRecord.State.QUEUED, second.getState());
+        Assert.assertEquals(TeamEventRecord.State.QUEUED, third.getState());
+        Assert.assertEquals(2, queue.getPendingCount());
+        Assert.assertNull(first.getEvent());
+        Assert.assertTrue("The decoded payload is kept for processing", second.getEvent().getResource() instanceof GitPush);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void innerEnqueue_unknownEvent() throws Exception {
+        final Map<String, AbstractHookEvent.Factory> factories = new HashMap<String, AbstractHookEvent.Factory>();
+
+        TeamEventsEndpoint.innerEnqueue(GIT_PUSH_SAMPLE_JSON, "gitPush", factories, null);
+    }
+
     private static class FakedGitPush extends AbstractHookEvent {
 
         public static final AbstractHookEvent.Factory FACTORY = new Factory() {
@@ -9,7 +9,10 @@ import hudson.model.BuildListener;
 import hudson.model.Computer;
 import hudson.model.Node;
 import hudson.model.ParametersAction;
+import hudson.model.Run;
+import hudson.plugins.tfs.model.ChangedFilesLocation;
 import hudson.plugins.tfs.model.Project;
+import hudson.remoting.VirtualChannel;
 import hudson.util.Secret;
 import hudson.util.SecretOverride;
 import hudson.util.XStream2;
@@ -93,6 +96,10 @@ public class TeamFoundationServerScmTest {
                             "  <credentialsConfigurer class=\"hudson.plugins.tfs.model.ManualCredentialsConfigurer\"/>\n" +
                             "  <useUpdate>false</useUpdate>\n" +
                             "  <useOverwrite>false</useOverwrite>\n" +
+                            "  <useLocalWorkspace>false</useLocalWorkspace>\n" +
+                            "  <downloadConcurrency>0</downloadConcurrency>\n" +
+                            "  <useWorkspaceSnapshots>false</useWorkspaceSnapshots>\n" +
+                            "  <useCheckInTimestamps>false</useCheckInTimestamps>\n" +
                             "</hudson.plugins.tfs.TeamFoundationServerScm>";
 
             final String actualUpgradedXml = serializer.toXML(tfsScmObject);
@@ -388,6 +395,37 @@ public class TeamFoundationServerScmTest {
         assertEquals("Workspace changeset version was incorrect", "12345", env.get(TeamFoundationServerScm.WORKSPACE_CHANGESET_ENV_STR));
     }
   
+    @Test
+    public void assertChangedFilesAreAddedToEnvVars() throws Exception {
+        final TeamFoundationServerScm scm = createForEnvVars();
+        final TeamFoundationServerScm other = new TeamFoundationServerScm("serverurl", "otherpath", "WORKSPACE_SAMPLE", "user", null);
+        final Run run = mock(Run.class);
+        Map<String, String> env = new HashMap<String, String>();
+        scm.buildEnvironment(run, env);
+        assertEquals("Changed files were added without a manifest", null, env.get(TeamFoundationServerScm.CHANGED_FILES_ENV_STR));
+
+        final ChangedFilesLocation otherLocation = new ChangedFilesLocation(other.getChangedFilesKey(), "/this/is/b@tmp/other.txt");
+        final ChangedFilesLocation location = new ChangedFilesLocation(scm.getChangedFilesKey(), "/this/is/a@tmp/mine.txt");
+        when(run.getActions(ChangedFilesLocation.class)).thenReturn(Arrays.asList(otherLocation, location));
+        scm.buildEnvironment(run, env);
+        assertEquals("The changed files path was incorrect", "/this/is/a@tmp/mine.txt", env.get(TeamFoundationServerScm.CHANGED_FILES_ENV_STR));
+    }
+
+    @Test
+    public void getChangedFilesPath() throws Exception {
+        final TeamFoundationServerScm scm = createForEnvVars();
+        final TeamFoundationServerScm other = new TeamFoundationServerScm("serverurl", "otherpath", "WORKSPACE_SAMPLE", "user", null);
+        final String fileName = TeamFoundationServerScm.getChangedFilesName(scm.getChangedFilesKey());
+        assertFalse(fileName.equals(TeamFoundationServerScm.getChangedFilesName(other.getChangedFilesKey())));
+        assertTrue(fileName.startsWith("tfs-changed-files-"));
+        assertTrue(fileName.endsWith(".txt"));
+
+        final FilePath workspaceFilePath = new FilePath((VirtualChannel) null, "/this/is/a");
+        final FilePath actual = TeamFoundationServerScm.getChangedFilesPath(workspaceFilePath, fileName);
+
+        assertEquals("/this/is/a@tmp/" + fileName, actual.getRemote());
+    }
+
     @Test
     public void assertTfsWorkspaceChangesetIsNotAddedToEnvVarsIfEmpty() throws Exception {
         final TeamFoundationServerScm scm = createForEnvVars();
@@ -0,0 +1,117 @@
+package hudson.plugins.tfs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A class to test {@link TeamPollingQueue}.
+ */
+public class TeamPollingQueueTest {
+
+    /**
+     * Keeps the submitted drainers until the test runs them.
+     */
+    private static class CollectingExecutor implements Executor {
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            runnables.add(command);
+        }
+
+        void runAll() {
+            final List<Runnable> toRun = new ArrayList<Runnable>(runnables);
+            runnables.clear();
+            for (final Runnable runnable : toRun) {
+                runnable.run();
+            }
+        }
+    }
+
+    private static Runnable record(final List<String> log, final String entry) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(entry);
+            }
+        };
+    }
+
+    @Test
+    public void submit_pollsEachJobOnItsOwnThread() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TeamPollingQueue cut = new TeamPollingQueue(executor);
+        final List<String> log = new ArrayList<String>();
+
+        cut.submit("one", "branch master", record(log, "one"));
+        cut.submit("two", "branch master", record(log, "two"));
+
+        Assert.assertEquals(2, executor.runnables.size());
+        Assert.assertTrue(log.isEmpty());
+        executor.runAll();
+        Assert.assertEquals(2, log.size());
+        Assert.assertEquals(0, cut.getWaitingCount());
+    }
+
+    @Test
+    public void submit_replacesWaitingRequestAboutSameSubject() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TeamPollingQueue cut = new TeamPollingQueue(executor);
+        final List<String> log = new ArrayList<String>();
+
+        cut.submit("job", "branch master", record(log, "first push to master"));
+        cut.submit("job", "branch feature", record(log, "push to feature"));
+        cut.submit("job", "branch master", record(log, "second push to master"));
+
+        Assert.assertEquals(1, executor.runnables.size());
+        Assert.assertEquals(2, cut.getWaitingCount());
+        executor.runAll();
+        Assert.assertEquals(2, log.size());
+        Assert.assertEquals("second push to master", log.get(0));
+        Assert.assertEquals("push to feature", log.get(1));
+    }
+
+    @Test
+    public void submit_whilePollingRunsAfterwardsOnSameThread() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TeamPollingQueue cut = new TeamPollingQueue(executor);
+        final List<String> log = new ArrayList<String>();
+        cut.submit("job", "branch master", new Runnable() {
+            @Override
+            public void run() {
+                log.add("first");
+                cut.submit("job", "branch master", record(log, "second"));
+            }
+        });
+
+        executor.runAll();
+
+        Assert.assertEquals(2, log.size());
+        Assert.assertTrue(executor.runnables.isEmpty());
+
+        cut.submit("job", "branch master", record(log, "third"));
+        Assert.assertEquals("The job is no longer being polled", 1, executor.runnables.size());
+    }
+
+    @Test
+    public void run_keepsGoingAfterFailure() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TeamPollingQueue cut = new TeamPollingQueue(executor);
+        final List<String> log = new ArrayList<String>();
+        cut.submit("job", "branch master", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("ls-remote failed");
+            }
+        });
+        cut.submit("job", "branch feature", record(log, "feature"));
+
+        executor.runAll();
+
+        Assert.assertEquals(1, log.size());
+    }
+}
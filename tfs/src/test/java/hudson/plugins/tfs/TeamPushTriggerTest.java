@@ -0,0 +1,120 @@
+package hudson.plugins.tfs;
+
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.tfs.model.GitCodePushedEventArgs;
+import hudson.scm.PollingResult;
+import hudson.scm.SCM;
+import hudson.scm.SCMRevisionState;
+import jenkins.triggers.SCMTriggerItem;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A class to test {@link TeamPushTrigger}.
+ */
+public class TeamPushTriggerTest {
+
+    private static SCM createScm(final String key) {
+        final SCM scm = mock(SCM.class);
+        when(scm.getKey()).thenReturn(key);
+        return scm;
+    }
+
+    private static GitSCM createGitScm(final String key) {
+        final GitSCM scm = mock(GitSCM.class);
+        when(scm.getKey()).thenReturn(key);
+        return scm;
+    }
+
+    private static Job<?, ?> createJob(final SCM... scms) {
+        final Job<?, ?> job = mock(Job.class, withSettings().extraInterfaces(SCMTriggerItem.class));
+        final SCMTriggerItem item = (SCMTriggerItem) job;
+        doReturn(Arrays.asList(scms)).when(item).getSCMs();
+        when(item.poll(any(TaskListener.class))).thenReturn(PollingResult.BUILD_NOW);
+        return job;
+    }
+
+    private static TeamPushTrigger.Runner createRunner(final Job<?, ?> job, final SCM matchedScm) {
+        final TeamPushTrigger trigger = new TeamPushTrigger(job);
+        return trigger.new Runner(new GitCodePushedEventArgs(), Collections.<Action>emptyList(), false, matchedScm);
+    }
+
+    @Test
+    public void poll_matchedScmPollsTheJob() throws Exception {
+        final SCM first = createScm("git https://fabrikam.visualstudio.com/_git/First");
+        final SCM second = createScm("git https://fabrikam.visualstudio.com/_git/Second");
+        final Job<?, ?> job = createJob(first, second);
+
+        final PollingResult actual = createRunner(job, second).poll(TaskListener.NULL);
+
+        Assert.assertSame(PollingResult.BUILD_NOW, actual);
+        verify((SCMTriggerItem) job).poll(TaskListener.NULL);
+    }
+
+    @Test
+    public void poll_unmatchedScmDoesNotPollTheJob() throws Exception {
+        final SCM first = createScm("git https://fabrikam.visualstudio.com/_git/First");
+        final SCM removed = createScm("git https://fabrikam.visualstudio.com/_git/Removed");
+        final Job<?, ?> job = createJob(first);
+
+        final PollingResult actual = createRunner(job, removed).poll(TaskListener.NULL);
+
+        Assert.assertFalse(actual.hasChanges());
+        verify((SCMTriggerItem) job, never()).poll(any(TaskListener.class));
+    }
+
+    @Test
+    public void poll_withoutMatchedScmPollsTheJob() throws Exception {
+        final Job<?, ?> job = createJob();
+
+        final PollingResult actual = createRunner(job, null).poll(TaskListener.NULL);
+
+        Assert.assertSame(PollingResult.BUILD_NOW, actual);
+    }
+
+    @Test
+    public void poll_matchedGitScmAmongSeveralPollsOnlyThatScm() throws Exception {
+        final SCM first = createScm("git https://fabrikam.visualstudio.com/_git/First");
+        final GitSCM second = createGitScm("git https://fabrikam.visualstudio.com/_git/Second");
+        when(second.compareRemoteRevisionWith(any(Job.class), any(Launcher.class), any(FilePath.class), any(TaskListener.class), any(SCMRevisionState.class))).thenReturn(PollingResult.SIGNIFICANT);
+        final Job<?, ?> job = createJob(first, second);
+
+        final PollingResult actual = createRunner(job, second).poll(TaskListener.NULL);
+
+        Assert.assertSame(PollingResult.SIGNIFICANT, actual);
+        verify(second).compareRemoteRevisionWith(job, null, null, TaskListener.NULL, SCMRevisionState.NONE);
+        verify((SCMTriggerItem) job, never()).poll(any(TaskListener.class));
+    }
+
+    @Test
+    public void poll_onlyGitScmPollsTheJob() throws Exception {
+        final GitSCM only = createGitScm("git https://fabrikam.visualstudio.com/_git/Only");
+        final Job<?, ?> job = createJob(only);
+
+        final PollingResult actual = createRunner(job, only).poll(TaskListener.NULL);
+
+        Assert.assertSame(PollingResult.BUILD_NOW, actual);
+        verify(only, never()).compareRemoteRevisionWith(any(Job.class), any(Launcher.class), any(FilePath.class), any(TaskListener.class), any(SCMRevisionState.class));
+    }
+
+    @Test(expected = IOException.class)
+    public void poll_failureOfMatchedGitScmPropagates() throws Exception {
+        final SCM first = createScm("git https://fabrikam.visualstudio.com/_git/First");
+        final GitSCM second = createGitScm("git https://fabrikam.visualstudio.com/_git/Second");
+        when(second.compareRemoteRevisionWith(any(Job.class), any(Launcher.class), any(FilePath.class), any(TaskListener.class), any(SCMRevisionState.class))).thenThrow(new IOException("unreachable"));
+        final Job<?, ?> job = createJob(first, second);
+
+        createRunner(job, second).poll(TaskListener.NULL);
+    }
+}
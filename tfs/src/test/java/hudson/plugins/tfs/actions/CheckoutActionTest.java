@@ -3,11 +3,16 @@ package hudson.plugins.tfs.actions;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
 import java.io.FileFilter;
+import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.DateVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
@@ -18,6 +23,9 @@ import hudson.plugins.tfs.model.ChangeSet;
 import hudson.plugins.tfs.model.Project;
 import hudson.plugins.tfs.model.Server;
 import hudson.plugins.tfs.model.Workspace;
+import hudson.plugins.tfs.model.WorkspaceSettings;
+import hudson.plugins.tfs.model.WorkspaceSnapshot;
+import hudson.plugins.tfs.model.WorkspaceSnapshots;
 import hudson.plugins.tfs.model.Workspaces;
 
 import hudson.remoting.VirtualChannel;
@@ -27,6 +35,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.jvnet.hudson.test.Bug;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -34,6 +43,7 @@ public class CheckoutActionTest {
 
     private static final List<String> EMPTY_CLOAKED_PATHS_LIST = Collections.emptyList();
     private static final String MY_LABEL = "MyLabel";
+    private static final WorkspaceSettings LOCAL_WORKSPACE = WorkspaceSettings.DEFAULT.withLocalWorkspace(true);
     private FilePath hudsonWs;
     private @Mock Server server;
     private @Mock Workspaces workspaces;
@@ -66,13 +76,13 @@ public class CheckoutActionTest {
         prepareCommonMocks();
         when(project.getProjectPath()).thenReturn("project");
     	when(workspaces.exists("workspace")).thenReturn(true).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
     	when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
     	
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkoutBySingleVersionSpec(server, hudsonWs, MY_LABEL);
 
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
-    	verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+    	verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false), eq(1), anyString());
     	verify(workspaces).deleteWorkspace(workspace);    	
     }
     
@@ -81,13 +91,13 @@ public class CheckoutActionTest {
         prepareCommonMocks();
         when(project.getProjectPath()).thenReturn("project");
         when(workspaces.exists("workspace")).thenReturn(true).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
         
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
-        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false), eq(1), anyString());
         verify(workspaces).deleteWorkspace(workspace);
     }
 
@@ -96,12 +106,12 @@ public class CheckoutActionTest {
         prepareCommonMocks();
         when(project.getProjectPath()).thenReturn("project");
         when(workspaces.exists(new Workspace("workspace"))).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", true, false).checkoutBySingleVersionSpec(server, hudsonWs, MY_LABEL);
         
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
-        verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+        verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false), eq(1), anyString());
         verify(workspaces, never()).deleteWorkspace(isA(Workspace.class));
     }
 
@@ -110,12 +120,12 @@ public class CheckoutActionTest {
         prepareCommonMocks();
         when(project.getProjectPath()).thenReturn("project");
     	when(workspaces.exists(new Workspace("workspace"))).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
     	
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", true, false).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
     	
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
-    	verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+    	verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false), eq(1), anyString());
     	verify(workspaces, never()).deleteWorkspace(isA(Workspace.class));
     }
     
@@ -128,8 +138,8 @@ public class CheckoutActionTest {
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", true, false).checkoutBySingleVersionSpec(server, hudsonWs, MY_LABEL);
 
-        verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false));
-        verify(workspaces, never()).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
+        verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false), eq(1), anyString());
+        verify(workspaces, never()).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
         verify(workspaces, never()).deleteWorkspace(isA(Workspace.class));
     }
     
@@ -142,8 +152,8 @@ public class CheckoutActionTest {
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", true, false).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
 
-        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false));
-        verify(workspaces, never()).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
+        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false), eq(1), anyString());
+        verify(workspaces, never()).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
         verify(workspaces, never()).deleteWorkspace(isA(Workspace.class));
     }
 
@@ -152,13 +162,13 @@ public class CheckoutActionTest {
         prepareCommonMocks();
         when(project.getProjectPath()).thenReturn("project");
         when(workspaces.exists("workspace")).thenReturn(true).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkoutBySingleVersionSpec(server, hudsonWs, MY_LABEL);
 
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
-        verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+        verify(project).getFiles(isA(String.class), eq(MY_LABEL), eq(false), eq(1), anyString());
         verify(workspaces).deleteWorkspace(workspace);
     }
 
@@ -167,13 +177,13 @@ public class CheckoutActionTest {
         prepareCommonMocks();
         when(project.getProjectPath()).thenReturn("project");
         when(workspaces.exists("workspace")).thenReturn(true).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
 
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
-        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false), eq(1), anyString());
         verify(workspaces).deleteWorkspace(workspace);
     }
    
@@ -245,7 +255,7 @@ public class CheckoutActionTest {
         
         prepareCommonMocks();
         when(workspaces.exists(new Workspace("workspace"))).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "tfs-ws", false, false).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
         
@@ -263,7 +273,7 @@ public class CheckoutActionTest {
         
         prepareCommonMocks();
         when(workspaces.exists(new Workspace("workspace"))).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "tfs-ws", false, false).checkoutBySingleVersionSpec(server, hudsonWs, MY_LABEL);
         
@@ -272,6 +282,81 @@ public class CheckoutActionTest {
         assertEquals("The Hudson workspace path was cleaned", 2, hudsonWs.list((FileFilter)null).size());
     }
 
+    @Test
+    public void assertPreservedPathsAreKeptIfNotUsingUpdate() throws Exception {
+        FilePath tfsWs = hudsonWs.child("tfs-ws");
+        tfsWs.child("src/obj").mkdirs();
+        tfsWs.child("src/obj/cache.bin").write("cache", "UTF-8");
+        tfsWs.child("src/Main.java").write("code", "UTF-8");
+        tfsWs.child("packages/library").mkdirs();
+        tfsWs.child("docs").mkdirs();
+        tfsWs.child("docs/readme.txt").write("docs", "UTF-8");
+
+        prepareCommonMocks();
+        when(workspaces.exists(new Workspace("workspace"))).thenReturn(false);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
+
+        final List<String> preservePatterns = Arrays.asList("**/obj/**", "packages/", " ");
+        new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "tfs-ws", new CheckoutAction.Options().preservePatterns(preservePatterns)).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
+
+        assertTrue("The preserved file was deleted", tfsWs.child("src/obj/cache.bin").exists());
+        assertTrue("The preserved folder was deleted", tfsWs.child("packages/library").isDirectory());
+        assertFalse("The other file was not deleted", tfsWs.child("src/Main.java").exists());
+        assertFalse("The other folder was not deleted", tfsWs.child("docs").exists());
+        // the new workspace doesn't know it has the preserved files
+        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(true), eq(1), anyString());
+    }
+
+    private static File createArchive(final FilePath archivePath, final String... relativePaths) throws Exception {
+        final File result = new File(archivePath.getRemote());
+        final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(result));
+        try {
+            for (final String relativePath : relativePaths) {
+                zos.putNextEntry(new ZipEntry(relativePath));
+                zos.write(relativePath.getBytes("UTF-8"));
+                zos.closeEntry();
+            }
+        }
+        finally {
+            zos.close();
+        }
+        return result;
+    }
+
+    @Test
+    public void assertFailedSnapshotRestoreRecreatesWorkspace() throws Exception {
+        final FilePath tfsWs = hudsonWs.child("tfs-ws");
+        final WorkspaceSnapshot snapshot = mock(WorkspaceSnapshot.class);
+        when(snapshot.getArchive()).thenReturn(createArchive(hudsonWs.child("snapshot.zip"), "src/Main.java", "README.md"));
+        final WorkspaceSnapshots snapshots = mock(WorkspaceSnapshots.class);
+        when(snapshots.getLatest()).thenReturn(snapshot);
+
+        prepareCommonMocks();
+        when(project.getProjectPath()).thenReturn("project");
+        when(workspaces.exists("workspace")).thenReturn(false);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
+        // the server may have recorded some of the snapshot's files before the update failed
+        doThrow(new RuntimeException("The connection was reset.")).when(project).updateLocalVersions(anyString(), same(snapshot));
+
+        final CheckoutAction.Options options = new CheckoutAction.Options().useUpdate(true).useWorkspaceSnapshots(true);
+        final CheckoutAction cut = new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "tfs-ws", options) {
+            @Override
+            WorkspaceSnapshots getWorkspaceSnapshots(final Server server) {
+                return snapshots;
+            }
+        };
+        cut.checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
+
+        assertFalse("A restored file was kept", tfsWs.child("src/Main.java").exists());
+        assertFalse("A restored file was kept", tfsWs.child("README.md").exists());
+        final InOrder inOrder = inOrder(workspaces, project);
+        inOrder.verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+        inOrder.verify(project).updateLocalVersions(anyString(), same(snapshot));
+        inOrder.verify(workspaces).deleteWorkspace(workspace);
+        inOrder.verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
+        inOrder.verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false), eq(1), anyString());
+    }
+
     @Test
     public void assertWorkspaceIsNotCleanedIfUsingUpdate() throws Exception {
         FilePath tfsWs = hudsonWs.child("tfs-ws");
@@ -296,7 +381,7 @@ public class CheckoutActionTest {
         when(workspaces.exists("workspace")).thenReturn(true).thenReturn(false);
         when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
         when(project.getProjectPath()).thenReturn("project");
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkoutBySingleVersionSpec(server, hudsonWs, MY_LABEL);
         
@@ -304,7 +389,7 @@ public class CheckoutActionTest {
         verify(workspaces, times(2)).exists("workspace");
         verify(workspaces).getWorkspace("workspace");
         verify(workspaces).deleteWorkspace(workspace);
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
         verify(workspaces).getWorkspaceMapping(anyString());
         verifyNoMoreInteractions(workspaces);
     }
@@ -316,7 +401,7 @@ public class CheckoutActionTest {
         when(workspaces.exists("workspace")).thenReturn(true).thenReturn(false);
         when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
         when(project.getProjectPath()).thenReturn("project");
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
         
@@ -324,7 +409,7 @@ public class CheckoutActionTest {
         verify(workspaces, times(2)).exists("workspace");
         verify(workspaces).getWorkspace("workspace");
         verify(workspaces).deleteWorkspace(workspace);
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
         verify(workspaces).getWorkspaceMapping(anyString());
         verifyNoMoreInteractions(workspaces);
     }
@@ -366,14 +451,14 @@ public class CheckoutActionTest {
     public void assertCheckoutDoesNotDeleteWorkspaceIfNotUsingUpdateAndThereIsNoWorkspace() throws Exception {
         prepareCommonMocks();
         when(workspaces.exists("workspace")).thenReturn(false).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         when(project.getProjectPath()).thenReturn("project");
 
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
         
         verify(server).getWorkspaces();
         verify(workspaces, times(2)).exists("workspace");
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
         verify(workspaces).getWorkspaceMapping(anyString());
         verifyNoMoreInteractions(workspaces);
     }
@@ -383,14 +468,14 @@ public class CheckoutActionTest {
     public void assertCheckoutBySingleVersionSpecDoesNotDeleteWorkspaceIfNotUsingUpdateAndThereIsNoWorkspace() throws Exception {
         prepareCommonMocks();
         when(workspaces.exists("workspace")).thenReturn(false).thenReturn(false);
-        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class))).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT))).thenReturn(workspace);
         when(project.getProjectPath()).thenReturn("project");
 
         new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", false, false).checkoutBySingleVersionSpec(server, hudsonWs, MY_LABEL);
         
         verify(server).getWorkspaces();
         verify(workspaces, times(2)).exists("workspace");
-        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class));
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(WorkspaceSettings.DEFAULT));
         verify(workspaces).getWorkspaceMapping(anyString());
         verifyNoMoreInteractions(workspaces);
     }
@@ -417,7 +502,7 @@ public class CheckoutActionTest {
                 argThat(new DateVersionSpecMatcher(startDateVersionSpec)),
                 argThat(new DateVersionSpecMatcher(endDateVersionSpec)),
                 eq(EMPTY_CLOAKED_PATHS_LIST));
-        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false));
+        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false), eq(1), anyString());
     }
 
     private static class DateVersionSpecMatcher extends CustomMatcher<DateVersionSpec> {
@@ -512,6 +597,34 @@ public class CheckoutActionTest {
         Assert.assertEquals(windowsPath, actual);
     }
 
+    @Test
+    public void assertLocalWorkspaceWithoutBaselineIsRecreated() throws Exception {
+        prepareCommonMocks();
+        when(project.getProjectPath()).thenReturn("project");
+        when(workspaces.exists("workspace")).thenReturn(true).thenReturn(false);
+        when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
+        when(workspaces.newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(LOCAL_WORKSPACE))).thenReturn(workspace);
+
+        new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", new CheckoutAction.Options().useUpdate(true).workspaceSettings(LOCAL_WORKSPACE)).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
+
+        verify(workspaces).deleteWorkspace(workspace);
+        verify(workspaces).newWorkspace(eq("workspace"), eq("project"), eq(EMPTY_CLOAKED_PATHS_LIST), isA(String.class), eq(LOCAL_WORKSPACE));
+    }
+
+    @Test
+    public void assertLocalWorkspaceWithBaselineIsUpdated() throws Exception {
+        hudsonWs.child(".tf").mkdirs();
+        prepareCommonMocks();
+        when(workspaces.exists("workspace")).thenReturn(true);
+        when(workspaces.getWorkspace("workspace")).thenReturn(workspace);
+
+        new CheckoutAction("workspace", "project", EMPTY_CLOAKED_PATHS_LIST, ".", new CheckoutAction.Options().useUpdate(true).workspaceSettings(LOCAL_WORKSPACE)).checkout(server, hudsonWs, null, Util.getCalendar(2009, 9, 24));
+
+        verify(workspaces, never()).deleteWorkspace(workspace);
+        verify(workspaces, never()).newWorkspace(anyString(), anyString(), anyCollectionOf(String.class), anyString(), any(WorkspaceSettings.class));
+        verify(project).getFiles(isA(String.class), eq("D2009-09-24T00:00:00Z"), eq(false), eq(1), anyString());
+    }
+
     @Test
     public void determineCheckoutPath_relativeOnNix() {
         final VirtualChannel vc = mock(VirtualChannel.class);
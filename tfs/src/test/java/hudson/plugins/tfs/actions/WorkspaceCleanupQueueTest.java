@@ -0,0 +1,289 @@
+package hudson.plugins.tfs.actions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import hudson.plugins.tfs.model.Workspace;
+import hudson.plugins.tfs.model.WorkspaceInventory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A class to test {@link WorkspaceCleanupQueue}.
+ */
+public class WorkspaceCleanupQueueTest {
+
+    private static final String COLLECTION_URL = "https://tfs.example.com/tfs/DefaultCollection";
+    private static final String OTHER_COLLECTION_URL = "https://tfs.example.com/tfs/OtherCollection";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Keeps the submitted deletions until the test runs them.
+     */
+    private static class CollectingExecutor implements Executor {
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            runnables.add(command);
+        }
+
+        void runAll() {
+            final List<Runnable> toRun = new ArrayList<Runnable>(runnables);
+            runnables.clear();
+            for (final Runnable runnable : toRun) {
+                runnable.run();
+            }
+        }
+    }
+
+    /**
+     * Records the deleted workspaces and fails a configurable number of times first.
+     */
+    private static class RecordingRemover implements WorkspaceCleanupQueue.Remover {
+        final List<String> removed = new ArrayList<String>();
+        int failuresLeft;
+
+        @Override
+        public void remove(final WorkspaceCleanupTask task) throws Exception {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IOException("TF30063: You are not authorized");
+            }
+            removed.add(task.getWorkspaceName());
+        }
+    }
+
+    private static class TestableQueue extends WorkspaceCleanupQueue {
+        long now = 1000;
+
+        TestableQueue(final File file, final Executor executor, final Remover remover, final int maxConcurrencyPerCollection, final int maxAttempts) {
+            super(file, executor, remover, maxConcurrencyPerCollection, maxAttempts);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+    }
+
+    private static WorkspaceCleanupTask createTask(final String serverUrl, final String workspaceName) {
+        return new WorkspaceCleanupTask(serverUrl, "user", null, "node1", "COMPUTER1", workspaceName, "job", 1000);
+    }
+
+    @Test
+    public void enqueue_deletesInTheBackground() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingRemover remover = new RecordingRemover();
+        final TestableQueue cut = new TestableQueue(null, executor, remover, 2, 3);
+
+        cut.enqueue(createTask(COLLECTION_URL, "Hudson-job-node1"));
+
+        Assert.assertTrue(remover.removed.isEmpty());
+        Assert.assertEquals(1, cut.getPending().size());
+        Assert.assertTrue(cut.getPending().get(0).isRunning());
+        executor.runAll();
+        Assert.assertEquals(1, remover.removed.size());
+        Assert.assertTrue(cut.getPending().isEmpty());
+        final WorkspaceCleanupTask finished = cut.getFinished().get(0);
+        Assert.assertTrue(finished.isSucceeded());
+        Assert.assertEquals(1, finished.getAttempts());
+    }
+
+    @Test
+    public void enqueue_ignoresDuplicates() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TestableQueue cut = new TestableQueue(null, executor, new RecordingRemover(), 2, 3);
+
+        cut.enqueue(createTask(COLLECTION_URL, "Hudson-job-node1"));
+        cut.enqueue(createTask(COLLECTION_URL.toUpperCase(), "HUDSON-JOB-NODE1"));
+
+        Assert.assertEquals(1, cut.getPending().size());
+        Assert.assertEquals(1, executor.runnables.size());
+    }
+
+    @Test
+    public void dispatch_boundsConcurrencyPerCollection() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TestableQueue cut = new TestableQueue(null, executor, new RecordingRemover(), 2, 3);
+
+        cut.enqueue(createTask(COLLECTION_URL, "one"));
+        cut.enqueue(createTask(COLLECTION_URL, "two"));
+        cut.enqueue(createTask(COLLECTION_URL, "three"));
+        cut.enqueue(createTask(OTHER_COLLECTION_URL, "four"));
+
+        Assert.assertEquals(3, executor.runnables.size());
+        executor.runAll();
+        Assert.assertEquals(1, cut.getPending().size());
+        Assert.assertEquals(1, executor.runnables.size());
+        executor.runAll();
+        Assert.assertTrue(cut.getPending().isEmpty());
+        Assert.assertEquals(4, cut.getFinished().size());
+    }
+
+    @Test
+    public void run_retriesWithIncreasingDelayThenGivesUp() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingRemover remover = new RecordingRemover();
+        remover.failuresLeft = 3;
+        final TestableQueue cut = new TestableQueue(null, executor, remover, 2, 3);
+
+        cut.enqueue(createTask(COLLECTION_URL, "Hudson-job-node1"));
+        executor.runAll();
+
+        final WorkspaceCleanupTask task = cut.getPending().get(0);
+        Assert.assertEquals(1, task.getAttempts());
+        Assert.assertEquals("TF30063: You are not authorized", task.getLastError());
+        Assert.assertEquals(1000 + WorkspaceCleanupQueue.INITIAL_RETRY_DELAY_MILLIS, task.getNextAttemptMillis());
+        cut.dispatch();
+        Assert.assertTrue("Retried before the delay", executor.runnables.isEmpty());
+
+        cut.now = task.getNextAttemptMillis();
+        cut.dispatch();
+        executor.runAll();
+        Assert.assertEquals(2, task.getAttempts());
+        Assert.assertEquals(cut.now + 2 * WorkspaceCleanupQueue.INITIAL_RETRY_DELAY_MILLIS, task.getNextAttemptMillis());
+
+        cut.now = task.getNextAttemptMillis();
+        cut.dispatch();
+        executor.runAll();
+        Assert.assertTrue(cut.getPending().isEmpty());
+        Assert.assertFalse(cut.getFinished().get(0).isSucceeded());
+        Assert.assertTrue(remover.removed.isEmpty());
+    }
+
+    @Test
+    public void getRetryDelayMillis_isCapped() {
+        Assert.assertEquals(WorkspaceCleanupQueue.INITIAL_RETRY_DELAY_MILLIS, WorkspaceCleanupQueue.getRetryDelayMillis(1));
+        Assert.assertEquals(4 * WorkspaceCleanupQueue.INITIAL_RETRY_DELAY_MILLIS, WorkspaceCleanupQueue.getRetryDelayMillis(3));
+        Assert.assertEquals(WorkspaceCleanupQueue.MAX_RETRY_DELAY_MILLIS, WorkspaceCleanupQueue.getRetryDelayMillis(100));
+    }
+
+    @Test
+    public void forgetWorkspace_removesWorkspaceFromInventory() throws Exception {
+        final WorkspaceInventory inventory = WorkspaceInventory.forComputer(COLLECTION_URL, "forgetWorkspace");
+        inventory.reconcile(Arrays.asList(
+                new Workspace("Hudson-job-node1", "forgetWorkspace", "EXAMPLE\\build", ""),
+                new Workspace("Hudson-other-node1", "forgetWorkspace", "EXAMPLE\\build", "")));
+
+        new WorkspaceCleanupQueue.ForgetWorkspaceCallable(COLLECTION_URL, "FORGETWORKSPACE", "hudson-job-node1").call();
+
+        Assert.assertFalse(inventory.contains("Hudson-job-node1"));
+        Assert.assertTrue(inventory.contains("Hudson-other-node1"));
+        Assert.assertNull("A deleted workspace was still confirmed", inventory.list("Hudson-job-node1"));
+    }
+
+    @Test
+    public void forgetWorkspace_skipsGoneNode() throws Exception {
+        Assert.assertFalse(WorkspaceCleanupQueue.forgetWorkspace(null, COLLECTION_URL, "COMPUTER", "Hudson-job-node1"));
+    }
+
+    @Test
+    public void claim_takesBackQueuedDeletion() throws Exception {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingRemover remover = new RecordingRemover();
+        remover.failuresLeft = 1;
+        final TestableQueue cut = new TestableQueue(null, executor, remover, 2, 3);
+        cut.enqueue(createTask(COLLECTION_URL, "Hudson-job-node1"));
+        executor.runAll();
+
+        Assert.assertFalse(cut.claim(COLLECTION_URL, "COMPUTER1", "Hudson-other-node1"));
+        Assert.assertFalse(cut.claim(COLLECTION_URL, "COMPUTER2", "Hudson-job-node1"));
+        Assert.assertTrue(cut.claim(COLLECTION_URL, "computer1", "hudson-job-node1"));
+        Assert.assertTrue(cut.getPending().isEmpty());
+        Assert.assertFalse(cut.claim(COLLECTION_URL, "COMPUTER1", "Hudson-job-node1"));
+    }
+
+    @Test
+    public void claim_failsRatherThanTakeBackRunningDeletion() throws Exception {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingRemover remover = new RecordingRemover();
+        final TestableQueue cut = new TestableQueue(null, executor, remover, 2, 3);
+        cut.enqueue(createTask(COLLECTION_URL, "Hudson-job-node1"));
+        Assert.assertTrue(cut.getPending().get(0).isRunning());
+
+        try {
+            cut.claim(COLLECTION_URL, "COMPUTER1", "Hudson-job-node1", 10);
+            Assert.fail("A running deletion was taken back");
+        }
+        catch (final IOException e) {
+            Assert.assertTrue(e.getMessage().contains("Hudson-job-node1"));
+        }
+        Assert.assertEquals(1, cut.getPending().size());
+
+        executor.runAll();
+        Assert.assertEquals(Arrays.asList("Hudson-job-node1"), remover.removed);
+        Assert.assertFalse("A finished deletion was claimed", cut.claim(COLLECTION_URL, "COMPUTER1", "Hudson-job-node1", 10));
+    }
+
+    @Test
+    public void claim_waitsForRunningDeletion() throws Exception {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingRemover remover = new RecordingRemover();
+        final TestableQueue cut = new TestableQueue(null, executor, remover, 2, 3);
+        cut.enqueue(createTask(COLLECTION_URL, "Hudson-job-node1"));
+        final Thread worker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                }
+                catch (final InterruptedException e) {
+                    return;
+                }
+                executor.runAll();
+            }
+        };
+        worker.start();
+
+        final boolean actual = cut.claim(COLLECTION_URL, "COMPUTER1", "Hudson-job-node1", 10000);
+
+        worker.join();
+        Assert.assertFalse("The caller was asked to delete a deleted workspace", actual);
+        Assert.assertEquals(Arrays.asList("Hudson-job-node1"), remover.removed);
+    }
+
+    @Test
+    public void enqueue_distinguishesComputers() {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TestableQueue cut = new TestableQueue(null, executor, new RecordingRemover(), 2, 3);
+
+        cut.enqueue(createTask(COLLECTION_URL, "Hudson-job"));
+        cut.enqueue(new WorkspaceCleanupTask(COLLECTION_URL, "user", null, "node2", "COMPUTER2", "Hudson-job", "job", 1000));
+
+        Assert.assertEquals(2, cut.getPending().size());
+    }
+
+    @Test
+    public void load_resumesSavedDeletions() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), WorkspaceCleanupQueue.FILE_NAME);
+        final TestableQueue first = new TestableQueue(file, new CollectingExecutor(), new RecordingRemover(), 2, 3);
+        first.enqueue(createTask(COLLECTION_URL, "Hudson-job-node1"));
+        Assert.assertTrue(file.isFile());
+
+        final CollectingExecutor executor = new CollectingExecutor();
+        final RecordingRemover remover = new RecordingRemover();
+        final TestableQueue second = new TestableQueue(file, executor, remover, 2, 3);
+        second.load();
+        final List<WorkspaceCleanupTask> pending = second.getPending();
+        Assert.assertEquals(1, pending.size());
+        Assert.assertFalse(pending.get(0).isRunning());
+        Assert.assertEquals("node1", pending.get(0).getNodeName());
+        Assert.assertEquals("COMPUTER1", pending.get(0).getComputerName());
+        second.dispatch();
+        executor.runAll();
+        Assert.assertEquals(1, remover.removed.size());
+
+        final TestableQueue third = new TestableQueue(file, new CollectingExecutor(), remover, 2, 3);
+        third.load();
+        Assert.assertTrue(third.getPending().isEmpty());
+    }
+}
@@ -0,0 +1,28 @@
+package hudson.plugins.tfs.commands;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CreateWorkspaceSnapshotCommandTest extends AbstractCallableCommandTest {
+
+    @Test public void toRelativePath_belowRoot() {
+        final File root = new File("/jenkins/workspace/job");
+
+        final String actual = CreateWorkspaceSnapshotCommand.toRelativePath(root, new File(root, "src/Main file.java"));
+
+        Assert.assertEquals("src/Main file.java", actual);
+    }
+
+    @Test public void toRelativePath_outsideRoot() {
+        final File root = new File("/jenkins/workspace/job");
+
+        Assert.assertNull(CreateWorkspaceSnapshotCommand.toRelativePath(root, new File("/jenkins/workspace/other/a.txt")));
+        Assert.assertNull(CreateWorkspaceSnapshotCommand.toRelativePath(root, root));
+    }
+
+    @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
+        return new CreateWorkspaceSnapshotCommand(serverConfig, "workFolder", "C42");
+    }
+}
@@ -0,0 +1,170 @@
+package hudson.plugins.tfs.commands;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A class to test {@link DownloadCache}.
+ */
+public class DownloadCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Keeps the submitted stores until the test runs them.
+     */
+    private static class CollectingExecutor implements Executor {
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            runnables.add(command);
+        }
+
+        void runAll() {
+            final List<Runnable> toRun = new ArrayList<Runnable>(runnables);
+            runnables.clear();
+            for (final Runnable runnable : toRun) {
+                runnable.run();
+            }
+        }
+    }
+
+    private final CollectingExecutor executor = new CollectingExecutor();
+
+    private File createFile(final String name, final String contents) throws Exception {
+        final File result = new File(temporaryFolder.getRoot(), "workspace/" + name);
+        FileUtils.writeStringToFile(result, contents, "UTF-8");
+        return result;
+    }
+
+    private static byte[] md5(final String contents) throws Exception {
+        return MessageDigest.getInstance("MD5").digest(contents.getBytes("UTF-8"));
+    }
+
+    private DownloadCache createCache(final long maxBytes) throws Exception {
+        return new DownloadCache(new File(temporaryFolder.getRoot(), "cache"), maxBytes, executor);
+    }
+
+    @Test
+    public void storeThenRestore() throws Exception {
+        final DownloadCache cut = createCache(1024);
+        final File source = createFile("a.txt", "alpha");
+        final File target = new File(temporaryFolder.getRoot(), "other/src/a.txt");
+
+        Assert.assertTrue(cut.store(md5("alpha"), source));
+        final long actual = cut.restore(md5("alpha"), target);
+
+        Assert.assertEquals(5, actual);
+        Assert.assertEquals("alpha", FileUtils.readFileToString(target, "UTF-8"));
+        Assert.assertEquals(5, cut.getTotalBytes());
+    }
+
+    @Test
+    public void restore_copiesContent() throws Exception {
+        final DownloadCache cut = createCache(1024);
+        cut.store(md5("alpha"), createFile("a.txt", "alpha"));
+        final File target = new File(temporaryFolder.getRoot(), "other/a.txt");
+        cut.restore(md5("alpha"), target);
+
+        FileUtils.writeStringToFile(target, "edited by the build", "UTF-8");
+
+        final File second = new File(temporaryFolder.getRoot(), "third/a.txt");
+        Assert.assertEquals(5, cut.restore(md5("alpha"), second));
+        Assert.assertEquals("alpha", FileUtils.readFileToString(second, "UTF-8"));
+    }
+
+    @Test
+    public void storeLater() throws Exception {
+        final DownloadCache cut = createCache(1024);
+        final File unchanged = createFile("e.txt", "epsilon");
+        final File edited = createFile("z.txt", "zeta");
+        final Map<File, byte[]> files = new LinkedHashMap<File, byte[]>();
+        files.put(unchanged, md5("epsilon"));
+        files.put(edited, md5("zeta"));
+        files.put(new File(temporaryFolder.getRoot(), "deleted.txt"), md5("eta"));
+
+        cut.storeLater(files);
+        FileUtils.writeStringToFile(edited, "edited by the build", "UTF-8");
+        Assert.assertFalse(cut.contains(md5("epsilon")));
+        executor.runAll();
+
+        Assert.assertTrue(cut.contains(md5("epsilon")));
+        Assert.assertFalse(cut.contains(md5("zeta")));
+        Assert.assertFalse(cut.contains(md5("eta")));
+        Assert.assertEquals(7, cut.getTotalBytes());
+    }
+
+    @Test
+    public void restore_replacesReadOnlyFile() throws Exception {
+        final DownloadCache cut = createCache(1024);
+        cut.store(md5("beta"), createFile("b.txt", "beta"));
+        final File target = createFile("old.txt", "old contents");
+        target.setReadOnly();
+
+        final long actual = cut.restore(md5("beta"), target);
+
+        Assert.assertEquals(4, actual);
+        Assert.assertEquals("beta", FileUtils.readFileToString(target, "UTF-8"));
+    }
+
+    @Test
+    public void restore_missing() throws Exception {
+        final DownloadCache cut = createCache(1024);
+        final File target = new File(temporaryFolder.getRoot(), "missing.txt");
+
+        final long actual = cut.restore(md5("gamma"), target);
+
+        Assert.assertEquals(-1, actual);
+        Assert.assertFalse(target.exists());
+    }
+
+    @Test
+    public void store_rejectsMismatchedHash() throws Exception {
+        final DownloadCache cut = createCache(1024);
+
+        final boolean actual = cut.store(md5("expected"), createFile("c.txt", "actual"));
+
+        Assert.assertFalse(actual);
+        Assert.assertFalse(cut.contains(md5("expected")));
+        Assert.assertEquals(0, cut.getTotalBytes());
+    }
+
+    @Test
+    public void store_evictsLeastRecentlyUsed() throws Exception {
+        final DownloadCache cut = createCache(10);
+        cut.store(md5("1111"), createFile("1.txt", "1111"));
+        cut.store(md5("2222"), createFile("2.txt", "2222"));
+        cut.restore(md5("1111"), new File(temporaryFolder.getRoot(), "used.txt"));
+
+        cut.store(md5("3333"), createFile("3.txt", "3333"));
+
+        Assert.assertTrue(cut.contains(md5("1111")));
+        Assert.assertFalse(cut.contains(md5("2222")));
+        Assert.assertTrue(cut.contains(md5("3333")));
+        Assert.assertEquals(8, cut.getTotalBytes());
+    }
+
+    @Test
+    public void entriesSurviveReload() throws Exception {
+        final DownloadCache first = createCache(1024);
+        first.store(md5("delta"), createFile("d.txt", "delta"));
+
+        final DownloadCache cut = createCache(1024);
+
+        Assert.assertTrue(cut.contains(md5("delta")));
+        Assert.assertEquals(5, cut.getTotalBytes());
+    }
+}
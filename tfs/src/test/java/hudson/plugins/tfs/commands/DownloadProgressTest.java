@@ -0,0 +1,72 @@
+package hudson.plugins.tfs.commands;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A class to test {@link DownloadProgress}.
+ */
+public class DownloadProgressTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static class TestableDownloadProgress extends DownloadProgress {
+        private long now;
+
+        TestableDownloadProgress(final PrintStream logger, final long reportIntervalMillis) {
+            super(logger, reportIntervalMillis);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void record_countsFilesAndBytes() throws Exception {
+        final File file = temporaryFolder.newFile("file.txt");
+        FileUtils.writeByteArrayToFile(file, new byte[2048]);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final DownloadProgress cut = new DownloadProgress(new PrintStream(output), Long.MAX_VALUE);
+
+        cut.record(file.getAbsolutePath());
+        cut.record(null);
+        cut.record(new File(temporaryFolder.getRoot(), "deleted.txt").getAbsolutePath());
+
+        Assert.assertEquals(3, cut.getCount());
+        Assert.assertEquals(2048, cut.getBytes());
+        Assert.assertEquals(0, output.size());
+    }
+
+    @Test
+    public void record_reportsOncePerInterval() throws Exception {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+        try {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final TestableDownloadProgress cut = new TestableDownloadProgress(new PrintStream(output), 1000);
+
+            cut.now = 500;
+            cut.record(null);
+            cut.now = 2000;
+            cut.record(null);
+            cut.now = 2500;
+            cut.record(null);
+
+            final String expected = String.format("Retrieved 2 resources so far (1.0 files/s, 0.00 MB/s)...%n");
+            Assert.assertEquals(expected, output.toString());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
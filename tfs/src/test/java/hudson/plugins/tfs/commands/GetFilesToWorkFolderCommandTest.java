@@ -2,24 +2,40 @@ package hudson.plugins.tfs.commands;
 
 import static org.mockito.Mockito.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
 
+import com.microsoft.tfs.core.clients.versioncontrol.OperationStatus;
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceLocation;
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.events.GetEvent;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetOperation;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import hudson.plugins.tfs.model.ChangedFile;
+import hudson.plugins.tfs.model.ChangedFilesManifest;
 import hudson.remoting.Callable;
+import org.junit.Assert;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 
 public class GetFilesToWorkFolderCommandTest extends AbstractCallableCommandTest {
 
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Ignore("Finish test when we have MockableWorkspace and MockableVersionControlEventEngine")
     @Test public void assertLogging() throws Exception {
         when(vcc.queryWorkspace(
                 isA(String.class),
                 isA(String.class))).thenReturn(null);
         final GetFilesToWorkFolderCommand command = new GetFilesToWorkFolderCommand(server, "c:/jenkins/jobs/newJob/workspace", "C618", false);
-        final Callable<Void, Exception> callable = command.getCallable();
+        final Callable<List<ChangedFile>, Exception> callable = command.getCallable();
 
         callable.call();
 
@@ -43,6 +59,108 @@ public class GetFilesToWorkFolderCommandTest extends AbstractCallableCommandTest
         );
     }
 
+    private static GetEvent createGetEvent(final OperationStatus status, final String sourceLocalItem, final String targetLocalItem) {
+        final GetOperation operation = mock(GetOperation.class);
+        when(operation.getItemType()).thenReturn(ItemType.FILE);
+        when(operation.getSourceLocalItem()).thenReturn(sourceLocalItem);
+        when(operation.getVersionLocal()).thenReturn(40);
+        when(operation.getVersionServer()).thenReturn(42);
+        final GetEvent getEvent = mock(GetEvent.class);
+        when(getEvent.getOperation()).thenReturn(operation);
+        when(getEvent.getStatus()).thenReturn(status);
+        when(getEvent.getTargetLocalItem()).thenReturn(targetLocalItem);
+        return getEvent;
+    }
+
+    @Test public void onGet_recordsChangedFiles() throws IOException {
+        final GetFilesToWorkFolderCommand cut = new GetFilesToWorkFolderCommand(server, "/jenkins/workspace/job", null, false);
+        cut.setLogger(new PrintStream(this.outputStream));
+
+        cut.onGet(createGetEvent(OperationStatus.GETTING, null, "/jenkins/workspace/job/src/New.java"));
+        cut.onGet(createGetEvent(OperationStatus.REPLACING, "/jenkins/workspace/job/README.md", "/jenkins/workspace/job/README.md"));
+        cut.onGet(createGetEvent(OperationStatus.DELETING, "/jenkins/workspace/job/src/Old.java", null));
+        cut.onGet(createGetEvent(OperationStatus.TARGET_WRITABLE, "/jenkins/workspace/job/build.xml", "/jenkins/workspace/job/build.xml"));
+
+        final List<ChangedFile> actual = cut.getChangedFiles();
+        Assert.assertEquals(3, actual.size());
+        Assert.assertEquals(ChangedFile.Change.ADDED, actual.get(0).getChange());
+        Assert.assertEquals("src/New.java", actual.get(0).getPath());
+        Assert.assertEquals(42, actual.get(0).getChangeset());
+        Assert.assertEquals(ChangedFile.Change.UPDATED, actual.get(1).getChange());
+        Assert.assertEquals("README.md", actual.get(1).getPath());
+        Assert.assertEquals(ChangedFile.Change.DELETED, actual.get(2).getChange());
+        Assert.assertEquals("src/Old.java", actual.get(2).getPath());
+        Assert.assertEquals(40, actual.get(2).getChangeset());
+    }
+
+    @Test public void toManifestPath_outsideWorkFolder() {
+        final String actual = GetFilesToWorkFolderCommand.toManifestPath("/jenkins/workspace/job", "/elsewhere/file.txt");
+
+        Assert.assertEquals("/elsewhere/file.txt", actual);
+    }
+
+    @Test public void writeManifest_returnsOnlyLocationAndCounts() throws IOException {
+        final File manifest = new File(temporaryFolder.getRoot(), "job@tmp/" + ChangedFilesManifest.FILE_NAME);
+        final List<ChangedFile> changedFiles = Arrays.asList(
+                new ChangedFile(ChangedFile.Change.ADDED, 42, "src/New.java"),
+                new ChangedFile(ChangedFile.Change.ADDED, 42, "src/Other.java"),
+                new ChangedFile(ChangedFile.Change.DELETED, 40, "src/Old.java"));
+
+        final GetFilesToWorkFolderCommand.Result actual = GetFilesToWorkFolderCommand.writeManifest(manifest.getPath(), changedFiles);
+
+        Assert.assertEquals(manifest.getPath(), actual.getManifestPath());
+        Assert.assertEquals(2, actual.getAddedCount());
+        Assert.assertEquals(0, actual.getUpdatedCount());
+        Assert.assertEquals(1, actual.getDeletedCount());
+        Assert.assertEquals(3, actual.getCount());
+        Assert.assertEquals(3, ChangedFilesManifest.read(manifest).size());
+    }
+
+    @Test public void writeManifest_withoutLocationOnlyCounts() throws IOException {
+        final List<ChangedFile> changedFiles = Arrays.asList(new ChangedFile(ChangedFile.Change.UPDATED, 41, "README.md"));
+
+        final GetFilesToWorkFolderCommand.Result actual = GetFilesToWorkFolderCommand.writeManifest(null, changedFiles);
+
+        Assert.assertNull(actual.getManifestPath());
+        Assert.assertEquals(1, actual.getUpdatedCount());
+    }
+
+    private static Workspace createWorkspace(final WorkspaceLocation location, final WorkspaceOptions options) {
+        final Workspace workspace = mock(Workspace.class);
+        when(workspace.getLocation()).thenReturn(location);
+        when(workspace.getOptions()).thenReturn(options);
+        return workspace;
+    }
+
+    private static DownloadCache createDownloadCache(final long totalBytes) {
+        final DownloadCache downloadCache = mock(DownloadCache.class);
+        when(downloadCache.getTotalBytes()).thenReturn(totalBytes);
+        return downloadCache;
+    }
+
+    @Test public void shouldRestoreFromCache_emptyWorkFolder() throws IOException {
+        final Workspace workspace = createWorkspace(WorkspaceLocation.SERVER, WorkspaceOptions.NONE);
+
+        Assert.assertTrue(GetFilesToWorkFolderCommand.shouldRestoreFromCache(workspace, temporaryFolder.getRoot(), createDownloadCache(42)));
+        Assert.assertTrue(GetFilesToWorkFolderCommand.shouldRestoreFromCache(workspace, new File(temporaryFolder.getRoot(), "missing"), createDownloadCache(42)));
+        Assert.assertFalse(GetFilesToWorkFolderCommand.shouldRestoreFromCache(workspace, temporaryFolder.getRoot(), createDownloadCache(0)));
+    }
+
+    @Test public void shouldRestoreFromCache_notForIncrementalGets() throws IOException {
+        final Workspace workspace = createWorkspace(WorkspaceLocation.SERVER, WorkspaceOptions.NONE);
+        temporaryFolder.newFile("README.md");
+
+        Assert.assertFalse(GetFilesToWorkFolderCommand.shouldRestoreFromCache(workspace, temporaryFolder.getRoot(), createDownloadCache(42)));
+    }
+
+    @Test public void shouldRestoreFromCache_notForCheckInTimestampsOrLocalWorkspaces() throws IOException {
+        final Workspace checkInTimestamps = createWorkspace(WorkspaceLocation.SERVER, WorkspaceOptions.SET_FILE_TO_CHECKIN);
+        final Workspace local = createWorkspace(WorkspaceLocation.LOCAL, WorkspaceOptions.NONE);
+
+        Assert.assertFalse(GetFilesToWorkFolderCommand.shouldRestoreFromCache(checkInTimestamps, temporaryFolder.getRoot(), createDownloadCache(42)));
+        Assert.assertFalse(GetFilesToWorkFolderCommand.shouldRestoreFromCache(local, temporaryFolder.getRoot(), createDownloadCache(42)));
+    }
+
     @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
         return new GetFilesToWorkFolderCommand(serverConfig, "workFolder", "versionSpec", false);
     }
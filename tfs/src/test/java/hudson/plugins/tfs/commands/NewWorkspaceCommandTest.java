@@ -5,11 +5,14 @@ import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceLocation;
 import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolder;
 import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceSettings;
 import hudson.remoting.Callable;
 import org.junit.Test;
 
 import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
@@ -83,6 +86,62 @@ public class NewWorkspaceCommandTest extends AbstractCallableCommandTest {
         );
     }
 
+    @Test public void assertLocalWorkspaceIsCreatedLocal() throws Exception {
+        when(server.getUserName()).thenReturn("snd\\user_cp");
+        final NewWorkspaceCommand command = new NewWorkspaceCommand(server, "TheWorkspaceName", null, EMPTY_CLOAKED_PATHS, null, WorkspaceSettings.DEFAULT.withLocalWorkspace(true)) {
+            @Override
+            public Server createServer() {
+                return server;
+            }
+
+            @Override
+            protected void updateCache(final TFSTeamProjectCollection connection) {
+                // no-op for tests
+            }
+        };
+        final Callable<Void, Exception> callable = command.getCallable();
+
+        callable.call();
+
+        verify(vcc).createWorkspace(aryEq((WorkingFolder[]) null),
+                eq("TheWorkspaceName"),
+                isA(String.class),
+                isA(String.class),
+                (String) eq(null),
+                eq(WorkspaceLocation.LOCAL),
+                isA(WorkspaceOptions.class));
+        assertLog(
+                "Creating local workspace 'TheWorkspaceName' owned by 'snd\\user_cp'...",
+                "Created workspace 'TheWorkspaceName'."
+        );
+    }
+
+    @Test public void assertWorkspaceIsCreatedWithCheckInTimestamps() throws Exception {
+        when(server.getUserName()).thenReturn("snd\\user_cp");
+        final NewWorkspaceCommand command = new NewWorkspaceCommand(server, "TheWorkspaceName", null, EMPTY_CLOAKED_PATHS, null, WorkspaceSettings.DEFAULT.withCheckInTimestamps(true)) {
+            @Override
+            public Server createServer() {
+                return server;
+            }
+
+            @Override
+            protected void updateCache(final TFSTeamProjectCollection connection) {
+                // no-op for tests
+            }
+        };
+        final Callable<Void, Exception> callable = command.getCallable();
+
+        callable.call();
+
+        verify(vcc).createWorkspace(aryEq((WorkingFolder[]) null),
+                eq("TheWorkspaceName"),
+                isA(String.class),
+                isA(String.class),
+                (String) eq(null),
+                eq(WorkspaceLocation.SERVER),
+                eq(WorkspaceOptions.SET_FILE_TO_CHECKIN));
+    }
+
     @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
         return new NewWorkspaceCommand(serverConfig, "workspaceName", "$/serverPath", EMPTY_CLOAKED_PATHS, "local/path");
     }
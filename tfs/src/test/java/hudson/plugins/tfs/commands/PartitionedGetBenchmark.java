@@ -0,0 +1,120 @@
+package hudson.plugins.tfs.commands;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.events.GetListener;
+import com.microsoft.tfs.core.clients.versioncontrol.events.VersionControlEventEngine;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetRequest;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a single get with partitioned gets at increasing concurrency, against a stubbed workspace
+ * where each folder costs a fixed latency (standing in for the round-trips and downloads of a real server)
+ * and the final full get only costs one round-trip, since everything is already up to date by then.
+ *
+ * Not a unit test; run it with the test classpath, for example:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=hudson.plugins.tfs.commands.PartitionedGetBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PartitionedGetBenchmark {
+
+    private static final VersionSpec VERSION = new ChangesetVersionSpec(42);
+    private static final String WORK_FOLDER = "/home/jenkins/workspace/job";
+
+    @Param({"1", "2", "4", "8"})
+    public int concurrency;
+
+    @Param({"16"})
+    public int folderCount;
+
+    @Param({"20"})
+    public long folderLatencyMillis;
+
+    private Workspace workspace;
+    private PartitionedGet.Connector connector;
+    private List<String> childFolders;
+
+    @Setup
+    public void setUp() {
+        childFolders = new ArrayList<String>(folderCount);
+        for (int i = 0; i < folderCount; i++) {
+            childFolders.add("$/Project/folder" + i);
+        }
+        workspace = mock(Workspace.class);
+        when(workspace.get(any(GetRequest[].class), any(GetOptions.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final GetRequest request = ((GetRequest[]) invocation.getArguments()[0])[0];
+                final boolean isFolder = request.getItemSpec().getRecursionType() == RecursionType.FULL;
+                Thread.sleep(isFolder ? folderLatencyMillis : 1);
+                return null;
+            }
+        });
+        // every partition thread connects to the same stubbed workspace; the SDK objects aren't under test here
+        final MockableVersionControlClient vcc = mock(MockableVersionControlClient.class);
+        when(vcc.getWorkspace(WORK_FOLDER)).thenReturn(workspace);
+        when(vcc.getEventEngine()).thenReturn(mock(VersionControlEventEngine.class));
+        final Server server = mock(Server.class);
+        when(server.getVersionControlClient()).thenReturn(vcc);
+        connector = new PartitionedGet.Connector() {
+            @Override
+            public Server connect() {
+                return server;
+            }
+        };
+    }
+
+    @Benchmark
+    public void singleGet() throws InterruptedException {
+        // one get of the whole mapping costs as much as all the folders in sequence
+        Thread.sleep(folderLatencyMillis * folderCount);
+    }
+
+    @Benchmark
+    public void partitionedGet() throws InterruptedException, ExecutionException {
+        new PartitionedGet(workspace, WORK_FOLDER, connector, mock(GetListener.class), VERSION, GetOptions.NONE, concurrency).get("$/Project", childFolders);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(PartitionedGetBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
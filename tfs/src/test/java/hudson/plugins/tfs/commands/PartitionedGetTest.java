@@ -0,0 +1,159 @@
+package hudson.plugins.tfs.commands;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.events.GetListener;
+import com.microsoft.tfs.core.clients.versioncontrol.events.VersionControlEventEngine;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetRequest;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * A class to test {@link PartitionedGet}.
+ */
+public class PartitionedGetTest {
+
+    private static final VersionSpec VERSION = new ChangesetVersionSpec(42);
+    private static final String WORK_FOLDER = "/home/jenkins/workspace/job";
+
+    /**
+     * Hands out a connection, with a workspace of its own, per partition thread.
+     */
+    private static class RecordingConnector implements PartitionedGet.Connector {
+        private final Answer<Object> getAnswer;
+        private final List<Server> servers = Collections.synchronizedList(new ArrayList<Server>());
+        private final List<Workspace> workspaces = Collections.synchronizedList(new ArrayList<Workspace>());
+        private final List<VersionControlEventEngine> eventEngines = Collections.synchronizedList(new ArrayList<VersionControlEventEngine>());
+
+        RecordingConnector(final Answer<Object> getAnswer) {
+            this.getAnswer = getAnswer;
+        }
+
+        @Override
+        public Server connect() {
+            final Workspace workspace = mock(Workspace.class);
+            when(workspace.get(any(GetRequest[].class), any(GetOptions.class))).thenAnswer(getAnswer);
+            final VersionControlEventEngine eventEngine = mock(VersionControlEventEngine.class);
+            final MockableVersionControlClient vcc = mock(MockableVersionControlClient.class);
+            when(vcc.getWorkspace(WORK_FOLDER)).thenReturn(workspace);
+            when(vcc.getEventEngine()).thenReturn(eventEngine);
+            final Server server = mock(Server.class);
+            when(server.getVersionControlClient()).thenReturn(vcc);
+            servers.add(server);
+            workspaces.add(workspace);
+            eventEngines.add(eventEngine);
+            return server;
+        }
+    }
+
+    private static Item createItem(final String serverItem, final ItemType itemType) {
+        final Item result = new Item();
+        result.setServerItem(serverItem);
+        result.setItemType(itemType);
+        return result;
+    }
+
+    @Test
+    public void findChildFolders_skipsFilesAndRoot() {
+        final ItemSet items = mock(ItemSet.class);
+        when(items.getItems()).thenReturn(new Item[]{
+                createItem("$/Project", ItemType.FOLDER),
+                createItem("$/Project/README.md", ItemType.FILE),
+                createItem("$/Project/src", ItemType.FOLDER),
+                createItem("$/Project/test", ItemType.FOLDER),
+        });
+
+        final List<String> actual = PartitionedGet.findChildFolders(items, "$/project");
+
+        Assert.assertEquals(Arrays.asList("$/Project/src", "$/Project/test"), actual);
+    }
+
+    @Test
+    public void get_rootThenFoldersThenEverything() throws Exception {
+        final List<String> requested = Collections.synchronizedList(new ArrayList<String>());
+        final Answer<Object> recordRequest = new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final GetRequest request = ((GetRequest[]) invocation.getArguments()[0])[0];
+                requested.add(request.getItemSpec().getItem() + ":" + request.getItemSpec().getRecursionType());
+                return null;
+            }
+        };
+        final Workspace workspace = mock(Workspace.class);
+        when(workspace.get(any(GetRequest[].class), eq(GetOptions.NONE))).thenAnswer(recordRequest);
+        final RecordingConnector connector = new RecordingConnector(recordRequest);
+        final GetListener listener = mock(GetListener.class);
+        final PartitionedGet cut = new PartitionedGet(workspace, WORK_FOLDER, connector, listener, VERSION, GetOptions.NONE, 2);
+
+        cut.get("$/Project", Arrays.asList("$/Project/src", "$/Project/test", "$/Project/doc"));
+
+        Assert.assertEquals(4, requested.size());
+        Assert.assertEquals("$/Project:" + RecursionType.ONE_LEVEL, requested.get(0));
+        Assert.assertTrue(requested.contains("$/Project/src:" + RecursionType.FULL));
+        Assert.assertTrue(requested.contains("$/Project/test:" + RecursionType.FULL));
+        Assert.assertTrue(requested.contains("$/Project/doc:" + RecursionType.FULL));
+        verify(workspace).get(VERSION, GetOptions.NONE);
+        verify(workspace, times(1)).get(any(GetRequest[].class), any(GetOptions.class));
+    }
+
+    @Test
+    public void get_eachThreadUsesItsOwnConnection() throws Exception {
+        final Answer<Object> noOp = new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                return null;
+            }
+        };
+        final RecordingConnector connector = new RecordingConnector(noOp);
+        final GetListener listener = mock(GetListener.class);
+        final PartitionedGet cut = new PartitionedGet(mock(Workspace.class), WORK_FOLDER, connector, listener, VERSION, GetOptions.NONE, 2);
+
+        cut.get("$/Project", Arrays.asList("$/Project/src", "$/Project/test", "$/Project/doc"));
+
+        Assert.assertEquals(2, connector.servers.size());
+        int partitionGets = 0;
+        for (int i = 0; i < connector.servers.size(); i++) {
+            partitionGets += mockingDetails(connector.workspaces.get(i)).getInvocations().size();
+            verify(connector.eventEngines.get(i)).addGetListener(listener);
+            verify(connector.eventEngines.get(i)).removeGetListener(listener);
+            verify(connector.servers.get(i)).close();
+        }
+        Assert.assertEquals(3, partitionGets);
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void get_partitionFailurePropagates() throws Exception {
+        final RecordingConnector connector = new RecordingConnector(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final GetRequest request = ((GetRequest[]) invocation.getArguments()[0])[0];
+                if (request.getItemSpec().getItem().endsWith("broken")) {
+                    throw new IllegalStateException("simulated failure");
+                }
+                return null;
+            }
+        });
+        final PartitionedGet cut = new PartitionedGet(mock(Workspace.class), WORK_FOLDER, connector, mock(GetListener.class), VERSION, GetOptions.NONE, 2);
+
+        cut.get("$/Project", Arrays.asList("$/Project/src", "$/Project/broken"));
+    }
+}
@@ -0,0 +1,13 @@
+package hudson.plugins.tfs.commands;
+
+import java.util.Arrays;
+
+import hudson.plugins.tfs.model.WorkspaceSnapshot;
+
+public class UpdateLocalVersionsCommandTest extends AbstractCallableCommandTest {
+
+    @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
+        final WorkspaceSnapshot.Entry entry = new WorkspaceSnapshot.Entry(12, 42, "$/Project/README.md", "README.md");
+        return new UpdateLocalVersionsCommand(serverConfig, "workFolder", 42, Arrays.asList(entry));
+    }
+}
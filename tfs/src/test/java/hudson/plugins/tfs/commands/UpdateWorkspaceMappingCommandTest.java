@@ -0,0 +1,127 @@
+package hudson.plugins.tfs.commands;
+
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlConstants;
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkspacePermissionProfile;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolder;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolderType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import hudson.plugins.tfs.model.Server;
+import hudson.remoting.Callable;
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpdateWorkspaceMappingCommandTest extends AbstractCallableCommandTest {
+
+    private static final String LOCAL_PATH = "/jenkins/workspace/job";
+
+    private static Matcher<WorkingFolder> cloakOf(final String serverItem) {
+        return new BaseMatcher<WorkingFolder>() {
+            public boolean matches(final Object item) {
+                final WorkingFolder workingFolder = (WorkingFolder) item;
+                return workingFolder.getType() == WorkingFolderType.CLOAK && serverItem.equals(workingFolder.getServerItem());
+            }
+
+            public void describeTo(final Description description) {
+                description.appendText("cloak of " + serverItem);
+            }
+        };
+    }
+
+    private UpdateWorkspaceMappingCommand createCommand(final List<String> cloakedPaths) {
+        return createCommand(cloakedPaths, false);
+    }
+
+    private UpdateWorkspaceMappingCommand createCommand(final List<String> cloakedPaths, final boolean useCheckInTimestamps) {
+        return new UpdateWorkspaceMappingCommand(server, "TheWorkspaceName", "$/Project", cloakedPaths, LOCAL_PATH, useCheckInTimestamps) {
+            @Override
+            public Server createServer() {
+                return server;
+            }
+        };
+    }
+
+    @Test public void call_onlyChangesDifferentCloaks() throws Exception {
+        final List<WorkingFolder> existing = UpdateWorkspaceMappingCommand.createWorkingFolders(
+                "$/Project", Arrays.asList("$/Project/docs"), LOCAL_PATH);
+        final Workspace workspace = mock(Workspace.class);
+        when(workspace.getFolders()).thenReturn(existing.toArray(new WorkingFolder[0]));
+        when(workspace.getOptions()).thenReturn(WorkspaceOptions.NONE);
+        when(vcc.queryWorkspace("TheWorkspaceName", VersionControlConstants.AUTHENTICATED_USER)).thenReturn(workspace);
+        final Callable<Boolean, IOException> callable = createCommand(Arrays.asList("$/Project/tools")).getCallable();
+
+        final Boolean actual = callable.call();
+
+        Assert.assertTrue(actual);
+        verify(workspace).deleteWorkingFolder(argThat(cloakOf("$/Project/docs")));
+        verify(workspace).createWorkingFolder(argThat(cloakOf("$/Project/tools")));
+        verify(workspace).getFolders();
+        verify(workspace, atLeastOnce()).getOptions();
+        verifyNoMoreInteractions(workspace);
+        assertLog(
+                "Updating the working folders of workspace 'TheWorkspaceName'...",
+                "Removing the cloak of '$/Project/docs' from workspace 'TheWorkspaceName'...",
+                "Adding the cloak of '$/Project/tools' to workspace 'TheWorkspaceName'...",
+                "Removed 1 and added 1 working folder(s)."
+        );
+    }
+
+    @Test public void call_setsCheckInTimestampOption() throws Exception {
+        final List<WorkingFolder> existing = UpdateWorkspaceMappingCommand.createWorkingFolders(
+                "$/Project", Collections.<String>emptyList(), LOCAL_PATH);
+        final Workspace workspace = mock(Workspace.class);
+        when(workspace.getFolders()).thenReturn(existing.toArray(new WorkingFolder[0]));
+        when(workspace.getOptions()).thenReturn(WorkspaceOptions.NONE);
+        when(vcc.queryWorkspace("TheWorkspaceName", VersionControlConstants.AUTHENTICATED_USER)).thenReturn(workspace);
+        final Callable<Boolean, IOException> callable = createCommand(Collections.<String>emptyList(), true).getCallable();
+
+        final Boolean actual = callable.call();
+
+        Assert.assertTrue(actual);
+        verify(workspace).update(
+                (String) isNull(), (String) isNull(), (String) isNull(), (String) isNull(),
+                (WorkingFolder[]) isNull(), (WorkspacePermissionProfile) isNull(), eq(false),
+                eq(WorkspaceOptions.SET_FILE_TO_CHECKIN));
+        verify(workspace, never()).deleteWorkingFolder(any(WorkingFolder.class));
+        verify(workspace, never()).createWorkingFolder(any(WorkingFolder.class));
+        assertLog(
+                "Updating the working folders of workspace 'TheWorkspaceName'...",
+                "Removed 0 and added 0 working folder(s).",
+                "Using check-in timestamps for files retrieved into workspace 'TheWorkspaceName'..."
+        );
+    }
+
+    @Test public void call_missingWorkspace() throws Exception {
+        final Callable<Boolean, IOException> callable = createCommand(Collections.<String>emptyList()).getCallable();
+
+        final Boolean actual = callable.call();
+
+        Assert.assertFalse(actual);
+        assertLog(
+                "Updating the working folders of workspace 'TheWorkspaceName'...",
+                "Workspace 'TheWorkspaceName' no longer exists."
+        );
+    }
+
+    @Test public void isEquivalent_ignoresCase() {
+        final WorkingFolder left = new WorkingFolder("$/Project/Docs", null, WorkingFolderType.CLOAK);
+        final WorkingFolder right = new WorkingFolder("$/project/docs", null, WorkingFolderType.CLOAK);
+
+        Assert.assertTrue(UpdateWorkspaceMappingCommand.isEquivalent(left, right));
+    }
+
+    @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
+        return new UpdateWorkspaceMappingCommand(serverConfig, "workspaceName", "$/Project", Collections.<String>emptyList(), "localPath");
+    }
+}
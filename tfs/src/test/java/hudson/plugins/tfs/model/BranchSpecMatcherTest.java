@@ -0,0 +1,65 @@
+package hudson.plugins.tfs.model;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A class to test {@link BranchSpecMatcher}.
+ */
+public class BranchSpecMatcherTest {
+
+    @Test
+    public void compile_lastSegmentIgnoringCase() {
+        final BranchSpecMatcher cut = BranchSpecMatcher.compile(Arrays.asList("*/master", "refs/heads/Develop"));
+
+        Assert.assertTrue(cut.matches("master"));
+        Assert.assertTrue(cut.matches("MASTER"));
+        Assert.assertTrue(cut.matches("develop"));
+        Assert.assertFalse(cut.matches("feature"));
+        Assert.assertFalse(cut.matches(null));
+    }
+
+    @Test
+    public void compile_anyBranch() {
+        final BranchSpecMatcher cut = BranchSpecMatcher.compile(Arrays.asList("**"));
+
+        Assert.assertTrue(cut.matches("master"));
+        Assert.assertTrue(cut.matches("feature"));
+    }
+
+    @Test
+    public void compile_wildcards() {
+        final BranchSpecMatcher cut = BranchSpecMatcher.compile(Arrays.asList("origin/release-*", "hotfix-?.x"));
+
+        Assert.assertTrue(cut.matches("release-2.0"));
+        Assert.assertTrue(cut.matches("Release-"));
+        Assert.assertTrue(cut.matches("hotfix-3.x"));
+        Assert.assertFalse(cut.matches("hotfix-3.10"));
+        Assert.assertFalse(cut.matches("hotfix-3y"));
+        Assert.assertFalse(cut.matches("prerelease-2.0"));
+    }
+
+    @Test
+    public void compile_targetBranches() {
+        final BranchSpecMatcher cut = BranchSpecMatcher.compile("*/master */pr_status");
+
+        Assert.assertTrue(cut.matches("pr_status"));
+        Assert.assertTrue(cut.matches("master"));
+        Assert.assertFalse(cut.matches("feature"));
+        Assert.assertFalse(BranchSpecMatcher.compile((String) null).matches("master"));
+    }
+
+    @Test
+    public void or_combinesBranches() {
+        final BranchSpecMatcher master = BranchSpecMatcher.compile("*/master");
+        final BranchSpecMatcher release = BranchSpecMatcher.compile("*/release-*");
+
+        final BranchSpecMatcher cut = master.or(release);
+
+        Assert.assertTrue(cut.matches("master"));
+        Assert.assertTrue(cut.matches("release-1"));
+        Assert.assertFalse(cut.matches("feature"));
+    }
+}
@@ -0,0 +1,50 @@
+package hudson.plugins.tfs.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A class to test {@link ChangedFilesManifest}.
+ */
+public class ChangedFilesManifestTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeThenRead() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), ChangedFilesManifest.FILE_NAME);
+        final List<ChangedFile> changedFiles = Arrays.asList(
+                new ChangedFile(ChangedFile.Change.ADDED, 42, "src/New File.java"),
+                new ChangedFile(ChangedFile.Change.UPDATED, 41, "README.md"),
+                new ChangedFile(ChangedFile.Change.DELETED, 40, "src/Old.java"));
+
+        ChangedFilesManifest.write(file, changedFiles);
+
+        Assert.assertEquals(
+                "ADDED\t42\tsrc/New File.java\nUPDATED\t41\tREADME.md\nDELETED\t40\tsrc/Old.java\n",
+                FileUtils.readFileToString(file, "UTF-8"));
+        final List<ChangedFile> actual = ChangedFilesManifest.read(file);
+        Assert.assertEquals(3, actual.size());
+        Assert.assertEquals(ChangedFile.Change.ADDED, actual.get(0).getChange());
+        Assert.assertEquals(42, actual.get(0).getChangeset());
+        Assert.assertEquals("src/New File.java", actual.get(0).getPath());
+        Assert.assertEquals(ChangedFile.Change.DELETED, actual.get(2).getChange());
+    }
+
+    @Test(expected = IOException.class)
+    public void readMalformed() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), ChangedFilesManifest.FILE_NAME);
+        FileUtils.writeStringToFile(file, "RENAMED\t42\tsrc/Main.java\n", "UTF-8");
+
+        ChangedFilesManifest.read(file);
+    }
+}
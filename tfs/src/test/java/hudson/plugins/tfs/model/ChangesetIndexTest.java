@@ -0,0 +1,229 @@
+package hudson.plugins.tfs.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Change;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import hudson.plugins.tfs.Util;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A class to test {@link ChangesetIndex}.
+ */
+public class ChangesetIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Pretends every third changeset affected the path and records the ranges requested.
+     */
+    private static class FakeHistorySource implements ChangesetIndex.HistorySource {
+        private final List<String> requests = new ArrayList<String>();
+        private int latest;
+        private String commentPrefix = "comment ";
+
+        FakeHistorySource(final int latest) {
+            this.latest = latest;
+        }
+
+        @Override
+        public Changeset[] queryHistory(final int fromChangeset, final Integer toChangeset, final int maxCount, final boolean includeFileDetails) {
+            final StringBuilder request = new StringBuilder();
+            request.append(fromChangeset).append('-').append(toChangeset != null ? toChangeset.toString() : "latest");
+            if (maxCount != Integer.MAX_VALUE) {
+                request.append(" max ").append(maxCount);
+            }
+            if (!includeFileDetails) {
+                request.append(" brief");
+            }
+            requests.add(request.toString());
+            final List<Changeset> result = new ArrayList<Changeset>();
+            final int to = toChangeset != null ? toChangeset : latest;
+            for (int id = to; id >= fromChangeset && result.size() < maxCount; id--) {
+                if (id % 3 == 0) {
+                    result.add(createChangeset(id, commentPrefix, includeFileDetails));
+                }
+            }
+            return result.toArray(new Changeset[result.size()]);
+        }
+    }
+
+    private static Changeset createChangeset(final int id, final String commentPrefix, final boolean includeFileDetails) {
+        final Item item = new Item();
+        item.setItemType(ItemType.FILE);
+        item.setServerItem("$/Project/file" + id + ".txt");
+        final Changeset result = new Changeset("EXAMPLE\\user" + id, commentPrefix + id, null, null);
+        result.setChangesetID(id);
+        final Calendar calendar = Util.getCalendar(2016, 1, 5, 10, id % 60, 0);
+        result.setDate(calendar);
+        if (includeFileDetails) {
+            result.setChanges(new Change[] { new Change(item, ChangeType.EDIT, null) });
+        }
+        return result;
+    }
+
+    private ChangesetIndex createIndex(final long maxBytes) {
+        return new ChangesetIndex(new File(temporaryFolder.getRoot(), "index.idx"), maxBytes);
+    }
+
+    private static List<Integer> toIds(final List<ChangesetIndex.Entry> entries) {
+        final List<Integer> result = new ArrayList<Integer>();
+        for (final ChangesetIndex.Entry entry : entries) {
+            result.add(entry.getChangesetId());
+        }
+        return result;
+    }
+
+    @Test
+    public void query_roundTripsEntries() throws Exception {
+        final ChangesetIndex cut = createIndex(Long.MAX_VALUE);
+        final FakeHistorySource source = new FakeHistorySource(20);
+
+        final List<ChangesetIndex.Entry> actual = cut.query(6, 6, Integer.MAX_VALUE, true, source);
+
+        Assert.assertEquals(1, actual.size());
+        final ChangesetIndex.Entry entry = actual.get(0);
+        Assert.assertEquals(6, entry.getChangesetId());
+        Assert.assertEquals("EXAMPLE\\user6", entry.getOwner());
+        Assert.assertEquals("comment 6", entry.getComment());
+        Assert.assertEquals(Util.getCalendar(2016, 1, 5, 10, 6, 0).getTime(), entry.getDate());
+        Assert.assertEquals(1, entry.getItems().size());
+        Assert.assertEquals("$/Project/file6.txt", entry.getItems().get(0).getPath());
+        Assert.assertEquals("edit", entry.getItems().get(0).getAction());
+    }
+
+    @Test
+    public void query_onlyFetchesMissingRanges() throws Exception {
+        final ChangesetIndex cut = createIndex(Long.MAX_VALUE);
+        final FakeHistorySource source = new FakeHistorySource(20);
+
+        Assert.assertEquals(Arrays.asList(18, 15, 12), toIds(cut.query(10, 20, Integer.MAX_VALUE, true, source)));
+        Assert.assertEquals(Arrays.asList(15, 12), toIds(cut.query(11, 16, Integer.MAX_VALUE, true, source)));
+        source.latest = 30;
+        Assert.assertEquals(Arrays.asList(30, 27, 24, 21, 18), toIds(cut.query(12, null, 5, true, source)));
+        Assert.assertEquals(Arrays.asList(9, 6), toIds(cut.query(5, 9, Integer.MAX_VALUE, true, source)));
+
+        Assert.assertEquals(Arrays.asList("10-20", "21-latest max 5", "5-9"), source.requests);
+        Assert.assertEquals(5, cut.getCoveredFrom());
+        Assert.assertEquals(30, cut.getCoveredTo());
+    }
+
+    @Test
+    public void query_fetchesNoMoreThanMaxCount() throws Exception {
+        final ChangesetIndex cut = createIndex(Long.MAX_VALUE);
+        final FakeHistorySource source = new FakeHistorySource(30);
+
+        Assert.assertEquals(Arrays.asList(30, 27), toIds(cut.query(1, null, 2, true, source)));
+        Assert.assertEquals(27, cut.getCoveredFrom());
+        Assert.assertEquals(30, cut.getCoveredTo());
+
+        Assert.assertEquals(Arrays.asList(30, 27, 24), toIds(cut.query(1, 30, 3, true, source)));
+        Assert.assertEquals(24, cut.getCoveredFrom());
+
+        Assert.assertEquals(Arrays.asList("1-latest max 2", "1-26 max 1"), source.requests);
+    }
+
+    @Test
+    public void query_truncatedFillRestartsRange() throws Exception {
+        final ChangesetIndex cut = createIndex(Long.MAX_VALUE);
+        final FakeHistorySource source = new FakeHistorySource(20);
+        cut.query(1, 20, Integer.MAX_VALUE, true, source);
+        source.latest = 60;
+
+        Assert.assertEquals(Collections.singletonList(60), toIds(cut.query(1, null, 1, true, source)));
+
+        // the changesets between 21 and 59 weren't retrieved, so the index can't claim to cover them
+        Assert.assertEquals(60, cut.getCoveredFrom());
+        Assert.assertEquals(60, cut.getCoveredTo());
+    }
+
+    @Test
+    public void query_fetchesFileDetailsOnlyWhenNeeded() throws Exception {
+        final ChangesetIndex cut = createIndex(Long.MAX_VALUE);
+        final FakeHistorySource source = new FakeHistorySource(20);
+
+        final List<ChangesetIndex.Entry> brief = cut.query(1, 20, Integer.MAX_VALUE, false, source);
+        Assert.assertTrue(brief.get(0).getItems().isEmpty());
+
+        final List<ChangesetIndex.Entry> detailed = cut.query(10, 20, Integer.MAX_VALUE, true, source);
+        Assert.assertEquals(Arrays.asList(18, 15, 12), toIds(detailed));
+        Assert.assertEquals("$/Project/file18.txt", detailed.get(0).getItems().get(0).getPath());
+
+        // the items are kept for later requests, whether they need them or not
+        Assert.assertEquals(1, cut.query(10, 20, Integer.MAX_VALUE, false, source).get(0).getItems().size());
+        Assert.assertEquals(1, createIndex(Long.MAX_VALUE).query(12, 12, Integer.MAX_VALUE, true, source).get(0).getItems().size());
+
+        Assert.assertEquals(Arrays.asList("1-20 brief", "12-18 max 3"), source.requests);
+    }
+
+    @Test
+    public void query_refreshesStaleEntries() throws Exception {
+        final File file = new File(temporaryFolder.getRoot(), "index.idx");
+        final FakeHistorySource source = new FakeHistorySource(20);
+        new ChangesetIndex(file, Long.MAX_VALUE, Long.MAX_VALUE).query(1, 9, Integer.MAX_VALUE, true, source);
+        source.commentPrefix = "edited ";
+        final ChangesetIndex cut = new ChangesetIndex(file, Long.MAX_VALUE, -1);
+
+        final List<ChangesetIndex.Entry> actual = cut.query(1, 9, Integer.MAX_VALUE, true, source);
+
+        Assert.assertEquals("edited 9", actual.get(0).getComment());
+        Assert.assertEquals(Arrays.asList("1-9", "3-9 max 3"), source.requests);
+        final ChangesetIndex reloaded = new ChangesetIndex(file, Long.MAX_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals("edited 3", reloaded.query(3, 3, Integer.MAX_VALUE, true, source).get(0).getComment());
+        Assert.assertEquals(2, source.requests.size());
+    }
+
+    @Test
+    public void query_olderRangeIsNotIndexed() throws Exception {
+        final ChangesetIndex cut = createIndex(Long.MAX_VALUE);
+        final FakeHistorySource source = new FakeHistorySource(30);
+        cut.query(20, 30, Integer.MAX_VALUE, true, source);
+
+        Assert.assertEquals(Arrays.asList(6, 3), toIds(cut.query(1, 6, Integer.MAX_VALUE, true, source)));
+
+        Assert.assertEquals(20, cut.getCoveredFrom());
+        Assert.assertEquals(Arrays.asList("20-30", "1-6"), source.requests);
+    }
+
+    @Test
+    public void query_survivesReload() throws Exception {
+        final FakeHistorySource source = new FakeHistorySource(20);
+        createIndex(Long.MAX_VALUE).query(1, 20, Integer.MAX_VALUE, true, source);
+
+        final ChangesetIndex reloaded = createIndex(Long.MAX_VALUE);
+        final List<ChangesetIndex.Entry> actual = reloaded.query(1, 20, Integer.MAX_VALUE, true, source);
+
+        Assert.assertEquals(Arrays.asList(18, 15, 12, 9, 6, 3), toIds(actual));
+        Assert.assertEquals(1, source.requests.size());
+    }
+
+    @Test
+    public void query_compactsOldestEntries() throws Exception {
+        final ChangesetIndex cut = createIndex(1024);
+        final FakeHistorySource source = new FakeHistorySource(300);
+
+        final List<ChangesetIndex.Entry> actual = cut.query(1, 300, Integer.MAX_VALUE, true, source);
+
+        Assert.assertEquals(300, actual.get(0).getChangesetId());
+        Assert.assertTrue(new File(temporaryFolder.getRoot(), "index.idx").length() <= 1024);
+        final int coveredFrom = cut.getCoveredFrom();
+        Assert.assertTrue(coveredFrom > 1);
+        Assert.assertEquals(300, cut.getCoveredTo());
+
+        // the dropped range is fetched again
+        cut.query(1, 300, Integer.MAX_VALUE, true, source);
+        Assert.assertEquals("1-" + (coveredFrom - 1), source.requests.get(1));
+    }
+}
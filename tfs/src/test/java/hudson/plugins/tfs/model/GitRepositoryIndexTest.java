@@ -0,0 +1,108 @@
+package hudson.plugins.tfs.model;
+
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.GitSCM;
+import hudson.scm.SCM;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A class to test {@link GitRepositoryIndex}.
+ */
+public class GitRepositoryIndexTest {
+
+    private static URIish uri(final String url) throws Exception {
+        return new URIish(url);
+    }
+
+    @Test
+    public void toKey_sameRepositoryWrittenDifferently() throws Exception {
+        final String expected = GitRepositoryIndex.toKey(uri("https://fabrikam.visualstudio.com/DefaultCollection/_git/Fabrikam"));
+
+        Assert.assertEquals("fabrikam.visualstudio.com/fabrikam", expected);
+        Assert.assertEquals(expected, GitRepositoryIndex.toKey(uri("https://FABRIKAM.visualstudio.com/_git/fabrikam/")));
+        Assert.assertEquals(expected, GitRepositoryIndex.toKey(uri("ssh://fabrikam@fabrikam.visualstudio.com:22/DefaultCollection/_git/Fabrikam")));
+        Assert.assertEquals(expected, GitRepositoryIndex.toKey(uri("fabrikam@fabrikam.visualstudio.com:_git/Fabrikam")));
+    }
+
+    @Test
+    public void toKey_differentRepositories() throws Exception {
+        final String key = GitRepositoryIndex.toKey(uri("https://fabrikam.visualstudio.com/_git/Fabrikam"));
+
+        Assert.assertNotEquals(key, GitRepositoryIndex.toKey(uri("https://fabrikam.visualstudio.com/_git/Contoso")));
+        Assert.assertNotEquals(key, GitRepositoryIndex.toKey(uri("https://contoso.visualstudio.com/_git/Fabrikam")));
+    }
+
+    private static Map<String, BranchSpecMatcher> repository(final URIish uri, final String... branches) {
+        return Collections.singletonMap(GitRepositoryIndex.toKey(uri), BranchSpecMatcher.compile(Arrays.asList(branches)));
+    }
+
+    @Test
+    public void computeRepositories_onlyGitRepositories() throws Exception {
+        final RemoteConfig origin = new RemoteConfig(new Config(), "origin");
+        origin.addURI(uri("https://fabrikam.visualstudio.com/_git/Fabrikam"));
+        origin.addURI(uri("https://fabrikam.visualstudio.com/_git/Fabrikam.Mirror"));
+        final GitSCM git = mock(GitSCM.class);
+        when(git.getRepositories()).thenReturn(Collections.singletonList(origin));
+        when(git.getBranches()).thenReturn(Collections.singletonList(new BranchSpec("*/master")));
+        final Collection<? extends SCM> scms = Arrays.asList(git, mock(SCM.class));
+
+        final Map<String, BranchSpecMatcher> actual = GitRepositoryIndex.computeRepositories(scms);
+
+        Assert.assertEquals(Arrays.asList("fabrikam.visualstudio.com/fabrikam", "fabrikam.visualstudio.com/fabrikam.mirror"), new ArrayList<String>(actual.keySet()));
+        Assert.assertTrue(actual.get("fabrikam.visualstudio.com/fabrikam").matches("master"));
+        Assert.assertFalse(actual.get("fabrikam.visualstudio.com/fabrikam").matches("feature"));
+    }
+
+    @Test
+    public void getCandidateNames_lookupAndMaintenance() throws Exception {
+        final GitRepositoryIndex cut = new GitRepositoryIndex();
+        final URIish fabrikam = uri("https://fabrikam.visualstudio.com/_git/Fabrikam");
+        final URIish contoso = uri("https://fabrikam.visualstudio.com/_git/Contoso");
+        cut.put("folder/fabrikam-ci", false, repository(fabrikam, "**"));
+        cut.put("contoso-ci", false, repository(contoso, "**"));
+        cut.put("pipeline", true, Collections.<String, BranchSpecMatcher>emptyMap());
+
+        Set<String> actual = cut.getCandidateNames(fabrikam, null);
+        Assert.assertEquals(Arrays.asList("folder/fabrikam-ci", "pipeline"), Arrays.asList(actual.toArray()));
+        Assert.assertTrue(cut.hasGitJobs());
+
+        // reconfigured to build another repository
+        cut.put("folder/fabrikam-ci", false, repository(contoso, "**"));
+        actual = cut.getCandidateNames(fabrikam, null);
+        Assert.assertEquals(Collections.singletonList("pipeline"), Arrays.asList(actual.toArray()));
+
+        cut.remove("folder/fabrikam-ci");
+        cut.remove("contoso-ci");
+        Assert.assertFalse(cut.hasGitJobs());
+        Assert.assertEquals(Collections.singletonList("pipeline"), Arrays.asList(cut.getCandidateNames(contoso, null).toArray()));
+
+        cut.invalidate();
+        Assert.assertTrue(cut.getCandidateNames(contoso, null).isEmpty());
+    }
+
+    @Test
+    public void getCandidateNames_filtersByBranch() throws Exception {
+        final GitRepositoryIndex cut = new GitRepositoryIndex();
+        final URIish fabrikam = uri("https://fabrikam.visualstudio.com/_git/Fabrikam");
+        cut.put("master-ci", false, repository(fabrikam, "*/master"));
+        cut.put("release-ci", false, repository(fabrikam, "refs/heads/release-*"));
+        cut.put("any-ci", false, repository(fabrikam, "**"));
+
+        Assert.assertEquals(Arrays.asList("any-ci", "master-ci"), Arrays.asList(cut.getCandidateNames(fabrikam, "master").toArray()));
+        Assert.assertEquals(Arrays.asList("any-ci", "release-ci"), Arrays.asList(cut.getCandidateNames(fabrikam, "release-2.0").toArray()));
+        Assert.assertEquals(3, cut.getCandidateNames(fabrikam, null).size());
+    }
+}
@@ -0,0 +1,79 @@
+package hudson.plugins.tfs.model;
+
+import com.microsoft.tfs.core.clients.webservices.IdentityDescriptor;
+import com.microsoft.tfs.core.clients.webservices.TeamFoundationIdentity;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A class to test {@link IdentityCache}.
+ */
+public class IdentityCacheTest {
+
+    private static class FakeClockIdentityCache extends IdentityCache {
+        private long now = 1000;
+
+        FakeClockIdentityCache(final int maxEntries, final long ttlMillis) {
+            super(maxEntries, ttlMillis);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+    }
+
+    private static TeamFoundationIdentity createIdentity(final String displayName) {
+        return new TeamFoundationIdentity(new IdentityDescriptor("identityType", "identifier"), displayName, true, null, null);
+    }
+
+    @Test
+    public void get_caseInsensitive() {
+        final IdentityCache cut = new FakeClockIdentityCache(10, 1000);
+        cut.put("EXAMPLE\\ljenkins", createIdentity("Leeroy Jenkins"));
+
+        final IdentityCache.Entry actual = cut.get("example\\LJENKINS");
+
+        Assert.assertNotNull(actual);
+        Assert.assertTrue(actual.isFound());
+        Assert.assertEquals("Leeroy Jenkins", actual.getDisplayName());
+    }
+
+    @Test
+    public void get_negativeEntry() {
+        final IdentityCache cut = new FakeClockIdentityCache(10, 1000);
+        cut.put("EXAMPLE\\departed", null);
+
+        final IdentityCache.Entry actual = cut.get("EXAMPLE\\departed");
+
+        Assert.assertNotNull(actual);
+        Assert.assertFalse(actual.isFound());
+    }
+
+    @Test
+    public void get_expiredEntry() {
+        final FakeClockIdentityCache cut = new FakeClockIdentityCache(10, 1000);
+        cut.put("EXAMPLE\\ljenkins", createIdentity("Leeroy Jenkins"));
+
+        cut.now += 999;
+        Assert.assertNotNull(cut.get("EXAMPLE\\ljenkins"));
+        cut.now += 1;
+        Assert.assertNull(cut.get("EXAMPLE\\ljenkins"));
+        Assert.assertEquals(0, cut.size());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        final IdentityCache cut = new FakeClockIdentityCache(2, 1000);
+        cut.put("EXAMPLE\\a", createIdentity("A"));
+        cut.put("EXAMPLE\\b", createIdentity("B"));
+        cut.get("EXAMPLE\\a");
+
+        cut.put("EXAMPLE\\c", createIdentity("C"));
+
+        Assert.assertEquals(2, cut.size());
+        Assert.assertNotNull(cut.get("EXAMPLE\\a"));
+        Assert.assertNull(cut.get("EXAMPLE\\b"));
+        Assert.assertNotNull(cut.get("EXAMPLE\\c"));
+    }
+}
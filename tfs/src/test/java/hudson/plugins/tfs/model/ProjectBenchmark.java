@@ -0,0 +1,109 @@
+package hudson.plugins.tfs.model;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Change;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import hudson.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares sequential and fork-join conversion of history results, to find the number of
+ * changesets at which the latter starts to pay off and thus pick {@link Project#PARALLEL_CONVERSION_THRESHOLD}.
+ * The fork-join path uses the same pool and leaf size as {@link Project#getVCCHistory}, so the
+ * {@code hudson.plugins.tfs.model.Project.conversionParallelism} system property applies to it too.
+ *
+ * Not a unit test; run it with the test classpath, for example:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=hudson.plugins.tfs.model.ProjectBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProjectBenchmark {
+
+    private static final UserLookup USER_LOOKUP = new UserLookup() {
+        @Override
+        public User find(final String accountName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toUserId(final String accountName) {
+            return accountName.replace('\\', '_');
+        }
+
+        @Override
+        public void prefetch(final Collection<String> accountNames) {
+        }
+    };
+
+    @Param({"256", "1024", "2048", "4096", "16384"})
+    public int changesetCount;
+
+    @Param({"1", "20"})
+    public int changesPerChangeset;
+
+    private Changeset[] serverChangesets;
+
+    @Setup
+    public void setUp() {
+        serverChangesets = new Changeset[changesetCount];
+        final Calendar date = Calendar.getInstance();
+        for (int i = 0; i < changesetCount; i++) {
+            final Change[] changes = new Change[changesPerChangeset];
+            for (int j = 0; j < changesPerChangeset; j++) {
+                final Item item = new Item();
+                item.setItemType(ItemType.FILE);
+                item.setServerItem("$/Project/src/folder" + i + "/File" + j + ".java");
+                changes[j] = new Change(item, j % 2 == 0 ? ChangeType.EDIT : ChangeType.ADD, null);
+            }
+            final Changeset serverChangeset = new Changeset("EXAMPLE\\user" + (i % 50), "Comment for changeset " + i, null, null);
+            serverChangeset.setChangesetID(changesetCount - i);
+            serverChangeset.setDate(date);
+            serverChangeset.setChanges(changes);
+            serverChangesets[i] = serverChangeset;
+        }
+    }
+
+    @Benchmark
+    public List<ChangeSet> sequential() {
+        return Project.convertServerChangesets(serverChangesets, USER_LOOKUP, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<ChangeSet> forkJoin() {
+        return Project.convertServerChangesets(serverChangesets, USER_LOOKUP, 0);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(ProjectBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -68,6 +68,7 @@ public class ProjectTest extends SwedishLocaleTestCase {
         when(user.getProperty(Mailer.UserProperty.class)).thenReturn(new Mailer.UserProperty(emailAddress));
 
         when(userLookup.find(accountName)).thenReturn(user);
+        when(userLookup.toUserId(accountName)).thenReturn(id);
         return userLookup;
     }
     
@@ -89,12 +90,10 @@ public class ProjectTest extends SwedishLocaleTestCase {
 
         hudson.plugins.tfs.model.ChangeSet actual = Project.convertServerChangeset(serverChangeset, userLookup);
 
-        final User author = actual.getAuthor();
         assertEquals("The version was incorrect", "12472", actual.getVersion());
-        assertEquals("The author's user ID was incorrect", "EXAMPLE_ljenkins", author.getId());
-        assertEquals("The author's display name was incorrect", userDisplayName, author.getDisplayName());
-        final String actualEmailAddress = author.getProperty(Mailer.UserProperty.class).getAddress();
-        assertEquals("The author's e-mail address was incorrect", userEmailAddress, actualEmailAddress);
+        assertEquals("The author's user ID was incorrect", "EXAMPLE_ljenkins", actual.getUser());
+        assertNull("The author's domain should not be recorded separately", actual.getDomain());
+        verify(userLookup, never()).find(anyString());
         assertEquals("The date was incorrect", juneTwentySeventh.getTime(), actual.getDate());
         assertEquals("The comment was incorrect", comment, actual.getComment());
 
@@ -104,6 +103,38 @@ public class ProjectTest extends SwedishLocaleTestCase {
 
     }
 
+    @Test
+    public void convertServerChangesets_parallelPreservesOrder() {
+        final String userString = "EXAMPLE\\ljenkins";
+        final UserLookup userLookup = mock(UserLookup.class);
+        when(userLookup.toUserId(userString)).thenReturn("EXAMPLE_ljenkins");
+        final Changeset[] serverChangesets = new Changeset[10];
+        for (int i = 0; i < serverChangesets.length; i++) {
+            final Changeset serverChangeset = new Changeset(userString, "change " + i, null, null);
+            serverChangeset.setChangesetID(100 - i);
+            serverChangeset.setDate(Util.getCalendar(2016, 1, 5, 10, 59 - i, 0));
+            serverChangeset.setChanges(new Change[] { createServerChange() });
+            serverChangesets[i] = serverChangeset;
+        }
+
+        final List<ChangeSet> actual = Project.convertServerChangesets(serverChangesets, userLookup, 2, 2);
+
+        assertEquals(10, actual.size());
+        for (int i = 0; i < serverChangesets.length; i++) {
+            assertEquals(Integer.toString(100 - i), actual.get(i).getVersion());
+            assertEquals("change " + i, actual.get(i).getComment());
+        }
+        final ChangeSet latest = Project.findLatestUncloakedChangeset(Collections.<String>emptyList(), actual);
+        assertEquals("100", latest.getVersion());
+    }
+
+    @Test
+    public void computeLeafSize() {
+        assertEquals(Project.MIN_CONVERSION_LEAF_SIZE, Project.computeLeafSize(100, 4));
+        assertEquals(1024, Project.computeLeafSize(16384, 4));
+        assertEquals(4096, Project.computeLeafSize(16384, 1));
+    }
+
     @Test
     public void findLatestUncloakedChangeset_latestIsUncloaked() {
         final List<String> cloakedPaths = Arrays.asList("$/MyProject/A/2", "$/MyProject/B");
@@ -0,0 +1,171 @@
+package hudson.plugins.tfs.model;
+
+import static org.mockito.Mockito.*;
+
+import com.microsoft.tfs.core.clients.webservices.IIdentityManagementService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+/**
+ * A class to test {@link SharedUserLookup}.
+ */
+public class SharedUserLookupTest {
+
+    private static Server createMockServer(final String url, final String userName, final String userPassword) {
+        return createMockServer(url, userName, userPassword, null);
+    }
+
+    private static Server createMockServer(final String url, final String userName, final String userPassword, final WebProxySettings webProxySettings) {
+        final Server server = mock(Server.class);
+        when(server.getUrl()).thenReturn(url);
+        when(server.getUserName()).thenReturn(userName);
+        when(server.getUserPassword()).thenReturn(userPassword);
+        when(server.getWebProxySettings()).thenReturn(webProxySettings);
+        return server;
+    }
+
+    private static WebProxySettings createProxy(final String hostName) {
+        return new WebProxySettings(hostName, 8888, Collections.<Pattern>emptyList(), null, null);
+    }
+
+    @Test
+    public void forServer_sameCollectionSharesInstance() {
+        final String url = "https://tfs.example.com/tfs/forServer_sameCollectionSharesInstance";
+        final Server first = createMockServer(url, "EXAMPLE\\build", "secret");
+        final Server second = createMockServer(url, "EXAMPLE\\build", "secret");
+
+        final SharedUserLookup expected = SharedUserLookup.forServer(first);
+        final SharedUserLookup actual = SharedUserLookup.forServer(second);
+
+        Assert.assertSame(expected, actual);
+        actual.close();
+        expected.close();
+    }
+
+    @Test
+    public void forServer_differentCollectionsDoNotShare() {
+        final Server first = createMockServer("https://tfs.example.com/tfs/one", "EXAMPLE\\build", "secret");
+        final Server second = createMockServer("https://tfs.example.com/tfs/two", "EXAMPLE\\build", "secret");
+
+        final SharedUserLookup firstLookup = SharedUserLookup.forServer(first);
+        final SharedUserLookup secondLookup = SharedUserLookup.forServer(second);
+
+        Assert.assertNotSame(firstLookup, secondLookup);
+        firstLookup.close();
+        secondLookup.close();
+    }
+
+    @Test
+    public void forServer_changedCredentialsReplaceInstance() {
+        final String url = "https://tfs.example.com/tfs/forServer_changedCredentialsReplaceInstance";
+        final Server before = createMockServer(url, "EXAMPLE\\build", "secret");
+        final Server after = createMockServer(url, "EXAMPLE\\build", "rotated");
+
+        final SharedUserLookup original = SharedUserLookup.forServer(before);
+        final SharedUserLookup replacement = SharedUserLookup.forServer(after);
+
+        Assert.assertNotSame(original, replacement);
+        final SharedUserLookup again = SharedUserLookup.forServer(after);
+        Assert.assertSame(replacement, again);
+
+        // the replaced instance letting go must not evict its replacement
+        original.close();
+        final SharedUserLookup stillShared = SharedUserLookup.forServer(after);
+        Assert.assertSame(replacement, stillShared);
+        stillShared.close();
+        again.close();
+        replacement.close();
+    }
+
+    @Test
+    public void forServer_differentUsersDoNotShare() {
+        final String url = "https://tfs.example.com/tfs/forServer_differentUsersDoNotShare";
+        final Server first = createMockServer(url, "EXAMPLE\\build", "secret");
+        final Server second = createMockServer(url, "EXAMPLE\\deploy", "other");
+
+        final SharedUserLookup firstLookup = SharedUserLookup.forServer(first);
+        final SharedUserLookup secondLookup = SharedUserLookup.forServer(second);
+
+        Assert.assertNotSame(firstLookup, secondLookup);
+        firstLookup.close();
+        secondLookup.close();
+    }
+
+    @Test
+    public void forServer_differentProxiesDoNotShare() {
+        final String url = "https://tfs.example.com/tfs/forServer_differentProxiesDoNotShare";
+        final Server direct = createMockServer(url, "EXAMPLE\\build", "secret");
+        final Server proxied = createMockServer(url, "EXAMPLE\\build", "secret", createProxy("proxy.example.com"));
+        final Server otherProxy = createMockServer(url, "EXAMPLE\\build", "secret", createProxy("other.example.com"));
+
+        final SharedUserLookup directLookup = SharedUserLookup.forServer(direct);
+        final SharedUserLookup proxiedLookup = SharedUserLookup.forServer(proxied);
+        final SharedUserLookup otherLookup = SharedUserLookup.forServer(otherProxy);
+
+        Assert.assertNotSame(directLookup, proxiedLookup);
+        Assert.assertNotSame(proxiedLookup, otherLookup);
+        Assert.assertNotSame(directLookup, otherLookup);
+        directLookup.close();
+        proxiedLookup.close();
+        otherLookup.close();
+    }
+
+    @Test
+    public void close_lastHolderEvictsInstance() throws Exception {
+        final String url = "https://tfs.example.com/tfs/close_lastHolderEvictsInstance";
+        final int before = SharedUserLookup.getInstanceCount();
+        final SharedUserLookup first = SharedUserLookup.forServer(createMockServer(url, "EXAMPLE\\build", "secret"));
+        final SharedUserLookup second = SharedUserLookup.forServer(createMockServer(url, "EXAMPLE\\build", "secret"));
+        Assert.assertEquals(before + 1, SharedUserLookup.getInstanceCount());
+
+        first.close();
+        Assert.assertEquals(before + 1, SharedUserLookup.getInstanceCount());
+        second.close();
+
+        Assert.assertEquals(before, SharedUserLookup.getInstanceCount());
+        final SharedUserLookup next = SharedUserLookup.forServer(createMockServer(url, "EXAMPLE\\build", "secret"));
+        Assert.assertNotSame(first, next);
+        next.close();
+    }
+
+    @Test
+    public void reset_closesConnectionOnceReleased() throws Exception {
+        final Server server = mock(Server.class);
+        when(server.createIdentityManagementService()).thenReturn(mock(IIdentityManagementService.class));
+        final SharedUserLookup cut = new SharedUserLookup("https://tfs.example.com/tfs/reset", "EXAMPLE\\build", "secret", null, null) {
+            @Override
+            Server createServer() {
+                return server;
+            }
+        };
+        final SharedUserLookup.Connection inUse = cut.acquire();
+
+        cut.reset();
+
+        verify(server, never()).close();
+        cut.release(inUse);
+        verify(server).close();
+    }
+
+    @Test
+    public void release_keepsCurrentConnectionOpen() throws Exception {
+        final Server server = mock(Server.class);
+        when(server.createIdentityManagementService()).thenReturn(mock(IIdentityManagementService.class));
+        final SharedUserLookup cut = new SharedUserLookup("https://tfs.example.com/tfs/release", "EXAMPLE\\build", "secret", null, null) {
+            @Override
+            Server createServer() {
+                return server;
+            }
+        };
+
+        cut.release(cut.acquire());
+        final SharedUserLookup.Connection second = cut.acquire();
+        cut.release(second);
+
+        verify(server).createIdentityManagementService();
+        verify(server, never()).close();
+    }
+}
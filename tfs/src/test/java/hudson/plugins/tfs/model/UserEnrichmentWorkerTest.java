@@ -0,0 +1,54 @@
+package hudson.plugins.tfs.model;
+
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * A class to test {@link UserEnrichmentWorker}.
+ */
+public class UserEnrichmentWorkerTest {
+
+    private static final String URL = "https://tfs.example.com/tfs/DefaultCollection";
+
+    private final UserEnrichmentWorker cut = new UserEnrichmentWorker(mock(Executor.class), 60000);
+
+    @Test
+    public void selectAccounts_skipsPendingAccounts() {
+        final List<String> first = cut.selectAccounts(URL, Arrays.asList("EXAMPLE\\alice", "EXAMPLE\\bob"));
+        final List<String> second = cut.selectAccounts(URL, Arrays.asList("example\\ALICE", "EXAMPLE\\carol", null));
+
+        Assert.assertEquals(Arrays.asList("EXAMPLE\\alice", "EXAMPLE\\bob"), first);
+        Assert.assertEquals(Collections.singletonList("EXAMPLE\\carol"), second);
+    }
+
+    @Test
+    public void selectAccounts_skipsRecentlyEnrichedAccounts() {
+        final List<String> accounts = Collections.singletonList("EXAMPLE\\alice");
+        cut.selectAccounts(URL, accounts);
+        cut.release(URL, accounts);
+
+        Assert.assertTrue(cut.selectAccounts(URL, accounts).isEmpty());
+        Assert.assertEquals(accounts, cut.selectAccounts("https://other.example.com/tfs", accounts));
+    }
+
+    @Test
+    public void enrich_prefetchesBeforeFinding() {
+        final UserLookup userLookup = mock(UserLookup.class);
+        final List<String> accounts = Arrays.asList("EXAMPLE\\alice", "EXAMPLE\\bob");
+
+        UserEnrichmentWorker.enrich(userLookup, accounts);
+
+        final InOrder inOrder = inOrder(userLookup);
+        inOrder.verify(userLookup).prefetch(accounts);
+        inOrder.verify(userLookup).find("EXAMPLE\\alice");
+        inOrder.verify(userLookup).find("EXAMPLE\\bob");
+    }
+}
@@ -25,5 +25,22 @@ public class WorkspaceConfigurationTest {
         assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "aproject", cloakList, "workfolder")));
         assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "aworkfolder")));
         assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "workfolder")));
+        assertThat(one, is(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder", WorkspaceSettings.DEFAULT)));
+        assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder", WorkspaceSettings.DEFAULT.withLocalWorkspace(true))));
+        assertThat(one, is(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder", WorkspaceSettings.DEFAULT.withLocalWorkspace(false).withCheckInTimestamps(false))));
+        assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder", WorkspaceSettings.DEFAULT.withCheckInTimestamps(true))));
+    }
+
+    @Test public void differsOnlyInCloakedPathsOrOptions() {
+        final List<String> cloakList = Collections.singletonList("cloak");
+
+        WorkspaceConfiguration one = new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder");
+        assertTrue(one.differsOnlyInCloakedPathsOrOptions(new WorkspaceConfiguration("server", "workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "workfolder")));
+        assertFalse(one.differsOnlyInCloakedPathsOrOptions(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder")));
+        assertFalse(one.differsOnlyInCloakedPathsOrOptions(new WorkspaceConfiguration("server", "workspace", "aproject", EMPTY_CLOAKED_PATHS_LIST, "workfolder")));
+        assertFalse(one.differsOnlyInCloakedPathsOrOptions(new WorkspaceConfiguration("server", "workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "aworkfolder")));
+        assertFalse(one.differsOnlyInCloakedPathsOrOptions(new WorkspaceConfiguration("server", "workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "workfolder", WorkspaceSettings.DEFAULT.withLocalWorkspace(true))));
+        assertTrue(one.differsOnlyInCloakedPathsOrOptions(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder", WorkspaceSettings.DEFAULT.withCheckInTimestamps(true))));
+        assertFalse(one.differsOnlyInCloakedPathsOrOptions(null));
     }
 }
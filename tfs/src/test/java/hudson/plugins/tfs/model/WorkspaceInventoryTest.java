@@ -0,0 +1,98 @@
+package hudson.plugins.tfs.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A class to test {@link WorkspaceInventory}.
+ */
+public class WorkspaceInventoryTest {
+
+    private static final long REFRESH_MILLIS = 1000;
+
+    private static class TestableWorkspaceInventory extends WorkspaceInventory {
+        private long now = 1;
+
+        TestableWorkspaceInventory() {
+            super(REFRESH_MILLIS);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+    }
+
+    private static Workspace createWorkspace(final String name) {
+        return new Workspace(name, "COMPUTER", "EXAMPLE\\build", "");
+    }
+
+    @Test
+    public void list_emptyInventoryGoesToServer() {
+        final TestableWorkspaceInventory cut = new TestableWorkspaceInventory();
+
+        Assert.assertFalse(cut.isFresh());
+        Assert.assertNull(cut.list("Hudson-job-MASTER"));
+    }
+
+    @Test
+    public void list_reconciledInventoryOnlyConfirmsKnownWorkspaces() {
+        final TestableWorkspaceInventory cut = new TestableWorkspaceInventory();
+        cut.reconcile(Arrays.asList(createWorkspace("Hudson-job-MASTER"), createWorkspace("Hudson-other-MASTER")));
+
+        final List<Workspace> actual = cut.list("hudson-JOB-master");
+
+        Assert.assertEquals(2, actual.size());
+        Assert.assertNull(cut.list("Hudson-missing-MASTER"));
+        Assert.assertNull(cut.list(null));
+    }
+
+    @Test
+    public void put_doesNotMakeInventoryFresh() {
+        final TestableWorkspaceInventory cut = new TestableWorkspaceInventory();
+
+        cut.put(createWorkspace("Hudson-job-MASTER"));
+
+        Assert.assertFalse(cut.isFresh());
+        Assert.assertNull(cut.list("Hudson-job-MASTER"));
+    }
+
+    @Test
+    public void list_expiresAfterRefreshInterval() {
+        final TestableWorkspaceInventory cut = new TestableWorkspaceInventory();
+        cut.reconcile(Collections.singletonList(createWorkspace("Hudson-job-MASTER")));
+
+        cut.now += REFRESH_MILLIS;
+
+        Assert.assertFalse(cut.isFresh());
+        Assert.assertNull(cut.list("Hudson-job-MASTER"));
+    }
+
+    @Test
+    public void putAndRemove_keepInventoryCurrent() {
+        final TestableWorkspaceInventory cut = new TestableWorkspaceInventory();
+        cut.reconcile(Collections.<Workspace>emptyList());
+
+        cut.put(createWorkspace("Hudson-job-MASTER"));
+        Assert.assertTrue(cut.contains("Hudson-job-MASTER"));
+        cut.remove("HUDSON-JOB-MASTER");
+        Assert.assertFalse(cut.contains("Hudson-job-MASTER"));
+
+        cut.invalidate();
+        Assert.assertFalse(cut.isFresh());
+    }
+
+    @Test
+    public void forComputer_sharedPerCollectionAndComputer() {
+        final WorkspaceInventory first = WorkspaceInventory.forComputer("https://tfs.example.com/tfs/DefaultCollection", "AGENT1");
+        final WorkspaceInventory second = WorkspaceInventory.forComputer("https://TFS.example.com/tfs/DefaultCollection", "agent1");
+        final WorkspaceInventory other = WorkspaceInventory.forComputer("https://tfs.example.com/tfs/DefaultCollection", "AGENT2");
+
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, other);
+    }
+}
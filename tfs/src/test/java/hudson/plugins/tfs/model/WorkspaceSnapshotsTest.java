@@ -0,0 +1,189 @@
+package hudson.plugins.tfs.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A class to test {@link WorkspaceSnapshots}.
+ */
+public class WorkspaceSnapshotsTest {
+
+    private static final long MAX_AGE_MILLIS = 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Keeps the submitted snapshot creations until the test runs them.
+     */
+    private static class CollectingExecutor implements Executor {
+        final List<Runnable> runnables = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            runnables.add(command);
+        }
+
+        void runAll() {
+            final List<Runnable> toRun = new ArrayList<Runnable>(runnables);
+            runnables.clear();
+            for (final Runnable runnable : toRun) {
+                runnable.run();
+            }
+        }
+    }
+
+    private static class TestableWorkspaceSnapshots extends WorkspaceSnapshots {
+        private long now = 1;
+
+        TestableWorkspaceSnapshots(final File folder) {
+            this(folder, new CollectingExecutor());
+        }
+
+        TestableWorkspaceSnapshots(final File folder, final Executor executor) {
+            super(folder, MAX_AGE_MILLIS, executor);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+    }
+
+    private static void fill(final File archive, final String contents) throws Exception {
+        FileUtils.writeStringToFile(archive, contents, "UTF-8");
+    }
+
+    @Test
+    public void saveThenGetLatest() throws Exception {
+        final WorkspaceSnapshots cut = new TestableWorkspaceSnapshots(temporaryFolder.getRoot());
+        Assert.assertNull(cut.getLatest());
+        final File archive = cut.createTemporaryArchive();
+        fill(archive, "zip");
+        final List<WorkspaceSnapshot.Entry> entries = Arrays.asList(
+                new WorkspaceSnapshot.Entry(12, 40, "$/Project/README.md", "README.md"),
+                new WorkspaceSnapshot.Entry(15, 42, "$/Project/src/Main.java", "src/Main.java"));
+
+        cut.save(archive, 42, entries);
+
+        final WorkspaceSnapshot actual = cut.getLatest();
+        Assert.assertEquals(42, actual.getChangeset());
+        Assert.assertEquals(1, actual.getCreatedMillis());
+        Assert.assertEquals("zip", FileUtils.readFileToString(actual.getArchive(), "UTF-8"));
+        Assert.assertEquals(2, actual.getEntries().size());
+        final WorkspaceSnapshot.Entry second = actual.getEntries().get(1);
+        Assert.assertEquals(15, second.getItemId());
+        Assert.assertEquals(42, second.getVersion());
+        Assert.assertEquals("$/Project/src/Main.java", second.getServerItem());
+        Assert.assertEquals("src/Main.java", second.getRelativePath());
+        Assert.assertFalse(archive.exists());
+    }
+
+    @Test
+    public void save_replacesPreviousSnapshot() throws Exception {
+        final WorkspaceSnapshots cut = new TestableWorkspaceSnapshots(temporaryFolder.getRoot());
+        final File first = cut.createTemporaryArchive();
+        fill(first, "first");
+        cut.save(first, 10, Arrays.asList(new WorkspaceSnapshot.Entry(1, 10, "$/Project/a.txt", "a.txt")));
+        final File previousArchive = cut.getLatest().getArchive();
+        final File second = cut.createTemporaryArchive();
+        fill(second, "second");
+
+        cut.save(second, 20, Arrays.asList(new WorkspaceSnapshot.Entry(1, 20, "$/Project/a.txt", "a.txt")));
+
+        final WorkspaceSnapshot actual = cut.getLatest();
+        Assert.assertEquals(20, actual.getChangeset());
+        Assert.assertEquals("second", FileUtils.readFileToString(actual.getArchive(), "UTF-8"));
+        Assert.assertFalse(previousArchive.exists());
+    }
+
+    @Test
+    public void isDue_afterMaxAge() throws Exception {
+        final TestableWorkspaceSnapshots cut = new TestableWorkspaceSnapshots(temporaryFolder.getRoot());
+        Assert.assertTrue(cut.isDue());
+        final File archive = cut.createTemporaryArchive();
+        fill(archive, "zip");
+        cut.save(archive, 42, Arrays.<WorkspaceSnapshot.Entry>asList());
+        final long saved = new File(temporaryFolder.getRoot(), "snapshot.properties").lastModified();
+
+        cut.now = saved + MAX_AGE_MILLIS - 1;
+        Assert.assertFalse(cut.isDue());
+        cut.now = saved + MAX_AGE_MILLIS;
+        Assert.assertTrue(cut.isDue());
+    }
+
+    @Test
+    public void refreshLater_createsInTheBackground() throws Exception {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TestableWorkspaceSnapshots cut = new TestableWorkspaceSnapshots(temporaryFolder.getRoot(), executor);
+        final WorkspaceSnapshots.Creator creator = new WorkspaceSnapshots.Creator() {
+            @Override
+            public void create(final WorkspaceSnapshots snapshots) throws Exception {
+                final File archive = snapshots.createTemporaryArchive();
+                fill(archive, "zip");
+                snapshots.save(archive, 42, Arrays.<WorkspaceSnapshot.Entry>asList());
+            }
+        };
+
+        Assert.assertTrue(cut.refreshLater(creator));
+        Assert.assertFalse(cut.refreshLater(creator));
+        Assert.assertNull(cut.getLatest());
+        executor.runAll();
+
+        Assert.assertEquals(42, cut.getLatest().getChangeset());
+        Assert.assertFalse(cut.isDue());
+    }
+
+    @Test
+    public void refreshLater_backsOffAfterFailure() throws Exception {
+        final CollectingExecutor executor = new CollectingExecutor();
+        final TestableWorkspaceSnapshots cut = new TestableWorkspaceSnapshots(temporaryFolder.getRoot(), executor);
+        final WorkspaceSnapshots.Creator failing = new WorkspaceSnapshots.Creator() {
+            @Override
+            public void create(final WorkspaceSnapshots snapshots) throws Exception {
+                throw new IOException("simulated failure");
+            }
+        };
+
+        Assert.assertTrue(cut.refreshLater(failing));
+        executor.runAll();
+
+        Assert.assertFalse(cut.refreshLater(failing));
+        cut.now += WorkspaceSnapshots.getRetryDelayMillis(1, MAX_AGE_MILLIS) - 1;
+        Assert.assertFalse(cut.isDue());
+        cut.now += 1;
+        Assert.assertTrue(cut.refreshLater(failing));
+    }
+
+    @Test
+    public void getRetryDelayMillis() {
+        final long fifteenMinutes = WorkspaceSnapshots.INITIAL_RETRY_DELAY_MILLIS;
+        final long day = 96 * fifteenMinutes;
+
+        Assert.assertEquals(fifteenMinutes, WorkspaceSnapshots.getRetryDelayMillis(1, day));
+        Assert.assertEquals(2 * fifteenMinutes, WorkspaceSnapshots.getRetryDelayMillis(2, day));
+        Assert.assertEquals(64 * fifteenMinutes, WorkspaceSnapshots.getRetryDelayMillis(7, day));
+        Assert.assertEquals(day, WorkspaceSnapshots.getRetryDelayMillis(8, day));
+        Assert.assertEquals(day, WorkspaceSnapshots.getRetryDelayMillis(100, day));
+    }
+
+    @Test
+    public void tryBeginUpdate_onlyOnce() {
+        final WorkspaceSnapshots cut = new TestableWorkspaceSnapshots(temporaryFolder.getRoot());
+
+        Assert.assertTrue(cut.tryBeginUpdate());
+        Assert.assertFalse(cut.tryBeginUpdate());
+        cut.endUpdate();
+        Assert.assertTrue(cut.tryBeginUpdate());
+    }
+}
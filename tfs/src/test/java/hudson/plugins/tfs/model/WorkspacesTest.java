@@ -96,6 +96,22 @@ public class WorkspacesTest {
         assertTrue("The workspace was reported as non existant", workspaces.exists(workspace));
     }
 
+    @Test
+    public void assertListWithWorkspaceDoesNotAnswerForOtherWorkspaces() throws Exception {
+        when(server.execute(isA(Callable.class))).thenReturn(parse(
+                "--------- -------------- -------- ----------------------------------------------------------------------------------------------------------\n" +
+                "\n" +
+                "name1     SND\\redsolo_cp COMPUTER\n"));
+
+        Workspaces workspaces = new Workspaces(server);
+        assertTrue("The workspace was reported as non existant", workspaces.exists("name1"));
+        // the list may have come from the agent's inventory, which can't tell that name2 doesn't exist
+        assertFalse("The workspace was reported as existant", workspaces.exists("name2"));
+        assertFalse("The workspace was reported as existant", workspaces.exists("name2"));
+
+        verify(server, times(2)).execute(isA(Callable.class));
+    }
+
     @Test
     public void assertGettingNewWorkspaceIsNotRetrievingServerList() throws Exception {
         when(server.execute(isA(Callable.class))).thenReturn(null);
@@ -128,6 +144,25 @@ public class WorkspacesTest {
         assertFalse("The workspace was reported as existant", workspaces.exists(workspace));
     }
     
+    @Test
+    public void assertWorkspaceOfComputerIsDeleted() throws Exception {
+        when(server.execute(isA(Callable.class))).thenReturn(parse(
+                "--------- -------------- -------- ----------------------------------------------------------------------------------------------------------\n" +
+                "\n" +
+                "name1     SND\\redsolo_cp COMPUTER\n"));
+        Workspaces workspaces = new Workspaces(server);
+        assertTrue("The workspace was reported as non existant", workspaces.deleteWorkspace("NAME1", "COMPUTER"));
+        verify(server, times(2)).execute(isA(Callable.class));
+    }
+
+    @Test
+    public void assertUnknownWorkspaceOfComputerIsNotDeleted() throws Exception {
+        when(server.execute(isA(Callable.class))).thenReturn(parse(""));
+        Workspaces workspaces = new Workspaces(server);
+        assertFalse("The unknown workspace was reported as deleted", workspaces.deleteWorkspace("name1", "COMPUTER"));
+        verify(server, times(1)).execute(isA(Callable.class));
+    }
+
     @Test
     public void assertGetUnknownWorkspaceReturnsNull() throws Exception {
         when(server.execute(isA(Callable.class))).thenReturn(parse(""));
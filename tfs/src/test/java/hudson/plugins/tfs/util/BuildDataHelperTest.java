@@ -0,0 +1,130 @@
+package hudson.plugins.tfs.util;
+
+import static org.mockito.Mockito.*;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.Revision;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import hudson.plugins.git.extensions.impl.CleanCheckout;
+import hudson.plugins.git.extensions.impl.MessageExclusion;
+import hudson.plugins.git.extensions.impl.PathRestriction;
+import hudson.plugins.git.extensions.impl.UserExclusion;
+import hudson.plugins.git.util.Build;
+import hudson.plugins.git.util.BuildData;
+import hudson.plugins.tfs.model.GitCodePushedEventArgs;
+import hudson.util.DescribableList;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A class to test {@link BuildDataHelper}.
+ */
+public class BuildDataHelperTest {
+
+    private static final String REPO_URL = "https://fabrikam.visualstudio.com/DefaultCollection/_git/Fabrikam";
+    private static final String BUILT_COMMIT = "33b55f7cb7e7e245323987634f960cf4a6e6bc74";
+    private static final String NEW_COMMIT = "aad331d8d3b131fa9ae03cf5e53965b51942618a";
+
+    private static Run<?, ?> createBuild(final String remoteUrl, final String branchName, final String sha1) {
+        final BuildData buildData = new BuildData();
+        buildData.addRemoteUrl(remoteUrl);
+        final ObjectId objectId = ObjectId.fromString(sha1);
+        final Branch branch = new Branch(branchName, objectId);
+        final Revision revision = new Revision(objectId, Collections.singletonList(branch));
+        buildData.saveBuild(new Build(revision, 1, Result.SUCCESS));
+        final Run<?, ?> run = mock(Run.class);
+        when(run.getActions(BuildData.class)).thenReturn(Collections.singletonList(buildData));
+        return run;
+    }
+
+    private static GitCodePushedEventArgs createPush(final String repoUrl, final String targetRef, final String commit) {
+        final GitCodePushedEventArgs args = new GitCodePushedEventArgs();
+        args.repoUri = URI.create(repoUrl);
+        args.targetBranch = targetRef.substring(targetRef.lastIndexOf('/') + 1);
+        args.targetRef = targetRef;
+        args.commit = commit;
+        return args;
+    }
+
+    @Test
+    public void isNewCommit_alreadyBuilt() {
+        final Run<?, ?> lastBuild = createBuild(REPO_URL, "refs/remotes/origin/master", BUILT_COMMIT);
+
+        final Boolean actual = BuildDataHelper.isNewCommit(lastBuild, createPush(REPO_URL, "refs/heads/master", BUILT_COMMIT));
+
+        Assert.assertEquals(Boolean.FALSE, actual);
+    }
+
+    @Test
+    public void isNewCommit_newCommitOnBuiltBranch() {
+        final Run<?, ?> lastBuild = createBuild(REPO_URL, "origin/master", BUILT_COMMIT);
+
+        final Boolean actual = BuildDataHelper.isNewCommit(lastBuild, createPush(REPO_URL, "refs/heads/master", NEW_COMMIT));
+
+        Assert.assertEquals(Boolean.TRUE, actual);
+    }
+
+    @Test
+    public void isNewCommit_unknownBranchOrRepository() {
+        final Run<?, ?> lastBuild = createBuild(REPO_URL, "origin/master", BUILT_COMMIT);
+
+        Assert.assertNull(BuildDataHelper.isNewCommit(lastBuild, createPush(REPO_URL, "refs/heads/feature", NEW_COMMIT)));
+        Assert.assertNull(BuildDataHelper.isNewCommit(lastBuild, createPush("https://fabrikam.visualstudio.com/_git/Other", "refs/heads/master", NEW_COMMIT)));
+    }
+
+    @Test
+    public void isNewCommit_branchWithSameLastSegment() {
+        final Run<?, ?> lastBuild = createBuild(REPO_URL, "origin/feature/master", BUILT_COMMIT);
+
+        Assert.assertNull(BuildDataHelper.isNewCommit(lastBuild, createPush(REPO_URL, "refs/heads/master", NEW_COMMIT)));
+        Assert.assertEquals(Boolean.TRUE, BuildDataHelper.isNewCommit(lastBuild, createPush(REPO_URL, "refs/heads/feature/master", NEW_COMMIT)));
+    }
+
+    @Test
+    public void isNewCommit_noBuildData() {
+        final Run<?, ?> lastBuild = mock(Run.class);
+        when(lastBuild.getActions(BuildData.class)).thenReturn(Collections.<BuildData>emptyList());
+
+        Assert.assertNull(BuildDataHelper.isNewCommit(lastBuild, createPush(REPO_URL, "refs/heads/master", NEW_COMMIT)));
+        Assert.assertNull(BuildDataHelper.isNewCommit(null, createPush(REPO_URL, "refs/heads/master", NEW_COMMIT)));
+    }
+
+    private static GitSCM createScm(final GitSCMExtension... extensions) {
+        final GitSCM scm = mock(GitSCM.class);
+        final DescribableList<GitSCMExtension, GitSCMExtensionDescriptor> list =
+                new DescribableList<GitSCMExtension, GitSCMExtensionDescriptor>(Saveable.NOOP, Arrays.asList(extensions));
+        when(scm.getExtensions()).thenReturn(list);
+        return scm;
+    }
+
+    @Test
+    public void hasPollingExtensions() {
+        Assert.assertFalse(BuildDataHelper.hasPollingExtensions(createScm()));
+        Assert.assertFalse(BuildDataHelper.hasPollingExtensions(createScm(new CleanCheckout())));
+        Assert.assertTrue(BuildDataHelper.hasPollingExtensions(createScm(new CleanCheckout(), new PathRestriction("src/.*", null))));
+        Assert.assertTrue(BuildDataHelper.hasPollingExtensions(createScm(new UserExclusion("jenkins"))));
+        Assert.assertTrue(BuildDataHelper.hasPollingExtensions(createScm(new MessageExclusion(".*\\[ci skip\\].*"))));
+    }
+
+    @Test
+    public void isBranch() {
+        Assert.assertTrue(BuildDataHelper.isBranch("refs/heads/master", "refs/heads/master"));
+        Assert.assertTrue(BuildDataHelper.isBranch("origin/master", "refs/heads/master"));
+        Assert.assertTrue(BuildDataHelper.isBranch("refs/remotes/origin/master", "refs/heads/master"));
+        Assert.assertTrue(BuildDataHelper.isBranch("origin/feature/master", "refs/heads/feature/master"));
+        Assert.assertTrue(BuildDataHelper.isBranch("refs/remotes/origin/feature/master", "refs/heads/feature/master"));
+        Assert.assertFalse(BuildDataHelper.isBranch("origin/notmaster", "refs/heads/master"));
+        Assert.assertFalse(BuildDataHelper.isBranch("origin/feature/master", "refs/heads/master"));
+        Assert.assertFalse(BuildDataHelper.isBranch("refs/remotes/origin/feature/master", "refs/heads/master"));
+    }
+}